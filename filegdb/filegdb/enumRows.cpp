@@ -3,6 +3,8 @@
 #include <iostream>
 #include <string>
 #include <jni.h>
+#include "rowbuffer.h"
+#include "org_opensextant_giscore_filegdb_EnumRows.h"
 
 using namespace std;
 using namespace FileGDBAPI;
@@ -37,6 +39,56 @@ JNIEXPORT jobject JNICALL Java_org_opensextant_giscore_filegdb_EnumRows_next1(JN
 	}
 }
 
+FieldInfo* getFieldInfo(JNIEnv *env, jobject self, Table *t);
+
+jobject getEnumRowsTable(JNIEnv* env, jobject self) {
+	menv me(env);
+	jclass clazz = me.findClass("org.opensextant.giscore.filegdb.EnumRows");
+	jfieldID field = me.getField(clazz, "table", "Lorg.opensextant.giscore.filegdb.Table;");
+	jobject rval = env->GetObjectField(self, field);
+	me.checkAndThrow();
+	return rval;
+}
+
+/*
+ * Class:     org_opensextant_giscore_filegdb_EnumRows
+ * Method:    fetch1
+ * Signature: (Ljava/nio/ByteBuffer;Z)I
+ */
+JNIEXPORT jint JNICALL Java_org_opensextant_giscore_filegdb_EnumRows_fetch1(JNIEnv *env, jobject self, jobject buffer, jboolean geometry) {
+	try {
+		menv me(env);
+		EnumRows *e = (EnumRows*) getEnumRows(env, self);
+		jobject table = getEnumRowsTable(env, self);
+		Table *t = me.getTable(table);
+		FieldInfo *fieldInfo = getFieldInfo(env, table, t);
+		int count;
+		me.esriCheckedCall(fieldInfo->GetFieldCount(count), "Field Count");
+		rowwriter w(env->GetDirectBufferAddress(buffer), (size_t) env->GetDirectBufferCapacity(buffer));
+		// A row that didn't fit last time is already read
+		Row *row = (Row*) me.getLongFieldValue(self, "org.opensextant.giscore.filegdb.EnumRows", "pending_row");
+		bool pending = row != 0L;
+		me.setLongFieldValue(self, "org.opensextant.giscore.filegdb.EnumRows", "pending_row", 0L);
+		if (row == 0L) row = new Row();
+		jint n = 0;
+		while(pending || S_OK == e->Next(*row)) {
+			pending = false;
+			size_t start = w.pos;
+			encodeRow(w, row, fieldInfo, count, geometry == JNI_TRUE);
+			if (w.overflow()) {
+				// Keep the row for the next call
+				me.setLongFieldValue(self, "org.opensextant.giscore.filegdb.EnumRows", "pending_row", row);
+				return n > 0 ? n : -((jint) (w.pos - start));
+			}
+			n++;
+		}
+		delete row;
+		return n;
+	} catch(jni_check) {
+		return 0;
+	}
+}
+
 /*
  * Class:     org_opensextant_giscore_filegdb_EnumRows
  * Method:    close
@@ -44,6 +96,12 @@ JNIEXPORT jobject JNICALL Java_org_opensextant_giscore_filegdb_EnumRows_next1(JN
  */
 JNIEXPORT void JNICALL Java_org_opensextant_giscore_filegdb_EnumRows_close(JNIEnv *env, jobject self) {
 	try {
+		menv me(env);
+		Row *row = (Row*) me.getLongFieldValue(self, "org.opensextant.giscore.filegdb.EnumRows", "pending_row");
+		if (row != 0L) {
+			me.setLongFieldValue(self, "org.opensextant.giscore.filegdb.EnumRows", "pending_row", 0L);
+			delete row;
+		}
 		EnumRows *e = (EnumRows*) getEnumRows(env, self);
 		delete e;
 	} catch(jni_check) {
@@ -15,6 +15,14 @@ extern "C" {
 JNIEXPORT jobject JNICALL Java_org_opensextant_giscore_filegdb_EnumRows_next1
   (JNIEnv *, jobject);
 
+/*
+ * Class:     org_opensextant_giscore_filegdb_EnumRows
+ * Method:    fetch1
+ * Signature: (Ljava/nio/ByteBuffer;Z)I
+ */
+JNIEXPORT jint JNICALL Java_org_opensextant_giscore_filegdb_EnumRows_fetch1
+  (JNIEnv *, jobject, jobject, jboolean);
+
 /*
  * Class:     org_opensextant_giscore_filegdb_EnumRows
  * Method:    close
@@ -23,6 +23,30 @@ JNIEXPORT void JNICALL Java_org_opensextant_giscore_filegdb_Table_add
 JNIEXPORT jobject JNICALL Java_org_opensextant_giscore_filegdb_Table_enumerate1
   (JNIEnv *, jobject);
 
+/*
+ * Class:     org_opensextant_giscore_filegdb_Table
+ * Method:    search1
+ * Signature: (Ljava/lang/String;[D)Lorg/opensextant/giscore/filegdb/EnumRows;
+ */
+JNIEXPORT jobject JNICALL Java_org_opensextant_giscore_filegdb_Table_search1
+  (JNIEnv *, jobject, jstring, jdoubleArray);
+
+/*
+ * Class:     org_opensextant_giscore_filegdb_Table
+ * Method:    addEncoded1
+ * Signature: (Ljava/nio/ByteBuffer;I)V
+ */
+JNIEXPORT void JNICALL Java_org_opensextant_giscore_filegdb_Table_addEncoded1
+  (JNIEnv *, jobject, jobject, jint);
+
+/*
+ * Class:     org_opensextant_giscore_filegdb_Table
+ * Method:    rowBufferLayout
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_org_opensextant_giscore_filegdb_Table_rowBufferLayout
+  (JNIEnv *, jclass);
+
 /*
  * Class:     org_opensextant_giscore_filegdb_Table
  * Method:    getFieldInfo
@@ -305,6 +305,7 @@ JNIEXPORT jobjectArray JNICALL Java_org_opensextant_giscore_filegdb_Row_getAttrA
 		fieldInfo->GetFieldCount(count);
 		jclass oclass = me.findClass("java.lang.Object");
 		jclass calclass = me.findClass("java.util.GregorianCalendar");
+		jmethodID ccinit = me.getCtor(calclass, "()V");
 		jmethodID ccsetTime = me.getMethod(calclass, "setTimeInMillis", "(J)V");
 		jobjectArray rval = env->NewObjectArray(count * 2, oclass, 0L);
 		int ptr = 0;
@@ -361,8 +362,8 @@ JNIEXPORT jobjectArray JNICALL Java_org_opensextant_giscore_filegdb_Row_getAttrA
 						tm date;
 						row->GetDate(fieldName, date);
 						time_t dtm = mktime(&date);
-						jobject cal = env->AllocObject(calclass);
-						env->CallVoidMethod(cal, ccsetTime, me.newLong(1000 * dtm));
+						jobject cal = env->NewObject(calclass, ccinit);
+						env->CallVoidMethod(cal, ccsetTime, 1000L * (jlong) dtm);
 						val = cal;
 						break;
 					}
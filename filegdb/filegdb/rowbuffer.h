@@ -0,0 +1,408 @@
+#pragma once
+
+#include "Stdafx.h"
+#include <string>
+#include <string.h>
+#include <time.h>
+
+using namespace std;
+using namespace FileGDBAPI;
+
+/*
+ * Rows encoded in a direct java.nio.ByteBuffer so many rows cross the JNI
+ * boundary in one call. The layout is documented with the Java class
+ * org.opensextant.giscore.filegdb.RowBuffer and uses the platform byte order:
+ *
+ *   int32   record length in bytes, including this field
+ *   int32   OID (ignored when adding rows)
+ *   int32   field count, followed by that many fields:
+ *           int32  field index in the order of the table's field information
+ *           int8   tag, followed by the value for the tag
+ *   int8    1 if a geometry follows, otherwise 0
+ *           int32  shape kind: ShapeType when adding, basic type when enumerating
+ *           int8   1 if points have z values
+ *           int32  point count
+ *           int32  part count, followed by that many int32 part offsets
+ *           float64 x, y[, z] for each point
+ */
+
+#define ROWBUFFER_LAYOUT 1
+
+#define TAG_NULL 0
+#define TAG_LONG 1
+#define TAG_DOUBLE 2
+#define TAG_STRING 3
+#define TAG_DATE 4
+
+extern "C" int getBasicType(ShapeType st);
+
+/**
+ * Writes values to a buffer. Writes past the capacity are counted but not
+ * stored so the caller can tell a record did not fit and how big it is.
+ */
+class rowwriter {
+private:
+	char *base;
+	size_t capacity;
+
+public:
+	size_t pos;
+
+	rowwriter(void *b, size_t cap) : base((char*) b), capacity(cap), pos(0) {
+	}
+
+	bool overflow() {
+		return pos > capacity;
+	}
+
+	template<class T> void put(T value) {
+		if (pos + sizeof(T) <= capacity) memcpy(base + pos, &value, sizeof(T));
+		pos += sizeof(T);
+	}
+
+	template<class T> void putAt(size_t at, T value) {
+		if (at + sizeof(T) <= capacity) memcpy(base + at, &value, sizeof(T));
+	}
+
+	/**
+	 * Write a string as UTF-16 code units
+	 */
+	void putString(const wstring &str) {
+		size_t lenpos = pos;
+		put<jint>(0);
+		jint len = 0;
+		for(size_t i = 0; i < str.length(); i++) {
+			unsigned long c = (unsigned long) str[i];
+			if (c >= 0x10000) {
+				c -= 0x10000;
+				put<jchar>((jchar) (0xD800 + (c >> 10)));
+				put<jchar>((jchar) (0xDC00 + (c & 0x3FF)));
+				len += 2;
+			} else {
+				put<jchar>((jchar) c);
+				len++;
+			}
+		}
+		putAt<jint>(lenpos, len);
+	}
+};
+
+/**
+ * Reads values from a buffer
+ */
+class rowreader {
+private:
+	const char *base;
+
+public:
+	size_t pos;
+
+	rowreader(const void *b) : base((const char*) b), pos(0) {
+	}
+
+	template<class T> T get() {
+		T value;
+		memcpy(&value, base + pos, sizeof(T));
+		pos += sizeof(T);
+		return value;
+	}
+
+	/**
+	 * Read a string of UTF-16 code units
+	 */
+	wstring getString() {
+		jint len = get<jint>();
+		wstring str;
+		str.reserve(len);
+		for(jint i = 0; i < len; i++) {
+			unsigned long c = get<jchar>();
+			if (sizeof(wchar_t) > 2 && c >= 0xD800 && c < 0xDC00 && i + 1 < len) {
+				unsigned long low = get<jchar>();
+				i++;
+				c = 0x10000 + ((c - 0xD800) << 10) + (low - 0xDC00);
+			}
+			str += (wchar_t) c;
+		}
+		return str;
+	}
+};
+
+inline void putPoint(rowwriter &w, Point &p, double z, bool hasz) {
+	w.put<double>(p.x);
+	w.put<double>(p.y);
+	if (hasz) w.put<double>(z);
+}
+
+/**
+ * Encode the attributes and, if requested, the geometry of a row
+ */
+inline void encodeRow(rowwriter &w, Row *row, FieldInfo *fieldInfo, int count, bool geometry) {
+	size_t start = w.pos;
+	w.put<jint>(0);
+	int32 oid = 0;
+	row->GetOID(oid);
+	w.put<jint>(oid);
+	size_t countpos = w.pos;
+	w.put<jint>(0);
+	jint n = 0;
+	for(int i = 0; i < count; i++) {
+		wstring fieldName;
+		FieldType fieldType;
+		fieldInfo->GetFieldName(i, fieldName);
+		fieldInfo->GetFieldType(i, fieldType);
+		if (fieldType == fieldTypeGeometry || fieldType == fieldTypeBlob || fieldType == fieldTypeRaster
+				|| fieldType == fieldTypeGUID || fieldType == fieldTypeGlobalID) {
+			continue;
+		}
+		w.put<jint>(i);
+		n++;
+		bool isnull;
+		row->IsNull(fieldName, isnull);
+		if (isnull) {
+			w.put<jbyte>(TAG_NULL);
+			continue;
+		}
+		switch(fieldType) {
+		case fieldTypeSmallInteger:
+			{
+				short sval;
+				row->GetShort(fieldName, sval);
+				w.put<jbyte>(TAG_LONG);
+				w.put<jlong>(sval);
+				break;
+			}
+		case fieldTypeInteger:
+		case fieldTypeOID:
+			{
+				int32 ival;
+				if (fieldType == fieldTypeOID) ival = oid;
+				else row->GetInteger(fieldName, ival);
+				w.put<jbyte>(TAG_LONG);
+				w.put<jlong>(ival);
+				break;
+			}
+		case fieldTypeSingle:
+			{
+				float fval;
+				row->GetFloat(fieldName, fval);
+				w.put<jbyte>(TAG_DOUBLE);
+				w.put<double>(fval);
+				break;
+			}
+		case fieldTypeDouble:
+			{
+				double dval;
+				row->GetDouble(fieldName, dval);
+				w.put<jbyte>(TAG_DOUBLE);
+				w.put<double>(dval);
+				break;
+			}
+		case fieldTypeString:
+		case fieldTypeXML:
+			{
+				wstring strval;
+				row->GetString(fieldName, strval);
+				w.put<jbyte>(TAG_STRING);
+				w.putString(strval);
+				break;
+			}
+		case fieldTypeDate:
+			{
+				tm date;
+				row->GetDate(fieldName, date);
+				time_t dtm = mktime(&date);
+				w.put<jbyte>(TAG_DATE);
+				w.put<jlong>(1000L * (jlong) dtm);
+				break;
+			}
+		default:
+			w.put<jbyte>(TAG_NULL);
+		}
+	}
+	w.putAt<jint>(countpos, n);
+
+	ShapeBuffer sb;
+	ShapeType st = shapeNull;
+	int basicType = 6;
+	if (geometry && row->GetGeometry(sb) == S_OK && sb.GetShapeType(st) == S_OK) {
+		basicType = getBasicType(st);
+	}
+	if (basicType > 3) {
+		// no geometry or unsupported
+		w.put<jbyte>(0);
+	} else {
+		bool hasz = ShapeBuffer::HasZs(st);
+		int npoints = 0;
+		int nparts = 0;
+		Point *points = 0L;
+		double *zs = 0L;
+		int *parts = 0L;
+		if (basicType == 0) {
+			PointShapeBuffer *psb = static_cast<PointShapeBuffer*>(&sb);
+			npoints = 1;
+			psb->GetPoint(points);
+			if (hasz) psb->GetZ(zs);
+		} else if (basicType == 1) {
+			MultiPointShapeBuffer *mp = static_cast<MultiPointShapeBuffer*>(&sb);
+			mp->GetNumPoints(npoints);
+			mp->GetPoints(points);
+			if (hasz) mp->GetZs(zs);
+		} else {
+			MultiPartShapeBuffer *mpart = static_cast<MultiPartShapeBuffer*>(&sb);
+			mpart->GetNumPoints(npoints);
+			mpart->GetNumParts(nparts);
+			mpart->GetPoints(points);
+			mpart->GetParts(parts);
+			if (hasz) mpart->GetZs(zs);
+		}
+		w.put<jbyte>(1);
+		w.put<jint>(basicType);
+		w.put<jbyte>(hasz ? 1 : 0);
+		w.put<jint>(npoints);
+		w.put<jint>(nparts);
+		for(int j = 0; j < nparts; j++) {
+			w.put<jint>(parts[j]);
+		}
+		for(int i = 0; i < npoints; i++) {
+			putPoint(w, points[i], hasz ? zs[i] : 0.0, hasz);
+		}
+	}
+	w.putAt<jint>(start, (jint) (w.pos - start));
+}
+
+inline void getPoint(rowreader &r, Point *p, double *z, bool hasz) {
+	p->x = r.get<double>();
+	p->y = r.get<double>();
+	if (hasz) *z = r.get<double>();
+}
+
+/**
+ * Decode a row's attributes and geometry into the given row
+ */
+inline void decodeRow(menv &me, rowreader &r, Row *row, FieldInfo *fieldInfo) {
+	size_t start = r.pos;
+	jint length = r.get<jint>();
+	r.get<jint>(); // OID is assigned by the table
+	jint n = r.get<jint>();
+	for(jint f = 0; f < n; f++) {
+		jint index = r.get<jint>();
+		jbyte tag = r.get<jbyte>();
+		wstring fieldName;
+		FieldType fieldType;
+		fieldInfo->GetFieldName(index, fieldName);
+		fieldInfo->GetFieldType(index, fieldType);
+		jlong lval = 0;
+		double dval = 0.0;
+		wstring sval;
+		switch(tag) {
+		case TAG_NULL:
+			row->SetNull(fieldName);
+			continue;
+		case TAG_LONG:
+		case TAG_DATE:
+			lval = r.get<jlong>();
+			dval = (double) lval;
+			break;
+		case TAG_DOUBLE:
+			dval = r.get<double>();
+			lval = (jlong) dval;
+			break;
+		case TAG_STRING:
+			sval = r.getString();
+			break;
+		default:
+			me.throwException("Bad tag in row buffer");
+			throw jni_check();
+		}
+		switch(fieldType) {
+		case fieldTypeSmallInteger:
+			if (tag != TAG_STRING) row->SetShort(fieldName, (short) lval);
+			break;
+		case fieldTypeInteger:
+			if (tag != TAG_STRING) row->SetInteger(fieldName, (int32) lval);
+			break;
+		case fieldTypeSingle:
+			if (tag != TAG_STRING) row->SetFloat(fieldName, (float) dval);
+			break;
+		case fieldTypeDouble:
+			if (tag != TAG_STRING) row->SetDouble(fieldName, dval);
+			break;
+		case fieldTypeString:
+			if (tag == TAG_STRING) row->SetString(fieldName, sval);
+			break;
+		case fieldTypeXML:
+			if (tag == TAG_STRING) {
+				convstr xml(sval.c_str());
+				row->SetXML(fieldName, xml.getStr());
+			}
+			break;
+		case fieldTypeDate:
+			if (tag != TAG_STRING) {
+				time_t dtime = (time_t) (lval / 1000L);
+				tm *date_tm = localtime(&dtime);
+				row->SetDate(fieldName, *date_tm);
+			}
+			break;
+		default:
+			break;
+		}
+	}
+	if (r.get<jbyte>() != 0) {
+		ShapeType st = (ShapeType) r.get<jint>();
+		bool hasz = r.get<jbyte>() != 0;
+		int npoints = r.get<jint>();
+		int nparts = r.get<jint>();
+		Point *points;
+		double *zs = 0L;
+		double z;
+		switch(getBasicType(st)) {
+		case 0: // Point
+			{
+				PointShapeBuffer psb;
+				psb.Setup(st);
+				psb.GetPoint(points);
+				if (hasz) psb.GetZ(zs);
+				getPoint(r, points, hasz ? zs : &z, hasz);
+				me.esriCheckedCall(row->SetGeometry(psb), "bad geometry");
+			}
+			break;
+		case 1: // Multipoint
+			{
+				MultiPointShapeBuffer mp;
+				mp.Setup(st, npoints);
+				mp.GetPoints(points);
+				if (hasz) mp.GetZs(zs);
+				for(int i = 0; i < npoints; i++) {
+					getPoint(r, &points[i], hasz ? &zs[i] : &z, hasz);
+				}
+				me.esriCheckedCall(mp.CalculateExtent(), "error");
+				me.esriCheckedCall(row->SetGeometry(mp), "bad geometry");
+			}
+			break;
+		case 2: // Polyline
+		case 3: // Polygon
+		case 4: // General Polyline, Polygon
+			{
+				MultiPartShapeBuffer mpart;
+				int *parts;
+				mpart.Setup(st, nparts, npoints, 0);
+				mpart.GetPoints(points);
+				if (hasz) mpart.GetZs(zs);
+				mpart.GetParts(parts);
+				for(int j = 0; j < nparts; j++) {
+					parts[j] = r.get<jint>();
+				}
+				for(int i = 0; i < npoints; i++) {
+					getPoint(r, &points[i], hasz ? &zs[i] : &z, hasz);
+				}
+				me.esriCheckedCall(mpart.CalculateExtent(), "error");
+				me.esriCheckedCall(row->SetGeometry(mpart), "bad geometry");
+			}
+			break;
+		default: // Unsupported
+			;
+		}
+	}
+	// skip anything not understood
+	r.pos = start + length;
+}
@@ -4,6 +4,7 @@
 #include <string>
 #include <jni.h>
 #include <map>
+#include "rowbuffer.h"
 #include "org_opensextant_giscore_filegdb_Table.h"
 
 using namespace std;
@@ -64,6 +65,39 @@ JNIEXPORT jobject JNICALL Java_org_opensextant_giscore_filegdb_Table_enumerate1(
 	}
 }
 
+/*
+ * Class:     org_opensextant_giscore_filegdb_Table
+ * Method:    search1
+ * Signature: (Ljava/lang/String;[D)Lorg/opensextant/giscore/filegdb/EnumRows;
+ */
+JNIEXPORT jobject JNICALL Java_org_opensextant_giscore_filegdb_Table_search1(JNIEnv *env, jobject self, jstring where, jdoubleArray envelope) {
+	try {
+		menv me(env);
+		Table *t = me.getTable(self);
+		Envelope bounds;
+		bounds.SetEmpty();
+		if (envelope != 0L) {
+			jdouble *coords = env->GetDoubleArrayElements(envelope, 0L);
+			bounds.xMin = coords[0];
+			bounds.yMin = coords[1];
+			bounds.xMax = coords[2];
+			bounds.yMax = coords[3];
+			env->ReleaseDoubleArrayElements(envelope, coords, JNI_ABORT);
+		}
+		convstr whereClause(env, where);
+		wstring fields(L"*");
+		EnumRows *enumRows = new EnumRows();
+		fgdbError err = t->Search(fields, whereClause.getWstr(), bounds, true, *enumRows);
+		if (err != S_OK) {
+			delete enumRows;
+		}
+		me.esriCheckedCall(err, "Search failed");
+		return me.newObject("org.opensextant.giscore.filegdb.EnumRows", (void*) enumRows);
+	} catch(jni_check) {
+		return 0l;
+	}
+}
+
 FieldInfo* getFieldInfo(JNIEnv *env, jobject self, Table *t) {
 	menv me(env);
 	FieldInfo* fieldInfo = (FieldInfo*) me.getLongFieldValue(self, "org.opensextant.giscore.filegdb.Table", "fieldinfo_holder");
@@ -97,6 +131,37 @@ map<string,FieldType>* getFieldMap(JNIEnv *env, jobject self, Table *t) {
 	return fieldtype_map;
 }
 
+/*
+ * Class:     org_opensextant_giscore_filegdb_Table
+ * Method:    addEncoded1
+ * Signature: (Ljava/nio/ByteBuffer;I)V
+ */
+JNIEXPORT void JNICALL Java_org_opensextant_giscore_filegdb_Table_addEncoded1(JNIEnv *env, jobject self, jobject buffer, jint count) {
+	try {
+		menv me(env);
+		Table *t = me.getTable(self);
+		FieldInfo *fieldInfo = getFieldInfo(env, self, t);
+		rowreader r(env->GetDirectBufferAddress(buffer));
+		for(jint i = 0; i < count; i++) {
+			Row row;
+			me.esriCheckedCall(t->CreateRowObject(row), "Failed to create row");
+			decodeRow(me, r, &row, fieldInfo);
+			me.esriCheckedCall(t->Insert(row), "Failed to insert row");
+		}
+	} catch(jni_check) {
+		//
+	}
+}
+
+/*
+ * Class:     org_opensextant_giscore_filegdb_Table
+ * Method:    rowBufferLayout
+ * Signature: ()I
+ */
+JNIEXPORT jint JNICALL Java_org_opensextant_giscore_filegdb_Table_rowBufferLayout(JNIEnv *env, jclass clazz) {
+	return ROWBUFFER_LAYOUT;
+}
+
 /*
  * Class:     org_opensextant_giscore_filegdb_Table
  * Method:    getFieldInfo
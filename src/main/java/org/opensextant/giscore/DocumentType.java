@@ -49,7 +49,9 @@ public enum DocumentType {
 	/* GeoAtom with embedded extended data */
 	GeoAtom(false,false),
 	/* OGC Well Known Text format */
-	WKT(false, false)
+	WKT(false, false),
+	/* Compact binary form of the GIScore object stream */
+	Binary(false, false)
 	;
 	
 	private final DocType dt;
@@ -22,11 +22,17 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.opensextant.giscore.data.DocumentTypeRegistration;
 import org.opensextant.giscore.data.FactoryDocumentTypeRegistry;
+import org.opensextant.giscore.events.IGISObject;
 import org.opensextant.giscore.input.IGISInputStream;
+import org.opensextant.giscore.output.IGISBatchOutputStream;
 import org.opensextant.giscore.output.IGISOutputStream;
+import org.opensextant.giscore.utils.IObjectStreamCodec;
+import org.opensextant.giscore.utils.ObjectStreamCodec;
 
 /**
  * Factory class which creates concrete instantiations of input and output
@@ -42,6 +48,35 @@ public class GISFactory {
 	 * in memory. Right now this is a per feature class buffer size.
 	 */
 	public final static AtomicInteger inMemoryBufferSize = new AtomicInteger(2000);
+
+	/**
+	 * When positive, the estimated bytes held in memory by all object buffers
+	 * created with default settings, which then share a process wide budget
+	 * instead of holding {@link #inMemoryBufferSize} elements each. Zero, the
+	 * default, keeps the count based limit.
+	 *
+	 * @see org.opensextant.giscore.utils.MemoryBudget#getProcessBudget()
+	 */
+	public final static AtomicLong inMemoryBufferBytes = new AtomicLong(0);
+
+	/**
+	 * The count of features held in memory by a <code>FeatureSorter</code>
+	 * across all of its feature classes. When positive, the sorter spills to a
+	 * single file on a background thread once the count is reached. Zero, the
+	 * default, gives each feature class its own buffer of
+	 * {@link #inMemoryBufferSize} features. The features held by the sorter
+	 * are not counted against {@link #inMemoryBufferBytes}.
+	 */
+	public final static AtomicInteger sorterBufferSize = new AtomicInteger(0);
+
+	/**
+	 * The codec of the files that object buffers overflow into, read when a
+	 * buffer or buffer pool is created. The default is
+	 * {@link ObjectStreamCodec#SIMPLE}, {@link ObjectStreamCodec#COMPACT_COMPRESSED}
+	 * gives much smaller files for a small cost in processor time.
+	 */
+	public final static AtomicReference<IObjectStreamCodec> objectStreamCodec =
+			new AtomicReference<IObjectStreamCodec>(ObjectStreamCodec.SIMPLE);
 	
 	/**
 	 * Input stream factory
@@ -176,4 +211,25 @@ public class GISFactory {
 			throw new IOException(e);
 		}
 	}
+
+	/**
+	 * Write objects to a stream in order, with the same result as passing
+	 * each to {@link IGISOutputStream#write(IGISObject)}. Streams that
+	 * implement {@link IGISBatchOutputStream} write the objects together.
+	 *
+	 * @param stream
+	 *            the stream, never <code>null</code>.
+	 * @param objects
+	 *            the objects to be written, never <code>null</code> and never
+	 *            containing <code>null</code>.
+	 */
+	public static void writeBatch(IGISOutputStream stream, Iterable<? extends IGISObject> objects) {
+		if (stream instanceof IGISBatchOutputStream) {
+			((IGISBatchOutputStream) stream).writeBatch(objects);
+		} else {
+			for (IGISObject object : objects) {
+				stream.write(object);
+			}
+		}
+	}
 }
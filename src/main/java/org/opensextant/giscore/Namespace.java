@@ -53,14 +53,16 @@
 
  Changes:
   -Added changes from v1.44 (JDOM 1.1.1) with synchronized blocks around access to namespaces.
+  -Replaced synchronized map of NamespaceKey with concurrent maps keyed by prefix then URI
+   so lookups of existing namespaces neither lock nor allocate.
 
  */
 package org.opensextant.giscore;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * An XML namespace representation, as well as a factory for creating XML
@@ -78,10 +80,11 @@ public final class Namespace {
 
     /** 
      * Factory list of namespaces.
-     * Keys are <i>prefix</i>&amp;<i>URI</i>.
+     * Keys are <i>prefix</i> then <i>URI</i>.
      * Values are Namespace objects
      */
-    private static final Map<NamespaceKey, Namespace> namespaces = new HashMap<NamespaceKey, Namespace>(16);
+    private static final ConcurrentMap<String, ConcurrentMap<String, Namespace>> namespaces =
+            new ConcurrentHashMap<String, ConcurrentMap<String, Namespace>>(16);
 
     /** Define a <code>Namespace</code> for when <i>not</i> in a namespace */
     public static final Namespace NO_NAMESPACE = new Namespace("", "");
@@ -104,8 +107,8 @@ public final class Namespace {
      */
     static {
         // Add the "empty" namespace
-        namespaces.put(new NamespaceKey(NO_NAMESPACE), NO_NAMESPACE);
-        namespaces.put(new NamespaceKey(XML_NAMESPACE), XML_NAMESPACE);
+        intern(NO_NAMESPACE);
+        intern(XML_NAMESPACE);
     }
 
     /**
@@ -122,14 +125,14 @@ public final class Namespace {
     @NonNull
     public static Namespace getNamespace(String prefix, String uri) {
         // Sanity checking
-        if (prefix == null || prefix.trim().equals("")) {
+        if (isBlank(prefix)) {
             // Short-cut out for common case of no namespace
-            if ((uri == null) || (uri.trim().equals(""))) {
+            if (isBlank(uri)) {
                 return NO_NAMESPACE;
             }
             prefix = "";
         }
-        else if (uri == null || uri.trim().equals("")) {
+        else if (isBlank(uri)) {
             uri = "";
         }
 
@@ -137,13 +140,12 @@ public final class Namespace {
         // should all be legal. In other words, an illegal namespace won't
         // have been placed in this.  Thus we can do this test before
         // verifying the URI and prefix.
-        NamespaceKey lookup = new NamespaceKey(prefix, uri);
-        Namespace preexisting;
-        synchronized (namespaces) {
-            preexisting = namespaces.get(lookup);
-        }
-        if (preexisting != null) {
-            return preexisting;
+        ConcurrentMap<String, Namespace> uris = namespaces.get(prefix);
+        if (uris != null) {
+            Namespace preexisting = uris.get(uri);
+            if (preexisting != null) {
+                return preexisting;
+            }
         }
         // Unless the "empty" Namespace (no prefix and no URI), require a URI
         if (!prefix.equals("") && uri.equals("")) {
@@ -170,12 +172,39 @@ public final class Namespace {
         }
 	*/
         
-        // Finally, store and return
-        Namespace ns = new Namespace(prefix, uri);
-        synchronized (namespaces) {
-            namespaces.put(lookup, ns);
+        // Finally, store and return the instance that won if another
+        // thread created the same namespace concurrently
+        return intern(new Namespace(prefix, uri));
+    }
+
+    /**
+     * Store a namespace unless one with the same prefix and URI exists.
+     *
+     * @param ns the namespace to store
+     * @return the stored namespace
+     */
+    private static Namespace intern(Namespace ns) {
+        ConcurrentMap<String, Namespace> uris = namespaces.get(ns.prefix);
+        if (uris == null) {
+            ConcurrentMap<String, Namespace> newUris = new ConcurrentHashMap<String, Namespace>(4);
+            uris = namespaces.putIfAbsent(ns.prefix, newUris);
+            if (uris == null) uris = newUris;
         }
-        return ns;
+        Namespace existing = uris.putIfAbsent(ns.uri, ns);
+        return existing != null ? existing : ns;
+    }
+
+    /**
+     * @return <code>true</code> if the string is null or only whitespace,
+     *         checked without trimming
+     */
+    private static boolean isBlank(String s) {
+        if (s != null) {
+            for (int i = 0; i < s.length(); i++) {
+                if (s.charAt(i) > ' ') return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -263,41 +292,4 @@ public final class Namespace {
     public int hashCode() {
         return uri.hashCode();
     }
-
-    /**
-     * Key for storing a namespace representation in a map. (JDOM 1.1)
-     *
-     * @version $Revision: 1.2 $, $Date: 2007/11/10 05:28:59 $
-     */
-    private static class NamespaceKey {
-
-        private final String prefix;
-        private final String uri;
-        private final int hash;
-
-        private NamespaceKey(String prefix, String uri) {
-            this.prefix = prefix;
-            this.uri = uri;
-            this.hash = prefix.hashCode();
-        }
-
-        private NamespaceKey(Namespace namespace) {
-            this(namespace.getPrefix(), namespace.getURI());
-        }
-
-        public boolean equals(Object ob) {
-            if (this == ob) {
-                return true;
-            } else if (ob instanceof NamespaceKey) {
-                NamespaceKey other = (NamespaceKey) ob;
-                return prefix.equals(other.prefix) && uri.equals(other.uri);
-            } else {
-                return false;
-            }
-        }
-
-        public int hashCode() {
-            return hash;
-        }
-    }
 }
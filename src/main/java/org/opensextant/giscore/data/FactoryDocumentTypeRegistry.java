@@ -29,7 +29,9 @@ import javax.annotation.Resource;
 import org.opensextant.giscore.DocumentType;
 import org.opensextant.giscore.IAcceptSchema;
 import org.opensextant.giscore.events.Schema;
+import org.opensextant.giscore.input.XmlParserEngine;
 import org.opensextant.giscore.input.atom.GeoAtomInputStream;
+import org.opensextant.giscore.input.bin.BinaryInputStream;
 import org.opensextant.giscore.input.csv.CsvInputStream;
 import org.opensextant.giscore.input.gdb.FileGdbInputStream;
 import org.opensextant.giscore.input.kml.KmlInputStream;
@@ -37,6 +39,7 @@ import org.opensextant.giscore.input.shapefile.ShapefileInputStream;
 import org.opensextant.giscore.input.wkt.WKTInputStream;
 import org.opensextant.giscore.output.IContainerNameStrategy;
 import org.opensextant.giscore.output.atom.GeoAtomOutputStream;
+import org.opensextant.giscore.output.bin.BinaryOutputStream;
 import org.opensextant.giscore.output.csv.CsvOutputStream;
 import org.opensextant.giscore.output.gdb.FileGdbOutputStream;
 import org.opensextant.giscore.output.gdb.XmlGdbOutputStream;
@@ -90,6 +93,8 @@ public class FactoryDocumentTypeRegistry {
 	static {
 		DocumentTypeRegistration reg = new DocumentTypeRegistration(DocumentType.KML);
 		reg.setInputStreamClass(KmlInputStream.class);
+		reg.setInputStreamArgs(new Class[] { XmlParserEngine.class });
+		reg.setInputStreamArgsRequired(new boolean[] { false });
 		reg.setOutputStreamArgs(new Class[] { String.class });
 		reg.setOutputStreamArgsRequired(new boolean[] { false });
 		reg.setOutputStreamClass(KmlOutputStream.class);
@@ -148,6 +153,12 @@ public class FactoryDocumentTypeRegistry {
 		reg.setOutputStreamClass(WKTOutputStream.class);
 		FactoryDocumentTypeRegistry.put(DocumentType.WKT.getDocType(), reg);
 
+		reg = new DocumentTypeRegistration(DocumentType.Binary);
+		reg.setInputStreamClass(BinaryInputStream.class);
+		reg.setOutputStreamClass(BinaryOutputStream.class);
+		reg.setHasFileCtor(true);
+		FactoryDocumentTypeRegistry.put(DocumentType.Binary.getDocType(), reg);
+
 	}
 }
 
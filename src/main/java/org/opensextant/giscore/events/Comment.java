@@ -1,10 +1,14 @@
 package org.opensextant.giscore.events;
 
+import java.io.IOException;
 import java.io.Serializable;
 
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.opensextant.giscore.IStreamVisitor;
+import org.opensextant.giscore.utils.IDataSerializable;
+import org.opensextant.giscore.utils.SimpleObjectInputStream;
+import org.opensextant.giscore.utils.SimpleObjectOutputStream;
 
 /**
  * Represents a Comment object. In XML would
@@ -13,16 +17,16 @@ import org.opensextant.giscore.IStreamVisitor;
  * @author Jason Mathews, MITRE Corp.
  * Created: Mar 10, 2009 9:03:48 AM
  */
-public class Comment implements IGISObject, Serializable {
+public class Comment implements IGISObject, IDataSerializable, Serializable {
 
 	private static final long serialVersionUID = 1L;
 
 	private String text;
 
 	/**
-     * Default, no-args constructor for implementations to use if needed.
+     * Default, no-args constructor for implementations and IO to use if needed.
      */
-    protected Comment() {
+    public Comment() {
         // empty constructor
     }
 
@@ -62,6 +66,22 @@ public class Comment implements IGISObject, Serializable {
 		visitor.visit(this);
 	}
 
+	/* (non-Javadoc)
+	 * @see org.opensextant.giscore.utils.IDataSerializable#readData(org.opensextant.giscore.utils.SimpleObjectInputStream)
+	 */
+	public void readData(SimpleObjectInputStream in) throws IOException,
+			ClassNotFoundException, InstantiationException,
+			IllegalAccessException {
+		text = in.readString();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.opensextant.giscore.utils.IDataSerializable#writeData(org.opensextant.giscore.utils.SimpleObjectOutputStream)
+	 */
+	public void writeData(SimpleObjectOutputStream out) throws IOException {
+		out.writeString(text);
+	}
+
     /*
 	 * (non-Javadoc)
 	 *
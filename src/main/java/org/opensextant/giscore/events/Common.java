@@ -33,6 +33,7 @@ import org.opensextant.giscore.input.kml.IKml;
 import org.opensextant.giscore.input.kml.UrlRef;
 import org.opensextant.giscore.utils.SimpleObjectInputStream;
 import org.opensextant.giscore.utils.SimpleObjectOutputStream;
+import org.opensextant.giscore.utils.SizeEstimator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -406,6 +407,15 @@ public abstract class Common extends Row {
 		out.writeObjectCollection(elements);
 	}
 
+	@Override
+	public long estimateSize() {
+		return super.estimateSize() + SizeEstimator.estimate(name)
+				+ SizeEstimator.estimate(description) + SizeEstimator.estimate(snippet)
+				+ SizeEstimator.estimate(styleUrl) + SizeEstimator.estimate(startTime)
+				+ SizeEstimator.estimate(endTime) + SizeEstimator.estimate(viewGroup)
+				+ SizeEstimator.estimate(region) + SizeEstimator.estimate(elements);
+	}
+
 	/* (non-Javadoc)
 	 * @see java.lang.Object#hashCode()
 	 */
@@ -18,9 +18,14 @@
  ***************************************************************************************/
 package org.opensextant.giscore.events;
 
+import java.io.IOException;
+
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.opensextant.giscore.IStreamVisitor;
+import org.opensextant.giscore.utils.IDataSerializable;
+import org.opensextant.giscore.utils.SimpleObjectInputStream;
+import org.opensextant.giscore.utils.SimpleObjectOutputStream;
 
 /**
  * End of a container which should be associated with corresponding
@@ -28,7 +33,7 @@ import org.opensextant.giscore.IStreamVisitor;
  *  
  * @author DRAND
  */
-public class ContainerEnd implements IGISObject {
+public class ContainerEnd implements IGISObject, IDataSerializable {
 
     private static final long serialVersionUID = 1L;
 	
@@ -36,6 +41,22 @@ public class ContainerEnd implements IGISObject {
     	visitor.visit(this);
     }
     
+	/* (non-Javadoc)
+	 * @see org.opensextant.giscore.utils.IDataSerializable#readData(org.opensextant.giscore.utils.SimpleObjectInputStream)
+	 */
+	public void readData(SimpleObjectInputStream in) throws IOException,
+			ClassNotFoundException, InstantiationException,
+			IllegalAccessException {
+		// no state
+	}
+
+	/* (non-Javadoc)
+	 * @see org.opensextant.giscore.utils.IDataSerializable#writeData(org.opensextant.giscore.utils.SimpleObjectOutputStream)
+	 */
+	public void writeData(SimpleObjectOutputStream out) throws IOException {
+		// no state
+	}
+
 	/* (non-Javadoc)
 	 * @see java.lang.Object#equals(java.lang.Object)
 	 */
@@ -21,6 +21,7 @@ package org.opensextant.giscore.events;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -31,6 +32,9 @@ import org.apache.commons.lang.builder.ToStringStyle;
 import org.opensextant.giscore.DocumentType;
 import org.opensextant.giscore.IStreamVisitor;
 import org.opensextant.giscore.Namespace;
+import org.opensextant.giscore.utils.IDataSerializable;
+import org.opensextant.giscore.utils.SimpleObjectInputStream;
+import org.opensextant.giscore.utils.SimpleObjectOutputStream;
 
 /**
  * This tags the document with the source information of what format it came
@@ -40,13 +44,20 @@ import org.opensextant.giscore.Namespace;
  * @author DRAND
  *
  */
-public class DocumentStart implements IGISObject {
+public class DocumentStart implements IGISObject, IDataSerializable {
 
     private static final long serialVersionUID = 1L;
 
 	private DocumentType type;
 	private final transient List<Namespace> namespaces = new ArrayList<Namespace>();
 
+	/**
+	 * Empty ctor for IO only
+	 */
+	public DocumentStart() {
+		// type is set by readData
+	}
+
 	/**
 	 * Ctor
 	 * @param type
@@ -103,6 +114,34 @@ public class DocumentStart implements IGISObject {
     	visitor.visit(this);
     }
     
+	/* (non-Javadoc)
+	 * @see org.opensextant.giscore.utils.IDataSerializable#readData(org.opensextant.giscore.utils.SimpleObjectInputStream)
+	 */
+	public void readData(SimpleObjectInputStream in) throws IOException,
+			ClassNotFoundException, InstantiationException,
+			IllegalAccessException {
+		type = (DocumentType) in.readEnum(DocumentType.class);
+		namespaces.clear();
+		int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			String prefix = in.readString();
+			String uri = in.readString();
+			namespaces.add(Namespace.getNamespace(prefix, uri));
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see org.opensextant.giscore.utils.IDataSerializable#writeData(org.opensextant.giscore.utils.SimpleObjectOutputStream)
+	 */
+	public void writeData(SimpleObjectOutputStream out) throws IOException {
+		out.writeEnum(type);
+		out.writeInt(namespaces.size());
+		for (Namespace ns : namespaces) {
+			out.writeString(ns.getPrefix());
+			out.writeString(ns.getURI());
+		}
+	}
+
 	/* (non-Javadoc)
 	 * @see java.lang.Object#equals(java.lang.Object)
 	 */
@@ -31,6 +31,7 @@ import org.opensextant.giscore.geometry.Geometry;
 import org.opensextant.giscore.input.kml.IKml;
 import org.opensextant.giscore.utils.SimpleObjectInputStream;
 import org.opensextant.giscore.utils.SimpleObjectOutputStream;
+import org.opensextant.giscore.utils.SizeEstimator;
 
 /**
  * We've seen the start of a feature set. The start of the feature set has all
@@ -81,6 +82,12 @@ public class Feature extends Common {
 		out.writeObject(geometry);
 	}
 
+	@Override
+	public long estimateSize() {
+		return super.estimateSize() + SizeEstimator.estimate(style)
+				+ SizeEstimator.estimate(geometry);
+	}
+
 	/**
 	 * @return the geometry
 	 */
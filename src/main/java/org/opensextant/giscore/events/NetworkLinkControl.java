@@ -2,6 +2,7 @@ package org.opensextant.giscore.events;
 
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 
+import java.io.IOException;
 import java.util.Date;
 
 import org.apache.commons.lang.builder.EqualsBuilder;
@@ -9,6 +10,9 @@ import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.builder.ToStringStyle;
 import org.opensextant.giscore.IStreamVisitor;
+import org.opensextant.giscore.utils.IDataSerializable;
+import org.opensextant.giscore.utils.SimpleObjectInputStream;
+import org.opensextant.giscore.utils.SimpleObjectOutputStream;
 
 /**
  * Controls the behavior of files fetched by a NetworkLink. <p/>
@@ -20,7 +24,7 @@ import org.opensextant.giscore.IStreamVisitor;
  * @author Jason Mathews, MITRE Corp.
  * Date: May 20, 2009 3:47:51 PM
  */
-public class NetworkLinkControl implements IGISObject {
+public class NetworkLinkControl implements IGISObject, IDataSerializable {
 
     private static final long serialVersionUID = 1L;
 
@@ -168,6 +172,42 @@ public class NetworkLinkControl implements IGISObject {
 		visitor.visit(this);
 	}
 
+	/* (non-Javadoc)
+	 * @see org.opensextant.giscore.utils.IDataSerializable#readData(org.opensextant.giscore.utils.SimpleObjectInputStream)
+	 */
+	public void readData(SimpleObjectInputStream in) throws IOException,
+			ClassNotFoundException, InstantiationException,
+			IllegalAccessException {
+		minRefreshPeriod = (Double) in.readScalar();
+		maxSessionLength = (Double) in.readScalar();
+		cookie = in.readString();
+		message = in.readString();
+		linkName = in.readString();
+		linkDescription = in.readString();
+		linkSnippet = in.readString();
+		expires = (Date) in.readScalar();
+		targetHref = in.readString();
+		updateType = in.readString();
+		viewGroup = (TaggedMap) in.readObject();
+	}
+
+	/* (non-Javadoc)
+	 * @see org.opensextant.giscore.utils.IDataSerializable#writeData(org.opensextant.giscore.utils.SimpleObjectOutputStream)
+	 */
+	public void writeData(SimpleObjectOutputStream out) throws IOException {
+		out.writeScalar(minRefreshPeriod);
+		out.writeScalar(maxSessionLength);
+		out.writeString(cookie);
+		out.writeString(message);
+		out.writeString(linkName);
+		out.writeString(linkDescription);
+		out.writeString(linkSnippet);
+		out.writeScalar(expires);
+		out.writeString(targetHref);
+		out.writeString(updateType);
+		out.writeObject(viewGroup);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -180,7 +180,7 @@ public abstract class Overlay extends Feature {
 		boolean hasColor = in.readBoolean();
 		if (hasColor) {
 			int rgb = in.readInt();
-			color = new Color(rgb);
+			color = new Color(rgb, true);
 		}
 		drawOrder = in.readInt();
 		icon = (TaggedMap) in.readObject();
@@ -35,15 +35,17 @@ import java.util.Set;
 import org.apache.commons.lang.ObjectUtils;
 import org.opensextant.giscore.IStreamVisitor;
 import org.opensextant.giscore.utils.IDataSerializable;
+import org.opensextant.giscore.utils.ISizeEstimable;
 import org.opensextant.giscore.utils.SimpleObjectInputStream;
 import org.opensextant.giscore.utils.SimpleObjectOutputStream;
+import org.opensextant.giscore.utils.SizeEstimator;
 
 /**
  * Represents the most basic tabular data. 
  * 
  * @author DRAND
  */
-public class Row extends AbstractObject implements IDataSerializable {
+public class Row extends AbstractObject implements IDataSerializable, ISizeEstimable {
     private static final long serialVersionUID = 1L;
     
 	protected URI schema;
@@ -102,6 +104,19 @@ public class Row extends AbstractObject implements IDataSerializable {
 		out.writeObjectCollection(extendedElements);
 	}
 
+	/* (non-Javadoc)
+	 * @see org.opensextant.giscore.utils.ISizeEstimable#estimateSize()
+	 */
+	public long estimateSize() {
+		long size = SizeEstimator.OBJECT * 4 + SizeEstimator.estimate(getId());
+		if (schema != null) size += SizeEstimator.estimate(schema.toString());
+		for (Object value : extendedData.values()) {
+			// fields are shared between rows so only the entry and value count
+			size += SizeEstimator.MAP_ENTRY + SizeEstimator.estimate(value);
+		}
+		return size + SizeEstimator.estimate(extendedElements);
+	}
+
 	/**
 	 * @return the schema, may be <code>null</code> if there's no reference to a
 	 *         schema
@@ -21,6 +21,7 @@ package org.opensextant.giscore.events;
 import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.NonNull;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Collection;
@@ -34,6 +35,9 @@ import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 import org.opensextant.giscore.IStreamVisitor;
 import org.opensextant.giscore.events.SimpleField.Type;
+import org.opensextant.giscore.utils.IDataSerializable;
+import org.opensextant.giscore.utils.SimpleObjectInputStream;
+import org.opensextant.giscore.utils.SimpleObjectOutputStream;
 
 /**
  * Defines a data schema. Data schemata are important because they allow us to
@@ -48,7 +52,7 @@ import org.opensextant.giscore.events.SimpleField.Type;
  *
  * @author DRAND
  */
-public class Schema implements IGISObject {
+public class Schema implements IGISObject, IDataSerializable {
     private static final long serialVersionUID = 1L;
 
     // Numeric id, used for GDB XML and to create an initial name
@@ -296,6 +300,44 @@ public class Schema implements IGISObject {
         return null;
     }
 
+    /* (non-Javadoc)
+     * @see org.opensextant.giscore.utils.IDataSerializable#readData(org.opensextant.giscore.utils.SimpleObjectInputStream)
+     */
+    public void readData(SimpleObjectInputStream in) throws IOException,
+            ClassNotFoundException, InstantiationException,
+            IllegalAccessException {
+        String idStr = in.readString();
+        try {
+            id = new URI(idStr);
+        } catch (URISyntaxException e) {
+            final IOException e2 = new IOException();
+            e2.initCause(e);
+            throw e2;
+        }
+        name = in.readString();
+        parent = in.readString();
+        fields.clear();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            String key = in.readString();
+            fields.put(key, (SimpleField) in.readObject());
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see org.opensextant.giscore.utils.IDataSerializable#writeData(org.opensextant.giscore.utils.SimpleObjectOutputStream)
+     */
+    public void writeData(SimpleObjectOutputStream out) throws IOException {
+        out.writeString(id.toString());
+        out.writeString(name);
+        out.writeString(parent);
+        out.writeInt(fields.size());
+        for (Map.Entry<String, SimpleField> entry : fields.entrySet()) {
+            out.writeString(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+    }
+
     /* (non-Javadoc)
       * @see java.lang.Object#equals(java.lang.Object)
       */
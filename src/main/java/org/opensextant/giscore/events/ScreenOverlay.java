@@ -171,7 +171,7 @@ public class ScreenOverlay extends Overlay {
 		rotation = (ScreenLocation) in.readObject();
 		screen = (ScreenLocation) in.readObject();
 		size = (ScreenLocation) in.readObject();
-		rotationAngle = in.readDouble();
+		rotationAngle = (Double) in.readScalar();
 		
 	}
 
@@ -185,7 +185,7 @@ public class ScreenOverlay extends Overlay {
 		out.writeObject(rotation);
 		out.writeObject(screen);
 		out.writeObject(size);
-		out.writeDouble(rotationAngle != null ? rotationAngle : 0.0);
+		out.writeScalar(rotationAngle);
 	}
 	
 }
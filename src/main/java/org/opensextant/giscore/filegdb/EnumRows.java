@@ -18,6 +18,7 @@
  ***************************************************************************************/
 package org.opensextant.giscore.filegdb;
 
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 
 /**
@@ -28,6 +29,11 @@ import java.util.Iterator;
 public class EnumRows extends GDB implements Iterator<Row> {
 	private Row nextBuffer = null;
 	private Table table;
+	/**
+	 * Holds a reference to a C++ row that did not fit in the last buffer
+	 * given to {@link #fetch(RowBuffer, boolean)}. Managed by the native code.
+	 */
+	private long pending_row = 0;
 	
 	@Override
 	public boolean hasNext() {
@@ -61,6 +67,45 @@ public class EnumRows extends GDB implements Iterator<Row> {
 	 */
 	private native Row next1();
 	
+	/**
+	 * Fetch as many of the following rows as fit into the buffer, replacing 
+	 * its contents. Decode the rows with {@link RowBuffer#next(Table)}. This
+	 * may not be mixed with the iterator methods.
+	 * 
+	 * @param buffer the buffer to fill, never <code>null</code>
+	 * @param geometry <code>true</code> to include the geometry of the rows
+	 * @return <code>false</code> if there are no more rows
+	 * @throws UnsupportedOperationException if the native library does not 
+	 * support row buffers, see {@link Table#isRowBufferSupported()}
+	 */
+	public boolean fetch(RowBuffer buffer, boolean geometry) {
+		if (!Table.isRowBufferSupported()) {
+			throw new UnsupportedOperationException("Native library does not support row buffers");
+		}
+		if (nextBuffer != null) {
+			throw new IllegalStateException("Rows are being read with the iterator");
+		}
+		table.getFieldTypes(); // Field order is needed to decode the rows
+		buffer.clear();
+		int count = fetch1(buffer.getBuffer(), geometry);
+		if (count < 0) {
+			// The next row needs -count bytes
+			buffer.ensureCapacity(-count);
+			count = fetch1(buffer.getBuffer(), geometry);
+		}
+		buffer.fetched(count);
+		return count > 0;
+	}
+	
+	/**
+	 * Encode rows into the buffer
+	 * @param buffer a direct buffer
+	 * @param geometry <code>true</code> to include the geometry of the rows
+	 * @return the number of rows, or the negated size in bytes of the next
+	 * row if it does not fit in the empty buffer
+	 */
+	private native int fetch1(ByteBuffer buffer, boolean geometry);
+	
 	/**
 	 * Close
 	 */
@@ -29,6 +29,7 @@ import org.opensextant.giscore.geometry.Line;
 import org.opensextant.giscore.geometry.LinearRing;
 import org.opensextant.giscore.geometry.MultiLine;
 import org.opensextant.giscore.geometry.MultiPoint;
+import org.opensextant.giscore.geometry.PackedPointList;
 import org.opensextant.giscore.geometry.Point;
 import org.opensextant.giscore.geometry.Polygon;
 
@@ -147,9 +148,18 @@ public class Row extends GDB {
 	}
 	
 	private List<Point> getPointList(MutableInt ptr, int count, Object[] shapeInfo, boolean hasz) {
-		List<Point> pts = new ArrayList<Point>();
+		PackedPointList pts = new PackedPointList(count);
 		for(int j = 0; j < count; j++) {
-			pts.add(getPoint(ptr, shapeInfo, hasz));
+			double lon = (Double) shapeInfo[ptr.intValue()];
+			ptr.increment();
+			double lat = (Double) shapeInfo[ptr.intValue()];
+			ptr.increment();
+			double elev = 0.0;
+			if (hasz) {
+				elev = (Double) shapeInfo[ptr.intValue()];
+				ptr.increment();
+			}
+			pts.addDegrees(lon, lat, elev);
 		}
 		return pts;
 	}
@@ -208,7 +218,8 @@ public class Row extends GDB {
 	
 	/**
 	 * @return get the attributes as a map where the key is the field name
-	 * and the value is the field value
+	 * and the value is the field value. Dates are
+	 * {@link java.util.GregorianCalendar}s and the OID field holds the OID.
 	 */
 	public Map<String, Object> getAttributes() {
 		if (attrs == null) {
@@ -216,7 +227,14 @@ public class Row extends GDB {
 			attrs = new HashMap<String, Object>(data.length / 2);
 			for(int i = 0; i < data.length; i += 2) {
 				String name = (String) data[i];
+				if (name == null) continue; // Slot of a skipped geometry field
 				Object datum = data[i+1];
+				if (datum == null && table != null) {
+					Table.FieldInfo info = table.getFieldTypes().get(name);
+					if (info != null && info.type == 6) { // OID
+						datum = getOID();
+					}
+				}
 				attrs.put(name, datum);
 			}
 		}
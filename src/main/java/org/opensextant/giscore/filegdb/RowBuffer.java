@@ -0,0 +1,418 @@
+/****************************************************************************************
+ *  RowBuffer.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantibility and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.filegdb;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.opensextant.giscore.geometry.Geometry;
+import org.opensextant.giscore.geometry.Line;
+import org.opensextant.giscore.geometry.LinearRing;
+import org.opensextant.giscore.geometry.MultiLine;
+import org.opensextant.giscore.geometry.MultiPoint;
+import org.opensextant.giscore.geometry.PackedPointList;
+import org.opensextant.giscore.geometry.Point;
+import org.opensextant.giscore.geometry.Polygon;
+
+/**
+ * Holds many rows encoded in a direct byte buffer so a whole batch crosses
+ * the JNI boundary in one call, instead of several calls and a handful of
+ * boxed objects for every row. Rows are encoded with {@link #add} and handed
+ * to {@link Table#addAll(RowBuffer)}, or are filled in by
+ * {@link EnumRows#fetch(RowBuffer, boolean)} and decoded one at a time with
+ * {@link #next(Table)}.
+ * <p>
+ * The buffer uses the platform byte order. Each row is encoded as:
+ * <pre>
+ *   int32   record length in bytes, including this field
+ *   int32   OID (ignored when adding rows)
+ *   int32   field count, followed by that many fields:
+ *           int32  field index, see {@link Table.FieldInfo#index}
+ *           int8   tag, followed by the value for the tag:
+ *                  0 null, no value
+ *                  1 int64
+ *                  2 float64
+ *                  3 string, int32 length and that many UTF-16 code units
+ *                  4 date, int64 milliseconds since the epoch
+ *   int8    1 if a geometry follows, otherwise 0
+ *           int32  shape kind: ShapeType when adding, otherwise 0 = Point,
+ *                  1 = MultiPoint, 2 = Polyline and 3 = Polygon
+ *           int8   1 if points have z values
+ *           int32  point count
+ *           int32  part count, followed by that many int32 part offsets
+ *           float64 x, y[, z] for each point
+ * </pre>
+ * The geometry information is the same as the array given to
+ * {@link Row#setGeometry(Object[])}.
+ * <p>
+ * Instances are not thread safe.
+ */
+public final class RowBuffer {
+
+	public static final int DEFAULT_CAPACITY = 1 << 20;
+
+	/**
+	 * Version of the layout, which must match what the native library
+	 * reports for the batch methods to be used
+	 */
+	static final int LAYOUT = 1;
+
+	static final byte TAG_NULL = 0;
+	static final byte TAG_LONG = 1;
+	static final byte TAG_DOUBLE = 2;
+	static final byte TAG_STRING = 3;
+	static final byte TAG_DATE = 4;
+
+	private ByteBuffer buffer;
+	private int rowCount;
+	private int remaining;
+
+	private int oid;
+	private Map<String, Object> attributes;
+	private Geometry geometry;
+
+	public RowBuffer() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity initial capacity in bytes, the buffer grows if a single
+	 * row is larger
+	 */
+	public RowBuffer(int capacity) {
+		buffer = allocate(capacity);
+	}
+
+	/**
+	 * @return the direct buffer holding the encoded rows
+	 */
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * @return the number of rows added or fetched into the buffer
+	 */
+	public int getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * Discard all rows
+	 */
+	public void clear() {
+		buffer.clear();
+		rowCount = 0;
+		remaining = 0;
+	}
+
+	/**
+	 * Encode a row for the given table at the end of the buffer.
+	 *
+	 * @param table the table that will receive the row, never <code>null</code>
+	 * @param attrs field values by field name, may be <code>null</code>. Values
+	 * for fields not in the table are ignored and <code>null</code> or
+	 * {@link GDB#NULL_OBJECT} set the field to null.
+	 * @param geometry the geometry in the form given to
+	 * {@link Row#setGeometry(Object[])}, may be <code>null</code> or empty
+	 * @return <code>true</code> if the row was added or <code>false</code> if
+	 * there is no room left, in which case the buffer is unchanged
+	 */
+	public boolean add(Table table, Map<String, Object> attrs, Object[] geometry) {
+		final int start = buffer.position();
+		try {
+			encode(table, attrs, geometry);
+		} catch (BufferOverflowException e) {
+			buffer.position(start);
+			if (rowCount > 0) return false;
+			// a single row larger than the buffer
+			buffer = allocate(buffer.capacity() * 2);
+			return add(table, attrs, geometry);
+		}
+		buffer.putInt(start, buffer.position() - start);
+		rowCount++;
+		return true;
+	}
+
+	private void encode(Table table, Map<String, Object> attrs, Object[] geometry) {
+		buffer.putInt(0); // length
+		buffer.putInt(0); // OID
+		final int countPosition = buffer.position();
+		buffer.putInt(0);
+		int count = 0;
+		if (attrs != null) {
+			Map<String, Table.FieldInfo> fields = table.getFieldTypes();
+			for (Map.Entry<String, Object> entry : attrs.entrySet()) {
+				Table.FieldInfo info = fields.get(entry.getKey());
+				if (info == null) continue;
+				buffer.putInt(info.index);
+				putValue(entry.getValue());
+				count++;
+			}
+		}
+		buffer.putInt(countPosition, count);
+		if (geometry == null || geometry.length == 0) {
+			buffer.put((byte) 0);
+			return;
+		}
+		buffer.put((byte) 1);
+		int ptr = 0;
+		buffer.putInt(((Number) geometry[ptr++]).intValue());
+		boolean hasz = (Boolean) geometry[ptr++];
+		buffer.put(hasz ? (byte) 1 : (byte) 0);
+		int npoints = (Integer) geometry[ptr++];
+		int nparts = (Integer) geometry[ptr++];
+		buffer.putInt(npoints);
+		buffer.putInt(nparts);
+		for (int i = 0; i < nparts; i++) {
+			buffer.putInt((Integer) geometry[ptr++]);
+		}
+		int ncoords = npoints * (hasz ? 3 : 2);
+		for (int i = 0; i < ncoords; i++) {
+			buffer.putDouble(((Number) geometry[ptr++]).doubleValue());
+		}
+	}
+
+	private void putValue(Object value) {
+		if (value == null || value == GDB.NULL_OBJECT) {
+			buffer.put(TAG_NULL);
+		} else if (value instanceof Double || value instanceof Float) {
+			buffer.put(TAG_DOUBLE);
+			buffer.putDouble(((Number) value).doubleValue());
+		} else if (value instanceof Number) {
+			buffer.put(TAG_LONG);
+			buffer.putLong(((Number) value).longValue());
+		} else if (value instanceof Boolean) {
+			buffer.put(TAG_LONG);
+			buffer.putLong((Boolean) value ? 1 : 0);
+		} else if (value instanceof Date) {
+			buffer.put(TAG_DATE);
+			buffer.putLong(((Date) value).getTime());
+		} else if (value instanceof Calendar) {
+			buffer.put(TAG_DATE);
+			buffer.putLong(((Calendar) value).getTimeInMillis());
+		} else {
+			String str = value.toString();
+			buffer.put(TAG_STRING);
+			buffer.putInt(str.length());
+			for (int i = 0; i < str.length(); i++) {
+				buffer.putChar(str.charAt(i));
+			}
+		}
+	}
+
+	/**
+	 * Called once rows have been fetched into the buffer
+	 *
+	 * @param count the number of rows
+	 */
+	void fetched(int count) {
+		buffer.clear();
+		rowCount = count;
+		remaining = count;
+	}
+
+	/**
+	 * Make sure the buffer can hold at least the given number of bytes,
+	 * discarding any rows
+	 */
+	void ensureCapacity(int capacity) {
+		if (buffer.capacity() < capacity) {
+			buffer = allocate(Math.max(capacity, buffer.capacity() * 2));
+		}
+		clear();
+	}
+
+	/**
+	 * @return <code>true</code> if there are fetched rows that have not been
+	 * decoded with {@link #next(Table)}
+	 */
+	public boolean hasNext() {
+		return remaining > 0;
+	}
+
+	/**
+	 * Decode the next fetched row, which is then available from
+	 * {@link #getOID()}, {@link #getAttributes()} and {@link #getGeometry()}.
+	 * Values are returned as with {@link Row#getAttributes()}: dates are
+	 * {@link GregorianCalendar}s, the OID field holds the OID and fields that
+	 * are not read, such as blobs, are present with <code>null</code> values.
+	 *
+	 * @param table the table the rows were fetched from, never <code>null</code>
+	 * @return <code>false</code> if there are no more rows in the buffer
+	 */
+	public boolean next(Table table) {
+		if (remaining == 0) return false;
+		remaining--;
+		final int start = buffer.position();
+		final int length = buffer.getInt();
+		oid = buffer.getInt();
+		String[] names = table.getFieldNames();
+		Map<String, Table.FieldInfo> fields = table.getFieldTypes();
+		int count = buffer.getInt();
+		attributes = new HashMap<String, Object>(count * 4 / 3 + 1);
+		for (int i = 0; i < count; i++) {
+			String name = names[buffer.getInt()];
+			attributes.put(name, getValue(fields.get(name).type));
+		}
+		if (count < names.length) {
+			for (String name : names) {
+				if (fields.get(name).type != 7 && !attributes.containsKey(name)) { // not Geometry
+					attributes.put(name, null);
+				}
+			}
+		}
+		geometry = buffer.get() != 0 ? getGeometry(buffer) : null;
+		buffer.position(start + length);
+		return true;
+	}
+
+	/**
+	 * @return the OID of the last row decoded by {@link #next(Table)}
+	 */
+	public int getOID() {
+		return oid;
+	}
+
+	/**
+	 * @return the attributes of the last row decoded by {@link #next(Table)}
+	 * as a map where the key is the field name and the value is the field value
+	 */
+	public Map<String, Object> getAttributes() {
+		return attributes;
+	}
+
+	/**
+	 * @return the geometry of the last row decoded by {@link #next(Table)}
+	 * or <code>null</code> if the row has no supported geometry
+	 */
+	public Geometry getGeometry() {
+		return geometry;
+	}
+
+	private Object getValue(int type) {
+		byte tag = buffer.get();
+		switch (tag) {
+			case TAG_NULL:
+				return null;
+			case TAG_LONG: {
+				long value = buffer.getLong();
+				switch (type) {
+					case 0: // SmallInteger
+						return (short) value;
+					case 2: // Single
+						return (float) value;
+					case 3: // Double
+						return (double) value;
+					default:
+						return (int) value;
+				}
+			}
+			case TAG_DOUBLE: {
+				double value = buffer.getDouble();
+				return type == 2 ? Float.valueOf((float) value) : Double.valueOf(value);
+			}
+			case TAG_STRING: {
+				int length = buffer.getInt();
+				char[] chars = new char[length];
+				for (int i = 0; i < length; i++) {
+					chars[i] = buffer.getChar();
+				}
+				return new String(chars);
+			}
+			case TAG_DATE: {
+				GregorianCalendar cal = new GregorianCalendar();
+				cal.setTimeInMillis(buffer.getLong());
+				return cal;
+			}
+			default:
+				throw new IllegalStateException("Bad tag in row buffer: " + tag);
+		}
+	}
+
+	/**
+	 * Decode geometry as {@link Row#getGeometry()} does
+	 */
+	private static Geometry getGeometry(ByteBuffer buffer) {
+		int kind = buffer.getInt();
+		boolean hasz = buffer.get() != 0;
+		int npoints = buffer.getInt();
+		int nparts = buffer.getInt();
+		if (kind == 0) { // Point
+			double lon = buffer.getDouble();
+			double lat = buffer.getDouble();
+			return new Point(lat, lon, hasz ? buffer.getDouble() : 0.0);
+		}
+		int[] offsets = new int[nparts + 1];
+		for (int i = 0; i < nparts; i++) {
+			offsets[i] = buffer.getInt();
+		}
+		if (nparts == 0) {
+			nparts = 1;
+		}
+		offsets[nparts] = npoints;
+		List<Point>[] lists = getPointLists(buffer, offsets, nparts, hasz);
+		switch (kind) {
+			case 1: // Multipoint
+				return new MultiPoint(lists[0]);
+			case 2: { // Polyline
+				List<Line> lines = new ArrayList<Line>(lists.length);
+				for (List<Point> pts : lists) {
+					lines.add(new Line(pts));
+				}
+				return new MultiLine(lines);
+			}
+			case 3: { // Polygon
+				LinearRing outerRing = new LinearRing(lists[0]);
+				List<LinearRing> innerRings = new ArrayList<LinearRing>(lists.length - 1);
+				for (int i = 1; i < lists.length; i++) {
+					innerRings.add(new LinearRing(lists[i]));
+				}
+				return new Polygon(outerRing, innerRings, true);
+			}
+			default:
+				return null;
+		}
+	}
+
+	private static List<Point>[] getPointLists(ByteBuffer buffer, int[] offsets, int nparts, boolean hasz) {
+		@SuppressWarnings("unchecked")
+		List<Point>[] rval = new List[nparts];
+		for (int i = 0; i < nparts; i++) {
+			int count = offsets[i + 1] - offsets[i];
+			PackedPointList pts = new PackedPointList(count);
+			for (int j = 0; j < count; j++) {
+				double lon = buffer.getDouble();
+				double lat = buffer.getDouble();
+				pts.addDegrees(lon, lat, hasz ? buffer.getDouble() : 0.0);
+			}
+			rval[i] = pts;
+		}
+		return rval;
+	}
+
+	private static ByteBuffer allocate(int capacity) {
+		return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+	}
+
+}
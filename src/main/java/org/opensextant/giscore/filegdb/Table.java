@@ -18,10 +18,12 @@
  ***************************************************************************************/
 package org.opensextant.giscore.filegdb;
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
+import org.opensextant.geodesy.Geodetic2DBounds;
 
 /**
  * A table represents a dataset or a feature class
@@ -31,6 +33,10 @@ import org.apache.commons.lang.StringUtils;
  */
 public class Table extends GDB {
 	public static class FieldInfo {
+		/**
+		 * Position of the field in the table's field information
+		 */
+		public int index;
 		public int type;
 		public int length;
 		public boolean nullable;
@@ -38,6 +44,7 @@ public class Table extends GDB {
 	
 	private Geodatabase db;
 	private Map<String, FieldInfo> fieldInfo = null;
+	private String[] fieldNames = null;
 	/**
 	 * These hold references to C++ structures and are managed by the native
 	 * code. Cleaned up in finalize.
@@ -45,6 +52,12 @@ public class Table extends GDB {
 	private long fieldinfo_holder = 0;
 	private long fieldtype_map = 0;
 	
+	/**
+	 * Set once the loaded native library has been checked for the
+	 * {@link RowBuffer} methods
+	 */
+	private static volatile Boolean rowBufferSupported;
+	
 	protected Table() {
 		// 
 	}
@@ -93,6 +106,52 @@ public class Table extends GDB {
 	 */
 	public native void add(Row row);
 	
+	/**
+	 * Add all the rows encoded in the buffer to the table in order, crossing
+	 * into the native library once, and clear the buffer.
+	 * @param rows
+	 * @throws UnsupportedOperationException if the native library does not 
+	 * support row buffers, see {@link #isRowBufferSupported()}
+	 */
+	public void addAll(RowBuffer rows) {
+		if (!isRowBufferSupported()) {
+			throw new UnsupportedOperationException("Native library does not support row buffers");
+		}
+		if (rows.getRowCount() > 0) {
+			getFieldTypes(); // Field order is needed to encode the rows
+			addEncoded1(rows.getBuffer(), rows.getRowCount());
+		}
+		rows.clear();
+	}
+	
+	private native void addEncoded1(ByteBuffer buffer, int count);
+	
+	/**
+	 * @return <code>true</code> if the loaded native library can add and 
+	 * enumerate rows using {@link RowBuffer}s. Libraries built before these
+	 * were added only support one row at a time. The library is loaded with
+	 * {@link Geodatabase} so this should not be called before a database is
+	 * opened.
+	 */
+	public static boolean isRowBufferSupported() {
+		Boolean supported = rowBufferSupported;
+		if (supported == null) {
+			try {
+				supported = rowBufferLayout() == RowBuffer.LAYOUT;
+			} catch (UnsatisfiedLinkError e) {
+				supported = Boolean.FALSE;
+			}
+			rowBufferSupported = supported;
+		}
+		return supported;
+	}
+	
+	/**
+	 * @return the version of the {@link RowBuffer} layout used by the native
+	 * library
+	 */
+	private static native int rowBufferLayout();
+	
 	/**
 	 * @return all the rows in the table as an iterator
 	 */
@@ -107,6 +166,54 @@ public class Table extends GDB {
 	 */
 	public native EnumRows enumerate1();
 	
+	/**
+	 * Search for the rows matching an attribute query and a spatial envelope.
+	 * Both are evaluated by the FileGDB API, using the table's indexes, so
+	 * rows that don't match never cross into Java.
+	 * 
+	 * @param where an SQL where clause on the table's fields, e.g. 
+	 * <code>SpeedLimit &gt; 50</code>, may be <code>null</code> or empty to 
+	 * match all rows
+	 * @param bounds return only rows whose geometry envelope intersects these
+	 * bounds, may be <code>null</code> to match all rows. The bounds are in 
+	 * degrees of longitude and latitude, which is how giscore writes feature
+	 * classes. Bounds that cross the antimeridian match all longitudes 
+	 * between their latitudes. Must be <code>null</code> for tables without
+	 * geometry.
+	 * @return the matching rows as an iterator
+	 * @throws UnsupportedOperationException if the native library predates 
+	 * searching
+	 */
+	public EnumRows search(String where, Geodetic2DBounds bounds) {
+		double[] envelope = null;
+		if (bounds != null) {
+			double west = bounds.getWestLon().inDegrees();
+			double east = bounds.getEastLon().inDegrees();
+			if (west > east) {
+				west = -180.0;
+				east = 180.0;
+			}
+			envelope = new double[] { west, bounds.getSouthLat().inDegrees(), 
+					east, bounds.getNorthLat().inDegrees() };
+		}
+		EnumRows rval;
+		try {
+			rval = search1(where == null ? "" : where, envelope);
+		} catch (UnsatisfiedLinkError e) {
+			throw new UnsupportedOperationException("Native library does not support search", e);
+		}
+		rval.setTable(this);
+		return rval;
+	}
+	
+	/**
+	 * @param where the where clause, never <code>null</code>
+	 * @param envelope xmin, ymin, xmax, ymax or <code>null</code> for an 
+	 * empty envelope which matches everything
+	 * @return the matching rows
+	 */
+	private native EnumRows search1(String where, double[] envelope);
+	
 	/**
 	 * @return get the field names mapped to their types as a map. The 
 	 * field types are from {@link SQL.Types}
@@ -118,6 +225,7 @@ public class Table extends GDB {
 			for(int i = 0; i < data.length; i += 4) {
 				FieldInfo fi = new FieldInfo();
 				String name = (String) data[i];
+				fi.index = i / 4;
 				fi.type = (Integer) data[i+1];
 				fi.length = (Integer) data[i+2];
 				fi.nullable = (Boolean) data[i+3];
@@ -127,6 +235,22 @@ public class Table extends GDB {
 		return fieldInfo;
 	}
 	
+	/**
+	 * @return the field names in the order of the table's field information,
+	 * so the name for a field is at {@link FieldInfo#index}
+	 */
+	public String[] getFieldNames() {
+		if (fieldNames == null) {
+			Map<String, FieldInfo> types = getFieldTypes();
+			String[] names = new String[types.size()];
+			for(Map.Entry<String, FieldInfo> entry : types.entrySet()) {
+				names[entry.getValue().index] = entry.getKey();
+			}
+			fieldNames = names;
+		}
+		return fieldNames;
+	}
+	
 	/**
 	 * Get field information as an array of values in the following order:
 	 * <ul>
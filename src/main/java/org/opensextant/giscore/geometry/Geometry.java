@@ -37,17 +37,29 @@ import org.opensextant.geodesy.Latitude;
 import org.opensextant.geodesy.Longitude;
 import org.opensextant.giscore.events.IGISObject;
 import org.opensextant.giscore.utils.IDataSerializable;
+import org.opensextant.giscore.utils.ISizeEstimable;
 import org.opensextant.giscore.utils.SimpleObjectInputStream;
 import org.opensextant.giscore.utils.SimpleObjectOutputStream;
+import org.opensextant.giscore.utils.SizeEstimator;
 
 /**
  * The Geometry abstract class is the basis for all geometric objects in the
  * geometry package.
  */
 public abstract class Geometry implements VisitableGeometry, IGISObject,
-		IDataSerializable, Serializable {
+		IDataSerializable, ISizeEstimable, Serializable {
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * Estimated size of a {@link Point} with its coordinate and angles
+	 */
+	static final long POINT_SIZE = 128;
+
+	/**
+	 * Estimated size of a point held in a {@link PackedPointList}
+	 */
+	static final long PACKED_POINT_SIZE = 24;
+
 	// Instance variables are the responsibility of extending class to
 	// initialize
 	boolean is3D;
@@ -199,6 +211,16 @@ public abstract class Geometry implements VisitableGeometry, IGISObject,
 		return HashCodeBuilder.reflectionHashCode(this);
 	}
 
+	/**
+	 * Estimate based on the number of parts and points, assuming each point
+	 * is held as a {@link Point} object.
+	 * @see org.opensextant.giscore.utils.ISizeEstimable#estimateSize()
+	 */
+	public long estimateSize() {
+		return SizeEstimator.OBJECT * 4 + getNumParts() * 64L
+				+ getNumPoints() * POINT_SIZE;
+	}
+
 	/**
 	 * (non-Javadoc)
 	 * @see SimpleObjectOutputStream#writeObject(org.mitre.giscore.utils.IDataSerializable)
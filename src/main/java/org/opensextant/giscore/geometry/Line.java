@@ -32,6 +32,7 @@ import org.opensextant.geodesy.UnmodifiableGeodetic3DBounds;
 import org.opensextant.giscore.IStreamVisitor;
 import org.opensextant.giscore.utils.SimpleObjectInputStream;
 import org.opensextant.giscore.utils.SimpleObjectOutputStream;
+import org.opensextant.giscore.utils.SizeEstimator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -135,19 +136,21 @@ public class Line extends GeometryBase implements Iterable<Point> {
      */
     @NonNull
     public Iterator<Point> iterator() {
-        return  Collections.unmodifiableList(pointList).iterator();
+        return PackedPointList.unmodifiableList(pointList).iterator();
     }
 
 	/**
 	 * This method returns the points in this line.
 	 * <br/>
-	 * The returned collection is unmodifiable.
+	 * The returned collection is unmodifiable. If the line was created
+	 * with a {@link PackedPointList} then the returned list is a read-only
+	 * <code>PackedPointList</code> view that creates Points on demand.
 	 *
 	 * @return Collection of the point objects.
 	 */
     @NonNull
 	public List<Point> getPoints() {
-		return Collections.unmodifiableList(pointList);
+		return PackedPointList.unmodifiableList(pointList);
 	}
 
     /**
@@ -156,12 +159,19 @@ public class Line extends GeometryBase implements Iterable<Point> {
      */
 	private void init(List<Point> pts) {
 		// Make sure all the points have the same number of dimensions (2D or 3D)
-        is3D = pts.get(0).is3D();
-        for (Point p : pts) {
-            if (is3D != p.is3D()) {
+        if (pts instanceof PackedPointList) {
+            PackedPointList packed = (PackedPointList) pts;
+            is3D = packed.is3D();
+            if (!is3D && packed.hasElevation(0))
                 log.info("Line points have mixed dimensionality: downgrading line to 2d");
-                is3D = false;
-                break;
+        } else {
+            is3D = pts.get(0).is3D();
+            for (Point p : pts) {
+                if (is3D != p.is3D()) {
+                    log.info("Line points have mixed dimensionality: downgrading line to 2d");
+                    is3D = false;
+                    break;
+                }
             }
         }
         pointList = pts;
@@ -172,27 +182,26 @@ public class Line extends GeometryBase implements Iterable<Point> {
 	 */
 	@Override
 	protected void computeBoundingBox() {
-		Geodetic2DPoint gp1 = pointList.get(0).asGeodetic2DPoint();
+		Geodetic2DPoint gp1 = PackedPointList.geodeticPoint(pointList, 0);
         bbox = is3D ? new Geodetic3DBounds((Geodetic3DPoint) gp1) : new Geodetic2DBounds(gp1);
 
-        Geodetic2DPoint gp2;
-        double lonRad1, lonRad2;
+        double lonRad1 = PackedPointList.lonRadians(pointList, 0);
+        double lonRad2;
         idlWrap = false;
-        for (Point p : pointList) {
-            gp2 = p.asGeodetic2DPoint();
-            bbox.include(gp2);
+        final int n = pointList.size();
+        for (int i = 0; i < n; i++) {
+            bbox.include(PackedPointList.geodeticPoint(pointList, i));
             // Test for Longitude wrap at International Date Line (IDL)
             // Line segments always connect following the shortest path around the globe,
             // and we assume lines are clipped at the IDL crossing, so if there is a sign
             // change between points and one of the points is -180.0, we classify this Line
             // as having wrapped. This allows the -180 to be written as +180 on export,
             // to satisfy GIS tools that expect this.
-            lonRad1 = gp1.getLongitude().inRadians();
-            lonRad2 = gp2.getLongitude().inRadians();
+            lonRad2 = PackedPointList.lonRadians(pointList, i);
             // It is a wrap if any segment that changes lon sign has an endpoint on the line
             if (((lonRad1 < 0.0 && lonRad2 >= 0.0) || (lonRad2 < 0.0 && lonRad1 >= 0.0)) &&
                     (lonRad1 == -Math.PI || lonRad2 == -Math.PI)) idlWrap = true;
-            gp1 = gp2;
+            lonRad1 = lonRad2;
         }
 		// make bbox unmodifiable
 		bbox = is3D ? new UnmodifiableGeodetic3DBounds((Geodetic3DBounds)bbox)
@@ -241,7 +250,7 @@ public class Line extends GeometryBase implements Iterable<Point> {
 			pointList = Collections.emptyList(); // normally should never be null
 			is3D = false;
 		} else
-			init(plist);
+			init(new PackedPointList(plist)); // keep coordinates in compact form
 	}
 
 	/* (non-Javadoc)
@@ -259,6 +268,14 @@ public class Line extends GeometryBase implements Iterable<Point> {
 		return 1;
 	}
 
+	@Override
+	public long estimateSize() {
+		if (pointList instanceof PackedPointList) {
+			return SizeEstimator.OBJECT * 6 + pointList.size() * PACKED_POINT_SIZE;
+		}
+		return super.estimateSize();
+	}
+
 	@Override
 	public int getNumPoints() {
 		return pointList.size();
@@ -49,6 +49,7 @@ import org.opensextant.geodesy.UnmodifiableGeodetic3DBounds;
 import org.opensextant.giscore.IStreamVisitor;
 import org.opensextant.giscore.utils.SimpleObjectInputStream;
 import org.opensextant.giscore.utils.SimpleObjectOutputStream;
+import org.opensextant.giscore.utils.SizeEstimator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -179,19 +180,21 @@ public class LinearRing extends GeometryBase implements Iterable<Point> {
      */
     @NonNull
     public Iterator<Point> iterator() {
-        return Collections.unmodifiableList(pointList).iterator();
+        return PackedPointList.unmodifiableList(pointList).iterator();
     }
 
 	/**
 	 * This method returns the points in this ring.
 	 * <br/>
-	 * The returned collection is unmodifiable.
+	 * The returned collection is unmodifiable. If the ring was created
+	 * with a {@link PackedPointList} then the returned list is a read-only
+	 * <code>PackedPointList</code> view that creates Points on demand.
 	 *
 	 * @return Collection of the point objects.
 	 */
     @NonNull
 	public List<Point> getPoints() {
-		return Collections.unmodifiableList(pointList);
+		return PackedPointList.unmodifiableList(pointList);
 	}
 
     // This method will check that this LinearRing is closed and non-self-intersecting.
@@ -205,21 +208,16 @@ public class LinearRing extends GeometryBase implements Iterable<Point> {
         // For neighbor segments, make sure distance to non-shared endpoint is positive.
         // This requires (n*(n-1)/2) comparisons
 		// TODO: if points are at polar projection and wrap IDL then test fails
-        Geodetic2DPoint gp1, gp2, gp3, gp4;
         for (int i = 0; i < n - 2; i++) {
-            gp1 = pts.get(i).asGeodetic2DPoint();
-            double x1 = gp1.getLongitude().inRadians();
-            double y1 = gp1.getLatitude().inRadians();
-            gp2 = pts.get(i + 1).asGeodetic2DPoint();
-            double x2 = gp2.getLongitude().inRadians();
-            double y2 = gp2.getLatitude().inRadians();
+            double x1 = PackedPointList.lonRadians(pts, i);
+            double y1 = PackedPointList.latRadians(pts, i);
+            double x2 = PackedPointList.lonRadians(pts, i + 1);
+            double y2 = PackedPointList.latRadians(pts, i + 1);
             for (int j = i + 1; j < n - 1; j++) {
-                gp3 = pts.get(j).asGeodetic2DPoint();
-                double x3 = gp3.getLongitude().inRadians();
-                double y3 = gp3.getLatitude().inRadians();
-                gp4 = pts.get(j + 1).asGeodetic2DPoint();
-                double x4 = gp4.getLongitude().inRadians();
-                double y4 = gp4.getLatitude().inRadians();
+                double x3 = PackedPointList.lonRadians(pts, j);
+                double y3 = PackedPointList.latRadians(pts, j);
+                double x4 = PackedPointList.lonRadians(pts, j + 1);
+                double y4 = PackedPointList.latRadians(pts, j + 1);
                 boolean inv;
                 if ((j - i) == 1) {
                     // make sure non-zero distance from (x1, y1)->(x2, y2) to (x4, y4)
@@ -257,19 +255,31 @@ public class LinearRing extends GeometryBase implements Iterable<Point> {
             if (!pts.get(0).equals(pts.get(n - 1))) {
                 log.warn("LinearRing should start and end with the same point, closing the ring");
                 // Close it
-                ArrayList<Point> copypts = new ArrayList<Point>(pts.size() + 1);
-                copypts.addAll(pts);
+                List<Point> copypts;
+                if (pts instanceof PackedPointList) {
+                    copypts = new PackedPointList(pts);
+                } else {
+                    copypts = new ArrayList<Point>(pts.size() + 1);
+                    copypts.addAll(pts);
+                }
                 copypts.add(pts.get(0));
                 pts = copypts;
             }
         }
         // Make sure all the points have the same number of dimensions (2D or 3D)
-        is3D = pts.get(0).is3D();
-        for (Point p : pts) {
-            if (is3D != p.is3D()) {
+        if (pts instanceof PackedPointList) {
+            PackedPointList packed = (PackedPointList) pts;
+            is3D = packed.is3D();
+            if (!is3D && packed.hasElevation(0))
                 log.info("LinearRing points have mixed dimensionality: downgrading ring to 2d");
-                is3D = false;
-                break;
+        } else {
+            is3D = pts.get(0).is3D();
+            for (Point p : pts) {
+                if (is3D != p.is3D()) {
+                    log.info("LinearRing points have mixed dimensionality: downgrading ring to 2d");
+                    is3D = false;
+                    break;
+                }
             }
         }
         pointList = pts;
@@ -279,27 +289,26 @@ public class LinearRing extends GeometryBase implements Iterable<Point> {
 	 * @see org.mitre.giscore.geometry.Geometry#computeBoundingBox()
 	 */
 	protected void computeBoundingBox() {
-        Geodetic2DPoint gp1 = pointList.get(0).asGeodetic2DPoint();
+        Geodetic2DPoint gp1 = PackedPointList.geodeticPoint(pointList, 0);
         bbox = is3D ? new Geodetic3DBounds((Geodetic3DPoint) gp1) : new Geodetic2DBounds(gp1);
 
-        Geodetic2DPoint gp2;
-        double lonRad1, lonRad2;
+        double lonRad1 = PackedPointList.lonRadians(pointList, 0);
+        double lonRad2;
         idlWrap = false;
-        for (Point p : pointList) {
-            gp2 = p.asGeodetic2DPoint();
-            bbox.include(gp2);
+        final int n = pointList.size();
+        for (int i = 0; i < n; i++) {
+            bbox.include(PackedPointList.geodeticPoint(pointList, i));
             // Test for Longitude wrap at International Date Line (IDL)
             // Line segments always connect following the shortest path around the globe,
             // and we assume lines are clipped at the IDL crossing, so if there is a sign
             // change between points and one of the points is -180.0, we classify this LinearRing
             // as having wrapped. This allows the -180 to be written as +180 on export,
             // to satisfy GIS tools that expect this.
-            lonRad1 = gp1.getLongitude().inRadians();
-            lonRad2 = gp2.getLongitude().inRadians();
+            lonRad2 = PackedPointList.lonRadians(pointList, i);
             // It is a wrap if any segment that changes lon sign has an endpoint on the line
             if (((lonRad1 < 0.0 && lonRad2 >= 0.0) || (lonRad2 < 0.0 && lonRad1 >= 0.0)) &&
                     (lonRad1 == -Math.PI || lonRad2 == -Math.PI)) idlWrap = true;
-            gp1 = gp2;
+            lonRad1 = lonRad2;
         }
 		// make bbox unmodifiable
 		bbox = is3D ? new UnmodifiableGeodetic3DBounds((Geodetic3DBounds)bbox)
@@ -311,6 +320,14 @@ public class LinearRing extends GeometryBase implements Iterable<Point> {
 		return 1;
 	}
 
+	@Override
+	public long estimateSize() {
+		if (pointList instanceof PackedPointList) {
+			return SizeEstimator.OBJECT * 6 + pointList.size() * PACKED_POINT_SIZE;
+		}
+		return super.estimateSize();
+	}
+
 	@Override
 	public int getNumPoints() {
 		return pointList.size();
@@ -336,13 +353,10 @@ public class LinearRing extends GeometryBase implements Iterable<Point> {
      * @return true if this Ring's points are in clockwise order, false otherwise
      */
     public boolean clockwise() {
-        Geodetic2DPoint gp1, gp2;
         double doubleArea = 0.0;
         for (int i = 0; i < pointList.size() - 1; i++) {
-            gp1 = pointList.get(i).asGeodetic2DPoint();
-            gp2 = pointList.get(i + 1).asGeodetic2DPoint();
-            doubleArea += gp1.getLongitude().inRadians() * gp2.getLatitude().inRadians();
-            doubleArea -= gp1.getLatitude().inRadians() * gp2.getLongitude().inRadians();
+            doubleArea += PackedPointList.lonRadians(pointList, i) * PackedPointList.latRadians(pointList, i + 1);
+            doubleArea -= PackedPointList.latRadians(pointList, i) * PackedPointList.lonRadians(pointList, i + 1);
         }
         return (doubleArea < 0);
     }
@@ -359,14 +373,11 @@ public class LinearRing extends GeometryBase implements Iterable<Point> {
         boolean in = false;
         double x = p.getLongitude().inRadians();
         double y = p.getLatitude().inRadians();
-        Geodetic2DPoint gp1, gp2;
         for (int i = 0; i < pointList.size() - 1; i++) {
-            gp1 = pointList.get(i).asGeodetic2DPoint();
-            gp2 = pointList.get(i + 1).asGeodetic2DPoint();
-            double xi = gp1.getLongitude().inRadians();
-            double yi = gp1.getLatitude().inRadians();
-            double xj = gp2.getLongitude().inRadians();
-            double yj = gp2.getLatitude().inRadians();
+            double xi = PackedPointList.lonRadians(pointList, i);
+            double yi = PackedPointList.latRadians(pointList, i);
+            double xj = PackedPointList.lonRadians(pointList, i + 1);
+            double yj = PackedPointList.latRadians(pointList, i + 1);
             if ((((yi <= y) && (y < yj)) || ((yj <= y) && (y < yi))) &&
                     (x < (xj - xi) * (y - yi) / (yj - yi) + xi))
                 in = !in;
@@ -383,23 +394,20 @@ public class LinearRing extends GeometryBase implements Iterable<Point> {
     public boolean overlaps(LinearRing that) {
         // Compare each segment in this ring to every segment in that ring to see if they cross.
         // Short-circuit exit as soon as any pair of segments being compared cross.
-        Geodetic2DPoint gp1, gp2, gp3, gp4;
-        int n1 = this.pointList.size();
-        int n2 = that.pointList.size();
+        final List<Point> pts1 = this.pointList;
+        final List<Point> pts2 = that.pointList;
+        int n1 = pts1.size();
+        int n2 = pts2.size();
         for (int i = 0; i < n1 - 1; i++) {
-            gp1 = this.pointList.get(i).asGeodetic2DPoint();
-            double x1 = gp1.getLongitude().inRadians();
-            double y1 = gp1.getLatitude().inRadians();
-            gp2 = this.pointList.get(i + 1).asGeodetic2DPoint();
-            double x2 = gp2.getLongitude().inRadians();
-            double y2 = gp2.getLatitude().inRadians();
+            double x1 = PackedPointList.lonRadians(pts1, i);
+            double y1 = PackedPointList.latRadians(pts1, i);
+            double x2 = PackedPointList.lonRadians(pts1, i + 1);
+            double y2 = PackedPointList.latRadians(pts1, i + 1);
             for (int j = 0; j < n2 - 1; j++) {
-                gp3 = that.pointList.get(j).asGeodetic2DPoint();
-                double x3 = gp3.getLongitude().inRadians();
-                double y3 = gp3.getLatitude().inRadians();
-                gp4 = that.pointList.get(j + 1).asGeodetic2DPoint();
-                double x4 = gp4.getLongitude().inRadians();
-                double y4 = gp4.getLatitude().inRadians();
+                double x3 = PackedPointList.lonRadians(pts2, j);
+                double y3 = PackedPointList.latRadians(pts2, j);
+                double x4 = PackedPointList.lonRadians(pts2, j + 1);
+                double y4 = PackedPointList.latRadians(pts2, j + 1);
                 if (linesIntersect(x1, y1, x2, y2, x3, y3, x4, y4))
                     return true;
             }
@@ -419,7 +427,7 @@ public class LinearRing extends GeometryBase implements Iterable<Point> {
     public boolean contains(LinearRing that) {
         // If not overlapping, then all points are either in or they're out, so only test one
         return (!this.overlaps(that) &&
-                this.contains(that.pointList.get(0).asGeodetic2DPoint()));
+                this.contains(PackedPointList.geodeticPoint(that.pointList, 0)));
     }
 
     /**
@@ -432,8 +440,8 @@ public class LinearRing extends GeometryBase implements Iterable<Point> {
     public boolean intersects(LinearRing that) {
         // If not overlapping, then see if a point from this is in that, or vice versa
         return (this.overlaps(that) ||
-                this.contains(that.pointList.get(0).asGeodetic2DPoint()) ||
-                that.contains(this.pointList.get(0).asGeodetic2DPoint()));
+                this.contains(PackedPointList.geodeticPoint(that.pointList, 0)) ||
+                that.contains(PackedPointList.geodeticPoint(this.pointList, 0)));
     }
 
 	/**
@@ -461,6 +469,8 @@ public class LinearRing extends GeometryBase implements Iterable<Point> {
 		super.readData(in);
 		idlWrap = in.readBoolean();
 		List<Point> plist = (List<Point>) in.readObjectCollection();
+		// keep coordinates in compact form
+		if (plist != null) plist = new PackedPointList(plist);
 		// if for any reason list is null or # points < 4 init() throws IllegalArgumentException
 		init(plist, false);
 	}
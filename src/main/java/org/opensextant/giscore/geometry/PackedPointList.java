@@ -0,0 +1,509 @@
+/****************************************************************************************
+ *  PackedPointList.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.geometry;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.opensextant.geodesy.Geodetic2DPoint;
+import org.opensextant.geodesy.Geodetic3DPoint;
+import org.opensextant.geodesy.Latitude;
+import org.opensextant.geodesy.Longitude;
+
+/**
+ * Compact list of points backed by primitive arrays of longitude, latitude
+ * and optional elevation values. A list of <tt>n</tt> points is stored in
+ * two or three <code>double[]</code> arrays rather than as <tt>n</tt> {@link Point}
+ * objects each wrapping a <code>Geodetic2DPoint</code> with its own
+ * <code>Longitude</code> and <code>Latitude</code> objects.
+ * <p/>
+ * The list implements <code>List&lt;Point&gt;</code> so it can be passed to
+ * {@link Line}, {@link LinearRing} and {@link MultiPoint} as-is, and {@link #get(int)}
+ * creates <code>Point</code> objects on demand as a lazy view.  Readers and writers
+ * that know about this class should use the primitive accessors such as
+ * {@link #getLonRadians(int)} and {@link #getLatRadians(int)} instead.
+ * <p/>
+ * Coordinates are stored as normalized radians exactly as held by the geodesy
+ * <code>Angle</code> classes so points reconstructed from the list are equal
+ * to the points that were added. A list may contain points of mixed dimensions
+ * in which case <code>NaN</code> elevation marks the 2d points.
+ * <p/>
+ * This class is not thread-safe.
+ */
+public class PackedPointList extends AbstractList<Point> implements RandomAccess, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final double TWO_PI = 2.0 * Math.PI;
+	private static final double HALF_PI = Math.PI / 2.0;
+	private static final double MAX_RADIANS = 8.0 * Math.PI;
+
+	@NonNull
+	private double[] lons;
+
+	@NonNull
+	private double[] lats;
+
+	/**
+	 * Elevations in meters or <code>null</code> if no 3d points have been added.
+	 * NaN value marks a 2d point.
+	 */
+	private double[] elevs;
+
+	private int size;
+
+	/**
+	 * Number of 3d points in list
+	 */
+	private int count3d;
+
+	private boolean readOnly;
+
+	/**
+	 * Constructs an empty list with an initial capacity of ten points.
+	 */
+	public PackedPointList() {
+		this(10);
+	}
+
+	/**
+	 * Constructs an empty list with the specified initial capacity.
+	 *
+	 * @param initialCapacity the initial capacity of the list
+	 * @throws IllegalArgumentException if the specified initial capacity is negative
+	 */
+	public PackedPointList(int initialCapacity) {
+		if (initialCapacity < 0)
+			throw new IllegalArgumentException("Illegal capacity: " + initialCapacity);
+		lons = new double[initialCapacity];
+		lats = new double[initialCapacity];
+	}
+
+	/**
+	 * Constructs a list containing the coordinates of the points of the
+	 * specified collection in the order they are returned by the collection's iterator.
+	 *
+	 * @param points the points to copy, never <code>null</code>
+	 * @throws NullPointerException if points collection is <code>null</code>
+	 */
+	public PackedPointList(Collection<? extends Point> points) {
+		this(points.size());
+		if (points instanceof PackedPointList) {
+			PackedPointList other = (PackedPointList) points;
+			System.arraycopy(other.lons, 0, lons, 0, other.size);
+			System.arraycopy(other.lats, 0, lats, 0, other.size);
+			if (other.elevs != null) elevs = Arrays.copyOf(other.elevs, lons.length);
+			size = other.size;
+			count3d = other.count3d;
+		} else {
+			for (Point p : points) {
+				add(p.asGeodetic2DPoint());
+			}
+		}
+	}
+
+	/**
+	 * Returns read-only view of this list that shares the coordinate arrays
+	 * with this list. Points appended to this list after the view is created
+	 * are not visible in the view.
+	 *
+	 * @return read-only view of this list, never <code>null</code>
+	 */
+	@NonNull
+	public PackedPointList asReadOnly() {
+		if (readOnly) return this;
+		PackedPointList view = new PackedPointList(0);
+		view.lons = lons;
+		view.lats = lats;
+		view.elevs = elevs;
+		view.size = size;
+		view.count3d = count3d;
+		view.readOnly = true;
+		return view;
+	}
+
+	/**
+	 * Get compact form of a list of points.
+	 *
+	 * @param points list of points, never <code>null</code>
+	 * @return <code>points</code> if already a <code>PackedPointList</code>
+	 * 		otherwise a new <code>PackedPointList</code> with a copy of the points
+	 */
+	@NonNull
+	public static PackedPointList valueOf(List<Point> points) {
+		return points instanceof PackedPointList ? (PackedPointList) points
+				: new PackedPointList(points);
+	}
+
+	/**
+	 * Appends point using longitude and latitude in degrees normalizing
+	 * the longitude the same as {@link Longitude}.
+	 *
+	 * @param lon longitude in degrees
+	 * @param lat latitude in degrees
+	 * @throws IllegalArgumentException if latitude is outside range -90 to +90
+	 * 		or longitude cannot be normalized
+	 */
+	public void addDegrees(double lon, double lat) {
+		addRadians(Math.toRadians(lon), Math.toRadians(lat));
+	}
+
+	/**
+	 * Appends 3d point using longitude and latitude in degrees.
+	 *
+	 * @param lon longitude in degrees
+	 * @param lat latitude in degrees
+	 * @param elev elevation in meters
+	 * @throws IllegalArgumentException if latitude is outside range -90 to +90
+	 * 		or longitude cannot be normalized
+	 */
+	public void addDegrees(double lon, double lat, double elev) {
+		addRadians(Math.toRadians(lon), Math.toRadians(lat), elev);
+	}
+
+	/**
+	 * Appends point using longitude and latitude in radians.
+	 *
+	 * @param lon longitude in radians
+	 * @param lat latitude in radians
+	 * @throws IllegalArgumentException if latitude is outside range -PI/2 to +PI/2
+	 * 		or longitude cannot be normalized
+	 */
+	public void addRadians(double lon, double lat) {
+		append(normalizeLongitude(lon), checkLatitude(lat), Double.NaN);
+	}
+
+	/**
+	 * Appends 3d point using longitude and latitude in radians.
+	 *
+	 * @param lon longitude in radians
+	 * @param lat latitude in radians
+	 * @param elev elevation in meters
+	 * @throws IllegalArgumentException if latitude is outside range -PI/2 to +PI/2
+	 * 		or longitude cannot be normalized
+	 */
+	public void addRadians(double lon, double lat, double elev) {
+		append(normalizeLongitude(lon), checkLatitude(lat), elev);
+	}
+
+	/**
+	 * Appends 2d point.
+	 *
+	 * @param lon Longitude, never <code>null</code>
+	 * @param lat Latitude, never <code>null</code>
+	 */
+	public void add(Longitude lon, Latitude lat) {
+		append(lon.inRadians(), lat.inRadians(), Double.NaN);
+	}
+
+	/**
+	 * Appends 3d point.
+	 *
+	 * @param lon Longitude, never <code>null</code>
+	 * @param lat Latitude, never <code>null</code>
+	 * @param elev elevation in meters
+	 */
+	public void add(Longitude lon, Latitude lat, double elev) {
+		append(lon.inRadians(), lat.inRadians(), elev);
+	}
+
+	/**
+	 * Appends geodetic point. If point is a <code>Geodetic3DPoint</code>
+	 * then its elevation is also stored.
+	 *
+	 * @param pt Geodetic2DPoint or Geodetic3DPoint, never <code>null</code>
+	 */
+	public void add(Geodetic2DPoint pt) {
+		append(pt.getLongitude().inRadians(), pt.getLatitude().inRadians(),
+				pt instanceof Geodetic3DPoint ? ((Geodetic3DPoint) pt).getElevation() : Double.NaN);
+	}
+
+	/**
+	 * Appends the coordinate of the point to the end of this list.
+	 *
+	 * @param p Point, never <code>null</code>
+	 * @return <tt>true</tt>
+	 */
+	@Override
+	public boolean add(Point p) {
+		add(p.asGeodetic2DPoint());
+		return true;
+	}
+
+	/**
+	 * Replaces the coordinate at the specified position in this list
+	 * with the coordinate of the specified point.
+	 *
+	 * @param index index of the point to replace
+	 * @param p Point to be stored at the specified position, never <code>null</code>
+	 * @return new Point for the coordinate previously at the specified position
+	 * @throws IndexOutOfBoundsException if index is out of range
+	 * @throws UnsupportedOperationException if list is a read-only view
+	 */
+	@Override
+	public Point set(int index, Point p) {
+		if (readOnly) throw new UnsupportedOperationException();
+		Point old = get(index);
+		Geodetic2DPoint pt = p.asGeodetic2DPoint();
+		double elev = pt instanceof Geodetic3DPoint ? ((Geodetic3DPoint) pt).getElevation() : Double.NaN;
+		if (hasElevation(index)) count3d--;
+		if (!Double.isNaN(elev)) {
+			if (elevs == null) {
+				elevs = new double[lons.length];
+				Arrays.fill(elevs, 0, size, Double.NaN);
+			}
+			count3d++;
+		}
+		if (elevs != null) elevs[index] = elev;
+		lons[index] = pt.getLongitude().inRadians();
+		lats[index] = pt.getLatitude().inRadians();
+		return old;
+	}
+
+	/**
+	 * Copies the specified range of this list into a new list.
+	 *
+	 * @param from the initial index of the range to be copied, inclusive
+	 * @param to the final index of the range to be copied, exclusive
+	 * @return new list containing the specified range
+	 * @throws IndexOutOfBoundsException if range is out of bounds
+	 */
+	@NonNull
+	public PackedPointList copyOfRange(int from, int to) {
+		if (from < 0 || to > size || from > to)
+			throw new IndexOutOfBoundsException("Range: [" + from + ", " + to + "), Size: " + size);
+		final int n = to - from;
+		PackedPointList copy = new PackedPointList(n);
+		System.arraycopy(lons, from, copy.lons, 0, n);
+		System.arraycopy(lats, from, copy.lats, 0, n);
+		if (elevs != null) {
+			copy.elevs = new double[n];
+			for (int i = 0; i < n; i++) {
+				double elev = elevs[from + i];
+				copy.elevs[i] = elev;
+				if (!Double.isNaN(elev)) copy.count3d++;
+			}
+			if (copy.count3d == 0) copy.elevs = null;
+		}
+		copy.size = n;
+		return copy;
+	}
+
+	private void append(double lon, double lat, double elev) {
+		if (readOnly) throw new UnsupportedOperationException();
+		if (size == lons.length) {
+			int newCapacity = Math.max(10, size + (size >> 1));
+			lons = Arrays.copyOf(lons, newCapacity);
+			lats = Arrays.copyOf(lats, newCapacity);
+			if (elevs != null) elevs = Arrays.copyOf(elevs, newCapacity);
+		}
+		if (!Double.isNaN(elev)) {
+			if (elevs == null) {
+				elevs = new double[lons.length];
+				Arrays.fill(elevs, 0, size, Double.NaN);
+			}
+			count3d++;
+		}
+		if (elevs != null) elevs[size] = elev;
+		lons[size] = lon;
+		lats[size++] = lat;
+		modCount++;
+	}
+
+	/**
+	 * Returns a new <code>Point</code> for the coordinate at the specified position.
+	 *
+	 * @param index index of the point to return
+	 * @return Point, never <code>null</code>
+	 * @throws IndexOutOfBoundsException if index is out of range
+	 */
+	@Override
+	@NonNull
+	public Point get(int index) {
+		return new Point(getGeodetic2DPoint(index));
+	}
+
+	/**
+	 * Returns a new <code>Geodetic2DPoint</code> or <code>Geodetic3DPoint</code>
+	 * for the coordinate at the specified position.
+	 *
+	 * @param index index of the point to return
+	 * @return Geodetic2DPoint, never <code>null</code>
+	 * @throws IndexOutOfBoundsException if index is out of range
+	 */
+	@NonNull
+	public Geodetic2DPoint getGeodetic2DPoint(int index) {
+		checkIndex(index);
+		Longitude lon = new Longitude(lons[index]);
+		Latitude lat = new Latitude(lats[index]);
+		return hasElevation(index) ? new Geodetic3DPoint(lon, lat, elevs[index])
+				: new Geodetic2DPoint(lon, lat);
+	}
+
+	/**
+	 * @param index index of the point
+	 * @return longitude in radians
+	 */
+	public double getLonRadians(int index) {
+		checkIndex(index);
+		return lons[index];
+	}
+
+	/**
+	 * @param index index of the point
+	 * @return latitude in radians
+	 */
+	public double getLatRadians(int index) {
+		checkIndex(index);
+		return lats[index];
+	}
+
+	/**
+	 * @param index index of the point
+	 * @return longitude in degrees
+	 */
+	public double getLonDegrees(int index) {
+		checkIndex(index);
+		return Math.toDegrees(lons[index]);
+	}
+
+	/**
+	 * @param index index of the point
+	 * @return latitude in degrees
+	 */
+	public double getLatDegrees(int index) {
+		checkIndex(index);
+		return Math.toDegrees(lats[index]);
+	}
+
+	/**
+	 * @param index index of the point
+	 * @return elevation in meters or 0 if point at index is a 2d point
+	 */
+	public double getElevation(int index) {
+		return hasElevation(index) ? elevs[index] : 0.0;
+	}
+
+	/**
+	 * @param index index of the point
+	 * @return true if point at index is a 3d point
+	 */
+	public boolean hasElevation(int index) {
+		checkIndex(index);
+		return elevs != null && !Double.isNaN(elevs[index]);
+	}
+
+	/**
+	 * @return true if list is non-empty and all points are 3d points
+	 */
+	public boolean is3D() {
+		return size != 0 && count3d == size;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Trims the capacity of this list to be the list's current size.
+	 */
+	public void trimToSize() {
+		if (!readOnly && size < lons.length) {
+			lons = Arrays.copyOf(lons, size);
+			lats = Arrays.copyOf(lats, size);
+			if (elevs != null) elevs = count3d == 0 ? null : Arrays.copyOf(elevs, size);
+		}
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+	}
+
+	/**
+	 * Normalize longitude in radians to range [-PI, PI) as done by
+	 * <code>Longitude</code> without creating an object.
+	 *
+	 * @param lon longitude in radians
+	 * @return normalized longitude in radians
+	 * @throws IllegalArgumentException if value is too large to normalize
+	 */
+	public static double normalizeLongitude(double lon) {
+		if (Math.abs(lon) > MAX_RADIANS)
+			throw new IllegalArgumentException("Angle " + lon + " radians is too big");
+		while (lon >= Math.PI) lon -= TWO_PI;
+		while (lon < -Math.PI) lon += TWO_PI;
+		return lon;
+	}
+
+	/**
+	 * Check latitude in radians is valid as done by <code>Latitude</code>.
+	 *
+	 * @param lat latitude in radians
+	 * @return normalized latitude in radians
+	 * @throws IllegalArgumentException if value exceeds pole value
+	 */
+	public static double checkLatitude(double lat) {
+		// normalize same as Angle before checking range
+		lat = normalizeLongitude(lat);
+		if (lat < -HALF_PI || lat > HALF_PI)
+			throw new IllegalArgumentException("Latitude value exceeds pole value");
+		return lat;
+	}
+
+	/**
+	 * Get longitude in radians of point at index in list without creating
+	 * objects if list is a <code>PackedPointList</code>.
+	 */
+	static double lonRadians(List<Point> points, int index) {
+		return points instanceof PackedPointList ? ((PackedPointList) points).getLonRadians(index)
+				: points.get(index).asGeodetic2DPoint().getLongitude().inRadians();
+	}
+
+	/**
+	 * Get geodetic point at index in list.
+	 */
+	static Geodetic2DPoint geodeticPoint(List<Point> points, int index) {
+		return points instanceof PackedPointList ? ((PackedPointList) points).getGeodetic2DPoint(index)
+				: points.get(index).asGeodetic2DPoint();
+	}
+
+	/**
+	 * Returns unmodifiable view of list of points preserving the packed
+	 * form of a <code>PackedPointList</code>.
+	 */
+	@NonNull
+	static List<Point> unmodifiableList(List<Point> points) {
+		return points instanceof PackedPointList ? ((PackedPointList) points).asReadOnly()
+				: Collections.unmodifiableList(points);
+	}
+
+	/**
+	 * Get latitude in radians of point at index in list without creating
+	 * objects if list is a <code>PackedPointList</code>.
+	 */
+	static double latRadians(List<Point> points, int index) {
+		return points instanceof PackedPointList ? ((PackedPointList) points).getLatRadians(index)
+				: points.get(index).asGeodetic2DPoint().getLatitude().inRadians();
+	}
+}
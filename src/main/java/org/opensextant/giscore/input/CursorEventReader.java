@@ -0,0 +1,759 @@
+/****************************************************************************************
+ *  CursorEventReader.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.input;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.EndElement;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.StartDocument;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * <code>XMLEventReader</code> driven directly by the cursor API of an
+ * <code>XMLStreamReader</code>. Behaves the same as the event reader of the
+ * StAX implementation with respect to <tt>peek()</tt>, <tt>nextEvent()</tt>,
+ * <tt>nextTag()</tt> and <tt>getElementText()</tt> but differs in how events
+ * are created:
+ * <ul>
+ * <li> Element, character and start document events are lightweight objects
+ * holding only the data copied from the reader. Attribute and namespace
+ * objects are created only when asked for.
+ * <li> <tt>getElementText()</tt> and <tt>nextTag()</tt> read from the cursor
+ * without creating events for the text or whitespace in between, as does
+ * {@link #skipElement(QName)} for the content of skipped elements.
+ * <li> Events do not track their location in the document. The location of
+ * parse errors is reported by the exceptions of the underlying reader.
+ * <li> The namespace context of a start element only resolves the namespaces
+ * declared on that element.
+ * </ul>
+ * This class is not thread-safe.
+ */
+final class CursorEventReader implements XMLEventReader, XMLStreamConstants {
+
+	private static final Location UNKNOWN_LOCATION = new Location() {
+		public int getLineNumber() { return -1; }
+		public int getColumnNumber() { return -1; }
+		public int getCharacterOffset() { return -1; }
+		public String getPublicId() { return null; }
+		public String getSystemId() { return null; }
+	};
+
+	private static final String[] EMPTY = new String[0];
+
+	private final XMLStreamReader reader;
+	private final boolean namespaceAware;
+	private XMLEventFactory eventFactory; // created on demand for rare event types
+	private XMLEvent peeked;
+	private int lastType = -1;
+
+	/**
+	 * Create event reader for stream reader positioned at the start
+	 * of the document.
+	 *
+	 * @param reader the cursor, never <code>null</code>
+	 * @throws XMLStreamException if there is an error with the underlying XML
+	 */
+	CursorEventReader(XMLStreamReader reader) throws XMLStreamException {
+		this.reader = reader;
+		Object nsAware = null;
+		try {
+			nsAware = reader.getProperty(XMLInputFactory.IS_NAMESPACE_AWARE);
+		} catch (IllegalArgumentException e) {
+			// property not supported
+		}
+		namespaceAware = !Boolean.FALSE.equals(nsAware);
+		// first event is the current state of the reader (i.e. START_DOCUMENT)
+		peeked = createEvent();
+	}
+
+	public XMLEvent nextEvent() throws XMLStreamException {
+		XMLEvent event = peeked;
+		if (event != null) {
+			peeked = null;
+		} else if (reader.hasNext()) {
+			reader.next();
+			event = createEvent();
+		} else {
+			lastType = -1;
+			throw new NoSuchElementException();
+		}
+		lastType = event.getEventType();
+		return event;
+	}
+
+	public boolean hasNext() {
+		if (peeked != null) return true;
+		try {
+			return reader.hasNext();
+		} catch (XMLStreamException e) {
+			return false;
+		}
+	}
+
+	public XMLEvent peek() throws XMLStreamException {
+		if (peeked == null && reader.hasNext()) {
+			reader.next();
+			peeked = createEvent();
+		}
+		return peeked;
+	}
+
+	public String getElementText() throws XMLStreamException {
+		if (lastType != START_ELEMENT) {
+			throw new XMLStreamException("parser must be on START_ELEMENT to read next text");
+		}
+		if (peeked == null) {
+			// fast path: text is read from the cursor without creating any events
+			String text = reader.getElementText();
+			lastType = END_ELEMENT;
+			return text;
+		}
+		StringBuilder buf = new StringBuilder();
+		XMLEvent event = peeked;
+		peeked = null;
+		while (true) {
+			switch (event.getEventType()) {
+				case CHARACTERS:
+				case SPACE:
+				case CDATA:
+					buf.append(event.asCharacters().getData());
+					break;
+				case COMMENT:
+				case PROCESSING_INSTRUCTION:
+					break;
+				case END_ELEMENT:
+					lastType = END_ELEMENT;
+					return buf.toString();
+				case END_DOCUMENT:
+					throw new XMLStreamException("unexpected end of document when reading element text content");
+				case START_ELEMENT:
+					throw new XMLStreamException("elementGetText() function expects text only elment but START_ELEMENT was encountered.");
+				default:
+					throw new XMLStreamException("Unexpected event type " + event.getEventType());
+			}
+			event = nextEvent();
+		}
+	}
+
+	public XMLEvent nextTag() throws XMLStreamException {
+		if (peeked == null) {
+			reader.nextTag();
+			XMLEvent event = createEvent();
+			lastType = event.getEventType();
+			return event;
+		}
+		XMLEvent event = nextEvent();
+		int type = event.getEventType();
+		while (event.isCharacters() && event.asCharacters().isWhiteSpace()
+				|| type == PROCESSING_INSTRUCTION || type == COMMENT || type == START_DOCUMENT) {
+			event = nextEvent();
+			type = event.getEventType();
+		}
+		if (type != START_ELEMENT && type != END_ELEMENT) {
+			throw new XMLStreamException("expected start or end tag");
+		}
+		return event;
+	}
+
+	/**
+	 * Advance past the next end element with the given name without creating
+	 * events for the content in between. This is the same as calling
+	 * <tt>nextEvent()</tt> until the matching end element is returned.
+	 *
+	 * @param name the qualified name of the end element, never <code>null</code>
+	 * @throws XMLStreamException if there is an error with the underlying XML
+	 * @throws NoSuchElementException if the end of the document is reached
+	 */
+	void skipElement(QName name) throws XMLStreamException {
+		if (peeked != null) {
+			XMLEvent event = nextEvent();
+			if (event.isEndElement() && event.asEndElement().getName().equals(name)) {
+				return;
+			}
+		}
+		final String localPart = name.getLocalPart();
+		final String nsURI = name.getNamespaceURI();
+		while (reader.hasNext()) {
+			int type = reader.next();
+			lastType = type;
+			if (type == END_ELEMENT && localPart.equals(reader.getLocalName())
+					&& nsURI.equals(nonNull(reader.getNamespaceURI()))) {
+				return;
+			}
+		}
+		lastType = -1;
+		throw new NoSuchElementException();
+	}
+
+	public Object getProperty(String name) throws IllegalArgumentException {
+		return reader.getProperty(name);
+	}
+
+	public void close() throws XMLStreamException {
+		reader.close();
+	}
+
+	public Object next() {
+		try {
+			return nextEvent();
+		} catch (XMLStreamException e) {
+			NoSuchElementException nse = new NoSuchElementException(e.getMessage());
+			nse.initCause(e);
+			throw nse;
+		}
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Create event for current state of the reader.
+	 */
+	private XMLEvent createEvent() throws XMLStreamException {
+		final int type = reader.getEventType();
+		switch (type) {
+			case START_ELEMENT:
+				return new StartElementEvent(reader, namespaceAware);
+			case END_ELEMENT:
+				return new EndElementEvent(reader, namespaceAware);
+			case CHARACTERS:
+			case SPACE:
+			case CDATA:
+				return new CharactersEvent(type, reader.getText());
+			case START_DOCUMENT:
+				return new StartDocumentEvent(reader);
+			default:
+				return createOtherEvent(type);
+		}
+	}
+
+	/**
+	 * Create events rarely seen in KML documents using standard event factory
+	 */
+	private XMLEvent createOtherEvent(int type) throws XMLStreamException {
+		if (eventFactory == null) eventFactory = XMLEventFactory.newInstance();
+		eventFactory.setLocation(reader.getLocation());
+		switch (type) {
+			case END_DOCUMENT:
+				return eventFactory.createEndDocument();
+			case COMMENT:
+				return eventFactory.createComment(reader.getText());
+			case PROCESSING_INSTRUCTION:
+				return eventFactory.createProcessingInstruction(reader.getPITarget(), reader.getPIData());
+			case DTD:
+				return eventFactory.createDTD(reader.getText());
+			case ENTITY_REFERENCE:
+				// unresolved entity reference is reported as its replacement text
+				return eventFactory.createCharacters(reader.getText());
+			default:
+				throw new XMLStreamException("Unexpected event type " + type);
+		}
+	}
+
+	private static String nonNull(String s) {
+		return s == null ? "" : s;
+	}
+
+	private static void writeEscaped(Writer writer, String s, boolean attribute) throws IOException {
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+				case '<': writer.write("&lt;"); break;
+				case '>': writer.write("&gt;"); break;
+				case '&': writer.write("&amp;"); break;
+				case '"':
+					if (attribute) writer.write("&quot;");
+					else writer.write(c);
+					break;
+				default: writer.write(c);
+			}
+		}
+	}
+
+	private static void writeName(Writer writer, QName name) throws IOException {
+		String prefix = name.getPrefix();
+		if (prefix != null && prefix.length() != 0) {
+			writer.write(prefix);
+			writer.write(':');
+		}
+		writer.write(name.getLocalPart());
+	}
+
+	private abstract static class BaseEvent implements XMLEvent {
+
+		public Location getLocation() {
+			return UNKNOWN_LOCATION;
+		}
+
+		public boolean isStartElement() {
+			return getEventType() == START_ELEMENT;
+		}
+
+		public boolean isAttribute() {
+			return false;
+		}
+
+		public boolean isNamespace() {
+			return false;
+		}
+
+		public boolean isEndElement() {
+			return getEventType() == END_ELEMENT;
+		}
+
+		public boolean isEntityReference() {
+			return false;
+		}
+
+		public boolean isProcessingInstruction() {
+			return false;
+		}
+
+		public boolean isCharacters() {
+			return false;
+		}
+
+		public boolean isStartDocument() {
+			return getEventType() == START_DOCUMENT;
+		}
+
+		public boolean isEndDocument() {
+			return false;
+		}
+
+		public StartElement asStartElement() {
+			return (StartElement) this;
+		}
+
+		public EndElement asEndElement() {
+			return (EndElement) this;
+		}
+
+		public Characters asCharacters() {
+			return (Characters) this;
+		}
+
+		public QName getSchemaType() {
+			return null;
+		}
+
+		public void writeAsEncodedUnicode(Writer writer) throws XMLStreamException {
+			try {
+				write(writer);
+			} catch (IOException e) {
+				throw new XMLStreamException(e);
+			}
+		}
+
+		abstract void write(Writer writer) throws IOException;
+
+		@Override
+		public String toString() {
+			java.io.StringWriter sw = new java.io.StringWriter();
+			try {
+				write(sw);
+			} catch (IOException e) {
+				// StringWriter does not throw
+			}
+			return sw.toString();
+		}
+	}
+
+	/**
+	 * Namespace declarations of a start or end element copied from the reader
+	 */
+	private abstract static class ElementEvent extends BaseEvent {
+
+		final QName name;
+		final String[] nsPrefixes;
+		final String[] nsURIs;
+
+		ElementEvent(XMLStreamReader reader, boolean namespaceAware) {
+			name = reader.getName();
+			int count = namespaceAware ? reader.getNamespaceCount() : 0;
+			if (count == 0) {
+				nsPrefixes = nsURIs = EMPTY;
+			} else {
+				nsPrefixes = new String[count];
+				nsURIs = new String[count];
+				for (int i = 0; i < count; i++) {
+					nsPrefixes[i] = nonNull(reader.getNamespacePrefix(i));
+					nsURIs[i] = nonNull(reader.getNamespaceURI(i));
+				}
+			}
+		}
+
+		public QName getName() {
+			return name;
+		}
+
+		public Iterator<Namespace> getNamespaces() {
+			if (nsPrefixes.length == 0) return Collections.<Namespace>emptyList().iterator();
+			List<Namespace> list = new ArrayList<Namespace>(nsPrefixes.length);
+			for (int i = 0; i < nsPrefixes.length; i++) {
+				list.add(new NamespaceEvent(nsPrefixes[i], nsURIs[i]));
+			}
+			return list.iterator();
+		}
+	}
+
+	private static final class StartElementEvent extends ElementEvent implements StartElement, NamespaceContext {
+
+		private final String[] attrURIs;
+		private final String[] attrNames;
+		private final String[] attrPrefixes;
+		private final String[] attrValues;
+		private final String[] attrTypes;
+
+		StartElementEvent(XMLStreamReader reader, boolean namespaceAware) {
+			super(reader, namespaceAware);
+			int count = reader.getAttributeCount();
+			if (count == 0) {
+				attrURIs = attrNames = attrPrefixes = attrValues = attrTypes = EMPTY;
+			} else {
+				attrURIs = new String[count];
+				attrNames = new String[count];
+				attrPrefixes = new String[count];
+				attrValues = new String[count];
+				attrTypes = new String[count];
+				for (int i = 0; i < count; i++) {
+					attrURIs[i] = nonNull(reader.getAttributeNamespace(i));
+					attrNames[i] = reader.getAttributeLocalName(i);
+					attrPrefixes[i] = nonNull(reader.getAttributePrefix(i));
+					attrValues[i] = reader.getAttributeValue(i);
+					attrTypes[i] = reader.getAttributeType(i);
+				}
+			}
+		}
+
+		public int getEventType() {
+			return START_ELEMENT;
+		}
+
+		private Attribute getAttribute(int i) {
+			return new AttributeEvent(new QName(attrURIs[i], attrNames[i], attrPrefixes[i]),
+					attrValues[i], attrTypes[i]);
+		}
+
+		public Iterator<Attribute> getAttributes() {
+			if (attrNames.length == 0) return Collections.<Attribute>emptyList().iterator();
+			List<Attribute> list = new ArrayList<Attribute>(attrNames.length);
+			for (int i = 0; i < attrNames.length; i++) {
+				list.add(getAttribute(i));
+			}
+			return list.iterator();
+		}
+
+		public Attribute getAttributeByName(QName qname) {
+			for (int i = 0; i < attrNames.length; i++) {
+				if (attrNames[i].equals(qname.getLocalPart())
+						&& attrURIs[i].equals(qname.getNamespaceURI())) {
+					return getAttribute(i);
+				}
+			}
+			return null;
+		}
+
+		public NamespaceContext getNamespaceContext() {
+			return this;
+		}
+
+		public String getNamespaceURI(String prefix) {
+			if (prefix == null) throw new IllegalArgumentException("prefix cannot be null");
+			for (int i = 0; i < nsPrefixes.length; i++) {
+				if (nsPrefixes[i].equals(prefix)) return nsURIs[i];
+			}
+			if (prefix.equals(name.getPrefix())) return name.getNamespaceURI();
+			if (XMLConstants.XML_NS_PREFIX.equals(prefix)) return XMLConstants.XML_NS_URI;
+			if (XMLConstants.XMLNS_ATTRIBUTE.equals(prefix)) return XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+			return null;
+		}
+
+		public String getPrefix(String namespaceURI) {
+			if (namespaceURI == null) throw new IllegalArgumentException("namespaceURI cannot be null");
+			for (int i = 0; i < nsURIs.length; i++) {
+				if (nsURIs[i].equals(namespaceURI)) return nsPrefixes[i];
+			}
+			return null;
+		}
+
+		public Iterator<String> getPrefixes(String namespaceURI) {
+			if (namespaceURI == null) throw new IllegalArgumentException("namespaceURI cannot be null");
+			List<String> list = new ArrayList<String>(1);
+			for (int i = 0; i < nsURIs.length; i++) {
+				if (nsURIs[i].equals(namespaceURI)) list.add(nsPrefixes[i]);
+			}
+			return list.iterator();
+		}
+
+		void write(Writer writer) throws IOException {
+			writer.write('<');
+			writeName(writer, name);
+			for (int i = 0; i < nsPrefixes.length; i++) {
+				writer.write(' ');
+				writer.write(nsPrefixes[i].length() == 0 ? "xmlns" : "xmlns:" + nsPrefixes[i]);
+				writer.write("=\"");
+				writeEscaped(writer, nsURIs[i], true);
+				writer.write('"');
+			}
+			for (int i = 0; i < attrNames.length; i++) {
+				writer.write(' ');
+				if (attrPrefixes[i].length() != 0) {
+					writer.write(attrPrefixes[i]);
+					writer.write(':');
+				}
+				writer.write(attrNames[i]);
+				writer.write("=\"");
+				writeEscaped(writer, attrValues[i], true);
+				writer.write('"');
+			}
+			writer.write('>');
+		}
+	}
+
+	private static final class EndElementEvent extends ElementEvent implements EndElement {
+
+		EndElementEvent(XMLStreamReader reader, boolean namespaceAware) {
+			super(reader, namespaceAware);
+		}
+
+		public int getEventType() {
+			return END_ELEMENT;
+		}
+
+		void write(Writer writer) throws IOException {
+			writer.write("</");
+			writeName(writer, name);
+			writer.write('>');
+		}
+	}
+
+	private static final class CharactersEvent extends BaseEvent implements Characters {
+
+		private final int type;
+		private final String data;
+
+		CharactersEvent(int type, String data) {
+			this.type = type;
+			this.data = data;
+		}
+
+		public int getEventType() {
+			return type;
+		}
+
+		@Override
+		public boolean isCharacters() {
+			return true;
+		}
+
+		public String getData() {
+			return data;
+		}
+
+		public boolean isWhiteSpace() {
+			for (int i = 0; i < data.length(); i++) {
+				char c = data.charAt(i);
+				if (c != ' ' && c != '\t' && c != '\n' && c != '\r') return false;
+			}
+			return true;
+		}
+
+		public boolean isCData() {
+			return type == CDATA;
+		}
+
+		public boolean isIgnorableWhiteSpace() {
+			return type == SPACE;
+		}
+
+		void write(Writer writer) throws IOException {
+			if (type == CDATA) {
+				writer.write("<![CDATA[");
+				writer.write(data);
+				writer.write("]]>");
+			} else {
+				writeEscaped(writer, data, false);
+			}
+		}
+	}
+
+	private static final class StartDocumentEvent extends BaseEvent implements StartDocument {
+
+		private final String systemId;
+		private final String encoding;
+		private final boolean encodingSet;
+		private final boolean standalone;
+		private final boolean standaloneSet;
+		private final String version;
+
+		StartDocumentEvent(XMLStreamReader reader) {
+			Location loc = reader.getLocation();
+			systemId = loc == null ? null : loc.getSystemId();
+			String enc = reader.getEncoding();
+			encoding = enc == null ? "UTF-8" : enc;
+			encodingSet = reader.getCharacterEncodingScheme() != null;
+			standalone = reader.isStandalone();
+			standaloneSet = reader.standaloneSet();
+			String ver = reader.getVersion();
+			version = ver == null ? "1.0" : ver;
+		}
+
+		public int getEventType() {
+			return START_DOCUMENT;
+		}
+
+		public String getSystemId() {
+			return systemId == null ? "" : systemId;
+		}
+
+		public String getCharacterEncodingScheme() {
+			return encoding;
+		}
+
+		public boolean encodingSet() {
+			return encodingSet;
+		}
+
+		public boolean isStandalone() {
+			return standalone;
+		}
+
+		public boolean standaloneSet() {
+			return standaloneSet;
+		}
+
+		public String getVersion() {
+			return version;
+		}
+
+		void write(Writer writer) throws IOException {
+			writer.write("<?xml version=\"");
+			writer.write(version);
+			writer.write('"');
+			if (encodingSet) {
+				writer.write(" encoding=\"");
+				writer.write(encoding);
+				writer.write('"');
+			}
+			if (standaloneSet) {
+				writer.write(standalone ? " standalone=\"yes\"" : " standalone=\"no\"");
+			}
+			writer.write("?>");
+		}
+	}
+
+	private static class AttributeEvent extends BaseEvent implements Attribute {
+
+		private final QName name;
+		private final String value;
+		private final String type;
+
+		AttributeEvent(QName name, String value, String type) {
+			this.name = name;
+			this.value = value;
+			this.type = type;
+		}
+
+		public int getEventType() {
+			return ATTRIBUTE;
+		}
+
+		@Override
+		public boolean isAttribute() {
+			return true;
+		}
+
+		public QName getName() {
+			return name;
+		}
+
+		public String getValue() {
+			return value;
+		}
+
+		public String getDTDType() {
+			return type == null ? "CDATA" : type;
+		}
+
+		public boolean isSpecified() {
+			return true;
+		}
+
+		void write(Writer writer) throws IOException {
+			writeName(writer, name);
+			writer.write("=\"");
+			writeEscaped(writer, value, true);
+			writer.write('"');
+		}
+	}
+
+	private static final class NamespaceEvent extends AttributeEvent implements Namespace {
+
+		private final String prefix;
+
+		NamespaceEvent(String prefix, String namespaceURI) {
+			super(prefix.length() == 0
+					? new QName(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, XMLConstants.XMLNS_ATTRIBUTE)
+					: new QName(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, prefix, XMLConstants.XMLNS_ATTRIBUTE),
+					namespaceURI, "CDATA");
+			this.prefix = prefix;
+		}
+
+		@Override
+		public int getEventType() {
+			return NAMESPACE;
+		}
+
+		@Override
+		public boolean isNamespace() {
+			return true;
+		}
+
+		public String getPrefix() {
+			return prefix;
+		}
+
+		public String getNamespaceURI() {
+			return getValue();
+		}
+
+		public boolean isDefaultNamespaceDeclaration() {
+			return prefix.length() == 0;
+		}
+	}
+
+}
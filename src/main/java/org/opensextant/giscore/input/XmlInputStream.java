@@ -61,6 +61,9 @@ public abstract class XmlInputStream extends GISInputStreamBase {
 	protected InputStream is;
 	protected XMLEventReader stream;
 
+	@NonNull
+	private final XmlParserEngine engine;
+
     @NonNull
 	private String encoding = "UTF-8";
 
@@ -71,13 +74,29 @@ public abstract class XmlInputStream extends GISInputStreamBase {
 	 * @throws IOException if an I/O error occurs
 	 */
 	public XmlInputStream(InputStream inputStream) throws IOException {
+		this(inputStream, XmlParserEngine.EVENT);
+	}
+
+	/**
+	 * Ctor
+	 *
+	 * @param inputStream
+	 * @param engine the StAX parsing engine, if null then the
+	 * 			default {@link XmlParserEngine#EVENT} engine is used
+	 * @throws IOException if an I/O error occurs
+	 */
+	public XmlInputStream(InputStream inputStream, XmlParserEngine engine) throws IOException {
 		if (inputStream == null) {
 			throw new IllegalArgumentException(
 					"inputStream should never be null");
 		}
 		is = inputStream;
+		this.engine = engine == null ? XmlParserEngine.EVENT : engine;
 		try {
-			this.stream = ms_fact.createXMLEventReader(is);
+			if (this.engine == XmlParserEngine.CURSOR)
+				this.stream = new CursorEventReader(ms_fact.createXMLStreamReader(is));
+			else
+				this.stream = ms_fact.createXMLEventReader(is);
 		} catch (XMLStreamException e) {
 			throw new IOException(e);
 		}
@@ -116,6 +135,15 @@ public abstract class XmlInputStream extends GISInputStreamBase {
 		}
 	}
 
+    /**
+     * Returns the StAX parsing engine used to read the XML data.
+     * @return the parsing engine, never null
+     */
+    @NonNull
+    public XmlParserEngine getParserEngine() {
+        return engine;
+    }
+
    /**
     * Returns the encoding style of the XML data.
     * @return the character encoding, defaults to "UTF-8". Never null.
@@ -394,6 +422,11 @@ public abstract class XmlInputStream extends GISInputStreamBase {
 	 */
 	protected void skipNextElement(XMLEventReader element, QName name)
 			throws XMLStreamException {
+		if (element instanceof CursorEventReader) {
+			// skip content without creating events
+			((CursorEventReader) element).skipElement(name);
+			return;
+		}
 		while (true) {
 			XMLEvent next = element.nextEvent();
 			if (next == null || foundEndTag(next, name)) {
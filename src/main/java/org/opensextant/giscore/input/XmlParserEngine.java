@@ -0,0 +1,37 @@
+/****************************************************************************************
+ *  XmlParserEngine.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.input;
+
+/**
+ * StAX parsing engine used by {@link XmlInputStream} based input streams.
+ * Both engines produce the same stream of <code>IGISObject</code>s.
+ */
+public enum XmlParserEngine {
+
+	/**
+	 * Iterator API: events are created by the <code>XMLEventReader</code>
+	 * of the StAX implementation. This is the default.
+	 */
+	EVENT,
+
+	/**
+	 * Cursor API: the <code>XMLStreamReader</code> is read directly and
+	 * lightweight events are created only where the parser needs them.
+	 * Element text and skipped elements are read without creating any
+	 * events so this engine creates far less garbage on large documents.
+	 */
+	CURSOR
+
+}
@@ -34,8 +34,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamException;
@@ -62,8 +60,8 @@ import org.opensextant.giscore.geometry.Line;
 import org.opensextant.giscore.geometry.LinearRing;
 import org.opensextant.giscore.geometry.Point;
 import org.opensextant.giscore.input.XmlInputStream;
-import org.opensextant.giscore.input.kml.IKml;
 import org.opensextant.giscore.output.atom.IAtomConstants;
+import org.opensextant.giscore.utils.IsoDateParser;
 import org.opensextant.geodesy.SafeDateFormat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -72,14 +70,8 @@ public class GeoAtomInputStream extends XmlInputStream {
 
 	private static final Logger logger = LoggerFactory.getLogger(GeoAtomInputStream.class);
 	
-	private static final SafeDateFormat fmt = new SafeDateFormat(IKml.ISO_DATE_FMT);
-	private static final SafeDateFormat inputFormats[] = {
-		fmt,
-		new SafeDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'"),
-		new SafeDateFormat("yyyy-MM-dd'T'HH:mm:ssZ"),
-		new SafeDateFormat("yyyy-MM-dd'T'HH:mm:ssz"),
-	};
-	private static final Pattern problemTZ = Pattern.compile("([-+]\\p{Digit}{2}):(\\p{Digit}{2})$");
+	// only for time zone names (e.g. 2012-05-29T17:00:00EST), IsoDateParser handles the rest
+	private static final SafeDateFormat namedZoneFormat = new SafeDateFormat("yyyy-MM-dd'T'HH:mm:ssz");
 	
 	private final Map<String, String> namespaceMap = new HashMap<String, String>();
 	private String defaultNamespace;
@@ -264,17 +256,14 @@ public class GeoAtomInputStream extends XmlInputStream {
 	 * @throws IOException
 	 */
 	private Date parseDate(String elementText) throws IOException {
-		Matcher m = problemTZ.matcher(elementText);
-		if (m.find()) {
-			elementText = elementText.substring(0,elementText.length()-6);
-			elementText += m.group(1) + m.group(2);
+		Date date = IsoDateParser.parse(elementText);
+		if (date != null) {
+			return date;
 		}
-		for(SafeDateFormat format : inputFormats) {
-			try {
-				return format.parse(elementText);
-			} catch (ParseException e) {
-				//
-			}
+		try {
+			return namedZoneFormat.parse(elementText);
+		} catch (ParseException e) {
+			//
 		}
 		throw new IOException("Could not parse date and time from " + elementText);
 	}
@@ -471,7 +460,11 @@ public class GeoAtomInputStream extends XmlInputStream {
 		case BOOL:
 			return Boolean.valueOf(val);
 		case DATE:
-			return fmt.parse(val);
+			Date date = IsoDateParser.parse(val);
+			if (date == null) {
+				throw new ParseException("Unparseable date: \"" + val + '"', 0);
+			}
+			return date;
 		default:
 			return val;
 		}
@@ -0,0 +1,354 @@
+/****************************************************************************************
+ *  BinaryInputStream.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.input.bin;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.opensextant.giscore.events.IGISObject;
+import org.opensextant.giscore.events.Schema;
+import org.opensextant.giscore.input.GISInputStreamBase;
+import org.opensextant.giscore.output.bin.BinaryOutputStream;
+import org.opensextant.giscore.utils.SimpleObjectInputStream;
+
+/**
+ * Reads the GIS objects written by a {@link BinaryOutputStream}, see there
+ * for the layout. The objects are returned exactly as they were written.
+ * <p>
+ * A file is read through a memory mapping and its index of containers and
+ * schemata is loaded when the stream is opened, so
+ * {@link #enumerateSchemata()} and {@link #getContainers()} are available
+ * before any object is read and {@link #seek(ContainerEntry)} can move to any
+ * container. A plain input stream only has the index once all of the objects
+ * have been read.
+ */
+public class BinaryInputStream extends GISInputStreamBase {
+
+	/**
+	 * A container in the index of a binary file
+	 */
+	public static final class ContainerEntry {
+		private final long offset;
+		private final long segment;
+		private final int depth;
+		private final String type;
+		private final String name;
+
+		ContainerEntry(long offset, long segment, int depth, String type, String name) {
+			this.offset = offset;
+			this.segment = segment;
+			this.depth = depth;
+			this.type = type;
+			this.name = name;
+		}
+
+		/**
+		 * @return the offset of the container start in the file
+		 */
+		public long getOffset() {
+			return offset;
+		}
+
+		/**
+		 * @return the count of enclosing containers, zero at the top level
+		 */
+		public int getDepth() {
+			return depth;
+		}
+
+		/**
+		 * @return the container type such as Folder or Document
+		 */
+		public String getType() {
+			return type;
+		}
+
+		/**
+		 * @return the name of the container, may be <code>null</code>
+		 */
+		@CheckForNull
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public String toString() {
+			return "[" + type + " " + name + " at " + offset + "]";
+		}
+	}
+
+	private final DataInputStream in;
+
+	/**
+	 * The mapped file, <code>null</code> when reading a plain stream
+	 */
+	private final MappedInputStream mapped;
+
+	private SimpleObjectInputStream objects;
+
+	private List<ContainerEntry> containers;
+
+	private List<Schema> schemata;
+
+	private boolean ended;
+
+	/**
+	 * Compatible ctor
+	 *
+	 * @param stream the stream to read, never <code>null</code>
+	 * @param arguments ignored
+	 * @throws IOException if an I/O error occurs or the stream is not in the binary format
+	 * @throws IllegalArgumentException if stream is null
+	 */
+	public BinaryInputStream(InputStream stream, Object[] arguments) throws IOException {
+		this(stream);
+	}
+
+	/**
+	 * Ctor
+	 *
+	 * @param stream the stream to read, never <code>null</code>
+	 * @throws IOException if an I/O error occurs or the stream is not in the binary format
+	 * @throws IllegalArgumentException if stream is null
+	 */
+	public BinaryInputStream(InputStream stream) throws IOException {
+		if (stream == null) {
+			throw new IllegalArgumentException("stream should never be null");
+		}
+		mapped = null;
+		in = new DataInputStream(new BufferedInputStream(stream, 64 * 1024));
+		try {
+			readHeader();
+		} catch (IOException e) {
+			IOUtils.closeQuietly(in);
+			throw e;
+		}
+	}
+
+	/**
+	 * Compatible ctor
+	 *
+	 * @param file the file to read, never <code>null</code>
+	 * @param arguments ignored
+	 * @throws IOException if an I/O error occurs or the file is not in the binary format
+	 * @throws IllegalArgumentException if file is null
+	 */
+	public BinaryInputStream(File file, Object[] arguments) throws IOException {
+		this(file);
+	}
+
+	/**
+	 * Ctor
+	 *
+	 * @param file the file to read, never <code>null</code>
+	 * @throws IOException if an I/O error occurs or the file is not in the binary format
+	 * @throws IllegalArgumentException if file is null
+	 */
+	public BinaryInputStream(File file) throws IOException {
+		if (file == null) {
+			throw new IllegalArgumentException("file should never be null");
+		}
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			mapped = new MappedInputStream(raf.getChannel());
+		} catch (IOException e) {
+			raf.close();
+			throw e;
+		}
+		in = new DataInputStream(mapped);
+		try {
+			long size = mapped.size();
+			if (size < BinaryOutputStream.HEADER_LENGTH + 4 + BinaryOutputStream.TRAILER_LENGTH) {
+				throw new StreamCorruptedException("File is too short: " + file);
+			}
+			mapped.seek(size - BinaryOutputStream.TRAILER_LENGTH);
+			long indexOffset = in.readLong();
+			if (in.readInt() != BinaryOutputStream.MAGIC || indexOffset < BinaryOutputStream.HEADER_LENGTH
+					|| indexOffset > size - BinaryOutputStream.TRAILER_LENGTH) {
+				throw new StreamCorruptedException("Missing index, the file may be truncated: " + file);
+			}
+			mapped.seek(indexOffset);
+			readIndex();
+			mapped.seek(0);
+			readHeader();
+		} catch (IOException e) {
+			IOUtils.closeQuietly(in);
+			throw e;
+		}
+	}
+
+	/**
+	 * Read the next object
+	 *
+	 * @return the next object or <code>null</code> at the end of the objects
+	 * @throws IOException if an I/O error occurs or the data is malformed
+	 */
+	@CheckForNull
+	public IGISObject read() throws IOException {
+		if (hasSaved()) {
+			return readSaved();
+		}
+		while (!ended) {
+			int length = in.readInt();
+			if (length == 0) {
+				startSegment();
+			} else if (length < 0) {
+				ended = true;
+				if (containers == null) {
+					readIndex();
+				}
+			} else {
+				Object obj;
+				try {
+					obj = objects.readObject();
+				} catch (ClassNotFoundException e) {
+					throw new IOException(e);
+				} catch (InstantiationException e) {
+					throw new IOException(e);
+				} catch (IllegalAccessException e) {
+					throw new IOException(e);
+				}
+				if (obj == null) {
+					throw new EOFException("Truncated record");
+				}
+				if (!(obj instanceof IGISObject)) {
+					throw new StreamCorruptedException("Unexpected record " + obj);
+				}
+				return (IGISObject) obj;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Move to the start of a container so the next object read is its
+	 * ContainerStart. Only supported when reading a file.
+	 *
+	 * @param entry an entry from {@link #getContainers()}, never <code>null</code>
+	 * @throws IOException if an I/O error occurs
+	 * @throws UnsupportedOperationException if reading a plain stream
+	 */
+	public void seek(ContainerEntry entry) throws IOException {
+		if (entry == null) {
+			throw new IllegalArgumentException("entry should never be null");
+		}
+		if (mapped == null) {
+			throw new UnsupportedOperationException("Seek requires a file");
+		}
+		mapped.seek(entry.segment);
+		startSegment();
+		ended = false;
+		// objects before the container in its segment carry shared state
+		while (mapped.position() < entry.offset) {
+			if (read() == null) {
+				throw new StreamCorruptedException("Container not found at " + entry.offset);
+			}
+		}
+	}
+
+	/**
+	 * @return the containers in the order they were written, never <code>null</code>
+	 * @throws UnsupportedOperationException if reading a plain stream that
+	 * has not been read to the end
+	 */
+	@NonNull
+	public List<ContainerEntry> getContainers() {
+		if (containers == null) {
+			throw new UnsupportedOperationException("The index is read at the end of the stream");
+		}
+		return Collections.unmodifiableList(containers);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @throws UnsupportedOperationException if reading a plain stream that
+	 * has not been read to the end
+	 */
+	@NonNull
+	public Iterator<Schema> enumerateSchemata() throws IOException {
+		if (schemata == null) {
+			throw new UnsupportedOperationException("The index is read at the end of the stream");
+		}
+		return Collections.unmodifiableList(schemata).iterator();
+	}
+
+	public void close() {
+		IOUtils.closeQuietly(in);
+	}
+
+	private void readHeader() throws IOException {
+		try {
+			if (in.readInt() != BinaryOutputStream.MAGIC) {
+				throw new StreamCorruptedException("Not a binary GIS stream");
+			}
+			int version = in.readInt();
+			if (version != BinaryOutputStream.VERSION) {
+				throw new StreamCorruptedException("Unsupported version " + version);
+			}
+		} catch (EOFException e) {
+			throw new StreamCorruptedException("Not a binary GIS stream");
+		}
+		startSegment();
+	}
+
+	/**
+	 * Start reading a segment with fresh class and field references
+	 */
+	private void startSegment() {
+		objects = new SimpleObjectInputStream(in);
+	}
+
+	private void readIndex() throws IOException {
+		SimpleObjectInputStream index = new SimpleObjectInputStream(in);
+		int count = index.readInt();
+		List<ContainerEntry> containers = new ArrayList<ContainerEntry>(count);
+		for (int i = 0; i < count; i++) {
+			long offset = index.readLong();
+			long segment = index.readLong();
+			int depth = index.readInt();
+			String type = index.readString();
+			String name = index.readString();
+			containers.add(new ContainerEntry(offset, segment, depth, type, name));
+		}
+		count = index.readInt();
+		List<Schema> schemata = new ArrayList<Schema>(count);
+		for (int i = 0; i < count; i++) {
+			index.readLong();
+			index.readLong();
+			try {
+				schemata.add((Schema) index.readObject());
+			} catch (Exception e) {
+				throw new StreamCorruptedException("Invalid schema in the index: " + e);
+			}
+		}
+		this.containers = containers;
+		this.schemata = schemata;
+	}
+}
@@ -0,0 +1,172 @@
+/****************************************************************************************
+ *  MappedInputStream.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.input.bin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Input stream over a read-only memory mapping of a file that can be
+ * positioned anywhere in the file. Files up to the window size are mapped
+ * once, larger files are mapped a window at a time as the position moves.
+ */
+final class MappedInputStream extends InputStream {
+
+	/**
+	 * Largest part of the file mapped at once
+	 */
+	static final long WINDOW_SIZE = 1L << 30;
+
+	private final FileChannel channel;
+
+	private final long size;
+
+	private final long windowSize;
+
+	private MappedByteBuffer window;
+
+	/**
+	 * Offset of the current window in the file
+	 */
+	private long windowStart;
+
+	/**
+	 * @param channel the open file channel, never <code>null</code>. The
+	 * channel is closed when the stream is closed.
+	 * @throws IOException if an I/O error occurs
+	 */
+	MappedInputStream(FileChannel channel) throws IOException {
+		this(channel, WINDOW_SIZE);
+	}
+
+	/**
+	 * @param channel the open file channel, never <code>null</code>
+	 * @param windowSize the size of each mapped window, at most
+	 * <code>Integer.MAX_VALUE</code>
+	 * @throws IOException if an I/O error occurs
+	 */
+	MappedInputStream(FileChannel channel, long windowSize) throws IOException {
+		if (channel == null) {
+			throw new IllegalArgumentException("channel should never be null");
+		}
+		if (windowSize < 1 || windowSize > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("windowSize out of range: " + windowSize);
+		}
+		this.channel = channel;
+		this.windowSize = windowSize;
+		size = channel.size();
+	}
+
+	/**
+	 * @return the size of the file
+	 */
+	long size() {
+		return size;
+	}
+
+	/**
+	 * @return the offset in the file of the next byte read
+	 */
+	long position() {
+		return window == null ? windowStart : windowStart + window.position();
+	}
+
+	/**
+	 * Move to an offset in the file
+	 *
+	 * @param position the offset of the next byte to read
+	 * @throws IOException if an I/O error occurs
+	 */
+	void seek(long position) throws IOException {
+		if (position < 0) {
+			throw new IllegalArgumentException("position should never be negative");
+		}
+		if (window != null && position >= windowStart && position <= windowStart + window.limit()) {
+			window.position((int) (position - windowStart));
+		} else {
+			map(position);
+		}
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!fill()) {
+			return -1;
+		}
+		return window.get() & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || off + len > b.length) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0) {
+			return 0;
+		}
+		if (!fill()) {
+			return -1;
+		}
+		int n = Math.min(len, window.remaining());
+		window.get(b, off, n);
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long position = position();
+		long skipped = Math.max(0, Math.min(n, size - position));
+		seek(position + skipped);
+		return skipped;
+	}
+
+	@Override
+	public int available() {
+		return window == null ? 0 : window.remaining();
+	}
+
+	@Override
+	public void close() throws IOException {
+		window = null;
+		channel.close();
+	}
+
+	/**
+	 * Map the next window if the current one has been read
+	 *
+	 * @return false at the end of the file
+	 */
+	private boolean fill() throws IOException {
+		if (window != null && window.hasRemaining()) {
+			return true;
+		}
+		long position = position();
+		if (position >= size) {
+			return false;
+		}
+		map(position);
+		return true;
+	}
+
+	private void map(long position) throws IOException {
+		windowStart = position;
+		window = position < size
+				? channel.map(MapMode.READ_ONLY, position, Math.min(windowSize, size - position))
+				: null;
+	}
+}
@@ -0,0 +1,328 @@
+/****************************************************************************************
+ *  DbfColumnBatch.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantibility and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.input.dbf;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.opensextant.giscore.events.SimpleField;
+import org.opensextant.giscore.events.SimpleField.Type;
+
+/**
+ * A batch of dbf rows read column by column by
+ * {@link DbfInputStream#readBatch(DbfColumnBatch)}. The raw records of the
+ * batch are read in bulk and only the numeric columns of the batch are
+ * decoded, directly from the record bytes into primitive arrays:
+ * <ul>
+ * <li>integer columns (<code>SHORT</code>, <code>INT</code> and
+ * <code>LONG</code>) into <code>long[]</code>, see {@link #getLongs(String)}.
+ * Values with a fraction are truncated.
+ * <li>numeric columns into <code>double[]</code>, see
+ * {@link #getDoubles(String)}.
+ * </ul>
+ * Blank values and numbers starting with '*' are null. The bytes of any
+ * column, including string, date and logical columns, are available
+ * without decoding through {@link #getBytes(String, int)}.
+ * <p>
+ * The arrays are reused by the next read so values must be consumed or
+ * copied before reading the next batch.
+ */
+public final class DbfColumnBatch {
+
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final int capacity;
+    private final int recordSize;
+    private final byte[] data;
+    private final SimpleField[] fields;
+    private final int[] offsets;
+    private final Map<String, Integer> columns = new HashMap<String, Integer>();
+    private final long[][] longs;
+    private final double[][] doubles;
+    private final boolean[][] nulls;
+    private int size;
+
+    DbfColumnBatch(int capacity, int recordSize, SimpleField[] fields, int[] offsets) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        if ((long) capacity * recordSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("capacity is too large");
+        }
+        this.capacity = capacity;
+        this.recordSize = recordSize;
+        this.fields = fields;
+        this.offsets = offsets;
+        data = new byte[capacity * recordSize];
+        longs = new long[fields.length][];
+        doubles = new double[fields.length][];
+        nulls = new boolean[fields.length][];
+        for (int i = 0; i < fields.length; i++) {
+            columns.put(fields[i].getName(), i);
+            if (isInteger(fields[i].getType())) {
+                longs[i] = new long[capacity];
+                nulls[i] = new boolean[capacity];
+            } else if (fields[i].getType() == Type.DOUBLE || fields[i].getType() == Type.FLOAT) {
+                doubles[i] = new double[capacity];
+                nulls[i] = new boolean[capacity];
+            }
+        }
+    }
+
+    private static boolean isInteger(Type type) {
+        return type == Type.SHORT || type == Type.INT || type == Type.LONG;
+    }
+
+    /**
+     * @return the count of rows in the batch
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the maximum count of rows in the batch
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the count of columns
+     */
+    public int getColumnCount() {
+        return fields.length;
+    }
+
+    /**
+     * @param column the column index
+     * @return the field of the column
+     */
+    public SimpleField getField(int column) {
+        return fields[column];
+    }
+
+    /**
+     * Get the values of an integer column. Only the first {@link #size()}
+     * values are valid, null values are zero.
+     *
+     * @param name the field name
+     * @return the values, never <code>null</code>
+     * @throws IllegalArgumentException if the field is not an integer column
+     *                                  of the batch
+     */
+    public long[] getLongs(String name) {
+        int column = getColumn(name);
+        if (longs[column] == null) {
+            throw new IllegalArgumentException("Field " + name + " is not an integer field");
+        }
+        return longs[column];
+    }
+
+    /**
+     * Get the values of a numeric column. Only the first {@link #size()}
+     * values are valid, null values are <code>NaN</code>. The values of an
+     * integer column are converted on each call.
+     *
+     * @param name the field name
+     * @return the values, never <code>null</code>
+     * @throws IllegalArgumentException if the field is not a numeric column
+     *                                  of the batch
+     */
+    public double[] getDoubles(String name) {
+        int column = getColumn(name);
+        if (doubles[column] != null) {
+            return doubles[column];
+        }
+        if (longs[column] == null) {
+            throw new IllegalArgumentException("Field " + name + " is not a numeric field");
+        }
+        double[] values = new double[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = nulls[column][i] ? Double.NaN : longs[column][i];
+        }
+        return values;
+    }
+
+    /**
+     * @param name the field name of a numeric column
+     * @param row the row index
+     * @return <code>true</code> if the value is null
+     * @throws IllegalArgumentException if the field is not a numeric column
+     *                                  of the batch
+     */
+    public boolean isNull(String name, int row) {
+        int column = getColumn(name);
+        if (nulls[column] == null) {
+            throw new IllegalArgumentException("Field " + name + " is not a numeric field");
+        }
+        checkRow(row);
+        return nulls[column][row];
+    }
+
+    /**
+     * Get the raw bytes of a value without decoding them.
+     *
+     * @param name the field name
+     * @param row the row index
+     * @return a read-only buffer of the field bytes of the row, which is
+     * overwritten by the next read
+     */
+    public ByteBuffer getBytes(String name, int row) {
+        int column = getColumn(name);
+        checkRow(row);
+        return ByteBuffer.wrap(data, row * recordSize + offsets[column],
+                fields[column].getLength()).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Decode a value as text.
+     *
+     * @param name the field name
+     * @param row the row index
+     * @return the trimmed value or <code>null</code> if blank
+     */
+    @CheckForNull
+    public String getString(String name, int row) {
+        int column = getColumn(name);
+        checkRow(row);
+        try {
+            String value = new String(data, row * recordSize + offsets[column],
+                    fields[column].getLength(), "US-ASCII").trim();
+            return value.isEmpty() ? null : value;
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int getColumn(String name) {
+        Integer column = columns.get(name);
+        if (column == null) {
+            throw new IllegalArgumentException("Field " + name + " is not in the batch");
+        }
+        return column;
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Invalid row " + row);
+        }
+    }
+
+    int getRecordSize() {
+        return recordSize;
+    }
+
+    byte[] getData() {
+        return data;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Decode the numeric columns of the records read into the data array.
+     * @param rows the count of records read
+     * @throws ParseException if a value cannot be parsed, the error offset
+     * is the row index
+     */
+    void decode(int rows) throws ParseException {
+        size = 0;
+        for (int c = 0; c < fields.length; c++) {
+            if (nulls[c] == null) continue;
+            int length = fields[c].getLength();
+            for (int row = 0; row < rows; row++) {
+                int start = row * recordSize + offsets[c];
+                int end = start + length;
+                while (start < end && data[start] == ' ') start++;
+                while (end > start && data[end - 1] == ' ') end--;
+                if (start == end || data[start] == '*') {
+                    nulls[c][row] = true;
+                    if (longs[c] != null) longs[c][row] = 0;
+                    else doubles[c][row] = Double.NaN;
+                    continue;
+                }
+                nulls[c][row] = false;
+                double value = parseDouble(start, end);
+                if (Double.isNaN(value)) {
+                    String str = null;
+                    try {
+                        str = new String(data, start, end - start, "US-ASCII");
+                        if (longs[c] != null) {
+                            try {
+                                longs[c][row] = Long.parseLong(str);
+                                continue;
+                            } catch (NumberFormatException e) {
+                                // try as double
+                            }
+                        }
+                        value = Double.parseDouble(str);
+                    } catch (NumberFormatException e) {
+                        ParseException e2 = new ParseException("Could not parse numeric value " + str, row);
+                        e2.initCause(e);
+                        throw e2;
+                    } catch (UnsupportedEncodingException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                if (longs[c] != null) longs[c][row] = (long) value;
+                else doubles[c][row] = value;
+            }
+        }
+        size = rows;
+    }
+
+    /**
+     * Parse a plain decimal number of at most 15 digits exactly, the division
+     * by an exact power of ten gives the correctly rounded result.
+     * @return the value or <code>NaN</code> if the number must be parsed
+     * by <code>Double.parseDouble</code>
+     */
+    private double parseDouble(int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (data[i] == '-' || data[i] == '+') {
+            negative = data[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fraction = -1;
+        for (; i < end; i++) {
+            byte b = data[i];
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                if (++digits > 15) return Double.NaN;
+                if (fraction >= 0) fraction++;
+            } else if (b == '.' && fraction < 0) {
+                fraction = 0;
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (digits == 0) return Double.NaN;
+        double value = fraction > 0 ? mantissa / POW10[fraction] : mantissa;
+        return negative ? -value : value;
+    }
+}
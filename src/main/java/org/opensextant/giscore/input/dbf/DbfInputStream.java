@@ -23,10 +23,14 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.TimeZone;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 
 import org.opensextant.giscore.events.IGISObject;
 import org.opensextant.giscore.events.Row;
@@ -36,6 +40,7 @@ import org.opensextant.giscore.events.SimpleField.Type;
 import org.opensextant.giscore.input.GISInputStreamBase;
 import org.opensextant.giscore.input.IGISInputStream;
 import org.opensextant.giscore.input.shapefile.BinaryInputStream;
+import org.opensextant.giscore.utils.IsoDateParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -81,12 +86,37 @@ public class DbfInputStream extends GISInputStreamBase implements
      */
     private int current = 0;
 
+    /**
+     * Channel of the dbf file for random access, <code>null</code> if the
+     * dbf is not read from a file
+     */
+    private FileChannel channel;
+
+    /**
+     * Position of the first record in the channel
+     */
+    private long dataStart;
+
     /**
      * Holds the current data record as read from the DBF
      */
     private byte[] dataBuffer;
 
-    private transient SimpleDateFormat dateFormatter;
+    /**
+     * The fields of the schema in record order
+     */
+    private SimpleField[] fields;
+
+    /**
+     * Offset of each field in the record
+     */
+    private int[] fieldOffsets;
+
+    /**
+     * Indices of the fields decoded by {@link #readRecord(Row)}, all fields
+     * unless a projection is set
+     */
+    private int[] projection;
 
     /**
      * @param file
@@ -135,6 +165,11 @@ public class DbfInputStream extends GISInputStreamBase implements
     @SuppressWarnings("fallthrough")
     private void init(InputStream is, Object[] arguments) throws IOException {
         stream = new BinaryInputStream(is);
+        // the stream is not buffered so the channel position follows the stream
+        if (is instanceof FileInputStream) {
+            channel = ((FileInputStream) is).getChannel();
+            dataStart = channel.position();
+        }
 
         byte[] headBuffer = new byte[20];
 
@@ -153,7 +188,9 @@ public class DbfInputStream extends GISInputStreamBase implements
         // Read record count, header length (used to compute the number of
         // fields), and record length
         count = stream.readInt(ByteOrder.LITTLE_ENDIAN);
-        int numFields = (stream.readShort(ByteOrder.LITTLE_ENDIAN) - 33) / 32;
+        short headerLength = stream.readShort(ByteOrder.LITTLE_ENDIAN);
+        int numFields = (headerLength - 33) / 32;
+        dataStart += headerLength & 0xffff;
         recordSize = stream.readShort(ByteOrder.LITTLE_ENDIAN);
 
         // Skip over bytes we don't care about
@@ -228,6 +265,126 @@ public class DbfInputStream extends GISInputStreamBase implements
                     "Expecting dbf end-of-header flag (hex '0d'),"
                             + " found hex '" + byteToHex(term) + "'");
         dataBuffer = new byte[recordSize];
+
+        int numKeys = schema.getKeys().size();
+        fields = new SimpleField[numKeys];
+        fieldOffsets = new int[numKeys];
+        projection = new int[numKeys];
+        int start = 1; // skip over record delete flag
+        int i = 0;
+        for (String fieldname : schema.getKeys()) {
+            fields[i] = schema.get(fieldname);
+            fieldOffsets[i] = start;
+            projection[i] = i;
+            start += fields[i].getLength();
+            i++;
+        }
+    }
+
+    /**
+     * Restrict the fields decoded for each row to the given fields. The bytes
+     * of the other fields are skipped without being decoded, so rows only
+     * hold data for the requested fields. The schema still describes all the
+     * fields of the file.
+     *
+     * @param fieldNames names of the fields to decode, or <code>null</code>
+     *                   to decode all fields
+     * @throws IllegalArgumentException if a field is not in the schema
+     */
+    public void setProjection(Collection<String> fieldNames) {
+        if (fieldNames == null) {
+            projection = new int[fields.length];
+            for (int i = 0; i < fields.length; i++) projection[i] = i;
+            return;
+        }
+        List<Integer> indices = new ArrayList<Integer>(fieldNames.size());
+        for (int i = 0; i < fields.length; i++) {
+            if (fieldNames.contains(fields[i].getName())) indices.add(i);
+        }
+        if (indices.size() != fieldNames.size()) {
+            for (String name : fieldNames) {
+                if (schema.get(name) == null)
+                    throw new IllegalArgumentException("Field " + name + " is not in the dbf schema");
+            }
+        }
+        projection = new int[indices.size()];
+        for (int i = 0; i < projection.length; i++) projection[i] = indices.get(i);
+    }
+
+    /**
+     * Create a batch for reading the given fields column by column with
+     * {@link #readBatch(DbfColumnBatch)}.
+     *
+     * @param capacity   the maximum count of rows in the batch, must be positive
+     * @param fieldNames the names of the fields, never <code>null</code>
+     * @return the batch, never <code>null</code>
+     * @throws IllegalArgumentException if a field is not in the schema
+     */
+    public DbfColumnBatch createBatch(int capacity, String... fieldNames) {
+        if (fieldNames == null) {
+            throw new IllegalArgumentException("fieldNames should never be null");
+        }
+        int[] indices = new int[fieldNames.length];
+        for (int i = 0; i < fieldNames.length; i++) {
+            indices[i] = -1;
+            for (int j = 0; j < fields.length; j++) {
+                if (fields[j].getName().equals(fieldNames[i])) {
+                    indices[i] = j;
+                    break;
+                }
+            }
+            if (indices[i] < 0)
+                throw new IllegalArgumentException("Field " + fieldNames[i] + " is not in the dbf schema");
+        }
+        SimpleField[] columns = new SimpleField[indices.length];
+        int[] offsets = new int[indices.length];
+        for (int i = 0; i < indices.length; i++) {
+            columns[i] = fields[indices[i]];
+            offsets[i] = fieldOffsets[indices[i]];
+        }
+        return new DbfColumnBatch(capacity, recordSize, columns, offsets);
+    }
+
+    /**
+     * Read the next rows into the batch, replacing its previous content.
+     * The raw records are read in bulk and only the columns of the batch
+     * are decoded. Rows and batches read from the same stream continue
+     * from each other.
+     *
+     * @param batch a batch created by {@link #createBatch(int, String...)}
+     *              of this stream, never <code>null</code>
+     * @return the count of rows read, zero at the end of the file
+     * @throws IOException if an I/O error occurs or a value cannot be parsed
+     */
+    public int readBatch(DbfColumnBatch batch) throws IOException {
+        if (batch == null) {
+            throw new IllegalArgumentException("batch should never be null");
+        }
+        if (batch.getRecordSize() != recordSize) {
+            throw new IllegalArgumentException("batch was not created for this dbf");
+        }
+        int rows = Math.min(batch.getCapacity(), count - current);
+        if (rows <= 0) {
+            batch.clear();
+            return 0;
+        }
+        byte[] data = batch.getData();
+        stream.readFully(data, 0, rows * recordSize);
+        for (int i = 0; i < rows; i++) {
+            byte flag = data[i * recordSize];
+            if (flag != ROK)
+                throw new IOException("Record " + (current + i)
+                        + " has deletion flag of hex " + byteToHex(flag));
+        }
+        try {
+            batch.decode(rows);
+        } catch (ParseException e) {
+            final IOException e2 = new IOException("Record " + (current + e.getErrorOffset()));
+            e2.initCause(e);
+            throw e2;
+        }
+        current += rows;
+        return rows;
     }
 
     /**
@@ -248,6 +405,94 @@ public class DbfInputStream extends GISInputStreamBase implements
                 logger.error("Problem closing stream", e);
             }
             stream = null;
+            channel = null;
+        }
+    }
+
+    /**
+     * @return the count of records declared in the dbf header
+     */
+    public int getRecordCount() {
+        return count;
+    }
+
+    /**
+     * @return <code>true</code> if records can be read by record number,
+     * which requires the dbf to be read from a file
+     */
+    public boolean isRandomAccess() {
+        return channel != null;
+    }
+
+    /**
+     * Position the stream so the next row read is the given record. Rows
+     * are fixed size so the record is found without reading the rows before.
+     *
+     * @param recordNumber zero-based record number, the record count
+     *                     positions the stream at the end
+     * @throws IllegalStateException     if the dbf is not random access
+     * @throws IndexOutOfBoundsException if the record number is not valid
+     * @throws IOException               if an I/O error occurs
+     */
+    public void seek(int recordNumber) throws IOException {
+        checkRandomAccess(recordNumber, count);
+        channel.position(dataStart + (long) recordNumber * recordSize);
+        current = recordNumber;
+    }
+
+    /**
+     * Skip over the next records without reading them into rows.
+     *
+     * @param n count of records to skip
+     * @return the count of records skipped, less than <code>n</code> only
+     *         if the end of the records is reached
+     * @throws IOException if an I/O error occurs
+     */
+    public int skipRecords(int n) throws IOException {
+        n = Math.min(n, count - current);
+        if (n <= 0)
+            return 0;
+        long remaining = (long) n * recordSize;
+        while (remaining > 0) {
+            int skipped = stream.skipBytes((int) Math.min(remaining, Integer.MAX_VALUE));
+            if (skipped <= 0)
+                throw new EOFException();
+            remaining -= skipped;
+        }
+        current += n;
+        return n;
+    }
+
+    /**
+     * Read the given record into the row data item without changing the
+     * position of the stream.
+     *
+     * @param recordNumber zero-based record number
+     * @param row          row to be populated, never <code>null</code>
+     * @throws IllegalStateException     if the dbf is not random access
+     * @throws IndexOutOfBoundsException if the record number is not valid
+     * @throws IOException               if an I/O error occurs
+     */
+    public void readRecord(int recordNumber, Row row) throws IOException {
+        if (row == null) {
+            throw new IllegalArgumentException("row should never be null");
+        }
+        checkRandomAccess(recordNumber, count - 1);
+        ByteBuffer buffer = ByteBuffer.allocate(recordSize);
+        long position = dataStart + (long) recordNumber * recordSize;
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+                throw new EOFException();
+        }
+        decodeRecord(buffer.array(), recordNumber, row);
+    }
+
+    private void checkRandomAccess(int recordNumber, int max) {
+        if (channel == null) {
+            throw new IllegalStateException("dbf is not read from a file");
+        }
+        if (recordNumber < 0 || recordNumber > max) {
+            throw new IndexOutOfBoundsException("Invalid record number " + recordNumber);
         }
     }
 
@@ -303,17 +548,22 @@ public class DbfInputStream extends GISInputStreamBase implements
                 throw new EOFException();
             nBytes += numRead;
         }
+        decodeRecord(dataBuffer, current, row);
+        current++; // Point to next
+        return true;
+    }
+
+    private void decodeRecord(byte[] dataBuffer, int current, Row row) throws IOException {
         // Verify Record is OK (not marked for deletion: ' ' == OK, '*' ==
         // deleted)
         if (dataBuffer[0] != ROK)
             throw new IOException("Record " + current
                     + " has deletion flag of hex " + byteToHex(dataBuffer[0]));
-        int start = 1; // skip over record delete flag
-        for (String fieldname : schema.getKeys()) {
-            SimpleField field = schema.get(fieldname);
+        for (int i : projection) {
+            SimpleField field = fields[i];
             // Create the appropriate type of Object for this data field and add
             // it to list
-            String valStr = new String(dataBuffer, start, field.getLength(),
+            String valStr = new String(dataBuffer, fieldOffsets[i], field.getLength(),
                     "US-ASCII").trim();
             try {
                 row.putData(field, parseValStr(field.getType(), valStr));
@@ -322,10 +572,7 @@ public class DbfInputStream extends GISInputStreamBase implements
                 e2.initCause(e);
                 throw e2;
             }
-            start += field.getLength();
         }
-        current++; // Point to next
-        return true;
     }
 
     /**
@@ -396,7 +643,13 @@ public class DbfInputStream extends GISInputStreamBase implements
                 }
 
             case DATE:
-                return getDateFormatter().parse(valStr);
+                final Date date = IsoDateParser.parseBasicDate(valStr);
+                if (date == null) {
+                    // some writers use zeros for empty dates
+                    if ("00000000".equals(valStr)) return null;
+                    throw new ParseException("Could not parse date value " + valStr, 0);
+                }
+                return date;
 
             case BOOL:
                 final char c = valStr.charAt(0);
@@ -417,12 +670,4 @@ public class DbfInputStream extends GISInputStreamBase implements
     public void setRowClass(Class<? extends Row> rowClass) {
         this.rowClass = rowClass;
     }
-
-    private SimpleDateFormat getDateFormatter() {
-        if (dateFormatter == null) {
-            dateFormatter = new SimpleDateFormat(DATEFMT);
-            dateFormatter.setTimeZone(TimeZone.getTimeZone("UTC"));
-        }
-        return dateFormatter;
-    }
 }
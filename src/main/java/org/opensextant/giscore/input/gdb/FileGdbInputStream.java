@@ -37,6 +37,8 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.opensextant.geodesy.Geodetic2DBounds;
 import org.opensextant.giscore.IAcceptSchema;
 import org.opensextant.giscore.events.ContainerEnd;
 import org.opensextant.giscore.events.ContainerStart;
@@ -47,8 +49,10 @@ import org.opensextant.giscore.events.SimpleField;
 import org.opensextant.giscore.filegdb.EnumRows;
 import org.opensextant.giscore.filegdb.Geodatabase;
 import org.opensextant.giscore.filegdb.Row;
+import org.opensextant.giscore.filegdb.RowBuffer;
 import org.opensextant.giscore.filegdb.Table;
 import org.opensextant.giscore.filegdb.Table.FieldInfo;
+import org.opensextant.giscore.geometry.Geometry;
 import org.opensextant.giscore.input.GISInputStreamBase;
 import org.opensextant.giscore.output.gdb.FileGdbConstants;
 import org.opensextant.giscore.utils.Args;
@@ -68,18 +72,38 @@ public class FileGdbInputStream extends GISInputStreamBase implements FileGdbCon
 		 */
 		private Table currentTable;
 		private EnumRows rows;
+		/**
+		 * Holds batches of rows fetched from rows, or null if the native
+		 * library can only fetch one row at a time
+		 */
+		private RowBuffer buffer;
+		/**
+		 * The next matching row of the current table, read ahead by
+		 * {@link #hasNextRow()}
+		 */
+		private Map<String, Object> nextData;
+		private Geometry nextGeometry;
+		/**
+		 * The bounds to check each geometry against, if the search could not
+		 * apply them exactly
+		 */
+		private Geodetic2DBounds checkBounds;
 		private Schema currentSchema;
 		
 		public TableState(boolean hasGeo, List<String> paths) {
 			this.hasGeo = hasGeo;
 			this.paths = paths;
+			if (Table.isRowBufferSupported()) {
+				buffer = new RowBuffer();
+			}
 		}
 
 		/**
 		 * We're ready if:
 		 * <ul>
 		 * <li>We've never touched this table set so the index is negative
-		 * <li>There's a row ready for the current path
+		 * <li>A table is being enumerated, so there is either another row 
+		 * or the end of its container to return
 		 * <li>The incremented index is in the range [0..size-1] so it can 
 		 * index one of the paths and we can hand back the schema and rows
 		 * </ul>
@@ -93,7 +117,7 @@ public class FileGdbInputStream extends GISInputStreamBase implements FileGdbCon
 			int ipo = index + 1;
 			
 			return index < 0 
-					|| (rows != null && rows.hasNext())
+					|| rows != null
 					|| (ipo < paths.size() && currentTable == null);	
 		}
 
@@ -113,16 +137,18 @@ public class FileGdbInputStream extends GISInputStreamBase implements FileGdbCon
 					return next();
 				}
 				currentTable = database.openTable(fcPath);
-				rows = currentTable.enumerate();
+				rows = search(currentTable);
 				ContainerStart cs = new ContainerStart("Folder");
 				cs.setSchema(currentSchema.getId());
 				cs.setName(fcPath);
 				addLast(cs);
 				return currentSchema;
 			} else {
-				Row row = rows.next();
-				if (row != null) {
-					Map<String, Object> data = row.getAttributes();
+				if (hasNextRow()) {
+					Map<String, Object> data = nextData;
+					Geometry geometry = nextGeometry;
+					nextData = null;
+					nextGeometry = null;
 					org.opensextant.giscore.events.Row gval;
 					if (hasGeo) {
 						gval = new Feature();
@@ -135,10 +161,10 @@ public class FileGdbInputStream extends GISInputStreamBase implements FileGdbCon
 						gval.putData(currentSchema.get(name), value);
 					}
 					if (hasGeo) {
-						((Feature) gval).setGeometry(row.getGeometry());
+						((Feature) gval).setGeometry(geometry);
 					}
 					gval.setSchema(currentSchema.getId());
-					if (! rows.hasNext()) {
+					if (! hasNextRow()) {
 						currentTable = null;
 						currentSchema = null;
 						rows = null;
@@ -155,6 +181,63 @@ public class FileGdbInputStream extends GISInputStreamBase implements FileGdbCon
 			}
 		}
 
+		/**
+		 * Enumerate the rows of a table that match the where clause and, for
+		 * feature classes, the spatial filter
+		 * 
+		 * @param t the table
+		 * @return the rows
+		 * @throws UnsupportedOperationException if there is a where clause
+		 * and the native library predates searching
+		 */
+		private EnumRows search(Table t) {
+			Geodetic2DBounds bounds = hasGeo ? spatialFilter : null;
+			checkBounds = null;
+			if (bounds == null && StringUtils.isEmpty(whereClause)) {
+				return t.enumerate();
+			}
+			// The search matches envelopes and widens bounds crossing the 
+			// antimeridian, so check geometries against the bounds as well
+			checkBounds = bounds;
+			try {
+				return t.search(whereClause, bounds);
+			} catch (UnsupportedOperationException e) {
+				if (StringUtils.isNotEmpty(whereClause)) throw e;
+				return t.enumerate();
+			}
+		}
+
+		/**
+		 * Read ahead to the next matching row of the current table, fetching
+		 * the next batch into the buffer if needed
+		 * 
+		 * @return <code>true</code> if there is another row
+		 */
+		private boolean hasNextRow() {
+			while (nextData == null) {
+				Map<String, Object> data;
+				Geometry geometry = null;
+				if (buffer != null) {
+					if (!buffer.hasNext() && !rows.fetch(buffer, hasGeo)) return false;
+					buffer.next(currentTable);
+					data = buffer.getAttributes();
+					if (hasGeo) geometry = buffer.getGeometry();
+				} else {
+					if (!rows.hasNext()) return false;
+					Row row = rows.next();
+					data = row.getAttributes();
+					if (hasGeo) geometry = row.getGeometry();
+				}
+				if (checkBounds != null) {
+					Geodetic2DBounds bbox = geometry != null ? geometry.getBoundingBox() : null;
+					if (bbox == null || !checkBounds.intersects(bbox)) continue;
+				}
+				nextData = data;
+				nextGeometry = geometry;
+			}
+			return true;
+		}
+
 		/**
 		 *
 		 * @param path
@@ -193,6 +276,8 @@ public class FileGdbInputStream extends GISInputStreamBase implements FileGdbCon
 	private TableState table;
 	private TableState feature;
 	private IAcceptSchema acceptor;
+	private Geodetic2DBounds spatialFilter;
+	private String whereClause;
 
 	/**
 	 *
@@ -287,6 +372,33 @@ public class FileGdbInputStream extends GISInputStreamBase implements FileGdbCon
 		return rval;
 	}
 	
+	/**
+	 * Only read the features whose geometry intersects the given bounds. The
+	 * bounds are handed to the FileGDB spatial index so features outside 
+	 * them are skipped without being read. Tables without geometry are not
+	 * filtered. Applies to tables and feature classes that are read after 
+	 * this is called.
+	 * 
+	 * @param bounds bounds in degrees of longitude and latitude, may be 
+	 * <code>null</code> to read all features
+	 */
+	public void setSpatialFilter(Geodetic2DBounds bounds) {
+		spatialFilter = bounds;
+	}
+
+	/**
+	 * Only read the rows and features matching an attribute query, which is 
+	 * evaluated by the FileGDB API. Applies to tables and feature classes 
+	 * that are read after this is called.
+	 * 
+	 * @param where an SQL where clause on the fields of the tables and
+	 * feature classes, e.g. <code>POP &gt; 10000</code>, may be 
+	 * <code>null</code> or empty to read all rows
+	 */
+	public void setWhereClause(String where) {
+		whereClause = where;
+	}
+	
 	@Override
 	@CheckForNull
 	public IGISObject read() throws IOException {
@@ -0,0 +1,404 @@
+/****************************************************************************************
+ *  KmlCoordinateParser.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.input.kml;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.io.IOException;
+
+import org.opensextant.giscore.geometry.PackedPointList;
+import org.opensextant.giscore.utils.NumberStreamTokenizer;
+import org.slf4j.Logger;
+
+/**
+ * Parser for the text of KML coordinates elements that scans the characters
+ * of the string directly into a {@link PackedPointList} without creating
+ * intermediate token strings or <code>Longitude</code>, <code>Latitude</code>
+ * and <code>Point</code> objects for each tuple.
+ * <p/>
+ * The parser recognizes the same tokens as {@link NumberStreamTokenizer} with
+ * ',' as an ordinary character and applies the same loose parsing rules as
+ * Google Earth so the result is identical to parsing the text token by token:
+ * <ul>
+ * <li> whitespace may appear anywhere in the input
+ * <li> commas may appear between tuples (e.g., <tt>1,2,3,4,5,6 -> 1,2,3  4,5,6</tt>)
+ * <li> missing longitude or latitude values default to 0 degrees
+ * <li> invalid text in the input is ignored
+ * <li> tuples with out of range longitude or latitude values are dropped
+ * </ul>
+ * Input containing quoted text is rare and has its own escape rules so it is
+ * handed off to {@link #parseWithTokenizer(String)}.
+ */
+public final class KmlCoordinateParser {
+
+	private static final Logger log = KmlInputStream.log;
+
+	private static final int TT_EOF = NumberStreamTokenizer.TT_EOF;
+	private static final int TT_NUMBER = NumberStreamTokenizer.TT_NUMBER;
+	private static final int TT_WORD = NumberStreamTokenizer.TT_WORD;
+
+	/**
+	 * Powers of ten that are exactly representable as a double
+	 */
+	private static final double[] POW10 = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	/**
+	 * Max number of significant digits that always fit in the 53-bit mantissa
+	 */
+	private static final int MAX_FAST_DIGITS = 15;
+
+	private final String coord;
+	private final int len;
+	private int pos;
+
+	/**
+	 * Tokenizer for input with quoted text, <code>null</code> if the
+	 * characters are scanned directly
+	 */
+	private final NumberStreamTokenizer tokenizer;
+
+	// current token
+	private int ttype;
+	private double nval;
+	private int wordStart;
+
+	private KmlCoordinateParser(String coord, NumberStreamTokenizer tokenizer) {
+		this.coord = coord;
+		this.len = coord.length();
+		this.tokenizer = tokenizer;
+	}
+
+	/**
+	 * Parse coordinate string into compact list of points.
+	 *
+	 * @param coord Coordinate string, may be <code>null</code>
+	 * @return list of coordinates. Returns empty list if no coordinates are valid, never null
+	 */
+	@NonNull
+	public static PackedPointList parse(String coord) {
+		if (coord == null) return new PackedPointList(0);
+		if (coord.indexOf('"') != -1 || coord.indexOf('\'') != -1) {
+			return parseWithTokenizer(coord);
+		}
+		// typical tuple "-81.9916466079043,29.9420387052815,0.0 " is ~40 chars
+		PackedPointList list = new PackedPointList(Math.max(10, coord.length() / 32));
+		new KmlCoordinateParser(coord, null).parse(list);
+		return list;
+	}
+
+	/**
+	 * Apply the parsing rules to the tokens from {@link #nextToken()},
+	 * adding the tuples to the list.
+	 */
+	private void parse(PackedPointList list) {
+		boolean seenComma = false;
+		int numparts = 0;
+		double lon = 0, lat = 0, elev = 0; // radians except elev
+		boolean lonError = false;
+
+		try {
+			while (nextToken() != TT_EOF) {
+				switch (ttype) {
+					case TT_WORD:
+						log.warn("ignore invalid string in coordinate: \"" + getWord() + "\"");
+						break;
+
+					case TT_NUMBER:
+						try {
+							if (numparts == 3) {
+								if (seenComma) {
+									log.warn("comma found instead of whitespace between tuples before " + nval);
+									// Google Earth interprets input with: "1,2,3,4,5,6" as two tuples: {1,2,3}  {4,5,6}.
+									seenComma = false;
+								}
+								// add last coord to list and reset counter
+								if (!lonError)
+									list.addRadians(lon, lat, elev);
+								numparts = 0; // reset state for start of new tuple
+							}
+
+							switch (++numparts) {
+								case 1:
+									if (seenComma) {
+										lat = toLatitude(nval);
+										lon = 0; // skipped longitude (use 0 degrees)
+										lonError = false;
+										numparts = 2;
+									} else {
+										// starting new coordinate (numparts => 1)
+										lon = toLongitude(nval);
+										lonError = false;
+									}
+									break;
+
+								case 2:
+									if (seenComma) {
+										lat = toLatitude(nval);
+									} else {
+										if (!lonError)
+											list.addRadians(lon, 0);
+										// start new tuple
+										lon = toLongitude(nval);
+										lonError = false;
+										numparts = 1;
+									}
+									break;
+
+								case 3:
+									if (seenComma) {
+										elev = nval;
+									} else {
+										if (!lonError)
+											list.addRadians(lon, lat);
+										// start new tuple
+										lon = toLongitude(nval);
+										lonError = false;
+										numparts = 1;
+									}
+									break;
+							}
+						} catch (IllegalArgumentException e) {
+							// bad lat/longitude; e.g. out of valid range
+							log.error("Invalid coordinate: " + nval, e);
+							if (numparts != 0) lonError = true;
+						}
+						seenComma = false; // reset flag
+						break;
+
+					default: // single character in ttype
+						if (ttype == ',') {
+							if (!seenComma) {
+								// start of next coordinate component
+								seenComma = true;
+								if (numparts == 0) {
+									lon = 0; // skipped longitude (use 0 degrees)
+									lonError = false;
+									numparts = 1;
+								}
+							} else if (numparts == 1) {
+								lat = 0;  // skipped Latitude (use 0 degrees)
+								numparts = 2;
+							} else if (numparts == 0) {
+								lon = 0; // skipped longitude (use 0 degrees)
+								lonError = false;
+								numparts = 1;
+							}
+						} else
+							log.warn("ignore invalid character in coordinate string: (" + (char) ttype + ")");
+				}
+			}
+		} catch (IOException e) {
+			// the tokenizer reads a StringReader. this should never happen
+			log.error("Failed to parse coord string: " + (coord.length() <= 20
+					? coord : coord.substring(0, 20) + "..."), e);
+		}
+
+		// add last coord if valid
+		if (numparts != 0 && !lonError)
+			switch (numparts) {
+				case 1:
+					list.addRadians(lon, 0);
+					break;
+				case 2:
+					list.addRadians(lon, lat);
+					break;
+				case 3:
+					list.addRadians(lon, lat, elev);
+			}
+	}
+
+	private static double toLongitude(double degrees) {
+		if (log.isDebugEnabled() && Math.abs(degrees) > 180)
+			log.debug("longitude out of range: " + degrees);
+		return PackedPointList.normalizeLongitude(Math.toRadians(degrees));
+	}
+
+	private static double toLatitude(double degrees) {
+		return PackedPointList.checkLatitude(Math.toRadians(degrees));
+	}
+
+	/**
+	 * Read the next token from the tokenizer if there is one, otherwise
+	 * scan it from the string.
+	 *
+	 * @return the token type
+	 * @throws IOException if the tokenizer fails to read the string
+	 */
+	private int nextToken() throws IOException {
+		if (tokenizer == null) return scanToken();
+		ttype = tokenizer.nextToken();
+		nval = tokenizer.nval;
+		return ttype;
+	}
+
+	/**
+	 * @return the text of the current word token
+	 */
+	private String getWord() {
+		return tokenizer != null ? tokenizer.sval : coord.substring(wordStart, pos);
+	}
+
+	/**
+	 * Scan the next token with the same rules as <code>NumberStreamTokenizer</code>
+	 * minus quoted strings which are never seen here.
+	 *
+	 * @return the token type
+	 */
+	private int scanToken() {
+		while (true) {
+			// skip whitespace
+			char c;
+			do {
+				if (pos == len) return ttype = TT_EOF;
+				c = coord.charAt(pos++);
+			} while (c <= ' ');
+
+			if (isNumberChar(c)) {
+				return scanNumber(c);
+			}
+			if (isWordChar(c)) {
+				wordStart = pos - 1;
+				while (pos < len) {
+					c = coord.charAt(pos);
+					if (!isWordChar(c) && !isNumberChar(c)) break;
+					pos++;
+				}
+				return ttype = TT_WORD;
+			}
+			if (c == '/') {
+				// comment character: skip to end of line
+				while (pos < len && (c = coord.charAt(pos)) != '\r' && c != '\n') {
+					pos++;
+				}
+				continue;
+			}
+			return ttype = c;
+		}
+	}
+
+	private static boolean isNumberChar(char c) {
+		return c >= '0' && c <= '9' || c == '.' || c == '-';
+	}
+
+	private static boolean isWordChar(char c) {
+		return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= 160;
+	}
+
+	private static boolean isDigit(int c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * Scan number starting with first character <tt>c</tt> at <tt>pos - 1</tt>
+	 * along with an optional exponent.
+	 */
+	private int scanNumber(char c) {
+		final int start = pos - 1;
+		boolean haveDecimal = c == '.';
+		while (pos < len) {
+			c = coord.charAt(pos);
+			if (!isDigit(c) && (haveDecimal || c != '.')) break;
+			if (c == '.') haveDecimal = true;
+			pos++;
+		}
+		final boolean negative = coord.charAt(start) == '-';
+		if (negative && pos - start == 1) {
+			// Didn't get any other digits other than '-'
+			return ttype = '-';
+		}
+		nval = parseDecimal(negative ? start + 1 : start, pos, negative);
+
+		// optional exponent pattern: /decimalNumber([eE][+-]?[0-9]*)?/
+		if (pos < len && ((c = coord.charAt(pos)) == 'e' || c == 'E')) {
+			pos++;
+			int sign = 0;
+			int ch = pos < len ? coord.charAt(pos) : -1;
+			if (ch == '+' || ch == '-') {
+				sign = ch == '-' ? -1 : 1;
+				pos++;
+				ch = pos < len ? coord.charAt(pos) : -1;
+			}
+			if (isDigit(ch)) {
+				double exp = 0; // 1e2 -> 100
+				do {
+					exp = exp * 10 + (ch - '0');
+					pos++;
+					ch = pos < len ? coord.charAt(pos) : -1;
+				} while (isDigit(ch));
+				if (exp != 0 && nval != 0) {
+					if (sign == -1) exp = -exp;
+					nval = nval * Math.pow(10, exp);
+				}
+			}
+		}
+		return ttype = TT_NUMBER;
+	}
+
+	/**
+	 * Convert digits with optional decimal point in range [start,end) to double.
+	 * Values with at most 15 significant digits and 22 fraction digits are
+	 * computed exactly from a long mantissa and a power of ten, other values
+	 * use <code>Double.parseDouble()</code> so the result is always the same.
+	 */
+	private double parseDecimal(int start, int end, boolean negative) {
+		long mantissa = 0;
+		int digits = 0, fraction = 0;
+		boolean seenDigit = false, seenDecimal = false;
+		for (int i = start; i < end; i++) {
+			char c = coord.charAt(i);
+			if (c == '.') {
+				seenDecimal = true;
+				continue;
+			}
+			seenDigit = true;
+			int d = c - '0';
+			if (mantissa != 0 || d != 0) {
+				if (++digits > MAX_FAST_DIGITS) {
+					return Double.parseDouble(coord.substring(negative ? start - 1 : start, end));
+				}
+				mantissa = mantissa * 10 + d;
+			}
+			if (seenDecimal) fraction++;
+		}
+		// lone "." or "-." is not a number and is treated as 0
+		if (!seenDigit) return 0;
+		if (fraction >= POW10.length) {
+			return Double.parseDouble(coord.substring(negative ? start - 1 : start, end));
+		}
+		double value = fraction == 0 ? mantissa : mantissa / POW10[fraction];
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Coordinate parser using the <code>NumberStreamTokenizer</code> to tokenize
+	 * the input. Its tokens are the reference for those scanned by
+	 * {@link #parse(String)} and it is used for input with quoted text.
+	 *
+	 * @param coord Coordinate string
+	 * @return list of coordinates. Returns empty list if no coordinates are valid, never null
+	 */
+	@NonNull
+	public static PackedPointList parseWithTokenizer(String coord) {
+		PackedPointList list = new PackedPointList();
+		NumberStreamTokenizer st = new NumberStreamTokenizer(coord);
+		st.ordinaryChar(',');
+		new KmlCoordinateParser(coord, st).parse(list);
+		return list;
+	}
+
+}
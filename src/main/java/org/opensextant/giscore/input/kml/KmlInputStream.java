@@ -24,14 +24,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.text.DateFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.text.ParsePosition;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
-import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -39,12 +36,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.TimeZone;
 import java.util.regex.Pattern;
 
-import javax.xml.datatype.DatatypeConfigurationException;
-import javax.xml.datatype.DatatypeFactory;
-import javax.xml.datatype.XMLGregorianCalendar;
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLStreamException;
@@ -94,8 +87,10 @@ import org.opensextant.giscore.geometry.MultiPoint;
 import org.opensextant.giscore.geometry.Point;
 import org.opensextant.giscore.geometry.Polygon;
 import org.opensextant.giscore.input.XmlInputStream;
+import org.opensextant.giscore.input.XmlParserEngine;
+import org.opensextant.giscore.utils.Args;
 import org.opensextant.giscore.utils.Color;
-import org.opensextant.giscore.utils.NumberStreamTokenizer;
+import org.opensextant.giscore.utils.IsoDateParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -242,10 +237,6 @@ public class KmlInputStream extends XmlInputStream implements IKml {
 	private static final Set<String> ms_attributes = new HashSet<String>(2); // open, metadata
 	private static final Set<String> ms_geometries = new HashSet<String>(6); // Point, LineString, etc.
 
-	private static final List<SimpleDateFormat> ms_dateFormats = new ArrayList<SimpleDateFormat>(6);
-	private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
-	private static DatatypeFactory fact;
-	private static final Longitude COORD_ERROR = new Longitude();
 	private static final QName ID_ATTR = new QName(ID);
 
 	private Map<String, String> schemaAliases;
@@ -275,39 +266,40 @@ public class KmlInputStream extends XmlInputStream implements IKml {
 		ms_geometries.add(POLYGON);
 		ms_geometries.add(MULTI_GEOMETRY);
 		ms_geometries.add(MODEL);
-
-		// Reference states: dateTime (YYYY-MM-DDThh:mm:ssZ) in KML states that T is the separator
-		// between the calendar and the hourly notation of time, and Z indicates UTC. (Seconds are required.)
-		// however, we will also check time w/o seconds since it is accepted by Google Earth.
-		// Thus allowing the form: YYYY-MM-DDThh:mm[:ss][Z]
-		// http://code.google.com/apis/kml/documentation/kmlreference.html#timestamp
-
-		ms_dateFormats.add(new SimpleDateFormat(ISO_DATE_FMT)); // default: yyyy-MM-dd'T'HH:mm:ss.SSS'Z'
-		ms_dateFormats.add(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'"));
-		ms_dateFormats.add(new SimpleDateFormat("yyyy-MM-dd'T'HH:mm'Z'")); // dateTime format w/o seconds
-		ms_dateFormats.add(new SimpleDateFormat("yyyy-MM-dd")); // date (YYYY-MM-DD)
-		ms_dateFormats.add(new SimpleDateFormat("yyyy-MM"));    // gYearMonth (YYYY-MM)
-		ms_dateFormats.add(new SimpleDateFormat("yyyy"));       // gYear (YYYY)
-		for (DateFormat fmt : ms_dateFormats) {
-			fmt.setTimeZone(UTC);
-		}
 	}
 
 	public KmlInputStream(InputStream input) throws IOException {
-		this(input, new Object[0]);
+		this(input, XmlParserEngine.EVENT);
 	}
-	
+
 	/**
 	 * Creates a <code>KmlInputStream</code>
 	 * and saves its argument, the input stream
 	 * <code>input</code>, for later use.
 	 *
 	 * @param input input stream for the kml file, never <code>null</code>
+	 * @param args optional arguments: the {@link XmlParserEngine} to use
 	 * @throws IOException              if an I/O or parsing error occurs
 	 * @throws IllegalArgumentException if input is null
 	 */
 	public KmlInputStream(InputStream input, Object[] args) throws IOException {
-		super(input);
+		this(input, (XmlParserEngine) new Args(args).get(XmlParserEngine.class, 0));
+	}
+
+	/**
+	 * Creates a <code>KmlInputStream</code> that reads the input stream
+	 * with the given StAX parsing engine. The {@link XmlParserEngine#CURSOR}
+	 * engine produces the same objects as the default event engine with
+	 * much less garbage on large documents.
+	 *
+	 * @param input input stream for the kml file, never <code>null</code>
+	 * @param engine the parsing engine, if null then the default
+	 * 			{@link XmlParserEngine#EVENT} engine is used
+	 * @throws IOException              if an I/O or parsing error occurs
+	 * @throws IllegalArgumentException if input is null
+	 */
+	public KmlInputStream(InputStream input, XmlParserEngine engine) throws IOException {
+		super(input, engine);
 		DocumentStart ds = new DocumentStart(DocumentType.KML);
 		addLast(ds);
 		try {
@@ -947,102 +939,30 @@ public class KmlInputStream extends XmlInputStream implements IKml {
 	@NonNull
 	public static Date parseDate(String datestr) throws ParseException {
 		if (StringUtils.isBlank(datestr)) throw new ParseException("Empty or null date string", 0);
-		try {
-			if (fact == null) fact = DatatypeFactory.newInstance();
-			XMLGregorianCalendar o = fact.newXMLGregorianCalendar(datestr);
-			GregorianCalendar cal = o.toGregorianCalendar();
-			String type = o.getXMLSchemaType().getLocalPart();
-			boolean useUTC = true;
-			if ("dateTime".equals(type)) {
-				// dateTime (YYYY-MM-DDThh:mm:ssZ)
-				// dateTime (YYYY-MM-DDThh:mm:sszzzzzz)
-				// Second form gives the local time and then the +/- conversion to UTC.
-				// Set timezone to UTC if other than dateTime formats with explicit timezones
-				int ind = datestr.lastIndexOf('T') + 1; // index should never be -1 if type is dateTime
-				if (ind > 0 && (datestr.indexOf('+', ind) > 0 || datestr.indexOf('-', ind) > 0)) {
-					// e.g. 2009-03-14T18:10:46+03:00 or 2009-03-14T18:10:46-05:00
-					useUTC = false;
-				}
-				// if timeZone is missing (e.g. 2009-03-14T21:10:50) then 'Z' is assumed and UTC is used
-			}
-			if (useUTC) cal.setTimeZone(UTC);
-			//else datestr += "*";
-			//System.out.format("%-10s\t%s%n", type, datestr);
-			/*
-                 possible dateTime types: { dateTime, date, gYearMonth, gYear }
-                 if other than dateTime then must adjust the time to 0
-
-                 1997                      gYear        (YYYY)						1997-01-01T00:00:00.000Z
-                 1997-07                   gYearMonth   (YYYY-MM)					1997-07-01T00:00:00.000Z
-                 1997-07-16                date         (YYYY-MM-DD)				1997-07-16T00:00:00.000Z
-                 1997-07-16T07:30:15Z      dateTime (YYYY-MM-DDThh:mm:ssZ)			1997-07-16T07:30:15.000Z
-                 1997-07-16T07:30:15.30Z   dateTime     							1997-07-16T07:30:15.300Z
-                 1997-07-16T10:30:15+03:00 dateTime (YYYY-MM-DDThh:mm:sszzzzzz)	1997-07-16T07:30:15.000Z
-                */
-			if (!"dateTime".equals(type)) {
-				cal.set(Calendar.HOUR_OF_DAY, 0);
-			}
-			return cal.getTime();
-		} catch (IllegalArgumentException iae) {
-			// try individual date formats
-			int ind = datestr.indexOf('T');
-			int i;
-            /*
-                   date formats:
-                   0: yyyy-MM-dd'T'HH:mm:ss.SSS'Z'
-                   1: yyyy-MM-dd'T'HH:mm:ss'Z'
-                   2: yyyy-MM-dd'T'HH:mm'Z' (dateTime format w/o seconds)
-                   3: yyyy-MM-dd
-                   4: yyyy-MM  (gYearMonth)
-                   5: yyyy		(gYear)
-               */
-			if (ind == -1) {
-				i = 3; // if no 'T' in date then skip to date (YYYY-MM-DD) format @ index=3
-			} else {
-				i = 0;
-				// Sloppy KML might drop the 'Z' suffix or for dates. Google Earth defaults to UTC.
-				// Likewise KML might drop the seconds field in timestamp.
-				// Note these forms are not valid with respect to KML Schema and kml:dateTimeType
-				// definition but Google Earth has lax parsing for such cases so we attempt
-				// to parse as such.
-				// This will NOT handle alternate time zones format with missing second field: e.g. 2009-03-14T16:10-05:00
-				if (!datestr.endsWith("Z") && datestr.indexOf(':', ind + 1) > 0
-						&& datestr.indexOf('-', ind + 1) == -1
-						&& datestr.indexOf('+', ind + 1) == -1) {
-					log.debug("Append Z suffix to date");
-					datestr += 'Z'; // append 'Z' to date
-				}
-			}
-			while (i < ms_dateFormats.size()) {
-				SimpleDateFormat fmt = ms_dateFormats.get(i++);
-				try {
-					Date date = fmt.parse(datestr);
-					log.debug("Failed to parse date {} with DatatypeFactory. Parsed using dateFormat: {}",
-							datestr, fmt.toPattern());
-					return date;
-				} catch (ParseException pe) {
-					// ignore
-				}
-			}
-			// give up
-			final ParseException e2 = new ParseException(iae.getMessage(), 0);
-			e2.initCause(iae);
-			throw e2;
-		} catch (DatatypeConfigurationException ce) {
-			// NOTE: maybe JODA time would be be better generic time parser but would be a new dependency
-			// if unable to create factory then try brute force
-			log.error("Failed to get DatatypeFactory", ce);
-			// note: this does not correctly handle dateTime (YYYY-MM-DDThh:mm:sszzzzzz) format
-			ParseException e = null;
-			for (DateFormat fmt : ms_dateFormats) {
-				try {
-					return fmt.parse(datestr);
-				} catch (ParseException pe) {
-					e = pe;
-				}
-			}
-			throw e;
+		// Reference states: dateTime (YYYY-MM-DDThh:mm:ssZ) in KML states that T is the separator
+		// between the calendar and the hourly notation of time, and Z indicates UTC. (Seconds are required.)
+		// however, we will also check time w/o seconds since it is accepted by Google Earth.
+		// Thus allowing the form: YYYY-MM-DDThh:mm[:ss][Z]
+		// http://code.google.com/apis/kml/documentation/kmlreference.html#timestamp
+		/*
+			 possible dateTime types: { dateTime, date, gYearMonth, gYear }
+			 if other than dateTime then the time is 0
+
+			 1997                      gYear        (YYYY)						1997-01-01T00:00:00.000Z
+			 1997-07                   gYearMonth   (YYYY-MM)					1997-07-01T00:00:00.000Z
+			 1997-07-16                date         (YYYY-MM-DD)				1997-07-16T00:00:00.000Z
+			 1997-07-16T07:30:15Z      dateTime (YYYY-MM-DDThh:mm:ssZ)			1997-07-16T07:30:15.000Z
+			 1997-07-16T07:30:15.30Z   dateTime     							1997-07-16T07:30:15.300Z
+			 1997-07-16T10:30:15+03:00 dateTime (YYYY-MM-DDThh:mm:sszzzzzz)	1997-07-16T07:30:15.000Z
+			*/
+		ParsePosition pos = new ParsePosition(0);
+		datestr = datestr.trim();
+		Date date = IsoDateParser.parse(datestr, pos);
+		if (date == null || pos.getIndex() != datestr.length()) {
+			throw new ParseException("Unparseable date: \"" + datestr + '"',
+					date == null ? pos.getErrorIndex() : pos.getIndex());
 		}
+		return date;
 	}
 
 	/**
@@ -2568,169 +2488,21 @@ public class KmlInputStream extends XmlInputStream implements IKml {
 	 * <li> Extra whitespace is allowed anywhere in the string.
 	 * <li> Invalid text in input is ignored.
 	 * </ul>
+	 * The text is scanned directly into primitive arrays by {@link KmlCoordinateParser}.
 	 *
 	 * @param coord Coordinate string
-	 * @return list of coordinates. Returns empty list if no coordinates are valid, never null
+	 * @return list of coordinates in compact form. Returns empty list if no coordinates are valid, never null
 	 * @throws IllegalArgumentException error if lat/lon coordinate values are out of range
 	 */
 	@NonNull
 	public static List<Point> parseCoord(String coord) {
-		List<Point> list = new ArrayList<Point>();
-		NumberStreamTokenizer st = new NumberStreamTokenizer(coord);
-		st.ordinaryChar(',');
-		boolean seenComma = false;
-		int numparts = 0;
-		double elev = 0;
-		Longitude lon = null;
-		Latitude lat = null;
-
-		if (log.isDebugEnabled() && WHITESPACE_PAT.matcher(coord).find()) {
+		if (log.isDebugEnabled() && coord != null && WHITESPACE_PAT.matcher(coord).find()) {
 			// ATC 3: Geometry coordinates
 			// http://service.kmlvalidator.com/ets/ogc-kml/2.2/#Geometry-Coordinates
 			log.warn("Whitespace found within coordinate tuple [ATC 3]");
 			// NOTE: log level checked at debug level but logged at warn level to be picked up with KmlMetaDataDump
 		}
-		// note the NumberStreamTokenizer may introduce some floating-error (e.g., 5.5 -> 5.499999999999999)
-		try {
-			while (st.nextToken() != NumberStreamTokenizer.TT_EOF) {
-				switch (st.ttype) {
-					case NumberStreamTokenizer.TT_WORD:
-						//s = "STRING:" + st.sval; // Already a String
-						log.warn("ignore invalid string in coordinate: \"" + st.sval + "\"");
-						//if (seenComma) System.out.println("\tXXX: WORD: seenComma");
-						//if (numparts != 0) System.out.println("\tXXX: WORD: numparts=" + numparts);
-						break;
-
-					case NumberStreamTokenizer.TT_NUMBER:
-						try {
-							if (numparts == 3) {
-								if (seenComma) {
-									log.warn("comma found instead of whitespace between tuples before " + st.nval);
-									// handle commas appearing between tuples
-									// Google Earth interprets input with: "1,2,3,4,5,6" as two tuples: {1,2,3}  {4,5,6}.
-									seenComma = false;
-								}
-								// add last coord to list and reset counter
-								if (lon != COORD_ERROR)
-									list.add(new Point(new Geodetic3DPoint(lon, lat, elev)));
-								numparts = 0; // reset state for start of new tuple
-							}
-
-							switch (++numparts) {
-								case 1:
-									if (seenComma) {
-										// note: this branch might not be possible: if numparts==0 then seenComma should be false
-										lat = new Latitude(st.nval, Angle.DEGREES);
-										lon = new Longitude(); // skipped longitude (use 0 degrees)
-										numparts = 2;
-									} else {
-										// starting new coordinate (numparts => 1)
-										lon = new Longitude(st.nval, Angle.DEGREES);
-										if (log.isDebugEnabled() && Math.abs(st.nval) > 180)
-											log.debug("longitude out of range: " + st.nval);
-									}
-									break;
-
-								case 2:
-									if (seenComma) {
-										//System.out.println("lat=" + st.nval);
-										lat = new Latitude(st.nval, Angle.DEGREES);
-									} else {
-										if (lon != COORD_ERROR)
-											list.add(new Point(new Geodetic2DPoint(
-													lon, new Latitude())));
-										//else System.out.println("\tERROR: drop bad coord");
-										// start new tuple
-										lon = new Longitude(st.nval, Angle.DEGREES);
-										if (log.isDebugEnabled() && Math.abs(st.nval) > 180)
-											log.debug("longitude out of range: " + st.nval);
-										numparts = 1;
-									}
-									break;
-
-								case 3:
-									if (seenComma) {
-										elev = st.nval;
-									} else {
-										if (lon != COORD_ERROR)
-											list.add(new Point(new Geodetic2DPoint(lon, lat)));
-										//else System.out.println("\tERROR: drop bad coord");
-										// start new tuple
-										lon = new Longitude(st.nval, Angle.DEGREES);
-										if (log.isDebugEnabled() && Math.abs(st.nval) > 180)
-											log.debug("longitude out of range: " + st.nval);
-										numparts = 1;
-									}
-									break;
-							}
-
-							//s = "NUM:" + Double.toString(st.nval);
-                            /*
-                                    double nval = st.nval;
-                                    if (st.nextToken() == StreamTokenizer.TT_WORD && expPattern.matcher(st.sval).matches()) {
-                                        s = "ENUM:" + Double.valueOf(Double.toString(nval) + st.sval).toString();
-                                    } else {
-                                        s = "NUM:" + Double.toString(nval);
-                                        st.pushBack();
-                                    }
-                                    */
-						} catch (IllegalArgumentException e) {
-							// bad lat/longitude; e.g. out of valid range
-							log.error("Invalid coordinate: " + st.nval, e);
-							if (numparts != 0) lon = COORD_ERROR;
-						}
-						seenComma = false; // reset flag
-						break;
-
-					default: // single character in ttype
-						if (st.ttype == ',') {
-							if (!seenComma) {
-								// start of next coordinate component
-								seenComma = true;
-								if (numparts == 0) {
-									//System.out.println("\tXXX: WARN: COMMA0: seenComma w/numparts=" + numparts);
-									lon = new Longitude(); // skipped longitude (use 0 degrees)
-									numparts = 1;
-								}
-							} else
-								// seenComma -> true
-								if (numparts == 1) {
-									//System.out.println("\tXXX: WARN: COMMA2: seenComma w/numparts=" + numparts);
-									lat = new Latitude();  // skipped Latitude (use 0 degrees)
-									numparts = 2;
-								} else if (numparts == 0) {
-									// note this branch may never occur since seenComa=true implies numparts > 0
-									//System.out.println("\tXXX: WARN: COMMA1: seenComma w/numparts=" + numparts);
-									lon = new Longitude(); // skipped longitude (use 0 degrees)
-									numparts = 1;
-								}
-							//else System.out.println("\tXXX: ** ERROR: COMMA3: seenComma w/numparts=" + numparts);
-						} else
-							log.warn("ignore invalid character in coordinate string: (" + (char) st.ttype + ")");
-						//s = "CHAR:" + String.valueOf((char) st.ttype);
-				}
-				//System.out.println("\t" + s);
-			} // while
-		} catch (IOException e) {
-			// we're using StringReader. this should never happen
-			log.error("Failed to parse coord string: " + coord == null || coord.length() <= 20
-					? coord : coord.substring(0, 20) + "...", e);
-		}
-
-		// add last coord if valid
-		if (numparts != 0 && lon != COORD_ERROR)
-			switch (numparts) {
-				case 1:
-					list.add(new Point(new Geodetic2DPoint(lon, new Latitude())));
-					break;
-				case 2:
-					list.add(new Point(new Geodetic2DPoint(lon, lat)));
-					break;
-				case 3:
-					list.add(new Point(new Geodetic3DPoint(lon, lat, elev)));
-			}
-
-		return list;
+		return KmlCoordinateParser.parse(coord);
 	}
 
 	@Nullable
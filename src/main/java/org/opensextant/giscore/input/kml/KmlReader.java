@@ -37,11 +37,21 @@ import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
+import org.opensextant.geodesy.Geodetic2DBounds;
 import org.opensextant.giscore.events.Common;
 import org.opensextant.giscore.events.ContainerStart;
 import org.opensextant.giscore.events.Feature;
@@ -81,7 +91,11 @@ public class KmlReader extends KmlBaseReader implements IGISInputStream {
 
 	private InputStream iStream;
 
-	private final KmlInputStream kis;
+	/**
+	 * The KmlInputStream of the source, or the Placemarks read through a
+	 * {@link KmlSpatialIndex}
+	 */
+	private final IGISInputStream kis;
 
 	private final List<URI> gisNetworkLinks = new ArrayList<URI>();
 
@@ -94,7 +108,11 @@ public class KmlReader extends KmlBaseReader implements IGISInputStream {
 
 	private boolean ignoreInactiveRegionNetworkLinks;
 
-	private int skipCount;
+	private final AtomicInteger skipCount = new AtomicInteger();
+
+	private int importThreadCount = 1;
+
+	private boolean orderedImport;
     /**
 	 * Creates a <code>KmlStreamReader</code> and attempts to read
 	 * all GISObjects from a stream created from the <code>URL</code>.
@@ -181,6 +199,55 @@ public class KmlReader extends KmlBaseReader implements IGISInputStream {
 		baseUrl = url;
 	}
 
+	/**
+	 * Creates a <code>KmlReader</code> that seeks to and reads only the Placemarks
+	 * of an indexed KML or KMZ file whose geometry intersects the given bounds,
+	 * in document order. Only the Features of the Placemarks are returned.
+	 *
+	 * @param index the spatial index of the file, never <code>null</code>
+	 * @param bounds the area of interest, never <code>null</code>
+	 * @throws NullPointerException if index or bounds is <tt>null</tt>
+	 * @see KmlSpatialIndex#open(File)
+	 */
+	public KmlReader(KmlSpatialIndex index, Geodetic2DBounds bounds) {
+		this(index, index.search(bounds), bounds);
+	}
+
+	/**
+	 * Creates a <code>KmlReader</code> that seeks to and reads only the Placemarks
+	 * of an indexed KML or KMZ file at the given ordinals, numbered from zero in
+	 * document order. Only the Features of the Placemarks are returned. Ordinals
+	 * in increasing order are read in one pass over a compressed KMZ entry.
+	 *
+	 * @param index the spatial index of the file, never <code>null</code>
+	 * @param ordinals the ordinals of the Placemarks to read, never <code>null</code>
+	 * @throws NullPointerException if index or ordinals is <tt>null</tt>
+	 * @throws IndexOutOfBoundsException if an ordinal is out of range
+	 */
+	public KmlReader(KmlSpatialIndex index, int[] ordinals) {
+		this(index, checkOrdinals(index, ordinals), null);
+	}
+
+	private KmlReader(KmlSpatialIndex index, int[] ordinals, Geodetic2DBounds filter) {
+		kis = index.createInputStream(ordinals, filter);
+		compressed = index.getEntryName() != null;
+		try {
+			baseUrl = index.getSource().toURI().toURL();
+		} catch (Exception e) {
+			// this should not happen
+			log.warn("Failed to convert file URI to URL: " + e);
+		}
+	}
+
+	private static int[] checkOrdinals(KmlSpatialIndex index, int[] ordinals) {
+		for (int ordinal : ordinals) {
+			if (ordinal < 0 || ordinal >= index.size()) {
+				throw new IndexOutOfBoundsException("ordinal " + ordinal + " of " + index.size());
+			}
+		}
+		return ordinals.clone();
+	}
+
 	/**
 	 * Create KmlReader using provided InputStream.
 	 *
@@ -275,7 +342,7 @@ public class KmlReader extends KmlBaseReader implements IGISInputStream {
      */
     @NonNull
     public String getEncoding() {
-        return kis.getEncoding();
+        return kis instanceof KmlInputStream ? ((KmlInputStream) kis).getEncoding() : "UTF-8";
     }
 
 	/**
@@ -334,6 +401,25 @@ public class KmlReader extends KmlBaseReader implements IGISInputStream {
 	}
 
 	private IGISObject read(IGISInputStream inputStream, UrlRef parent, List<URI> networkLinks) throws IOException {
+		return read(inputStream, parent, networkLinks, true);
+	}
+
+	/**
+	 * Reads next gis object from the stream rewriting relative links with
+	 * respect to its parent context.
+	 *
+	 * @param inputStream source input stream
+	 * @param parent Parent URL context, <code>null</code> if base document
+	 * @param networkLinks list to which newly found NetworkLink URIs are added, may be <code>null</code>
+	 * @param register if true then NetworkLink URIs are registered with the list of visited
+	 * 		links and only new URIs are added to <code>networkLinks</code>, otherwise all resolved
+	 * 		URIs are added as-is and caller must register them with {@link #addNetworkLink(URI, List)}
+	 * @return the next gis object present in the source, or <code>null</code>
+	 * 		if there are no more objects present.
+	 * @throws IOException if an I/O error occurs
+	 */
+	private IGISObject read(IGISInputStream inputStream, UrlRef parent, List<URI> networkLinks,
+							boolean register) throws IOException {
 		IGISObject gisObj = inputStream.read();
 		if (gisObj == null) return null;
 
@@ -359,7 +445,7 @@ public class KmlReader extends KmlBaseReader implements IGISInputStream {
 			// check/ignore networklinks if region not in view
 			if (ignoreInactiveRegionNetworkLinks && checkRegion(region)) {
 				log.debug("ignore out of region NetworkLink");
-				skipCount++;
+				skipCount.incrementAndGet();
 			} else {
             checkStyleUrl(parent, link);
 			// adjust URL with httpQuery and viewFormat parameters
@@ -368,10 +454,8 @@ public class KmlReader extends KmlBaseReader implements IGISInputStream {
 			URI uri = getLinkHref(parent, link.getLink());
 			if (uri != null) {
 				//log.debug(">link href=" + link.getLink());
-				if (!gisNetworkLinks.contains(uri)) {
-					gisNetworkLinks.add(uri);
-					if (networkLinks != null) networkLinks.add(uri);
-				} else log.debug("duplicate NetworkLink href");
+				if (register) addNetworkLink(uri, networkLinks);
+				else if (networkLinks != null) networkLinks.add(uri);
 			} else
 				log.debug("NetworkLink href is empty or missing");
 			// Note: NetworkLinks can have inline Styles & StyleMaps
@@ -410,6 +494,18 @@ public class KmlReader extends KmlBaseReader implements IGISInputStream {
 		return gisObj;
 	}
 
+	/**
+	 * Register NetworkLink URI with list of known network links.
+	 * @param uri NetworkLink URI
+	 * @param networkLinks list to which URI is added if not a duplicate, may be <code>null</code>
+	 */
+	private void addNetworkLink(URI uri, List<URI> networkLinks) {
+		if (!gisNetworkLinks.contains(uri)) {
+			gisNetworkLinks.add(uri);
+			if (networkLinks != null) networkLinks.add(uri);
+		} else log.debug("duplicate NetworkLink href");
+	}
+
     /**
      * Check for relative URLs in styleUrl value and rewrite
      * to absolute URLs with respect to its parent URL context.
@@ -515,6 +611,9 @@ public class KmlReader extends KmlBaseReader implements IGISInputStream {
 	 * Use {@link #setMaxLinkCount(int)} to restrict number of nested network links.
 	 * If limit exceeded then maxLinkCountExceeded will be set to <tt>true</tt>.
 	 *
+	 * Use {@link #setImportThreadCount(int)} to fetch and parse network links
+	 * concurrently.
+	 *
 	 * @param handler ImportEventHandler is called when each new GISObject is encountered
 	 * 			during parsing. This cannot be null.
 	 * @throws IllegalArgumentException if ImportEventHandler is null or
@@ -539,6 +638,7 @@ public class KmlReader extends KmlBaseReader implements IGISInputStream {
 	private List<IGISObject> _importFromNetworkLinks(ImportEventHandler handler) {
 		if (iStream != null) throw new IllegalArgumentException("reader must first be closed");
 		if (gisNetworkLinks.isEmpty()) return Collections.emptyList();
+		if (importThreadCount > 1) return _importFromNetworkLinksParallel(handler);
 		List<IGISObject> linkedFeatures = new ArrayList<IGISObject>();
 
 		// keep track of URLs visited to prevent revisits
@@ -615,6 +715,175 @@ public class KmlReader extends KmlBaseReader implements IGISInputStream {
 		return linkedFeatures;
 	}
 
+	/**
+	 * Imports KML objects from all visited NetworkLinks using a pool of
+	 * <tt>importThreadCount</tt> worker threads.  Each worker fetches and parses
+	 * a single NetworkLink while the calling thread tracks visited links, enforces
+	 * <tt>maxLinkCount</tt>, and hands the parsed objects to the handler.
+	 *
+	 * @param handler ImportEventHandler is called when a new GISObject is parsed
+	 * @return list of objects from visited networkLinks if no callback handler is specified,
+	 *      otherwise empty list
+	 */
+	private List<IGISObject> _importFromNetworkLinksParallel(ImportEventHandler handler) {
+		List<IGISObject> linkedFeatures = new ArrayList<IGISObject>();
+		// links fetched or being fetched, to prevent revisits and count against maxLinkCount
+		Set<URI> visited = new HashSet<URI>();
+		LinkedList<URI> networkLinks = new LinkedList<URI>();
+		networkLinks.addAll(gisNetworkLinks);
+
+		ExecutorService executor = Executors.newFixedThreadPool(importThreadCount, new ImportThreadFactory());
+		CompletionService<NetworkLinkTask> completionService = orderedImport ? null
+				: new ExecutorCompletionService<NetworkLinkTask>(executor);
+		// pending tasks in submission order
+		LinkedList<Future<NetworkLinkTask>> pending = new LinkedList<Future<NetworkLinkTask>>();
+		boolean done = false;
+		try {
+			while (true) {
+				// keep the pool busy with at most one queued link per worker
+				while (!done && pending.size() < importThreadCount && !networkLinks.isEmpty()) {
+					URI uri = networkLinks.removeFirst();
+					if (!visited.add(uri)) continue;
+					if (visited.size() > maxLinkCount) {
+						log.warn("Max NetworkLink count exceeded: max links=" + maxLinkCount);
+						maxLinkCountExceeded = true;
+						done = true;
+						break;
+					}
+					NetworkLinkTask task = new NetworkLinkTask(uri);
+					pending.add(completionService == null ? executor.submit(task)
+							: completionService.submit(task));
+				}
+				if (pending.isEmpty()) break;
+
+				NetworkLinkTask result;
+				try {
+					if (completionService == null) {
+						result = pending.removeFirst().get();
+					} else {
+						Future<NetworkLinkTask> future = completionService.take();
+						pending.remove(future);
+						result = future.get();
+					}
+				} catch (InterruptedException e) {
+					log.warn("Interrupted while importing from network links");
+					Thread.currentThread().interrupt();
+					break;
+				} catch (ExecutionException e) {
+					// tasks capture their own errors so this should not happen
+					log.error("Failed to import from network link", e.getCause());
+					continue;
+				}
+
+				final URI uri = result.uri;
+				if (result.error != null) {
+					Exception e = result.error;
+					if (e instanceof java.net.ConnectException || e instanceof FileNotFoundException)
+						log.error("Failed to import from network link: " + uri + "\n" + e);
+					else
+						log.error("Failed to import from network link: " + uri, e);
+					if (handler != null) handler.handleError(uri, e);
+				}
+				log.debug("Parse networkLink: {}", result.ref);
+				for (int i = 0; i < result.objects.size(); i++) {
+					IGISObject gisObj = result.objects.get(i);
+					// register a link as its NetworkLink is delivered, as the serial import does
+					URI link = result.links.get(i);
+					if (link != null) addNetworkLink(link, networkLinks);
+					if (handler != null) {
+						if (!handler.handleEvent(result.ref, gisObj)) {
+							log.info("Abort following networkLinks");
+							networkLinks.clear();
+							for (Future<NetworkLinkTask> future : pending) {
+								future.cancel(true);
+							}
+							pending.clear();
+							done = true;
+							break;
+						}
+					} else
+						linkedFeatures.add(gisObj);
+				}
+			} // while
+		} finally {
+			executor.shutdownNow();
+		}
+
+		return linkedFeatures;
+	}
+
+	/**
+	 * Task to fetch and parse the content of a single NetworkLink on a worker thread.
+	 * NetworkLinks found in the content are collected but not registered
+	 * with the reader so the importing thread registers each link only when
+	 * the object declaring it is delivered.
+	 */
+	private final class NetworkLinkTask implements Callable<NetworkLinkTask> {
+
+		final URI uri;
+		UrlRef ref;
+		final List<IGISObject> objects = new ArrayList<IGISObject>();
+		/**
+		 * NetworkLink URI declared by the object at the same index in
+		 * <code>objects</code>, <code>null</code> if none
+		 */
+		final List<URI> links = new ArrayList<URI>();
+		Exception error;
+
+		NetworkLinkTask(URI uri) {
+			this.uri = uri;
+		}
+
+		public NetworkLinkTask call() {
+			InputStream is = null;
+			try {
+				ref = new UrlRef(uri);
+				try {
+					is = ref.getInputStream(proxy);
+				} catch (FileNotFoundException nfe) {
+					// If href does not exist in KMZ then try with respect to parent context.
+					final URL tempUrl = new URL(ref.getURL(), ref.getKmzRelPath());
+					is = UrlRef.getInputStream(tempUrl, proxy);
+					ref = new UrlRef(tempUrl, null);
+				}
+				if (is == null) return this;
+				KmlInputStream kis = new KmlInputStream(is);
+				try {
+					List<URI> found = new ArrayList<URI>(1);
+					IGISObject gisObj;
+					while (!Thread.currentThread().isInterrupted()
+							&& (gisObj = read(kis, ref, found, false)) != null) {
+						objects.add(gisObj);
+						links.add(found.isEmpty() ? null : found.remove(0));
+					}
+				} finally {
+					kis.close();
+				}
+			} catch (Exception e) {
+				error = e;
+			} finally {
+				IOUtils.closeQuietly(is);
+			}
+			return this;
+		}
+	}
+
+	/**
+	 * Creates daemon worker threads for importing NetworkLinks.
+	 */
+	private static class ImportThreadFactory implements ThreadFactory {
+
+		private static final AtomicInteger poolNumber = new AtomicInteger();
+		private final AtomicInteger threadNumber = new AtomicInteger();
+		private final String prefix = "KmlReader-import-" + poolNumber.incrementAndGet() + "-";
+
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, prefix + threadNumber.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
 	/**
 	 * Short-cut help method to read all GISObjects closing the stream and returning
 	 * the list of GIS objects.  This is useful for most KML documents that can fit into memory
@@ -648,6 +917,8 @@ public class KmlReader extends KmlBaseReader implements IGISInputStream {
 			kis.close();
 			IOUtils.closeQuietly(iStream);
 			iStream = null;
+		} else if (!(kis instanceof KmlInputStream)) {
+			kis.close();
 		}
 	}
 
@@ -703,7 +974,56 @@ public class KmlReader extends KmlBaseReader implements IGISInputStream {
 	 * @return number of skipped features
 	 */
 	public int getSkipCount() {
-		return skipCount;
+		return skipCount.get();
+	}
+
+	/**
+	 * Get number of worker threads used to fetch and parse NetworkLinks
+	 * when importing nested KML content. Default=1.
+	 */
+	public int getImportThreadCount() {
+		return importThreadCount;
+	}
+
+	/**
+	 * Set number of worker threads used to fetch and parse NetworkLinks
+	 * concurrently when calling <code>importFromNetworkLinks()</code>.
+	 * Value of 1 (the default) imports each NetworkLink serially on
+	 * the calling thread. With more than one thread the content of each
+	 * NetworkLink is parsed fully on a worker thread before its objects
+	 * are handed to the caller so at most <tt>importThreadCount</tt>
+	 * NetworkLinks are held in memory at once.
+	 * <P>
+	 * The {@link ImportEventHandler} is always invoked on the calling thread
+	 * so handlers need not be thread-safe.
+	 *
+	 * @param importThreadCount number of worker threads, values &lt; 1 are treated as 1
+	 * @see #setOrderedImport(boolean)
+	 */
+	public void setImportThreadCount(int importThreadCount) {
+		this.importThreadCount = importThreadCount < 1 ? 1 : importThreadCount;
+	}
+
+	/**
+	 * Flag whether objects imported from NetworkLinks by multiple worker threads
+	 * are delivered in the same order as a serial import.
+	 * @see #setImportThreadCount(int)
+	 */
+	public boolean isOrderedImport() {
+		return orderedImport;
+	}
+
+	/**
+	 * Set flag to deliver objects imported from NetworkLinks in deterministic order
+	 * when more than one import thread is used. If true then NetworkLinks
+	 * are visited and their objects delivered in the same order as the serial import
+	 * at the cost of waiting on slow links, otherwise objects are delivered as
+	 * soon as each NetworkLink has been parsed. Default=false.
+	 * This has no effect if import thread count is 1.
+	 * @param orderedImport True to enable deterministic ordering
+	 */
+	public void setOrderedImport(boolean orderedImport) {
+		this.orderedImport = orderedImport;
 	}
 
 	/**
@@ -736,7 +1056,8 @@ public class KmlReader extends KmlBaseReader implements IGISInputStream {
         /**
          * The KmlReader will invoke this method for each GISObject encountered during parsing.
          * All elements will be reported in document order. Return false to abort importing
-		 * features from network links.
+		 * features from network links. If multiple import threads are used then the order
+		 * of NetworkLinks is only preserved if ordered import is enabled.
          *
          * @param ref UriRef for NetworkLink resource
          * @param gisObj new IGISObject object. This will never be null.
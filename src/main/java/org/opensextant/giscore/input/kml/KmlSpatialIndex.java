@@ -0,0 +1,1037 @@
+/****************************************************************************************
+ *  KmlSpatialIndex.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.input.kml;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.opensextant.geodesy.Geodetic2DBounds;
+import org.opensextant.giscore.events.Feature;
+import org.opensextant.giscore.events.IGISObject;
+import org.opensextant.giscore.events.Schema;
+import org.opensextant.giscore.geometry.Geometry;
+import org.opensextant.giscore.input.IGISInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent sidecar index of the Placemarks of a large KML or KMZ file that
+ * allows a {@link KmlReader} to seek to and parse only the Placemarks in an
+ * area or at given ordinals instead of streaming the whole file.
+ * <p>
+ * The index is built with a single pass over the file that records the
+ * byte offset, length and bounding box of every Placemark, numbered from
+ * zero in document order. The boxes are packed into a static R-tree
+ * ordered by the Hilbert curve value of their centers, and the index is
+ * written next to the file with the suffix <code>.idx</code> together with
+ * the length and modification time of the file so a stale index is
+ * detected. The index file is memory mapped when opened.
+ * <p>
+ * For a KMZ file the first KML entry is indexed, as read by {@link KmlReader},
+ * with offsets relative to the start of the entry. Seeking is direct for
+ * entries that are stored uncompressed; for compressed entries the entry is
+ * decompressed up to the offset. The entry stays open between Placemarks so
+ * reading Placemarks in document order, such as the results of a search,
+ * decompresses the entry once.
+ * <p>
+ * A Placemark is read back as a document made of the XML declaration and the
+ * root element start tag of the file followed by the Placemark, so
+ * namespaces must be declared on the root element, and shared styles and
+ * schemas of the enclosing containers are not included. The file must be in
+ * UTF-8 or another encoding that is a superset of ASCII.
+ * <p>
+ * Run as an application to build or refresh the index of files:
+ * <pre>
+ * java org.opensextant.giscore.input.kml.KmlSpatialIndex file.kml [file.kmz ...]
+ * </pre>
+ */
+public class KmlSpatialIndex implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(KmlSpatialIndex.class);
+
+	/**
+	 * Suffix of the index file appended to the name of the indexed file
+	 */
+	public static final String SUFFIX = ".idx";
+
+	private static final int MAGIC = 0x474b4958; // GKIX
+
+	private static final int VERSION = 1;
+
+	private static final int NODE_SIZE = 16;
+
+	private static final int HILBERT_MAX = (1 << 15) - 1;
+
+	private static final String PLACEMARK = "Placemark";
+
+	private final File source;
+
+	@CheckForNull
+	private final String entryName;
+
+	private final byte[] prefix;
+
+	private final byte[] suffix;
+
+	private final int count;
+
+	private final int itemCount;
+
+	private final int[] levelBounds;
+
+	/**
+	 * Offset, length and tree position of each Placemark in document order
+	 */
+	private final ByteBuffer table;
+
+	/**
+	 * Ordinal of each leaf of the tree or the position of the first child of
+	 * each node
+	 */
+	private final ByteBuffer indices;
+
+	/**
+	 * West, south, east and north of each leaf and node of the tree
+	 */
+	private final ByteBuffer boxes;
+
+	// open lazily to read Placemarks
+	private RandomAccessFile raf;
+	private ZipFile zipFile;
+
+	/**
+	 * The indexed KMZ entry, kept open to read the following Placemarks
+	 * without decompressing the entry again from the start
+	 */
+	private InputStream entryStream;
+
+	/**
+	 * Position in the entry of the next byte of the entry stream
+	 */
+	private long entryPosition;
+
+	private KmlSpatialIndex(File source, ByteBuffer buf) throws IOException {
+		this.source = source;
+		if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+			throw new IOException("Not a KML spatial index: " + getIndexFile(source));
+		}
+		buf.getLong(); // length and modification time of the source are checked by load()
+		buf.getLong();
+		String name = new String(getBytes(buf), "UTF-8");
+		entryName = name.length() == 0 ? null : name;
+		prefix = getBytes(buf);
+		suffix = getBytes(buf);
+		count = buf.getInt();
+		itemCount = buf.getInt();
+		levelBounds = new int[buf.getInt()];
+		for (int i = 0; i < levelBounds.length; i++) {
+			levelBounds[i] = buf.getInt();
+		}
+		int nodeCount = levelBounds.length == 0 ? 0 : levelBounds[levelBounds.length - 1];
+		table = slice(buf, count * 16);
+		indices = slice(buf, nodeCount * 4);
+		boxes = slice(buf, nodeCount * 16);
+	}
+
+	/**
+	 * @param source the KML or KMZ file, never <code>null</code>
+	 * @return the index file of the source
+	 */
+	@NonNull
+	public static File getIndexFile(File source) {
+		return new File(source.getPath() + SUFFIX);
+	}
+
+	/**
+	 * Open the index of a file, building it if it is missing or out of date.
+	 *
+	 * @param source the KML or KMZ file, never <code>null</code>
+	 * @return the index, never <code>null</code>
+	 * @throws IOException if an I/O error occurs
+	 */
+	@NonNull
+	public static KmlSpatialIndex open(File source) throws IOException {
+		KmlSpatialIndex index = load(source);
+		return index != null ? index : build(source);
+	}
+
+	/**
+	 * Open an existing index of a file.
+	 *
+	 * @param source the KML or KMZ file, never <code>null</code>
+	 * @return the index, or <code>null</code> if there is no index or the
+	 *         file has changed since it was indexed
+	 * @throws IOException if an I/O error occurs
+	 */
+	@CheckForNull
+	public static KmlSpatialIndex load(File source) throws IOException {
+		File indexFile = getIndexFile(source);
+		if (!indexFile.isFile() || !source.isFile()) {
+			return null;
+		}
+		RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+		try {
+			if (file.length() > Integer.MAX_VALUE) {
+				throw new IOException("Index file too large: " + indexFile);
+			}
+			if (file.length() < 24 || file.readInt() != MAGIC || file.readInt() != VERSION
+					|| file.readLong() != source.length() || file.readLong() != source.lastModified()) {
+				log.debug("Ignore out of date index " + indexFile);
+				return null;
+			}
+			FileChannel channel = file.getChannel();
+			MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new KmlSpatialIndex(source, buf);
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Build the index of a file with a single pass over its content and
+	 * write it next to the file, replacing any existing index.
+	 *
+	 * @param source the KML or KMZ file, never <code>null</code>
+	 * @return the index, never <code>null</code>
+	 * @throws IOException if an I/O error occurs
+	 */
+	@NonNull
+	public static KmlSpatialIndex build(File source) throws IOException {
+		long start = System.currentTimeMillis();
+		long length = source.length();
+		long modified = source.lastModified();
+		Builder builder = new Builder();
+		InputStream is;
+		if (source.getName().toLowerCase().endsWith(".kmz")) {
+			ZipInputStream zis = new ZipInputStream(new FileInputStream(source));
+			ZipEntry entry;
+			while ((entry = zis.getNextEntry()) != null) {
+				// first kml file in the archive as with KmlReader
+				if (entry.getName().toLowerCase().endsWith(".kml")) {
+					builder.entryName = entry.getName();
+					if (entry.getMethod() != ZipEntry.STORED) {
+						log.info("KMZ entry " + entry.getName() + " is compressed so reading a Placemark"
+								+ " decompresses the entry up to its offset");
+					}
+					break;
+				}
+			}
+			if (builder.entryName == null) {
+				IOUtils.closeQuietly(zis);
+				throw new FileNotFoundException("Failed to find KML content in file: " + source);
+			}
+			is = zis;
+		} else {
+			is = new FileInputStream(source);
+		}
+		try {
+			builder.scan(is);
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+		File indexFile = getIndexFile(source);
+		File tmp = new File(indexFile.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(length);
+			out.writeLong(modified);
+			builder.write(out);
+		} finally {
+			out.close();
+		}
+		if (indexFile.exists() && !indexFile.delete() || !tmp.renameTo(indexFile)) {
+			tmp.delete();
+			throw new IOException("Failed to write index file " + indexFile);
+		}
+		log.info("Indexed " + builder.count + " placemarks of " + source + " in "
+				+ (System.currentTimeMillis() - start) + " ms");
+		KmlSpatialIndex index = load(source);
+		if (index == null) {
+			throw new IOException(source + " changed while it was indexed");
+		}
+		return index;
+	}
+
+	/**
+	 * @return the indexed KML or KMZ file, never <code>null</code>
+	 */
+	@NonNull
+	public File getSource() {
+		return source;
+	}
+
+	/**
+	 * @return the name of the indexed KMZ entry, or <code>null</code> for a KML file
+	 */
+	@CheckForNull
+	public String getEntryName() {
+		return entryName;
+	}
+
+	/**
+	 * @return the count of Placemarks in the file
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * @param ordinal the ordinal of a Placemark
+	 * @return the offset in bytes of its start tag in the file or KMZ entry
+	 * @throws IndexOutOfBoundsException if the ordinal is out of range
+	 */
+	public long getOffset(int ordinal) {
+		return table.getLong(checkOrdinal(ordinal) * 16);
+	}
+
+	/**
+	 * @param ordinal the ordinal of a Placemark
+	 * @return its length in bytes through to its end tag
+	 * @throws IndexOutOfBoundsException if the ordinal is out of range
+	 */
+	public int getLength(int ordinal) {
+		return table.getInt(checkOrdinal(ordinal) * 16 + 8);
+	}
+
+	/**
+	 * Find the Placemarks whose bounding box intersects the given bounds.
+	 * Boxes are compared at float precision so the result may include
+	 * Placemarks that only touch the bounds.
+	 *
+	 * @param bounds the bounds, never <code>null</code>
+	 * @return the ordinals of the Placemarks in document order, never <code>null</code>
+	 */
+	@NonNull
+	public int[] search(Geodetic2DBounds bounds) {
+		double west = bounds.getWestLon().inDegrees();
+		double east = bounds.getEastLon().inDegrees();
+		double south = bounds.getSouthLat().inDegrees();
+		double north = bounds.getNorthLat().inDegrees();
+		IntList result = new IntList();
+		if (west > east) {
+			// crosses the anti-meridian
+			search(west, south, 180, north, result);
+			search(-180, south, east, north, result);
+		} else {
+			search(west, south, east, north, result);
+		}
+		int[] ordinals = result.toArray();
+		Arrays.sort(ordinals);
+		// remove duplicates of the two searches
+		int n = 0;
+		for (int i = 0; i < ordinals.length; i++) {
+			if (i == 0 || ordinals[i] != ordinals[i - 1]) {
+				ordinals[n++] = ordinals[i];
+			}
+		}
+		return n == ordinals.length ? ordinals : Arrays.copyOf(ordinals, n);
+	}
+
+	private void search(double west, double south, double east, double north, IntList result) {
+		if (itemCount == 0) {
+			return;
+		}
+		IntList queue = new IntList();
+		int node = levelBounds[levelBounds.length - 1] - 1;
+		while (true) {
+			int end = Math.min(node + NODE_SIZE, upperBound(node));
+			for (int pos = node; pos < end; pos++) {
+				int b = pos * 16;
+				if (boxes.getFloat(b) > east || boxes.getFloat(b + 4) > north
+						|| boxes.getFloat(b + 8) < west || boxes.getFloat(b + 12) < south) {
+					continue;
+				}
+				int index = indices.getInt(pos * 4);
+				if (pos < itemCount) {
+					result.add(index);
+				} else {
+					queue.add(index);
+				}
+			}
+			if (queue.size == 0) {
+				return;
+			}
+			node = queue.values[--queue.size];
+		}
+	}
+
+	/**
+	 * @return the end of the tree level holding the node
+	 */
+	private int upperBound(int node) {
+		for (int bound : levelBounds) {
+			if (node < bound) return bound;
+		}
+		return levelBounds[levelBounds.length - 1];
+	}
+
+	/**
+	 * Open a Placemark as a KML document holding only the Placemark. For a
+	 * compressed KMZ entry, Placemarks opened in increasing order of ordinal
+	 * are read in one pass over the entry.
+	 *
+	 * @param ordinal the ordinal of the Placemark
+	 * @return the document, never <code>null</code>
+	 * @throws IOException if an I/O error occurs
+	 * @throws IndexOutOfBoundsException if the ordinal is out of range
+	 */
+	@NonNull
+	public synchronized InputStream openPlacemark(int ordinal) throws IOException {
+		long offset = getOffset(ordinal);
+		int length = getLength(ordinal);
+		byte[] doc = new byte[prefix.length + length + suffix.length];
+		System.arraycopy(prefix, 0, doc, 0, prefix.length);
+		if (entryName == null) {
+			if (raf == null) {
+				raf = new RandomAccessFile(source, "r");
+			}
+			raf.seek(offset);
+			raf.readFully(doc, prefix.length, length);
+		} else {
+			if (entryStream == null || offset < entryPosition) {
+				// start again to read backwards
+				closeEntry();
+				if (zipFile == null) {
+					zipFile = new ZipFile(source);
+				}
+				ZipEntry entry = zipFile.getEntry(entryName);
+				if (entry == null) {
+					throw new FileNotFoundException("Missing KMZ entry " + entryName + " in " + source);
+				}
+				entryStream = zipFile.getInputStream(entry);
+				entryPosition = 0;
+			}
+			boolean done = false;
+			try {
+				// seeks for stored entries
+				long remaining = offset - entryPosition;
+				while (remaining > 0) {
+					long n = entryStream.skip(remaining);
+					if (n <= 0) {
+						if (entryStream.read() < 0) throw new EOFException();
+						n = 1;
+					}
+					remaining -= n;
+				}
+				int n = prefix.length;
+				while (n < prefix.length + length) {
+					int read = entryStream.read(doc, n, prefix.length + length - n);
+					if (read < 0) throw new EOFException();
+					n += read;
+				}
+				entryPosition = offset + length;
+				done = true;
+			} finally {
+				if (!done) closeEntry();
+			}
+		}
+		System.arraycopy(suffix, 0, doc, prefix.length + length, suffix.length);
+		return new ByteArrayInputStream(doc);
+	}
+
+	/**
+	 * Create a stream of the Features of Placemarks.
+	 *
+	 * @param ordinals the ordinals of the Placemarks, never <code>null</code>
+	 * @param filter if not <code>null</code> only the Features whose geometry
+	 *            intersects the bounds are returned
+	 * @return the stream, never <code>null</code>
+	 */
+	@NonNull
+	IGISInputStream createInputStream(int[] ordinals, @CheckForNull Geodetic2DBounds filter) {
+		return new PlacemarkInputStream(ordinals, filter);
+	}
+
+	/**
+	 * Close the indexed file if it was opened to read Placemarks. The index
+	 * can still be used and the file is opened again if needed.
+	 */
+	public synchronized void close() {
+		closeEntry();
+		try {
+			if (raf != null) {
+				raf.close();
+			}
+			if (zipFile != null) {
+				zipFile.close();
+			}
+		} catch (IOException e) {
+			log.debug("Failed to close " + source, e);
+		} finally {
+			raf = null;
+			zipFile = null;
+		}
+	}
+
+	private void closeEntry() {
+		IOUtils.closeQuietly(entryStream);
+		entryStream = null;
+	}
+
+	private int checkOrdinal(int ordinal) {
+		if (ordinal < 0 || ordinal >= count) {
+			throw new IndexOutOfBoundsException("ordinal " + ordinal + " of " + count);
+		}
+		return ordinal;
+	}
+
+	private static byte[] getBytes(ByteBuffer buf) {
+		byte[] bytes = new byte[buf.getInt()];
+		buf.get(bytes);
+		return bytes;
+	}
+
+	private static ByteBuffer slice(ByteBuffer buf, int length) {
+		ByteBuffer slice = buf.slice();
+		slice.limit(length);
+		buf.position(buf.position() + length);
+		return slice;
+	}
+
+	/**
+	 * Reads the Features of a list of Placemarks, each parsed on its own.
+	 */
+	private final class PlacemarkInputStream implements IGISInputStream {
+
+		private final int[] ordinals;
+
+		private final Geodetic2DBounds filter;
+
+		private int next;
+
+		PlacemarkInputStream(int[] ordinals, Geodetic2DBounds filter) {
+			this.ordinals = ordinals;
+			this.filter = filter;
+		}
+
+		@CheckForNull
+		public IGISObject read() throws IOException {
+			while (next < ordinals.length) {
+				Feature feature = readFeature(ordinals[next++]);
+				if (feature != null && (filter == null || intersects(feature.getGeometry()))) {
+					return feature;
+				}
+			}
+			return null;
+		}
+
+		private boolean intersects(Geometry geometry) {
+			if (geometry == null) return false;
+			Geodetic2DBounds bounds = geometry.getBoundingBox();
+			return bounds != null && filter.intersects(bounds);
+		}
+
+		@NonNull
+		public Iterator<Schema> enumerateSchemata() throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		public void close() {
+			next = ordinals.length;
+			KmlSpatialIndex.this.close();
+		}
+	}
+
+	/**
+	 * Parse the Feature of a Placemark
+	 */
+	@CheckForNull
+	private Feature readFeature(int ordinal) throws IOException {
+		KmlInputStream kis = new KmlInputStream(openPlacemark(ordinal));
+		try {
+			IGISObject obj;
+			while ((obj = kis.read()) != null) {
+				if (obj instanceof Feature) {
+					return (Feature) obj;
+				}
+			}
+			return null;
+		} finally {
+			kis.close();
+		}
+	}
+
+	/**
+	 * Scans the bytes of a KML document for Placemarks and packs their boxes
+	 * into the tree.
+	 */
+	private static final class Builder {
+
+		String entryName;
+
+		private byte[] declaration = new byte[0];
+		private byte[] rootTag;
+		private String rootName;
+
+		private final LongList offsets = new LongList();
+		private final IntList lengths = new IntList();
+		private final List<float[]> boxList = new ArrayList<float[]>();
+		int count;
+
+		private InputStream in;
+		private final byte[] buf = new byte[64 * 1024];
+		private int pos;
+		private int limit;
+		/**
+		 * Offset of the next byte
+		 */
+		private long offset;
+		private final ByteArrayOutputStream tag = new ByteArrayOutputStream();
+		private ByteArrayOutputStream capture;
+		private final ByteArrayOutputStream placemark = new ByteArrayOutputStream();
+		/**
+		 * The byte that followed the last name read
+		 */
+		private int terminator;
+
+		void scan(InputStream in) throws IOException {
+			this.in = in;
+			int b = next();
+			if (b == 0xfe || b == 0xff) {
+				throw new IOException("UTF-16 encoded KML is not supported by the spatial index");
+			}
+			long placemarkStart = -1;
+			for (; b >= 0; b = next()) {
+				if (b != '<') continue;
+				long tagStart = offset - 1;
+				b = next();
+				if (b == '!') {
+					b = next();
+					if (b == '-') {
+						skipPast('-', '-', '>');
+					} else if (b == '[') {
+						skipPast(']', ']', '>');
+					} else {
+						skipDeclaration();
+					}
+				} else if (b == '?') {
+					if (rootTag == null && declaration.length == 0) {
+						// keep the XML declaration for its encoding
+						tag.reset();
+						tag.write('<');
+						tag.write('?');
+						capture = tag;
+						skipPast(-1, '?', '>');
+						capture = null;
+						declaration = tag.toByteArray();
+					} else {
+						skipPast(-1, '?', '>');
+					}
+				} else if (b == '/') {
+					String name = readName(next());
+					if (terminator != '>') {
+						skipPast(-1, -1, '>');
+					}
+					if (placemarkStart >= 0 && isPlacemark(name)) {
+						addPlacemark(placemarkStart);
+						placemarkStart = -1;
+						capture = null;
+					}
+				} else if (b >= 0) {
+					if (placemarkStart >= 0) {
+						// already captured as part of the placemark
+						readName(b);
+						skipTag(terminator);
+						continue;
+					}
+					tag.reset();
+					tag.write('<');
+					tag.write(b);
+					capture = tag;
+					String name = readName(b);
+					boolean empty = skipTag(terminator);
+					capture = null;
+					if (rootTag == null) {
+						rootTag = tag.toByteArray();
+						rootName = name;
+						if (empty) break;
+					} else if (isPlacemark(name)) {
+						placemark.reset();
+						tag.writeTo(placemark);
+						if (empty) {
+							addPlacemark(tagStart);
+						} else {
+							placemarkStart = tagStart;
+							capture = placemark;
+						}
+					}
+				}
+			}
+			if (rootTag == null) {
+				throw new IOException("No KML content found");
+			}
+		}
+
+		private static boolean isPlacemark(String name) {
+			return name.endsWith(PLACEMARK) && (name.length() == PLACEMARK.length()
+					|| name.charAt(name.length() - PLACEMARK.length() - 1) == ':');
+		}
+
+		private void addPlacemark(long start) throws IOException {
+			long length = offset - start;
+			if (length > Integer.MAX_VALUE - 1024) {
+				throw new IOException("Placemark at " + start + " is too large");
+			}
+			offsets.add(start);
+			lengths.add((int) length);
+			boxList.add(getBox(placemark.toByteArray()));
+			count++;
+		}
+
+		/**
+		 * Parse a Placemark to find the bounding box of its geometry
+		 */
+		@CheckForNull
+		private float[] getBox(byte[] bytes) throws IOException {
+			ByteArrayOutputStream doc = new ByteArrayOutputStream(bytes.length + 200);
+			doc.write(declaration);
+			doc.write(rootTag);
+			doc.write(bytes);
+			doc.write(getSuffix());
+			KmlInputStream kis = new KmlInputStream(new ByteArrayInputStream(doc.toByteArray()));
+			Geodetic2DBounds bounds = null;
+			try {
+				IGISObject obj;
+				while ((obj = kis.read()) != null) {
+					if (obj instanceof Feature) {
+						Geometry geometry = ((Feature) obj).getGeometry();
+						if (geometry != null) {
+							bounds = geometry.getBoundingBox();
+						}
+						break;
+					}
+				}
+			} catch (RuntimeException e) {
+				log.warn("Failed to parse placemark " + count + ": " + e);
+			} finally {
+				kis.close();
+			}
+			if (bounds == null) {
+				return null;
+			}
+			double west = bounds.getWestLon().inDegrees();
+			double east = bounds.getEastLon().inDegrees();
+			if (west > east) {
+				// crosses the anti-meridian
+				west = -180;
+				east = 180;
+			}
+			return new float[] {
+					floor(west), floor(bounds.getSouthLat().inDegrees()),
+					ceil(east), ceil(bounds.getNorthLat().inDegrees())
+			};
+		}
+
+		private byte[] getSuffix() throws IOException {
+			return ("</" + rootName + ">").getBytes("UTF-8");
+		}
+
+		/**
+		 * Write the index following the header
+		 */
+		void write(DataOutputStream out) throws IOException {
+			writeBytes(out, entryName == null ? new byte[0] : entryName.getBytes("UTF-8"));
+			ByteArrayOutputStream prefix = new ByteArrayOutputStream();
+			prefix.write(declaration);
+			prefix.write(rootTag);
+			writeBytes(out, prefix.toByteArray());
+			writeBytes(out, getSuffix());
+
+			// leaves are the placemarks with a box sorted by the Hilbert value of their center
+			int items = 0;
+			for (float[] box : boxList) {
+				if (box != null) items++;
+			}
+			long[] keys = new long[items];
+			float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+			for (float[] box : boxList) {
+				if (box == null) continue;
+				minX = Math.min(minX, box[0]);
+				minY = Math.min(minY, box[1]);
+				maxX = Math.max(maxX, box[2]);
+				maxY = Math.max(maxY, box[3]);
+			}
+			double width = maxX > minX ? maxX - minX : 1;
+			double height = maxY > minY ? maxY - minY : 1;
+			int n = 0;
+			for (int i = 0; i < count; i++) {
+				float[] box = boxList.get(i);
+				if (box == null) continue;
+				int x = (int) (HILBERT_MAX * ((box[0] + box[2]) / 2.0 - minX) / width);
+				int y = (int) (HILBERT_MAX * ((box[1] + box[3]) / 2.0 - minY) / height);
+				keys[n++] = hilbert(x, y) << 32 | i;
+			}
+			Arrays.sort(keys);
+
+			IntList bounds = new IntList();
+			int nodeCount = items;
+			if (items > 0) {
+				int levelSize = items;
+				bounds.add(nodeCount);
+				do {
+					levelSize = (levelSize + NODE_SIZE - 1) / NODE_SIZE;
+					nodeCount += levelSize;
+					bounds.add(nodeCount);
+				} while (levelSize != 1);
+			}
+			int[] indices = new int[nodeCount];
+			float[] boxes = new float[nodeCount * 4];
+			int[] leafOf = new int[count];
+			Arrays.fill(leafOf, -1);
+			for (int i = 0; i < items; i++) {
+				int ordinal = (int) keys[i];
+				indices[i] = ordinal;
+				leafOf[ordinal] = i;
+				System.arraycopy(boxList.get(ordinal), 0, boxes, i * 4, 4);
+			}
+			// each node covers up to NODE_SIZE consecutive nodes of the level below
+			int child = 0;
+			for (int node = items; node < nodeCount; node++) {
+				int levelEnd = 0;
+				for (int l = 0; l < bounds.size; l++) {
+					if (child < bounds.values[l]) {
+						levelEnd = bounds.values[l];
+						break;
+					}
+				}
+				indices[node] = child;
+				float w = Float.MAX_VALUE, s = Float.MAX_VALUE, e = -Float.MAX_VALUE, nn = -Float.MAX_VALUE;
+				for (int end = Math.min(child + NODE_SIZE, levelEnd); child < end; child++) {
+					w = Math.min(w, boxes[child * 4]);
+					s = Math.min(s, boxes[child * 4 + 1]);
+					e = Math.max(e, boxes[child * 4 + 2]);
+					nn = Math.max(nn, boxes[child * 4 + 3]);
+				}
+				boxes[node * 4] = w;
+				boxes[node * 4 + 1] = s;
+				boxes[node * 4 + 2] = e;
+				boxes[node * 4 + 3] = nn;
+			}
+
+			out.writeInt(count);
+			out.writeInt(items);
+			out.writeInt(bounds.size);
+			for (int i = 0; i < bounds.size; i++) {
+				out.writeInt(bounds.values[i]);
+			}
+			for (int i = 0; i < count; i++) {
+				out.writeLong(offsets.values[i]);
+				out.writeInt(lengths.values[i]);
+				out.writeInt(leafOf[i]);
+			}
+			for (int index : indices) {
+				out.writeInt(index);
+			}
+			for (float value : boxes) {
+				out.writeFloat(value);
+			}
+		}
+
+		private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+
+		private int next() throws IOException {
+			if (pos == limit) {
+				limit = in.read(buf, 0, buf.length);
+				pos = 0;
+				if (limit <= 0) {
+					limit = 0;
+					return -1;
+				}
+			}
+			int b = buf[pos++] & 0xff;
+			offset++;
+			if (capture != null) {
+				capture.write(b);
+			}
+			return b;
+		}
+
+		/**
+		 * Read an element name starting with the given byte, the byte that
+		 * follows the name is left in {@link #terminator}
+		 */
+		private String readName(int b) throws IOException {
+			StringBuilder sb = new StringBuilder();
+			while (b >= 0 && b != '>' && b != '/' && b > ' ') {
+				sb.append((char) b);
+				b = next();
+			}
+			terminator = b;
+			return sb.toString();
+		}
+
+		/**
+		 * Skip the rest of a start tag following the name
+		 *
+		 * @param b the byte that followed the name
+		 * @return true if the element is empty
+		 */
+		private boolean skipTag(int b) throws IOException {
+			int quote = 0;
+			int last = 0;
+			for (; b >= 0; b = next()) {
+				if (quote != 0) {
+					if (b == quote) quote = 0;
+				} else if (b == '"' || b == '\'') {
+					quote = b;
+				} else if (b == '>') {
+					return last == '/';
+				}
+				if (b > ' ') last = b;
+			}
+			return false;
+		}
+
+		/**
+		 * Skip a document type declaration with an optional internal subset
+		 */
+		private void skipDeclaration() throws IOException {
+			int depth = 0;
+			int b;
+			while ((b = next()) >= 0) {
+				if (b == '[') depth++;
+				else if (b == ']') depth--;
+				else if (b == '>' && depth <= 0) return;
+			}
+		}
+
+		/**
+		 * Skip past a terminator of up to 3 bytes, -1 for unused leading bytes
+		 */
+		private void skipPast(int b1, int b2, int b3) throws IOException {
+			int p1 = -2, p2 = -2;
+			int b;
+			while ((b = next()) >= 0) {
+				if (b == b3 && (b2 == -1 || p2 == b2) && (b1 == -1 || p1 == b1)) {
+					return;
+				}
+				p1 = p2;
+				p2 = b;
+			}
+		}
+	}
+
+	private static float floor(double value) {
+		float f = (float) value;
+		return f > value ? Math.nextAfter(f, Double.NEGATIVE_INFINITY) : f;
+	}
+
+	private static float ceil(double value) {
+		float f = (float) value;
+		return f < value ? Math.nextUp(f) : f;
+	}
+
+	/**
+	 * Distance along the Hilbert curve of a point in a 2^15 by 2^15 grid
+	 */
+	static long hilbert(int x, int y) {
+		long d = 0;
+		for (int s = 1 << 14; s > 0; s >>= 1) {
+			int rx = (x & s) != 0 ? 1 : 0;
+			int ry = (y & s) != 0 ? 1 : 0;
+			d += (long) s * s * ((3 * rx) ^ ry);
+			if (ry == 0) {
+				if (rx == 1) {
+					x = HILBERT_MAX - x;
+					y = HILBERT_MAX - y;
+				}
+				int t = x;
+				x = y;
+				y = t;
+			}
+		}
+		return d;
+	}
+
+	private static final class IntList {
+		int[] values = new int[16];
+		int size;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+
+	private static final class LongList {
+		long[] values = new long[16];
+		int size;
+
+		void add(long value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+	}
+
+	/**
+	 * Build or refresh the index of each file given as an argument.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("Usage: java " + KmlSpatialIndex.class.getName() + " file.kml [file.kmz ...]");
+			System.exit(1);
+		}
+		for (String arg : args) {
+			File file = new File(arg);
+			KmlSpatialIndex index = load(file);
+			boolean built = index == null;
+			if (built) {
+				index = build(file);
+			}
+			System.out.format("%s: %d placemarks %s%n", getIndexFile(file), index.size(),
+					built ? "indexed" : "up to date");
+			index.close();
+		}
+	}
+
+}
@@ -0,0 +1,540 @@
+/****************************************************************************************
+ *  UrlCache.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.input.kml;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent cache of HTTP resources such as linked KML, KMZ and images,
+ * used by {@link UrlRef} once installed with {@link UrlRef#setCache(UrlCache)}.
+ * <p>
+ * The body of each response that has an <tt>ETag</tt> or <tt>Last-Modified</tt>
+ * header is kept in the cache directory and every later fetch of the same URL
+ * revalidates it with a conditional GET, so an unchanged resource costs a
+ * <tt>304 Not Modified</tt> response instead of a download. Responses marked
+ * <tt>Cache-Control: no-store</tt> are not kept. If the server cannot be
+ * reached the cached copy is used.
+ * <p>
+ * The cache holds at most the given number of bytes, removing the least
+ * recently used entries when it is full. Each entry is a body file and a
+ * properties file with the URL and response headers, named by a hash of the
+ * URL, and the time the entry was last used is kept as the modification time
+ * of the body so the order survives restarts.
+ * <p>
+ * The cache is thread safe. Several processes may share a directory but
+ * then each only tracks the size of the entries it knows about.
+ */
+public class UrlCache {
+
+	private static final Logger log = LoggerFactory.getLogger(UrlCache.class);
+
+	/**
+	 * Default limit of the size of the bodies in the cache, 256MB
+	 */
+	public static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+
+	private static final String BODY = ".body";
+	private static final String META = ".meta";
+	private static final String TEMP = ".tmp";
+
+	private static final String URL = "url";
+	private static final String ETAG = "ETag";
+	private static final String LAST_MODIFIED = "Last-Modified";
+	private static final String CONTENT_TYPE = "Content-Type";
+
+	private final File dir;
+
+	private final long maxSize;
+
+	/**
+	 * Entries by key from the least to the most recently used
+	 */
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+	/**
+	 * Total length of the bodies in the cache
+	 */
+	private long size;
+
+	/**
+	 * Creates a cache of up to {@link #DEFAULT_MAX_SIZE} bytes.
+	 *
+	 * @param dir the cache directory, created if it does not exist, never <code>null</code>
+	 * @throws IOException if the directory cannot be created
+	 */
+	public UrlCache(File dir) throws IOException {
+		this(dir, DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Creates a cache, loading any entries already in the directory.
+	 *
+	 * @param dir the cache directory, created if it does not exist, never <code>null</code>
+	 * @param maxSize the limit of the total size of the cached bodies in bytes
+	 * @throws IOException if the directory cannot be created
+	 * @throws IllegalArgumentException if dir is null or maxSize is not positive
+	 */
+	public UrlCache(File dir, long maxSize) throws IOException {
+		if (dir == null) {
+			throw new IllegalArgumentException("dir should never be null");
+		}
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize should be positive");
+		}
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Failed to create cache directory " + dir);
+		}
+		this.dir = dir;
+		this.maxSize = maxSize;
+		load();
+	}
+
+	/**
+	 * @return the cache directory
+	 */
+	public File getDirectory() {
+		return dir;
+	}
+
+	/**
+	 * @return the limit of the total size of the cached bodies in bytes
+	 */
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return the total size of the cached bodies in bytes
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return the count of cached resources
+	 */
+	public synchronized int getCount() {
+		return entries.size();
+	}
+
+	/**
+	 * @param url the URL, never <code>null</code>
+	 * @return true if the cache holds a copy of the resource
+	 */
+	public synchronized boolean contains(URL url) {
+		return entries.containsKey(getKey(url.toExternalForm()));
+	}
+
+	/**
+	 * Remove all entries from the cache
+	 */
+	public synchronized void clear() {
+		for (Entry entry : new ArrayList<Entry>(entries.values())) {
+			remove(entry);
+		}
+	}
+
+	/**
+	 * Connect to an HTTP resource through the cache. A conditional request
+	 * is made if the resource is cached and the cached copy is returned if
+	 * it has not been modified. Otherwise a cacheable response is saved and
+	 * returned from the cache, and any other response is returned as is.
+	 *
+	 * @param conn the connection to the resource with any request headers
+	 * set, not yet connected, never <code>null</code>
+	 * @return a connection to read the resource from, either <code>conn</code>
+	 * or one that reads the cached copy
+	 * @throws IOException if an I/O error occurs and the resource is not cached
+	 */
+	public URLConnection connect(HttpURLConnection conn) throws IOException {
+		String url = conn.getURL().toExternalForm();
+		String key = getKey(url);
+		Entry entry;
+		synchronized (this) {
+			entry = entries.get(key);
+		}
+		// open the cached copy first so it cannot be removed before it is read
+		InputStream cached = null;
+		if (entry != null) {
+			try {
+				cached = new FileInputStream(getBody(entry.key));
+			} catch (FileNotFoundException e) {
+				synchronized (this) {
+					remove(entry);
+				}
+				entry = null;
+			}
+		}
+		boolean closeCached = true;
+		try {
+			if (entry != null) {
+				if (entry.etag != null) {
+					conn.setRequestProperty("If-None-Match", entry.etag);
+				}
+				if (entry.lastModified != null) {
+					conn.setRequestProperty("If-Modified-Since", entry.lastModified);
+				}
+			}
+			int code;
+			try {
+				conn.connect();
+				code = conn.getResponseCode();
+			} catch (IOException e) {
+				if (entry == null) throw e;
+				log.warn("Using cached copy of " + url + " after failing to revalidate it: " + e);
+				code = HttpURLConnection.HTTP_NOT_MODIFIED;
+			}
+			if (entry != null && code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+				log.debug("Not modified: {}", url);
+				touch(entry);
+				closeCached = false;
+				return new CachedConnection(conn.getURL(), entry, cached);
+			}
+			IOUtils.closeQuietly(cached);
+			if (code != HttpURLConnection.HTTP_OK || !isCacheable(conn)) {
+				return conn;
+			}
+			return store(conn, key);
+		} finally {
+			if (closeCached) {
+				IOUtils.closeQuietly(cached);
+			}
+		}
+	}
+
+	/**
+	 * Save the body of a response and return a connection that reads it
+	 */
+	private URLConnection store(HttpURLConnection conn, String key) throws IOException {
+		File temp = File.createTempFile("fetch", TEMP, dir);
+		long length = 0;
+		try {
+			InputStream is = conn.getInputStream();
+			OutputStream os = new FileOutputStream(temp);
+			try {
+				length = IOUtils.copyLarge(is, os);
+			} finally {
+				IOUtils.closeQuietly(is);
+				os.close();
+			}
+		} catch (IOException e) {
+			delete(temp);
+			throw e;
+		}
+
+		Entry entry = new Entry(key, conn.getURL().toExternalForm());
+		entry.etag = conn.getHeaderField(ETAG);
+		entry.lastModified = conn.getHeaderField(LAST_MODIFIED);
+		entry.contentType = conn.getContentType();
+		entry.length = length;
+		if (length > maxSize) {
+			log.debug("Too large to cache: {}", entry.url);
+			return new CachedConnection(conn.getURL(), entry, new DeleteOnCloseInputStream(temp));
+		}
+		InputStream is;
+		synchronized (this) {
+			Entry old = entries.get(key);
+			if (old != null) {
+				remove(old);
+			}
+			File body = getBody(key);
+			if (!temp.renameTo(body)) {
+				// may be open elsewhere on some platforms, so serve this copy alone
+				log.debug("Failed to save {} in the cache", entry.url);
+				return new CachedConnection(conn.getURL(), entry, new DeleteOnCloseInputStream(temp));
+			}
+			// open before saving the entry so it cannot be evicted first
+			is = new FileInputStream(body);
+			try {
+				writeMeta(entry);
+			} catch (IOException e) {
+				log.warn("Failed to save cache entry for " + entry.url + ": " + e);
+				delete(body);
+				return new CachedConnection(conn.getURL(), entry, is);
+			}
+			entries.put(key, entry);
+			size += length;
+			evict();
+		}
+		return new CachedConnection(conn.getURL(), entry, is);
+	}
+
+	/**
+	 * @return true if the response can be revalidated and may be stored
+	 */
+	private static boolean isCacheable(HttpURLConnection conn) {
+		String cacheControl = conn.getHeaderField("Cache-Control");
+		if (cacheControl != null && cacheControl.toLowerCase().contains("no-store")) {
+			return false;
+		}
+		return conn.getHeaderField(ETAG) != null || conn.getHeaderField(LAST_MODIFIED) != null;
+	}
+
+	/**
+	 * Mark an entry as the most recently used
+	 */
+	private synchronized void touch(Entry entry) {
+		if (entries.get(entry.key) == entry) {
+			if (!getBody(entry.key).setLastModified(System.currentTimeMillis())) {
+				log.debug("Failed to update the time of {}", entry.url);
+			}
+		}
+	}
+
+	/**
+	 * Remove the least recently used entries until the cache fits its size
+	 */
+	private void evict() {
+		Iterator<Entry> it = entries.values().iterator();
+		while (size > maxSize && it.hasNext()) {
+			Entry entry = it.next();
+			it.remove();
+			size -= entry.length;
+			delete(getMeta(entry.key));
+			delete(getBody(entry.key));
+			log.debug("Evicted {}", entry.url);
+		}
+	}
+
+	private void remove(Entry entry) {
+		if (entries.remove(entry.key) != null) {
+			size -= entry.length;
+		}
+		delete(getMeta(entry.key));
+		delete(getBody(entry.key));
+	}
+
+	/**
+	 * Load the entries already in the cache directory in the order they
+	 * were last used, removing incomplete ones
+	 */
+	private synchronized void load() {
+		File[] files = dir.listFiles();
+		if (files == null) return;
+		List<Entry> found = new ArrayList<Entry>();
+		for (File file : files) {
+			String name = file.getName();
+			if (name.endsWith(TEMP)) {
+				delete(file);
+			} else if (name.endsWith(META)) {
+				String key = name.substring(0, name.length() - META.length());
+				File body = getBody(key);
+				Entry entry = body.isFile() ? readMeta(file, key) : null;
+				if (entry == null) {
+					delete(file);
+					delete(body);
+				} else {
+					entry.length = body.length();
+					entry.used = body.lastModified();
+					found.add(entry);
+				}
+			}
+		}
+		// remove bodies without a meta file
+		for (File file : files) {
+			String name = file.getName();
+			if (name.endsWith(BODY)
+					&& !getMeta(name.substring(0, name.length() - BODY.length())).isFile()) {
+				delete(file);
+			}
+		}
+		Collections.sort(found, new Comparator<Entry>() {
+			public int compare(Entry e1, Entry e2) {
+				return e1.used < e2.used ? -1 : e1.used == e2.used ? 0 : 1;
+			}
+		});
+		for (Entry entry : found) {
+			entries.put(entry.key, entry);
+			size += entry.length;
+		}
+		evict();
+	}
+
+	@CheckForNull
+	private static Entry readMeta(File file, String key) {
+		Properties props = new Properties();
+		InputStream is = null;
+		try {
+			is = new FileInputStream(file);
+			props.load(is);
+		} catch (IOException e) {
+			log.debug("Failed to read " + file, e);
+			return null;
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+		String url = props.getProperty(URL);
+		if (url == null || !key.equals(getKey(url))) {
+			return null;
+		}
+		Entry entry = new Entry(key, url);
+		entry.etag = props.getProperty(ETAG);
+		entry.lastModified = props.getProperty(LAST_MODIFIED);
+		entry.contentType = props.getProperty(CONTENT_TYPE);
+		return entry;
+	}
+
+	private void writeMeta(Entry entry) throws IOException {
+		Properties props = new Properties();
+		props.setProperty(URL, entry.url);
+		if (entry.etag != null) props.setProperty(ETAG, entry.etag);
+		if (entry.lastModified != null) props.setProperty(LAST_MODIFIED, entry.lastModified);
+		if (entry.contentType != null) props.setProperty(CONTENT_TYPE, entry.contentType);
+		File temp = new File(dir, entry.key + META + TEMP);
+		OutputStream os = new FileOutputStream(temp);
+		try {
+			props.store(os, null);
+		} finally {
+			os.close();
+		}
+		File meta = getMeta(entry.key);
+		if (!temp.renameTo(meta)) {
+			delete(meta);
+			if (!temp.renameTo(meta)) {
+				delete(temp);
+				throw new IOException("Failed to rename " + temp);
+			}
+		}
+	}
+
+	private File getBody(String key) {
+		return new File(dir, key + BODY);
+	}
+
+	private File getMeta(String key) {
+		return new File(dir, key + META);
+	}
+
+	private static void delete(File file) {
+		if (file.exists() && !file.delete()) {
+			log.debug("Failed to delete {}", file);
+		}
+	}
+
+	/**
+	 * @return the hex SHA-1 hash of the URL
+	 */
+	static String getKey(String url) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			byte[] hash = digest.digest(url.getBytes("UTF-8"));
+			StringBuilder sb = new StringBuilder(hash.length * 2);
+			for (byte b : hash) {
+				sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+				sb.append(Character.forDigit(b & 0xf, 16));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		} catch (java.io.UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static final class Entry {
+		final String key;
+		final String url;
+		String etag;
+		String lastModified;
+		String contentType;
+		long length;
+		long used;
+
+		Entry(String key, String url) {
+			this.key = key;
+			this.url = url;
+		}
+	}
+
+	/**
+	 * Connection that reads a response from the cache
+	 */
+	private static final class CachedConnection extends URLConnection {
+		private final Entry entry;
+		private final InputStream is;
+
+		CachedConnection(URL url, Entry entry, InputStream is) {
+			super(url);
+			this.entry = entry;
+			this.is = is;
+			connected = true;
+		}
+
+		@Override
+		public void connect() {
+			// already connected
+		}
+
+		@Override
+		public InputStream getInputStream() {
+			return is;
+		}
+
+		@Override
+		public String getHeaderField(String name) {
+			if (CONTENT_TYPE.equalsIgnoreCase(name)) return entry.contentType;
+			if (ETAG.equalsIgnoreCase(name)) return entry.etag;
+			if (LAST_MODIFIED.equalsIgnoreCase(name)) return entry.lastModified;
+			if ("Content-Length".equalsIgnoreCase(name)) return Long.toString(entry.length);
+			return null;
+		}
+	}
+
+	/**
+	 * Stream over a temporary file that is deleted once read
+	 */
+	private static final class DeleteOnCloseInputStream extends FilterInputStream {
+		private final File file;
+
+		DeleteOnCloseInputStream(File file) throws FileNotFoundException {
+			super(new FileInputStream(file));
+			this.file = file;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				delete(file);
+			}
+		}
+	}
+}
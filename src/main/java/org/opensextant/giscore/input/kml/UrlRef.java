@@ -106,6 +106,7 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipInputStream;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -176,6 +177,15 @@ public final class UrlRef implements java.io.Serializable {
 
 	private static volatile boolean httpsInit;
 
+	private static volatile UrlCache cache;
+
+	/**
+	 * Default number of local KMZ files kept open for reading their entries
+	 */
+	public static final int DEFAULT_MAX_OPEN_KMZ_FILES = 8;
+
+	private static final ZipFilePool kmzFiles = new ZipFilePool(DEFAULT_MAX_OPEN_KMZ_FILES);
+
 	/**
 	 * Convert URL to internalized "kmz" URI with absolute URL of parent KMZ and the kmz
 	 * file path, which is the relative path to target file inside the KMZ. This allows
@@ -311,6 +321,20 @@ public final class UrlRef implements java.io.Serializable {
 		if (isEscaped) {
 			kmzPath = kmzPath.replace("%20", " "); // unescape all escaped whitespace chars
 		}
+		// local KMZ files are opened through the central directory so the entry
+		// can be read directly without inflating all of the entries before it
+		final File file = "file".equals(url.getProtocol()) ? FileUtils.toFile(url) : null;
+		if (file != null && file.isFile()) {
+			try {
+				InputStream is = kmzFiles.getInputStream(file, kmzPath, isEscaped);
+				if (is == null)
+					throw new FileNotFoundException("Relative URL not found in KMZ: " + kmzPath);
+				return is;
+			} catch (ZipException e) {
+				// not readable as a zip file so fall back to scanning the stream
+				log.debug("Failed to open " + file + " as a zip file", e);
+			}
+		}
 		URLConnection conn = getConnection(url, proxy);
 		ZipInputStream zis = new ZipInputStream(conn.getInputStream());
 		boolean closeOnExit = true;
@@ -474,10 +498,62 @@ public final class UrlRef implements java.io.Serializable {
 		}
 
 		// Connect to get the response headers
+		final UrlCache urlCache = cache;
+		if (urlCache != null && conn instanceof HttpURLConnection) {
+			return urlCache.connect((HttpURLConnection) conn);
+		}
 		conn.connect();
 		return conn;
 	}
 
+	/**
+	 * Set the most local KMZ files kept open to read the entries referenced
+	 * by KMZ <code>UrlRef</code>s. The least recently used files are closed
+	 * beyond this limit once their entries have been read.
+	 *
+	 * @param max the number of files, at least 1
+	 * @throws IllegalArgumentException if max is less than 1
+	 */
+	public static void setMaxOpenKmzFiles(int max) {
+		kmzFiles.setMaxSize(max);
+	}
+
+	/**
+	 * @return the most local KMZ files kept open
+	 */
+	public static int getMaxOpenKmzFiles() {
+		return kmzFiles.getMaxSize();
+	}
+
+	/**
+	 * Close the local KMZ files kept open to read their entries, for example
+	 * so they can be deleted or replaced on platforms that lock open files.
+	 * Files with entries still being read are closed once those streams are
+	 * closed.
+	 */
+	public static void closeKmzFiles() {
+		kmzFiles.clear();
+	}
+
+	/**
+	 * Set the cache used for all HTTP resources fetched through <code>UrlRef</code>,
+	 * including the network links and overlays followed by {@link KmlReader}.
+	 * By default no cache is used.
+	 *
+	 * @param urlCache the cache, or <code>null</code> to fetch without a cache
+	 */
+	public static void setCache(UrlCache urlCache) {
+		cache = urlCache;
+	}
+
+	/**
+	 * @return the cache used for HTTP resources, <code>null</code> if none is set
+	 */
+	@CheckForNull
+	public static UrlCache getCache() {
+		return cache;
+	}
+
 	/**
 	 * @return the internal URI of the UrlRef, never {@code null}
 	 */
@@ -0,0 +1,222 @@
+/****************************************************************************************
+ *  ZipFilePool.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.input.kml;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of open KMZ files read through their central directory so any entry
+ * can be opened without inflating the entries before it. At most a fixed
+ * number of archives are kept open, closing the least recently used ones.
+ * An archive is only closed once all streams opened from it are closed, and
+ * is opened again if the file has changed since it was opened.
+ */
+final class ZipFilePool {
+
+	private static final Logger log = LoggerFactory.getLogger(ZipFilePool.class);
+
+	private int maxSize;
+
+	/**
+	 * Open archives by file from the least to the most recently used
+	 */
+	private final LinkedHashMap<File, Handle> handles = new LinkedHashMap<File, Handle>(16, 0.75f, true);
+
+	/**
+	 * @param maxSize the most archives to keep open, at least 1
+	 */
+	ZipFilePool(int maxSize) {
+		setMaxSize(maxSize);
+	}
+
+	synchronized void setMaxSize(int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("maxSize should be at least 1");
+		}
+		this.maxSize = maxSize;
+		trim();
+	}
+
+	synchronized int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Open an entry of an archive.
+	 *
+	 * @param file the archive, never <code>null</code>
+	 * @param name the name of the entry
+	 * @param unescape true to match names with %20 escapes as spaces
+	 * @return the entry contents, or <code>null</code> if the archive has no such entry
+	 * @throws IOException if the archive cannot be opened as a zip file
+	 */
+	@CheckForNull
+	InputStream getInputStream(File file, String name, boolean unescape) throws IOException {
+		Handle handle = acquire(file);
+		boolean release = true;
+		try {
+			ZipEntry entry = handle.zip.getEntry(name);
+			if (entry == null && unescape) {
+				Enumeration<? extends ZipEntry> entries = handle.zip.entries();
+				while (entries.hasMoreElements()) {
+					ZipEntry e = entries.nextElement();
+					if (name.equals(e.getName().replace("%20", " "))) {
+						entry = e;
+						break;
+					}
+				}
+			}
+			if (entry == null || entry.isDirectory()) {
+				return null;
+			}
+			InputStream is = new EntryInputStream(handle.zip.getInputStream(entry), handle);
+			release = false;
+			return is;
+		} finally {
+			if (release) {
+				release(handle);
+			}
+		}
+	}
+
+	/**
+	 * Close all archives that are not being read
+	 */
+	synchronized void clear() {
+		for (Handle handle : new ArrayList<Handle>(handles.values())) {
+			retire(handle);
+		}
+	}
+
+	private synchronized Handle acquire(File file) throws IOException {
+		Handle handle = handles.get(file);
+		if (handle != null && (handle.lastModified != file.lastModified() || handle.length != file.length())) {
+			log.debug("Reopening changed file {}", file);
+			retire(handle);
+			handle = null;
+		}
+		if (handle == null) {
+			long lastModified = file.lastModified();
+			long length = file.length();
+			handle = new Handle(file, new ZipFile(file), lastModified, length);
+			handles.put(file, handle);
+			trim();
+		}
+		handle.refs++;
+		return handle;
+	}
+
+	private synchronized void release(Handle handle) {
+		handle.refs--;
+		if (handle.retired && handle.refs == 0) {
+			close(handle);
+		}
+	}
+
+	/**
+	 * Close the least recently used archives beyond the limit
+	 */
+	private void trim() {
+		Iterator<Handle> it = handles.values().iterator();
+		int size = handles.size();
+		while (size > maxSize && it.hasNext()) {
+			Handle handle = it.next();
+			it.remove();
+			size--;
+			handle.retired = true;
+			if (handle.refs == 0) {
+				close(handle);
+			}
+		}
+	}
+
+	private void retire(Handle handle) {
+		if (handles.get(handle.file) == handle) {
+			handles.remove(handle.file);
+		}
+		handle.retired = true;
+		if (handle.refs == 0) {
+			close(handle);
+		}
+	}
+
+	private static void close(Handle handle) {
+		try {
+			handle.zip.close();
+		} catch (IOException e) {
+			log.debug("Failed to close " + handle.file, e);
+		}
+	}
+
+	private static final class Handle {
+		final File file;
+		final ZipFile zip;
+		final long lastModified;
+		final long length;
+		/**
+		 * Count of open entry streams
+		 */
+		int refs;
+		/**
+		 * Set once removed from the pool, closed when no longer read
+		 */
+		boolean retired;
+
+		Handle(File file, ZipFile zip, long lastModified, long length) {
+			this.file = file;
+			this.zip = zip;
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+	}
+
+	/**
+	 * Entry stream that releases its archive when closed
+	 */
+	private final class EntryInputStream extends FilterInputStream {
+		private Handle handle;
+
+		EntryInputStream(InputStream in, Handle handle) {
+			super(in);
+			this.handle = handle;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				if (handle != null) {
+					release(handle);
+					handle = null;
+				}
+			}
+		}
+	}
+}
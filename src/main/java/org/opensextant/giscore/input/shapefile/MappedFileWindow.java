@@ -0,0 +1,130 @@
+/****************************************************************************************
+ *  MappedFileWindow.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantibility and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.input.shapefile;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Read-only memory mapping of a file that hands out slices of the mapping.
+ * Files up to 2GB are mapped once as a whole, larger files are mapped in
+ * windows that are moved as slices outside the current window are requested.
+ * Reading sequentially or mostly sequentially therefore maps the file only
+ * a few times regardless of the number of slices.
+ */
+final class MappedFileWindow {
+
+	/**
+	 * Window size used for files that are too large to be mapped at once
+	 */
+	static final long DEFAULT_WINDOW_SIZE = 1L << 30;
+
+	private final FileChannel channel;
+
+	private final long size;
+
+	private final long windowSize;
+
+	/**
+	 * The current mapping, created on the first slice
+	 */
+	private MappedByteBuffer window;
+
+	/**
+	 * Offset of the current mapping in the file
+	 */
+	private long windowStart;
+
+	/**
+	 * Count of mappings created, for testing
+	 */
+	private int mapCount;
+
+	/**
+	 * Map the whole file if possible, otherwise use windows of
+	 * {@link #DEFAULT_WINDOW_SIZE} bytes.
+	 *
+	 * @param channel the open file channel, never <code>null</code>
+	 * @throws IOException if an I/O error occurs
+	 */
+	MappedFileWindow(FileChannel channel) throws IOException {
+		this(channel, channel.size() <= Integer.MAX_VALUE ? channel.size() : DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * @param channel the open file channel, never <code>null</code>
+	 * @param windowSize the size of each mapped window, at most
+	 * <code>Integer.MAX_VALUE</code>
+	 * @throws IOException if an I/O error occurs
+	 */
+	MappedFileWindow(FileChannel channel, long windowSize) throws IOException {
+		if (channel == null) {
+			throw new IllegalArgumentException("channel should never be null");
+		}
+		if (windowSize > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("windowSize must be no larger than integer max");
+		}
+		this.channel = channel;
+		this.size = channel.size();
+		this.windowSize = Math.max(windowSize, 1);
+	}
+
+	/**
+	 * @return the size of the file in bytes
+	 */
+	long size() {
+		return size;
+	}
+
+	/**
+	 * @return the count of mappings created so far
+	 */
+	int getMapCount() {
+		return mapCount;
+	}
+
+	/**
+	 * Get a slice of the file. The slice shares the mapped memory, has
+	 * position zero, a limit of <code>length</code> and is independent of
+	 * other slices.
+	 *
+	 * @param position offset in the file
+	 * @param length count of bytes in the slice
+	 * @return the slice, never <code>null</code>
+	 * @throws EOFException if the range extends beyond the end of the file
+	 * @throws IOException if the file cannot be mapped
+	 */
+	ByteBuffer slice(long position, int length) throws IOException {
+		if (position < 0 || length < 0 || position + length > size) {
+			throw new EOFException("Unexpected EOF while reading at: " + position + " len: " + length);
+		}
+		if (window == null || position < windowStart
+				|| position + length > windowStart + window.capacity()) {
+			long mapSize = Math.max(length, Math.min(windowSize, size - position));
+			window = channel.map(MapMode.READ_ONLY, position, mapSize);
+			windowStart = position;
+			mapCount++;
+		}
+		ByteBuffer buffer = window.duplicate();
+		int offset = (int) (position - windowStart);
+		buffer.limit(offset + length);
+		buffer.position(offset);
+		return buffer.slice();
+	}
+}
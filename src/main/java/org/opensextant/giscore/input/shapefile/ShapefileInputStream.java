@@ -19,6 +19,7 @@
 package org.opensextant.giscore.input.shapefile;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
 
 import java.io.BufferedInputStream;
 import java.io.File;
@@ -34,6 +35,7 @@ import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 import org.apache.commons.io.IOUtils;
+import org.opensextant.geodesy.Geodetic2DBounds;
 import org.opensextant.giscore.IAcceptSchema;
 import org.opensextant.giscore.events.IGISObject;
 import org.opensextant.giscore.events.Schema;
@@ -91,6 +93,11 @@ public class ShapefileInputStream extends GISInputStreamBase {
 	 */
 	private final boolean usingTemp;
 
+	/**
+	 * Bounds of the features read, <code>null</code> to read all features
+	 */
+	private Geodetic2DBounds filter;
+
 	/**
 	 * Ctor
 	 *
@@ -274,6 +281,23 @@ public class ShapefileInputStream extends GISInputStreamBase {
 		return rval;
 	}
 
+	/**
+	 * Restrict the features read from each shapefile to the records whose
+	 * bounding box intersects the given bounds, records outside the bounds
+	 * are skipped without being decoded. Applies to the shapefile being read
+	 * and all following shapefiles.
+	 *
+	 * @param bounds the bounds of the features to read, or <code>null</code>
+	 *               to read all features
+	 * @see SingleShapefileInputHandler#setFilter(Geodetic2DBounds)
+	 */
+	public void setFilter(@Nullable Geodetic2DBounds bounds) {
+		filter = bounds;
+		if (handler != null) {
+			handler.setFilter(bounds);
+		}
+	}
+
 	/**
 	 * Calculate the shapefile basename and open the single handler to the
 	 * new shapefile.
@@ -286,5 +310,6 @@ public class ShapefileInputStream extends GISInputStreamBase {
 		int i = basename.indexOf(".shp");
 		basename = basename.substring(0, i);
 		handler = new SingleShapefileInputHandler(workingDir, basename);
+		handler.setFilter(filter);
 	}
 }
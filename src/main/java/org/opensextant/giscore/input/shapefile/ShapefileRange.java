@@ -0,0 +1,162 @@
+/****************************************************************************************
+ *  ShapefileRange.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantibility and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.input.shapefile;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * A range of records <code>[start, end)</code> of a shapefile that can be
+ * read independently of the other records using the shx index. A shapefile
+ * is divided into ranges with {@link #split(File, String, int)} so the ranges
+ * can be decoded in parallel, each range on its own thread reading the
+ * handler returned by {@link #open()}.
+ */
+public final class ShapefileRange {
+
+	private final File inputDirectory;
+	private final String shapefilename;
+	private final int start;
+	private final int end;
+
+	/**
+	 * Ctor
+	 * @param inputDirectory input directory, must exist
+	 * @param shapefilename  base shape file name without the .shp extension
+	 * @param start          zero-based number of the first record
+	 * @param end            number of the record after the last record
+	 * @throws IllegalArgumentException if a name is <code>null</code> or the
+	 *                                  range is negative
+	 */
+	public ShapefileRange(File inputDirectory, String shapefilename, int start, int end) {
+		if (inputDirectory == null) {
+			throw new IllegalArgumentException("inputDirectory should never be null");
+		}
+		if (StringUtils.isBlank(shapefilename)) {
+			throw new IllegalArgumentException("shapefilename should never be null or blank");
+		}
+		if (start < 0 || start > end) {
+			throw new IllegalArgumentException("Invalid record range [" + start + ", " + end + ")");
+		}
+		this.inputDirectory = inputDirectory;
+		this.shapefilename = shapefilename;
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * Divide a shapefile into at most <code>parts</code> ranges of about
+	 * the same size in the shp file, so ranges of large records hold fewer
+	 * records than ranges of small records. Empty ranges are omitted.
+	 *
+	 * @param inputDirectory input directory, must exist
+	 * @param shapefilename  base shape file name without the .shp extension
+	 * @param parts          the maximum count of ranges, must be positive
+	 * @return the ranges in record order, empty if the shapefile has no records
+	 * @throws IllegalArgumentException if parts is not positive or the
+	 *                                  shapefile cannot be found
+	 * @throws IllegalStateException    if the shapefile has no shx index
+	 * @throws IOException              if an I/O error occurs
+	 */
+	public static List<ShapefileRange> split(File inputDirectory, String shapefilename, int parts)
+			throws IOException {
+		if (parts < 1) {
+			throw new IllegalArgumentException("parts must be positive");
+		}
+		List<ShapefileRange> ranges = new ArrayList<ShapefileRange>(parts);
+		SingleShapefileInputHandler handler = new SingleShapefileInputHandler(inputDirectory, shapefilename);
+		try {
+			int count = handler.getRecordCount();
+			long fileSize = handler.getFileSize();
+			int rangeStart = 0;
+			for (int i = 1; i <= parts && rangeStart < count; i++) {
+				int rangeEnd;
+				if (i == parts) {
+					rangeEnd = count;
+				} else {
+					// first record at or after the target offset
+					long target = 100 + (fileSize - 100) * i / parts;
+					int lo = rangeStart, hi = count;
+					while (lo < hi) {
+						int mid = (lo + hi) >>> 1;
+						if (handler.getRecordOffset(mid) < target) lo = mid + 1;
+						else hi = mid;
+					}
+					rangeEnd = lo;
+				}
+				if (rangeEnd > rangeStart) {
+					ranges.add(new ShapefileRange(inputDirectory, shapefilename, rangeStart, rangeEnd));
+					rangeStart = rangeEnd;
+				}
+			}
+		} finally {
+			handler.close();
+		}
+		return ranges;
+	}
+
+	/**
+	 * Open a new handler that reads the schema, if there is a dbf, followed
+	 * by the features of this range. The handler must be closed by the caller.
+	 *
+	 * @return the handler, never <code>null</code>
+	 * @throws IllegalStateException if the shapefile has no shx index
+	 * @throws IndexOutOfBoundsException if the range exceeds the records of the shapefile
+	 * @throws IOException if an I/O error occurs
+	 */
+	public SingleShapefileInputHandler open() throws IOException {
+		SingleShapefileInputHandler handler = new SingleShapefileInputHandler(inputDirectory, shapefilename);
+		try {
+			handler.setRange(start, end);
+		} catch (IOException e) {
+			handler.close();
+			throw e;
+		} catch (RuntimeException e) {
+			handler.close();
+			throw e;
+		}
+		return handler;
+	}
+
+	/**
+	 * @return zero-based number of the first record
+	 */
+	public int getStart() {
+		return start;
+	}
+
+	/**
+	 * @return number of the record after the last record
+	 */
+	public int getEnd() {
+		return end;
+	}
+
+	/**
+	 * @return the count of records in the range
+	 */
+	public int size() {
+		return end - start;
+	}
+
+	@Override
+	public String toString() {
+		return shapefilename + "[" + start + ", " + end + ")";
+	}
+}
@@ -18,6 +18,9 @@
  ***************************************************************************************/
 package org.opensextant.giscore.input.shapefile;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -31,9 +34,9 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
-import java.nio.channels.FileChannel.MapMode;
 import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -56,6 +59,7 @@ import org.opensextant.giscore.geometry.LinearRing;
 import org.opensextant.giscore.geometry.MultiLine;
 import org.opensextant.giscore.geometry.MultiPoint;
 import org.opensextant.giscore.geometry.MultiPolygons;
+import org.opensextant.giscore.geometry.PackedPointList;
 import org.opensextant.giscore.geometry.Point;
 import org.opensextant.giscore.geometry.Polygon;
 import org.opensextant.giscore.input.GISInputStreamBase;
@@ -114,6 +118,21 @@ public class SingleShapefileInputHandler extends GISInputStreamBase implements
      */
     private FileChannel fileChannel;
 
+    /**
+     * Mapping of the shp file, records are sliced out of it
+     */
+    private MappedFileWindow shpMapping;
+
+    /**
+     * Open shx index file, <code>null</code> if there is no index
+     */
+    private FileChannel indexChannel;
+
+    /**
+     * Mapping of the shx index file that gives the offset of each record
+     */
+    private MappedFileWindow shxMapping;
+
     /**
      * Open shp stream as a channel
      */
@@ -123,7 +142,7 @@ public class SingleShapefileInputHandler extends GISInputStreamBase implements
      * Ensures that we don't read bytes out of order when reading from an
      * InputStream.
      */
-    private int plainFileOffsetSanity = 0;
+    private long plainFileOffsetSanity = 0;
     
     /**
      * Geometry type for this shapefile
@@ -133,7 +152,7 @@ public class SingleShapefileInputHandler extends GISInputStreamBase implements
     /**
      * Where we are in the shpFile currently
      */
-    private int fileOffset = 0;
+    private long fileOffset = 0;
 
     /**
      * The total length of the file, used to know if we are at the end of the
@@ -142,6 +161,27 @@ public class SingleShapefileInputHandler extends GISInputStreamBase implements
      */
     private int fileLength = 0;
 
+    /**
+     * Record number of the next feature returned by {@link #read()}
+     */
+    private int recordNumber = 0;
+
+    /**
+     * Sequential reading stops before this record number
+     */
+    private int endRecord = Integer.MAX_VALUE;
+
+    /**
+     * Bounds of the features returned by {@link #read()}, <code>null</code>
+     * to return all features
+     */
+    private Geodetic2DBounds filter;
+
+    /**
+     * Bounds of the filter in degrees as west, south, east, north
+     */
+    private double[] filterDegrees;
+
     /*
       * Holds the current record length, used to figure out if a geometry read
       * is overrunning the current written record for error detection purposes
@@ -200,6 +240,27 @@ public class SingleShapefileInputHandler extends GISInputStreamBase implements
      */
     public SingleShapefileInputHandler(File inputDirectory, String shapefilename)
             throws IOException {
+        this(inputDirectory, shapefilename, 0);
+    }
+
+    /**
+     * Create <tt>SingleShapefileInputHandler</tt> for single shapefile given
+     * input directory and base filename with a limit on the size of the
+     * memory mapped regions of the shp file. By default files up to 2GB are
+     * mapped as a whole and larger files in windows of 1GB, a smaller window
+     * limits the address space used, e.g. on 32-bit JVMs.
+     *
+     * @param inputDirectory input directory, must exist
+     * @param shapefilename  base shape file name (never null or blank string)
+     *                       without the .shp extension
+     * @param mapWindowSize  the maximum size in bytes of a mapped region of
+     *                       the shp file, zero or negative for the default
+     * @throws IllegalArgumentException if Input directory is null or does not exist
+     *                                  or if shapefilename is null or blank string.
+     * @throws IOException              if an I/O error occurs
+     */
+    public SingleShapefileInputHandler(File inputDirectory, String shapefilename,
+            long mapWindowSize) throws IOException {
         if (inputDirectory == null || !inputDirectory.exists()) {
             throw new IllegalArgumentException(
                     "Input directory must exist and be non-null");
@@ -213,6 +274,7 @@ public class SingleShapefileInputHandler extends GISInputStreamBase implements
         File dbfFile = new File(inputDirectory, shapefilename + ".dbf");
         File shpFile = new File(inputDirectory, shapefilename + ".shp");
         File prjFile = new File(inputDirectory, shapefilename + ".prj");
+        File shxFile = new File(inputDirectory, shapefilename + ".shx");
 
         if (!shpFile.exists()) {
             throw new IllegalArgumentException(
@@ -228,8 +290,26 @@ public class SingleShapefileInputHandler extends GISInputStreamBase implements
 
         FileInputStream fis = new FileInputStream(shpFile);
         fileChannel = fis.getChannel();
+        shpMapping = mapWindowSize > 0 ? new MappedFileWindow(fileChannel, mapWindowSize)
+                : new MappedFileWindow(fileChannel);
         readHeader();
         fileOffset = 100;
+
+        if (shxFile.exists()) {
+            FileChannel channel = new FileInputStream(shxFile).getChannel();
+            try {
+                long size = channel.size();
+                if (size >= 100 && (size - 100) % 8 == 0) {
+                    shxMapping = new MappedFileWindow(channel);
+                    indexChannel = channel;
+                } else {
+                    logger.warn("Ignoring invalid shx file for shapefile " + shapefilename);
+                }
+            } finally {
+                // records are read sequentially without the index
+                if (indexChannel == null) channel.close();
+            }
+        }
     }
 
     /**
@@ -277,9 +357,9 @@ public class SingleShapefileInputHandler extends GISInputStreamBase implements
         }
     }
     
-    private ByteBuffer readFromChannel(int position, int size) throws IOException {
-        if(fileChannel != null) {
-            return fileChannel.map(MapMode.READ_ONLY, position, size);
+    private ByteBuffer readFromChannel(long position, int size) throws IOException {
+        if(shpMapping != null) {
+            return shpMapping.slice(position, size);
         } else {
             if(position != plainFileOffsetSanity) {
                 throw new AssertionError("Stream reading was not fully sequential, requested: " + position + " furthest seen: " + plainFileOffsetSanity);
@@ -311,6 +391,16 @@ public class SingleShapefileInputHandler extends GISInputStreamBase implements
                 channelCloseException = new IllegalStateException("Problem closing shp stream", e);
             }
             fileChannel = null;
+            shpMapping = null;
+        }
+        if (indexChannel != null) {
+            try {
+                indexChannel.close();
+            } catch (IOException e) {
+                channelCloseException = new IllegalStateException("Problem closing shx stream", e);
+            }
+            indexChannel = null;
+            shxMapping = null;
         }
         if (plainChannel != null) {
             try {
@@ -345,7 +435,8 @@ public class SingleShapefileInputHandler extends GISInputStreamBase implements
      * @throws IllegalArgumentException if unable to read a valid geometry
      */
     private IGISObject readNext() throws IOException {
-        if (fileOffset >= (2 * fileLength)) return null;
+        if (filter != null) return readNextFiltered();
+        if (fileOffset >= (2L * fileLength) || recordNumber >= endRecord) return null;
 
         Feature f;
         if (dbf != null) {
@@ -358,10 +449,108 @@ public class SingleShapefileInputHandler extends GISInputStreamBase implements
         if (f != null) {
             Geometry geo = getGeometry(is3D, includeM);
             f.setGeometry(geo);
+            recordNumber++;
         }
         return f;
     }
 
+    /**
+     * Read the next feature whose record bounding box intersects the filter.
+     * The bounding box is read from the record before decoding any point,
+     * the dbf rows of the records skipped are not decoded.
+     *
+     * @return the next feature or <code>null</code> if we are done.
+     * @throws IOException              if an I/O error occurs
+     * @throws IllegalArgumentException if unable to read a valid geometry
+     */
+    private IGISObject readNextFiltered() throws IOException {
+        int skipped = 0;
+        while (fileOffset < (2L * fileLength) && recordNumber < endRecord) {
+            ByteBuffer buffer = readFromChannel(fileOffset, 8);
+            readInt(buffer, ByteOrder.BIG_ENDIAN); // record number
+            int contentLen = readInt(buffer, ByteOrder.BIG_ENDIAN); // In 16 bit words
+            checkContentLength(contentLen);
+            buffer = readFromChannel(fileOffset + 8, contentLen * 2);
+            fileOffset += 2L * (contentLen + 4);
+            recordNumber++;
+            if (!intersectsFilter(buffer)) {
+                skipped++;
+                continue;
+            }
+            Feature f;
+            if (dbf != null) {
+                dbf.skipRecords(skipped);
+                f = (Feature) dbf.read();
+                if (f == null) return null;
+            } else {
+                f = new Feature();
+            }
+            f.setGeometry(getGeometry(buffer, is3D(shpType), isM(shpType)));
+            return f;
+        }
+        return null;
+    }
+
+    // Test the bounding box of a record, or its point for point records, against the filter.
+    // Null shape records have neither so never intersect.
+    private boolean intersectsFilter(ByteBuffer buffer) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        double xMin, yMin, xMax, yMax;
+        try {
+            int recShapeType = buffer.getInt(0);
+            if (recShapeType == NULL_TYPE) return false;
+            xMin = buffer.getDouble(4);
+            yMin = buffer.getDouble(12);
+            if (recShapeType % 10 == POINT_TYPE) {
+                xMax = xMin;
+                yMax = yMin;
+            } else {
+                xMax = buffer.getDouble(20);
+                yMax = buffer.getDouble(28);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Shapefile contains badly formatted record");
+        }
+        double west = filterDegrees[0], south = filterDegrees[1];
+        double east = filterDegrees[2], north = filterDegrees[3];
+        if (yMax < south || yMin > north) return false;
+        if (west <= east) return xMax >= west && xMin <= east;
+        // filter crosses the anti-meridian
+        return xMax >= west || xMin <= east;
+    }
+
+    /**
+     * Restrict the features returned by {@link #read()} to the records whose
+     * bounding box intersects the given bounds. Records outside the bounds
+     * are skipped using the bounding box stored in each record, without
+     * decoding their points or their dbf rows. Features read by record number
+     * are not filtered.
+     *
+     * @param bounds the bounds of the features to read, or <code>null</code>
+     *               to read all features
+     */
+    public void setFilter(@Nullable Geodetic2DBounds bounds) {
+        if (bounds == null) {
+            filter = null;
+            filterDegrees = null;
+        } else {
+            filter = new Geodetic2DBounds(bounds);
+            filterDegrees = new double[] {
+                    bounds.getWestLon().inDegrees(), bounds.getSouthLat().inDegrees(),
+                    bounds.getEastLon().inDegrees(), bounds.getNorthLat().inDegrees()
+            };
+        }
+    }
+
+    /**
+     * @return the bounds of the features returned by {@link #read()},
+     *         <code>null</code> if features are not filtered
+     */
+    @CheckForNull
+    public Geodetic2DBounds getFilter() {
+        return filter;
+    }
+
     // Read the next Geometry Object and validate type. Return null at valid EOF.
     private Geometry getGeometry(boolean is3D, boolean includeM)
             throws IOException, IllegalArgumentException {
@@ -369,12 +558,153 @@ public class SingleShapefileInputHandler extends GISInputStreamBase implements
         ByteBuffer buffer = readFromChannel(fileOffset, 8);
         int num = readInt(buffer, ByteOrder.BIG_ENDIAN);
         int contentLen = readInt(buffer, ByteOrder.BIG_ENDIAN); // In 16 bit words
-        int nextFilePos = 2 * (contentLen + 4) + fileOffset;
-        if (contentLen <= 4)
+        long nextFilePos = 2L * (contentLen + 4) + fileOffset;
+        checkContentLength(contentLen);
+        Geometry geomObj = getGeometry(fileOffset + 8, contentLen * 2, is3D, includeM);
+        fileOffset = nextFilePos; // Reposition for next call
+        return geomObj;
+    }
+
+    /**
+     * @return <code>true</code> if the shapefile has an shx index so records
+     * can be read by record number
+     */
+    public boolean hasIndex() {
+        return shxMapping != null;
+    }
+
+    /**
+     * Get the count of records from the shx index.
+     *
+     * @return the count of records in the shapefile
+     * @throws IllegalStateException if the shapefile has no shx index
+     * @see #hasIndex()
+     */
+    public int getRecordCount() {
+        if (shxMapping == null) {
+            throw new IllegalStateException("Shapefile has no shx index");
+        }
+        return (int) ((shxMapping.size() - 100) / 8);
+    }
+
+    /**
+     * Read a feature, with its attributes from the dbf if present, using
+     * the shx index. This does not change the position of the sequential
+     * {@link #read()}.
+     *
+     * @param recordNumber zero-based record number
+     * @return the feature, never <code>null</code>
+     * @throws IllegalStateException if the shapefile has no shx index or
+     *      the dbf is not read from a file
+     * @throws IndexOutOfBoundsException if recordNumber is not a valid record
+     * @throws IOException if an I/O error occurs or the record is invalid
+     */
+    public Feature readFeature(int recordNumber) throws IOException {
+        Feature f = new Feature();
+        if (dbf != null) {
+            dbf.readRecord(recordNumber, f);
+        }
+        f.setGeometry(readGeometry(recordNumber));
+        return f;
+    }
+
+    /**
+     * Restrict the sequential {@link #read()} to the records in the range
+     * <code>[start, end)</code>, positioning it at the start record. A schema
+     * that was not yet read is still returned first.
+     *
+     * @param start zero-based number of the first record
+     * @param end   number of the record after the last record read
+     * @throws IllegalStateException if the shapefile has no shx index or
+     *      the dbf is not read from a file
+     * @throws IndexOutOfBoundsException if the range is not valid
+     * @throws IOException if an I/O error occurs
+     * @see ShapefileRange
+     */
+    public void setRange(int start, int end) throws IOException {
+        int count = getRecordCount();
+        if (start < 0 || start > end || end > count) {
+            throw new IndexOutOfBoundsException("Invalid record range [" + start + ", " + end + ")");
+        }
+        if (dbf != null) {
+            dbf.seek(start);
+        }
+        fileOffset = start < count ? getRecordOffset(start) : 2L * fileLength;
+        recordNumber = start;
+        endRecord = end;
+    }
+
+    /**
+     * Restrict the attributes read from the dbf for each feature to the given
+     * fields, the bytes of the other fields are skipped without being decoded.
+     * Has no effect if there is no dbf.
+     *
+     * @param fieldNames names of the fields to read, or <code>null</code>
+     *                   to read all fields
+     * @throws IllegalArgumentException if a field is not in the schema
+     * @see DbfInputStream#setProjection(java.util.Collection)
+     */
+    public void setProjection(Collection<String> fieldNames) {
+        if (dbf != null) {
+            dbf.setProjection(fieldNames);
+        }
+    }
+
+    /**
+     * @return the size of the shp file in bytes
+     */
+    long getFileSize() {
+        return 2L * fileLength;
+    }
+
+    /**
+     * Get the offset of a record in the shp file from the shx index
+     * @param recordNumber zero-based record number, assumed valid
+     * @return the offset in bytes of the record header
+     */
+    long getRecordOffset(int recordNumber) throws IOException {
+        ByteBuffer index = shxMapping.slice(100 + 8L * recordNumber, 4);
+        return 2L * readInt(index, ByteOrder.BIG_ENDIAN); // In 16 bit words
+    }
+
+    /**
+     * Read the geometry of a record using the shx index. This does not change
+     * the position of the sequential {@link #read()}.
+     *
+     * @param recordNumber zero-based record number
+     * @return the geometry, <code>null</code> for a null shape record
+     * @throws IllegalStateException if the shapefile has no shx index
+     * @throws IndexOutOfBoundsException if recordNumber is not a valid record
+     * @throws IOException if an I/O error occurs or the record is invalid
+     */
+    @CheckForNull
+    public Geometry readGeometry(int recordNumber) throws IOException {
+        if (recordNumber < 0 || recordNumber >= getRecordCount()) {
+            throw new IndexOutOfBoundsException("Invalid record number " + recordNumber);
+        }
+        ByteBuffer index = shxMapping.slice(100 + 8L * recordNumber, 8);
+        long offset = 2L * readInt(index, ByteOrder.BIG_ENDIAN); // In 16 bit words
+        int contentLen = readInt(index, ByteOrder.BIG_ENDIAN);
+        checkContentLength(contentLen);
+        return getGeometry(offset + 8, contentLen * 2, is3D(shpType), isM(shpType));
+    }
+
+    // A record holds at least its shape type, which is all a null shape record holds
+    private static void checkContentLength(int contentLen) throws IOException {
+        if (contentLen < 2) // In 16 bit words
             throw new IOException("Shapefile contains badly formatted record");
+    }
+
+    // Read the Geometry content of a record at the given position and validate type
+    private Geometry getGeometry(long position, int recLen, boolean is3D, boolean includeM)
+            throws IOException, IllegalArgumentException {
+        return getGeometry(readFromChannel(position, recLen), is3D, includeM);
+    }
+
+    // Decode the Geometry content of a record and validate type
+    private Geometry getGeometry(ByteBuffer buffer, boolean is3D, boolean includeM)
+            throws IOException, IllegalArgumentException {
         Geometry geomObj = null;
-        int recLen = contentLen * 2;
-        buffer = readFromChannel(fileOffset + 8, recLen);
         int recShapeType = readInt(buffer, ByteOrder.LITTLE_ENDIAN);
         if (recShapeType != NULL_TYPE) {
             if (recShapeType != shpType)
@@ -393,7 +723,6 @@ public class SingleShapefileInputHandler extends GISInputStreamBase implements
                             shpType + ") that is currently unsupported");
             }
         }
-        fileOffset = nextFilePos; // Reposition for next call
         return geomObj;
     }
 
@@ -506,9 +835,9 @@ public class SingleShapefileInputHandler extends GISInputStreamBase implements
         return parts;
     }
 
-    // Read PolyLine and Polygon point values and return Geodetic point array
-    private Geodetic2DPoint[] getPolyPoints(ByteBuffer buffer, int nPoints, boolean is3D, boolean includeM) {
-        Geodetic2DPoint[] pts;
+    // Read PolyLine and Polygon point values and return packed point list
+    private PackedPointList getPolyPoints(ByteBuffer buffer, int nPoints, boolean is3D, boolean includeM) {
+        PackedPointList pts = new PackedPointList(nPoints);
         // Read the X and Y points into arrays
         double[] x = new double[nPoints];
         double[] y = new double[nPoints];
@@ -528,17 +857,13 @@ public class SingleShapefileInputHandler extends GISInputStreamBase implements
             } catch (BufferUnderflowException bfe) {
                 logger.warn("Found too few z-values, the rest will be taken as 0.0");
             }
-            // Convert x, y, and z values into Geodetic points, ignoring the m values
-            pts = new Geodetic3DPoint[nPoints];
+            // Convert x, y, and z values into packed coordinates, ignoring the m values
             for (int i = 0; i < nPoints; i++)
-                pts[i] = new Geodetic3DPoint(new Longitude(x[i], Angle.DEGREES),
-                        new Latitude(y[i], Angle.DEGREES), z[i]);
+                pts.addDegrees(x[i], y[i], z[i]);
         } else {
-            // Convert x and y values into Geodetic points
-            pts = new Geodetic2DPoint[nPoints];
+            // Convert x and y values into packed coordinates
             for (int i = 0; i < nPoints; i++)
-                pts[i] = new Geodetic2DPoint(new Longitude(x[i], Angle.DEGREES),
-                        new Latitude(y[i], Angle.DEGREES));
+                pts.addDegrees(x[i], y[i]);
         }
         // Do the following just to get the spanning right, we ignore the m 
         // values
@@ -562,15 +887,12 @@ public class SingleShapefileInputHandler extends GISInputStreamBase implements
         int nParts = readInt(buffer, ByteOrder.LITTLE_ENDIAN);
         int nPoints = readInt(buffer, ByteOrder.LITTLE_ENDIAN);  // total numPoints
         int[] parts = getPartOffsets(buffer, nParts, nPoints);
-        Geodetic2DPoint[] pts = getPolyPoints(buffer, nPoints, is3D, includeM);
+        PackedPointList pts = getPolyPoints(buffer, nPoints, is3D, includeM);
+        if (nParts == 1) return new Line(pts);
         ArrayList<Line> lnList = new ArrayList<Line>();
         // Collect up the Geodetic points into the line parts
-        int k = 0; // point index
         for (int j = 1; j <= nParts; j++) {
-            ArrayList<Point> ptList = new ArrayList<Point>();
-            int n = parts[j] - parts[j - 1];
-            for (int i = 0; i < n; i++) ptList.add(new Point(pts[k++]));
-            lnList.add(new Line(ptList));
+            lnList.add(new Line(pts.copyOfRange(parts[j - 1], parts[j])));
         }
         if (lnList.size() == 1)
             return lnList.get(0);
@@ -596,18 +918,14 @@ public class SingleShapefileInputHandler extends GISInputStreamBase implements
         int nParts = readInt(buffer, ByteOrder.LITTLE_ENDIAN);
         int nPoints = readInt(buffer, ByteOrder.LITTLE_ENDIAN);  // total numPoints
         int[] parts = getPartOffsets(buffer, nParts, nPoints);
-        Geodetic2DPoint[] pts = getPolyPoints(buffer, nPoints, is3D, includeM);
+        PackedPointList pts = getPolyPoints(buffer, nPoints, is3D, includeM);
         // Shapefiles allow multiple outer rings intermixed with multiple inner rings
         // Our MultiLinearRings Object requires 1 outer and 0 or more inner.  We'll assume
         // inner rings follow their outer ring, and use direction as a list delimiter.
         ArrayList<PolyHolder> polyholders = new ArrayList<PolyHolder>();
         ArrayList<LinearRing> savedRings = new ArrayList<LinearRing>();
-        int k = 0; // point index
         for (int j = 1; j <= nParts; j++) {
-            ArrayList<Point> ptList = new ArrayList<Point>();
-            int n = parts[j] - parts[j - 1];
-            for (int i = 0; i < n; i++) ptList.add(new Point(pts[k++]));
-            LinearRing r = new LinearRing(ptList);
+            LinearRing r = new LinearRing(nParts == 1 ? pts : pts.copyOfRange(parts[j - 1], parts[j]));
             if (r.clockwise()) {
                 PolyHolder newPoly = new PolyHolder();
                 newPoly.setOuterRing(r);
@@ -644,8 +962,7 @@ public class SingleShapefileInputHandler extends GISInputStreamBase implements
             if (!found) {
                 // If we don't find something then we'll treat the ring as a
                 // poly itself
-                List<Point> rpts = new ArrayList<Point>();
-                rpts.addAll(saved.getPoints());
+                List<Point> rpts = new PackedPointList(saved.getPoints());
                 Collections.reverse(rpts);
                 Polygon poly = new Polygon(new LinearRing(rpts));
                 polyList.add(poly);
@@ -679,13 +996,11 @@ public class SingleShapefileInputHandler extends GISInputStreamBase implements
     // Read next MultiPoint (ESRI MultiPoint or MultiPointZ) record
     private Geometry getMultipoint(ByteBuffer buffer, boolean is3D, boolean includeM) {
         int nPoints = readInt(buffer, ByteOrder.LITTLE_ENDIAN);  // total numPoints
-        Geodetic2DPoint[] pts = getPolyPoints(buffer, nPoints, is3D, includeM);
-        ArrayList<Point> ptList = new ArrayList<Point>();
-        for (int i = 0; i < nPoints; i++) ptList.add(new Point(pts[i]));
-        if (ptList.size() == 1)
-            return ptList.get(0);
+        PackedPointList pts = getPolyPoints(buffer, nPoints, is3D, includeM);
+        if (pts.size() == 1)
+            return pts.get(0);
         else
-            return new MultiPoint(ptList);
+            return new MultiPoint(pts);
     }
 
     /**
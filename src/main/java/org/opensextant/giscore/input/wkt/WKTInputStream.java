@@ -30,11 +30,6 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
-import org.opensextant.geodesy.Angle;
-import org.opensextant.geodesy.Geodetic2DPoint;
-import org.opensextant.geodesy.Geodetic3DPoint;
-import org.opensextant.geodesy.Latitude;
-import org.opensextant.geodesy.Longitude;
 import org.opensextant.giscore.events.IGISObject;
 import org.opensextant.giscore.events.Schema;
 import org.opensextant.giscore.geometry.Geometry;
@@ -44,6 +39,7 @@ import org.opensextant.giscore.geometry.LinearRing;
 import org.opensextant.giscore.geometry.MultiLine;
 import org.opensextant.giscore.geometry.MultiPoint;
 import org.opensextant.giscore.geometry.MultiPolygons;
+import org.opensextant.giscore.geometry.PackedPointList;
 import org.opensextant.giscore.geometry.Point;
 import org.opensextant.giscore.geometry.Polygon;
 import org.opensextant.giscore.input.IGISInputStream;
@@ -149,9 +145,10 @@ public class WKTInputStream implements IGISInputStream {
 
 	private IGISObject readPoint() throws IOException {
 		expectParen();
-		Geodetic2DPoint pnt = readCoordinate();
+		PackedPointList pnts = new PackedPointList(1);
+		readCoordinate(pnts);
 		expectThesis();
-		return new Point(pnt);
+		return pnts.get(0);
 	}
 	
 	private IGISObject readLine() throws IOException {
@@ -278,7 +275,7 @@ public class WKTInputStream implements IGISInputStream {
 		// Read a token and see if we're at the thesis, a comma or the next
 		// coordinate
 		WKTToken token = lexer.nextToken();
-		List<Point> pnts = new ArrayList<Point>();
+		PackedPointList pnts = new PackedPointList();
 		while(true) {
 			if (token.getType().equals(WKTToken.TokenType.CHAR)) {
 				int ch = token.getChar();
@@ -292,7 +289,7 @@ public class WKTInputStream implements IGISInputStream {
 				}				
 			} else if (token.getType().equals(WKTToken.TokenType.NUMBER)) {
 				lexer.push(token);
-				pnts.add(new Point(readCoordinate()));
+				readCoordinate(pnts);
 			} else {
 				throw new IOException("Found an unexpected identifier in LINESTRING: " + token);
 			}
@@ -301,12 +298,12 @@ public class WKTInputStream implements IGISInputStream {
 	}
 	
 	/**
-	 * Read 2, 3 or 4 numbers depending on the values of isM and isZ. Then 
-	 * use the appropriate constructor to make a point.
-	 * @return the point constructed
+	 * Read 2, 3 or 4 numbers depending on the values of isM and isZ. Then
+	 * add the coordinate to the list of points.
+	 * @param pnts the list to which the coordinate is added
 	 * @throws IOException if an error occurs
 	 */
-	private Geodetic2DPoint readCoordinate() throws IOException {
+	private void readCoordinate(PackedPointList pnts) throws IOException {
 		WKTToken x, y, z = null, m;
 		
 		x = lexer.nextToken();
@@ -322,18 +319,14 @@ public class WKTInputStream implements IGISInputStream {
 			if (x.getType().equals(WKTToken.TokenType.NUMBER) && 
 					y.getType().equals(WKTToken.TokenType.NUMBER) &&
 					z.getType().equals(WKTToken.TokenType.NUMBER)) {
-				Longitude lon = new Longitude(x.getDouble(), Angle.DEGREES);
-				Latitude lat = new Latitude(y.getDouble(), Angle.DEGREES);
-				return new Geodetic3DPoint(lon, lat, z.getDouble());
+				pnts.addDegrees(x.getDouble(), y.getDouble(), z.getDouble());
 			} else {
 				throw new IllegalStateException("One of these tokens was not a number: " + x + ", " + y + ", " + z);
 			}
 		} else {
 			if (x.getType().equals(WKTToken.TokenType.NUMBER) && 
 					y.getType().equals(WKTToken.TokenType.NUMBER)) {
-				Longitude lon = new Longitude(x.getDouble(), Angle.DEGREES);
-				Latitude lat = new Latitude(y.getDouble(), Angle.DEGREES);
-				return new Geodetic2DPoint(lon, lat);
+				pnts.addDegrees(x.getDouble(), y.getDouble());
 			} else {
 				throw new IllegalStateException("One of these tokens was not a number: " + x + ", " + y);
 			}
@@ -0,0 +1,94 @@
+/****************************************************************************************
+ *  CoordinateWriter.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.output;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Streams formatted numbers and separators to an XMLStreamWriter as character
+ * data, buffering them in a reusable character array so lists of coordinates
+ * are written without building intermediate Strings.
+ * <p/>
+ * Only digits, signs, decimal points and the separators appended by the caller
+ * are written so the characters never need escaping. Call {@link #flush()}
+ * before writing anything else to the XMLStreamWriter.
+ */
+public class CoordinateWriter {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final XMLStreamWriter writer;
+	private final DoubleFormatter formatter;
+	private final char[] buf = new char[BUFFER_SIZE];
+	private int len;
+
+	/**
+	 * @param writer    the destination, never <code>null</code>
+	 * @param formatter formats the numbers, never <code>null</code>
+	 */
+	public CoordinateWriter(XMLStreamWriter writer, DoubleFormatter formatter) {
+		if (writer == null) {
+			throw new IllegalArgumentException("writer should never be null");
+		}
+		if (formatter == null) {
+			throw new IllegalArgumentException("formatter should never be null");
+		}
+		this.writer = writer;
+		this.formatter = formatter;
+	}
+
+	/**
+	 * @return the XMLStreamWriter the characters are written to
+	 */
+	public XMLStreamWriter getWriter() {
+		return writer;
+	}
+
+	/**
+	 * Append a formatted number
+	 *
+	 * @param d the value
+	 * @throws XMLStreamException if there is an error with the underlying XML
+	 */
+	public void append(double d) throws XMLStreamException {
+		if (BUFFER_SIZE - len < DoubleFormatter.MAX_LENGTH) flush();
+		len = formatter.format(d, buf, len);
+	}
+
+	/**
+	 * Append a separator
+	 *
+	 * @param c the separator, a character that needs no escaping in XML
+	 * @throws XMLStreamException if there is an error with the underlying XML
+	 */
+	public void append(char c) throws XMLStreamException {
+		if (len == BUFFER_SIZE) flush();
+		buf[len++] = c;
+	}
+
+	/**
+	 * Write the buffered characters to the XMLStreamWriter
+	 *
+	 * @throws XMLStreamException if there is an error with the underlying XML
+	 */
+	public void flush() throws XMLStreamException {
+		if (len != 0) {
+			writer.writeCharacters(buf, 0, len);
+			len = 0;
+		}
+	}
+
+}
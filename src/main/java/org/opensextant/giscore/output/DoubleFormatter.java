@@ -0,0 +1,154 @@
+/****************************************************************************************
+ *  DoubleFormatter.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.output;
+
+import java.text.DecimalFormat;
+
+/**
+ * Formats doubles rounded to a fixed number of decimal places with the fewest
+ * digits, the same output as a {@link DecimalFormat} with the pattern
+ * <code>0.##########</code> for the chosen number of places, directly into a
+ * character array.
+ * <p/>
+ * Unlike DecimalFormat, no objects are created for each value and instances
+ * are immutable so can be shared across threads. Values whose scaled magnitude
+ * exceeds 2<sup>52</sup>, values too close to a rounding tie to decide from
+ * the scaled double, and non-finite values are formatted with DecimalFormat.
+ */
+public final class DoubleFormatter {
+
+	/**
+	 * The maximum number of characters written for a single value
+	 */
+	public static final int MAX_LENGTH = 330;
+
+	private static final long[] POW10 = {
+			1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L,
+			100000000L, 1000000000L, 10000000000L, 100000000000L,
+			1000000000000L, 10000000000000L, 100000000000000L, 1000000000000000L
+	};
+
+	private static final double TWO52 = 4503599627370496.0;
+
+	/**
+	 * Rounds to 10 decimal places, which eliminates most common round-off
+	 * errors such as -34.93000000000001 while keeping sub-millimeter resolution
+	 * for coordinates in degrees.
+	 */
+	public static final DoubleFormatter DEFAULT = new DoubleFormatter(10);
+
+	private final int places;
+	private final long scale;
+	private final DecimalFormat fallback;
+
+	/**
+	 * @param places the maximum number of decimal places, 0 to 15
+	 */
+	public DoubleFormatter(int places) {
+		if (places < 0 || places >= POW10.length) {
+			throw new IllegalArgumentException("places must be between 0 and " + (POW10.length - 1));
+		}
+		this.places = places;
+		this.scale = POW10[places];
+		StringBuilder pattern = new StringBuilder("0");
+		if (places != 0) {
+			pattern.append('.');
+			for (int i = 0; i < places; i++) pattern.append('#');
+		}
+		fallback = new DecimalFormat(pattern.toString());
+	}
+
+	/**
+	 * @return the maximum number of decimal places
+	 */
+	public int getPlaces() {
+		return places;
+	}
+
+	/**
+	 * Format a value
+	 *
+	 * @param d the value
+	 * @return the formatted value
+	 */
+	public String format(double d) {
+		char[] buf = new char[MAX_LENGTH];
+		return new String(buf, 0, format(d, buf, 0));
+	}
+
+	/**
+	 * Format a value into a character array
+	 *
+	 * @param d   the value
+	 * @param buf the destination, with at least {@link #MAX_LENGTH} characters
+	 *            available from the offset
+	 * @param off the offset to write the value at
+	 * @return the offset following the value
+	 */
+	public int format(double d, char[] buf, int off) {
+		final double p = Math.abs(d) * scale;
+		if (!(p < TWO52)) {
+			return formatFallback(d, buf, off);
+		}
+		final double floor = Math.floor(p);
+		final double frac = p - floor;
+		if (Math.abs(frac - 0.5) <= Math.ulp(p)) {
+			// the exact value may round either way
+			return formatFallback(d, buf, off);
+		}
+		long rounded = (long) floor + (frac > 0.5 ? 1 : 0);
+		if (d < 0 || d == 0 && 1 / d < 0) {
+			buf[off++] = '-';
+		}
+		long intPart = rounded / scale;
+		long fracPart = rounded - intPart * scale;
+		off = writeDigits(intPart, buf, off, 1);
+		if (fracPart != 0) {
+			buf[off++] = '.';
+			int digits = places;
+			while (fracPart % 10 == 0) {
+				fracPart /= 10;
+				digits--;
+			}
+			off = writeDigits(fracPart, buf, off, digits);
+		}
+		return off;
+	}
+
+	/**
+	 * Write a non-negative value padded with leading zeros to a minimum width
+	 */
+	private static int writeDigits(long value, char[] buf, int off, int width) {
+		int len = 1;
+		while (len < POW10.length && value >= POW10[len]) len++;
+		if (len < width) len = width;
+		int end = off + len;
+		for (int i = end - 1; i >= off; i--) {
+			buf[i] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+		return end;
+	}
+
+	private int formatFallback(double d, char[] buf, int off) {
+		String s;
+		synchronized (fallback) {
+			s = fallback.format(d);
+		}
+		s.getChars(0, s.length(), buf, off);
+		return off + s.length();
+	}
+
+}
@@ -18,6 +18,8 @@
  ***************************************************************************************/
 package org.opensextant.giscore.output;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.MalformedURLException;
@@ -30,6 +32,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.opensextant.geodesy.Geodetic2DBounds;
+import org.opensextant.giscore.GISFactory;
 import org.opensextant.giscore.events.Feature;
 import org.opensextant.giscore.events.Row;
 import org.opensextant.giscore.events.Schema;
@@ -37,6 +40,7 @@ import org.opensextant.giscore.events.SimpleField;
 import org.opensextant.giscore.geometry.Geometry;
 import org.opensextant.giscore.utils.FieldCachingObjectBuffer;
 import org.opensextant.giscore.utils.ObjectBuffer;
+import org.opensextant.giscore.utils.SpillingBufferPool;
 
 /**
  * The esri formats require that the features be sorted into uniform bins where
@@ -44,6 +48,12 @@ import org.opensextant.giscore.utils.ObjectBuffer;
  * takes care of the sorting of features into temporary files that hold a
  * uniform set of features, and which allows the consumer to then get the
  * features back out by category.
+ * <p>
+ * By default each category has its own buffer of
+ * {@link GISFactory#inMemoryBufferSize} features that overflows into its own
+ * temporary file. If {@link GISFactory#sorterBufferSize} is positive when the
+ * sorter is created, or an explicit size is given, the categories instead share
+ * a single memory budget and spill into a single file on a background thread.
  * 
  * @author DRAND
  */
@@ -94,6 +104,16 @@ public class FeatureSorter {
 	 * of these pieces of information.
 	 */
 	private transient FeatureKey currentKey = null;
+	/**
+	 * The count of features held in memory across all keys, or zero to
+	 * use a separate buffer per key.
+	 */
+	private final int sharedBufferSize;
+	/**
+	 * Pool of the buffers sharing the memory budget, <code>null</code> if
+	 * each key has its own buffer.
+	 */
+	private SpillingBufferPool bufferPool;
 
 	/**
 	 * Empty ctor
@@ -108,6 +128,23 @@ public class FeatureSorter {
 	 * referenced style as well as geometry and path.
 	 */
 	public FeatureSorter(boolean splitOnStyle) {
+		this(splitOnStyle, GISFactory.sorterBufferSize.get());
+	}
+
+	/**
+	 * Ctor
+	 * @param splitOnStyle if <code>true</code> then split features by the
+	 * referenced style as well as geometry and path.
+	 * @param sharedBufferSize the count of features held in memory across
+	 * all keys before spilling to a single file, or zero to use a separate
+	 * buffer per key.
+	 * @throws IllegalArgumentException if sharedBufferSize is negative
+	 */
+	public FeatureSorter(boolean splitOnStyle, int sharedBufferSize) {
+		if (sharedBufferSize < 0) {
+			throw new IllegalArgumentException("sharedBufferSize should never be negative");
+		}
+		this.sharedBufferSize = sharedBufferSize;
 		try {
 			this.splitOnStyle = splitOnStyle;
 			cleanup();
@@ -147,6 +184,15 @@ public class FeatureSorter {
 		return bufferMap.get(featureKey);
 	}
 
+	/**
+	 * Get the pool shared by the buffers, which reports the spill metrics.
+	 * @return the pool or <code>null</code> if each key has its own buffer
+	 */
+	@CheckForNull
+	public SpillingBufferPool getBufferPool() {
+		return bufferPool;
+	}
+
 	/**
 	 * Add a row to the appropriate file
 	 * 
@@ -184,7 +230,8 @@ public class FeatureSorter {
 				currentKey = key;
 				buffer = bufferMap.get(key);
 				if (buffer == null) {
-					buffer = new FieldCachingObjectBuffer();
+					buffer = bufferPool != null ? bufferPool.createBuffer()
+							: new FieldCachingObjectBuffer();
 					bufferMap.put(key, buffer);
 				}
 			}
@@ -322,6 +369,14 @@ public class FeatureSorter {
 				}
 			}
 		}
+		if (bufferPool != null) {
+			try {
+				bufferPool.close();
+			} catch(IOException ioe) {
+				exception = ioe;
+			}
+		}
+		bufferPool = sharedBufferSize > 0 ? new SpillingBufferPool(sharedBufferSize) : null;
 		schemata = new HashMap<URI, Schema>();
 		internalSchema = new HashMap<Set<SimpleField>, Schema>();
 		bufferMap = new HashMap<FeatureKey, ObjectBuffer>();
@@ -0,0 +1,36 @@
+/****************************************************************************************
+ *  IGISBatchOutputStream.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.output;
+
+import org.opensextant.giscore.GISFactory;
+import org.opensextant.giscore.events.IGISObject;
+
+/**
+ * Implemented by output streams that can write many objects more cheaply
+ * together than one at a time, such as streams that share native calls
+ * across the objects. Use {@link GISFactory#writeBatch(IGISOutputStream, Iterable)}
+ * to write a batch to any stream.
+ */
+public interface IGISBatchOutputStream extends IGISOutputStream {
+
+	/**
+	 * Write the given objects in order, with the same result as passing each
+	 * to {@link #write(IGISObject)}.
+	 *
+	 * @param objects the objects to be written, never <code>null</code> and
+	 *            never containing <code>null</code>.
+	 */
+	void writeBatch(Iterable<? extends IGISObject> objects);
+}
@@ -18,7 +18,6 @@ package org.opensextant.giscore.output;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.text.DecimalFormat;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -49,7 +48,8 @@ public class XmlOutputStreamBase extends StreamVisitorBase implements
 
     private static final Logger log = LoggerFactory.getLogger(XmlOutputStreamBase.class);
 
-	private final DecimalFormat formatter = new DecimalFormat("0.##########");
+	private DoubleFormatter doubleFormatter = DoubleFormatter.DEFAULT;
+	private CoordinateWriter coordinateWriter;
 
     protected OutputStream stream;
     
@@ -464,11 +464,11 @@ public class XmlOutputStreamBase extends StreamVisitorBase implements
     }
 
     /**
-     * Formats double values suitable for XML output using DecimalFormater.
-     * Rounds off decimal value at 10-decimal places eliminating most common
-     * round-off errors which are typically at 14 decimal places or beyond
-     * (e.g. -34.93 may get converted to -34.93000000000001 with conversion
-     * from decimal degrees to radians and back to degrees.
+     * Formats double values suitable for XML output using the formatter of
+     * this stream. By default rounds off decimal value at 10-decimal places
+     * eliminating most common round-off errors which are typically at 14 decimal
+     * places or beyond (e.g. -34.93 may get converted to -34.93000000000001 with
+     * conversion from decimal degrees to radians and back to degrees.
      * @param d double value
      * @return formatted decimal value
      */
@@ -476,9 +476,73 @@ public class XmlOutputStreamBase extends StreamVisitorBase implements
         // note doubles like -34.93 may get formatted as -34.93000000000001
         // if using Double.toString()
         // string parsed decimal degrees -> radians -> printed out as decimal degrees
-        // using java.text.DecimalFormat("0.########") with 10 decimal places to be safe
-        // since 8 decimal places .00000001 is 1mm resolution and anything beyond is round-off error
-        return formatter.format(d);
+        // using 10 decimal places by default to be safe since 8 decimal places
+        // .00000001 is 1mm resolution and anything beyond is round-off error
+        return doubleFormatter.format(d);
+    }
+
+    /**
+     * @return the formatter used for double values, never <code>null</code>
+     */
+    protected DoubleFormatter getDoubleFormatter() {
+        return doubleFormatter;
+    }
+
+    /**
+     * Set the formatter used for double values by {@link #formatDouble(double)}
+     * and the coordinate writer.
+     * @param doubleFormatter the formatter, never <code>null</code>
+     */
+    protected void setDoubleFormatter(DoubleFormatter doubleFormatter) {
+        if (doubleFormatter == null) {
+            throw new IllegalArgumentException("doubleFormatter should never be null");
+        }
+        this.doubleFormatter = doubleFormatter;
+        coordinateWriter = null;
+    }
+
+    /**
+     * Get a writer to stream formatted numbers such as lists of coordinates
+     * directly to the XMLStreamWriter of this stream. The coordinate writer
+     * must be flushed before anything else is written.
+     * @return the coordinate writer, never <code>null</code>
+     */
+    protected CoordinateWriter getCoordinateWriter() {
+        if (coordinateWriter == null || coordinateWriter.getWriter() != writer) {
+            coordinateWriter = new CoordinateWriter(writer, doubleFormatter);
+        }
+        return coordinateWriter;
+    }
+
+    /**
+     * Handle a simple element with a formatted double value
+     *
+     * @param tag local name of the tag, may not be null
+     * @param value the value
+     * @throws XMLStreamException if there is an error with the underlying XML
+     */
+    protected void handleDoubleElement(String tag, double value) throws XMLStreamException {
+        handleDoubleElement(null, tag, value);
+    }
+
+    /**
+     * Handle a simple element with a formatted double value
+     *
+     * @param ns Namespace of the element, if null then element has the default namespace
+     * @param tag local name of the tag, may not be null
+     * @param value the value
+     * @throws XMLStreamException if there is an error with the underlying XML
+     */
+    protected void handleDoubleElement(Namespace ns, String tag, double value) throws XMLStreamException {
+        if (ns == null)
+            writer.writeStartElement(tag);
+        else
+            writer.writeStartElement(ns.getPrefix(), tag, ns.getURI());
+        CoordinateWriter cw = getCoordinateWriter();
+        cw.append(value);
+        cw.flush();
+        writer.writeEndElement();
+        writer.writeCharacters("\n");
     }
 
 }
@@ -20,7 +20,6 @@ package org.opensextant.giscore.output.atom;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -50,6 +49,8 @@ import org.opensextant.giscore.geometry.LinearRing;
 import org.opensextant.giscore.geometry.Point;
 import org.opensextant.giscore.geometry.Polygon;
 import org.opensextant.giscore.input.kml.IKml;
+import org.opensextant.giscore.output.CoordinateWriter;
+import org.opensextant.giscore.output.DoubleFormatter;
 import org.opensextant.giscore.output.XmlOutputStreamBase;
 import org.opensextant.geodesy.SafeDateFormat;
 
@@ -64,7 +65,6 @@ public class GeoAtomOutputStream extends XmlOutputStreamBase implements
 	private static final SafeDateFormat fmt = new SafeDateFormat(
 			IKml.ISO_DATE_FMT);
 	private static final Namespace ATOM_NS = Namespace.getNamespace(ATOM_URI_NS);
-	private final DecimalFormat dfmt;
 
 	private final static Set<SimpleField> ms_builtinFields = new HashSet<SimpleField>(4);
 	static {
@@ -82,7 +82,7 @@ public class GeoAtomOutputStream extends XmlOutputStreamBase implements
 			String title, String link, List<String> authors) */
 		super(outputStream);
 		writer.writeStartDocument();
-		dfmt = new DecimalFormat("##.######");
+		setDoubleFormatter(new DoubleFormatter(6));
 	}
 
 
@@ -289,7 +289,7 @@ public class GeoAtomOutputStream extends XmlOutputStreamBase implements
 		case DOUBLE:
 		case FLOAT:
 			if (val instanceof Number) {
-				return dfmt.format((Number) val);
+				return formatDouble(((Number) val).doubleValue());
 			}
 			break;
         case LONG:
@@ -409,13 +409,8 @@ public class GeoAtomOutputStream extends XmlOutputStreamBase implements
 	 */
 	@Override
 	public void visit(Point point) {
-		Geodetic2DPoint center = point.getCenter();
 		try {
-			handleSimpleElement(
-					gns,
-					"point",
-          dfmt.format(center.getLatitudeAsDegrees()) + " "
-              + dfmt.format(center.getLongitudeAsDegrees()));
+			handleCoords("point", Collections.singletonList(point), null);
 		} catch (XMLStreamException e) {
 			throw new RuntimeException(e);
 		}
@@ -431,22 +426,40 @@ public class GeoAtomOutputStream extends XmlOutputStreamBase implements
 	@Override
 	public void visit(Line line) {
 		try {
-			handleSimpleElement(gns, "line", getCoords(line.getPoints()));
+			handleCoords("line", line.getPoints(), null);
 		} catch (XMLStreamException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
-	private String getCoords(List<Point> points) {
-		StringBuilder coords = new StringBuilder();
+	/**
+	 * Write an element with a space separated list of latitude longitude pairs
+	 *
+	 * @param tag local name of the element
+	 * @param points the points, never <code>null</code>
+	 * @param radius radius to append to the list, <code>null</code> if none
+	 * @throws XMLStreamException if there is an error with the underlying XML
+	 */
+	private void handleCoords(String tag, List<? extends Point> points, Double radius)
+			throws XMLStreamException {
+		writer.writeStartElement(gns.getPrefix(), tag, gns.getURI());
+		CoordinateWriter cw = getCoordinateWriter();
+		boolean first = true;
 		for (Point p : points) {
+			if (first) first = false;
+			else cw.append(' ');
 			Geodetic2DPoint center = p.getCenter();
-			coords.append(" ");
-      coords.append(dfmt.format(center.getLatitudeAsDegrees()));
-			coords.append(" ");
-      coords.append(dfmt.format(center.getLongitudeAsDegrees()));
+			cw.append(center.getLatitudeAsDegrees());
+			cw.append(' ');
+			cw.append(center.getLongitudeAsDegrees());
 		}
-		return coords.toString().trim();
+		if (radius != null) {
+			cw.append(' ');
+			cw.append(radius);
+		}
+		cw.flush();
+		writer.writeEndElement();
+		writer.writeCharacters("\n");
 	}
 
 	/*
@@ -459,7 +472,7 @@ public class GeoAtomOutputStream extends XmlOutputStreamBase implements
 	@Override
 	public void visit(LinearRing ring) {
 		try {
-			handleSimpleElement(gns, "polygon", getCoords(ring.getPoints()));
+			handleCoords("polygon", ring.getPoints(), null);
 		} catch (XMLStreamException e) {
 			throw new RuntimeException(e);
 		}
@@ -475,7 +488,7 @@ public class GeoAtomOutputStream extends XmlOutputStreamBase implements
 	@Override
 	public void visit(Polygon polygon) {
 		try {
-			handleSimpleElement(gns, "polygon", getCoords(polygon.getPoints()));
+			handleCoords("polygon", polygon.getPoints(), null);
 		} catch (XMLStreamException e) {
 			throw new RuntimeException(e);
 		}
@@ -484,11 +497,8 @@ public class GeoAtomOutputStream extends XmlOutputStreamBase implements
 
 	@Override
 	public void visit(Circle circle) {
-		final Geodetic2DPoint center = circle.getCenter();
 		try {
-			handleSimpleElement(gns, "circle", dfmt.format(center.getLatitudeAsDegrees()) + " "
-					+ dfmt.format(center.getLongitudeAsDegrees()) + " "
-					+ dfmt.format(circle.getRadius()));
+			handleCoords("circle", Collections.<Point>singletonList(circle), circle.getRadius());
 		} catch (XMLStreamException e) {
 			throw new RuntimeException(e);
 		}
@@ -0,0 +1,247 @@
+/****************************************************************************************
+ *  BinaryOutputStream.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.output.bin;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opensextant.giscore.events.ContainerEnd;
+import org.opensextant.giscore.events.ContainerStart;
+import org.opensextant.giscore.events.IGISObject;
+import org.opensextant.giscore.events.NullObject;
+import org.opensextant.giscore.events.Schema;
+import org.opensextant.giscore.output.IGISOutputStream;
+import org.opensextant.giscore.utils.IDataSerializable;
+import org.opensextant.giscore.utils.SimpleFieldCacher;
+import org.opensextant.giscore.utils.SimpleObjectOutputStream;
+
+/**
+ * Writes the GIS objects to a compact binary form that is read back, object
+ * for object, by {@link org.opensextant.giscore.input.bin.BinaryInputStream}.
+ * This avoids formatting and parsing text when data is staged between steps.
+ * <p>
+ * Each object is written with its {@link IDataSerializable#writeData} method
+ * through a {@link SimpleObjectOutputStream} that shares class names and
+ * {@link org.opensextant.giscore.events.SimpleField}s between objects. The
+ * file is laid out as
+ * <ul>
+ * <li>a header of the 4 byte {@link #MAGIC} and the format {@link #VERSION}.
+ * <li>the records, each a 4 byte length followed by that many bytes of the
+ * serialized object. A length of zero marks the start of a new segment where
+ * the shared state is reset, so reading can start at any segment. Segments
+ * start at a container once {@link #SEGMENT_SIZE} bytes have been written
+ * since the last one. A length of -1 ends the records.
+ * <li>the index of the containers and schemata in the order written. A
+ * container has the offset of its record and its segment, its depth, type and
+ * name. A schema has the same offsets followed by the schema itself.
+ * <li>the offset of the index as an 8 byte integer, then the magic number again.
+ * </ul>
+ * All numbers are big-endian. The stream is not thread safe.
+ */
+public class BinaryOutputStream implements IGISOutputStream {
+
+	/**
+	 * Marks the start and end of the file, "GISB"
+	 */
+	public static final int MAGIC = 0x47495342;
+
+	public static final int VERSION = 1;
+
+	/**
+	 * Count of bytes after which the next container starts a segment
+	 */
+	public static final int SEGMENT_SIZE = 64 * 1024;
+
+	/**
+	 * Length of the header before the first record
+	 */
+	public static final int HEADER_LENGTH = 8;
+
+	/**
+	 * Length of the trailer following the index
+	 */
+	public static final int TRAILER_LENGTH = 12;
+
+	private final DataOutputStream out;
+
+	/**
+	 * Holds each record while it is serialized to find its length
+	 */
+	private final ByteArrayOutputStream record = new ByteArrayOutputStream(1024);
+
+	private SimpleObjectOutputStream objects;
+
+	/**
+	 * Offset of the next byte written
+	 */
+	private long offset;
+
+	/**
+	 * Offset of the first record of the current segment
+	 */
+	private long segment;
+
+	private int depth;
+
+	private final List<IndexEntry> containers = new ArrayList<IndexEntry>();
+
+	private final List<IndexEntry> schemata = new ArrayList<IndexEntry>();
+
+	private boolean closed;
+
+	/**
+	 * Compatible ctor
+	 *
+	 * @param stream the stream to write to, never <code>null</code>
+	 * @param arguments ignored
+	 * @throws IOException if an error occurs
+	 * @throws IllegalArgumentException if stream is null
+	 */
+	public BinaryOutputStream(OutputStream stream, Object[] arguments) throws IOException {
+		this(stream);
+	}
+
+	/**
+	 * Ctor
+	 *
+	 * @param stream the stream to write to, never <code>null</code>. It is
+	 * closed when this stream is closed.
+	 * @throws IOException if an error occurs
+	 * @throws IllegalArgumentException if stream is null
+	 */
+	public BinaryOutputStream(OutputStream stream) throws IOException {
+		if (stream == null) {
+			throw new IllegalArgumentException("stream should never be null");
+		}
+		out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		offset = HEADER_LENGTH;
+		startSegment();
+	}
+
+	/**
+	 * Write the given object.
+	 *
+	 * @param object the object to be written, never <code>null</code>.
+	 * @throws IllegalArgumentException if the object is <code>null</code> or
+	 * cannot be serialized
+	 * @throws IllegalStateException if an I/O error occurs
+	 */
+	public void write(IGISObject object) {
+		if (object == null) {
+			throw new IllegalArgumentException("object should never be null");
+		}
+		if (object == NullObject.getInstance()) {
+			// placeholder for skipped content
+			return;
+		}
+		if (!(object instanceof IDataSerializable)) {
+			throw new IllegalArgumentException("Cannot serialize " + object.getClass().getName());
+		}
+		try {
+			if (object instanceof ContainerStart) {
+				if (offset - segment >= SEGMENT_SIZE) {
+					out.writeInt(0);
+					offset += 4;
+					startSegment();
+				}
+				IndexEntry entry = new IndexEntry(offset, segment);
+				entry.depth = depth++;
+				entry.container = (ContainerStart) object;
+				containers.add(entry);
+			} else if (object instanceof ContainerEnd) {
+				if (depth > 0) depth--;
+			} else if (object instanceof Schema) {
+				IndexEntry entry = new IndexEntry(offset, segment);
+				entry.schema = (Schema) object;
+				schemata.add(entry);
+			}
+			objects.writeObject((IDataSerializable) object);
+			objects.flush();
+			out.writeInt(record.size());
+			record.writeTo(out);
+			offset += 4 + record.size();
+			record.reset();
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Write the end of the records and the index, then close the stream.
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			out.writeInt(-1);
+			long indexOffset = offset + 4;
+			// the index has its own state so it can be read on its own
+			SimpleObjectOutputStream index = new SimpleObjectOutputStream(out);
+			index.writeInt(containers.size());
+			for (IndexEntry entry : containers) {
+				index.writeLong(entry.offset);
+				index.writeLong(entry.segment);
+				index.writeInt(entry.depth);
+				index.writeString(entry.container.getType());
+				index.writeString(entry.container.getName());
+			}
+			index.writeInt(schemata.size());
+			for (IndexEntry entry : schemata) {
+				index.writeLong(entry.offset);
+				index.writeLong(entry.segment);
+				index.writeObject(entry.schema);
+			}
+			out.writeLong(indexOffset);
+			out.writeInt(MAGIC);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Start a new segment with fresh class and field references
+	 */
+	private void startSegment() {
+		segment = offset;
+		objects = new SimpleObjectOutputStream(record, new SimpleFieldCacher());
+	}
+
+	/**
+	 * A container or schema in the index
+	 */
+	private static final class IndexEntry {
+		final long offset;
+		final long segment;
+		int depth;
+		ContainerStart container;
+		Schema schema;
+
+		IndexEntry(long offset, long segment) {
+			this.offset = offset;
+			this.segment = segment;
+		}
+	}
+}
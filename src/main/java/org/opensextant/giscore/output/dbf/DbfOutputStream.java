@@ -21,9 +21,13 @@ package org.opensextant.giscore.output.dbf;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.text.DateFormat;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
@@ -50,6 +54,12 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Output a DBF file using the gisoutputstream interface.
+ * <p>
+ * When writing to a <code>FileOutputStream</code> the header is written as
+ * soon as the schema arrives and each row is written as it arrives, then the
+ * record count is patched into the header when the stream is closed. Other
+ * streams hold the rows in a buffer until the stream is closed since the
+ * record count comes first.
  *
  * @author DRAND
  */
@@ -82,10 +92,33 @@ public class DbfOutputStream implements IGISOutputStream, IDbfConstants {
     private BinaryOutputStream stream;
 
     /**
-     * A data holder for the rows being written.
+     * A data holder for the rows being written, <code>null</code> if rows
+     * are written as they arrive.
      */
     private final ObjectBuffer buffer;
 
+    /**
+     * True if the buffer was created by this stream and is closed with it,
+     * false if it belongs to the caller.
+     */
+    private final boolean ownsBuffer;
+
+    /**
+     * The channel of the output file if rows are written as they arrive,
+     * otherwise <code>null</code>.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Position of the start of the DBF in the channel
+     */
+    private long start;
+
+    /**
+     * Lengths of the fields, set once the header is written
+     */
+    private byte[] fieldLengths;
+
     /**
      * The schema. The first object handled must be the schema. This value
      * should never be <code>null</code> after that. If a second schema arrives
@@ -112,8 +145,17 @@ public class DbfOutputStream implements IGISOutputStream, IDbfConstants {
             throw new IllegalArgumentException(
                     "outputStream should never be null");
         }
-        stream = new BinaryOutputStream(outputStream);
-        this.buffer = new FieldCachingObjectBuffer();
+        if (outputStream instanceof FileOutputStream) {
+            channel = ((FileOutputStream) outputStream).getChannel();
+            start = channel.position();
+            stream = new BinaryOutputStream(new BufferedOutputStream(outputStream));
+            this.buffer = null;
+        } else {
+            channel = null;
+            stream = new BinaryOutputStream(outputStream);
+            this.buffer = new FieldCachingObjectBuffer();
+        }
+        ownsBuffer = buffer != null;
 
         // Write the xBaseFile signature (should be 0x03 for dBase III)
         stream.writeByte(SIGNATURE);
@@ -124,7 +166,7 @@ public class DbfOutputStream implements IGISOutputStream, IDbfConstants {
      *
      * @param outputStream the output stream
      * @param schema    the optional arguments, none are defined for this stream
-     * @param buffer    the buffer
+     * @param buffer    the buffer, left open for the caller to close
      * @throws IOException if an I/O error occurs
      * @throws IllegalArgumentException if outputStream is null
      */
@@ -135,6 +177,8 @@ public class DbfOutputStream implements IGISOutputStream, IDbfConstants {
         }
         this.schema = schema;
         this.buffer = buffer;
+        ownsBuffer = false;
+        channel = null;
         stream = new BinaryOutputStream(outputStream);
         numRecords = (int) buffer.count();
 
@@ -146,12 +190,21 @@ public class DbfOutputStream implements IGISOutputStream, IDbfConstants {
      * Write GISObject object to DBF
      *
      * @param object GISObject object
-     * @throws IllegalArgumentException if multiple schemas are detected
+     * @throws IllegalStateException if multiple schemas are detected, or if
+     * writing rows as they arrive and a row comes before the schema or the
+     * header cannot be written
      */
     public void write(IGISObject object) {
         if (object instanceof Schema) {
             if (schema == null) {
                 schema = (Schema) object;
+                if (channel != null) {
+                    try {
+                        writeHeader(0);
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
             } else {
                 throw new IllegalStateException(
                         "Dbf can only handle one set of column definitions");
@@ -166,12 +219,25 @@ public class DbfOutputStream implements IGISOutputStream, IDbfConstants {
     }
 
     private void writeRow(Row object) throws IOException {
+        if (buffer != null) {
+            numRecords++;
+            buffer.write(object);
+            return;
+        }
+        if (fieldLengths == null) {
+            throw new IllegalStateException("May not write dbf without a schema");
+        }
+        if (numRecords == Integer.MAX_VALUE) {
+            throw new IllegalStateException(
+                    "Trying to persist too many elements to DBF file, only 2^32 - 1 are allowed");
+        }
+        writeRecord(object);
         numRecords++;
-        buffer.write(object);
     }
 
     /**
-     * Close stream
+     * Close stream. A buffer created by this stream is closed as well, a
+     * buffer passed to the constructor is left to the caller.
      *
      * @throws IOException if an I/O error occurs
      * @throws IllegalStateException if there is an error with the underlying data structure
@@ -179,41 +245,27 @@ public class DbfOutputStream implements IGISOutputStream, IDbfConstants {
     public void close() throws IOException {
         if (stream != null) {
             try {
+                if (channel != null) {
+                    if (fieldLengths == null) {
+                        writeHeader(0);
+                    }
+                    // patch the record count (offset 0x4) into the header
+                    stream.flush();
+                    ByteBuffer count = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+                    count.putInt(numRecords);
+                    count.flip();
+                    channel.write(count, start + 4);
+                    return;
+                }
                 if (buffer.count() > Integer.MAX_VALUE) {
                     throw new IllegalStateException(
                             "Trying to persist too many elements to DBF file, only 2^32 - 1 are allowed");
                 }
 
-                // Write today's date as the date of last update (3 byte binary YY
-                // MM DD
-                // format)
-                String today = dateFormat.format(new Date(System
-                        .currentTimeMillis()));
-                // 2 digit year is written with Y2K +1900 assumption so add 100
-                // since
-                // we're past 2000
-                stream.write(100 + Byte.parseByte(today.substring(2, 4)));
-                for (int i = 4; i <= 6; i += 2)
-                    stream.write(Byte.parseByte(today.substring(i, i + 2)));
-
-                // Write record count (offset 0x4), header length (based on number of fields),
-                // and
-                // record length
-                stream.writeInt((int) buffer.count(), ByteOrder.LITTLE_ENDIAN);
-                stream.writeShort((short) ((schema.getKeys().size() * 32) + 33),
-                        ByteOrder.LITTLE_ENDIAN);
-                stream.writeShort(getRecordLength(), ByteOrder.LITTLE_ENDIAN);
-
-                // Fill in reserved and unused header fields we don't care about
-                // with
-                // zeros
-                for (int k = 0; k < 20; k++)
-                    stream.writeByte(NUL);
-
-                byte len[] = outputHeader();
+                writeHeader((int) buffer.count());
 
                 try {
-                    outputRows(len);
+                    outputRows();
                 } catch (ClassNotFoundException e) {
                     throw new IllegalStateException(e);
                 } catch (InstantiationException e) {
@@ -224,10 +276,55 @@ public class DbfOutputStream implements IGISOutputStream, IDbfConstants {
             } finally {
                 IOUtils.closeQuietly(stream);
                 stream = null;
+                if (ownsBuffer) {
+                    // delete the spill file and release the memory budget
+                    buffer.close();
+                }
             }
         }
     }
 
+    /**
+     * Write the header following the signature, including the field
+     * descriptors
+     *
+     * @param count the record count
+     * @throws IOException if an error occurs
+     */
+    private void writeHeader(int count) throws IOException {
+        if (schema == null) {
+            throw new IllegalStateException(
+                    "May not write dbf without a schema");
+        }
+        // Write today's date as the date of last update (3 byte binary YY
+        // MM DD
+        // format)
+        String today = dateFormat.format(new Date(System
+                .currentTimeMillis()));
+        // 2 digit year is written with Y2K +1900 assumption so add 100
+        // since
+        // we're past 2000
+        stream.write(100 + Byte.parseByte(today.substring(2, 4)));
+        for (int i = 4; i <= 6; i += 2)
+            stream.write(Byte.parseByte(today.substring(i, i + 2)));
+
+        // Write record count (offset 0x4), header length (based on number of fields),
+        // and
+        // record length
+        stream.writeInt(count, ByteOrder.LITTLE_ENDIAN);
+        stream.writeShort((short) ((schema.getKeys().size() * 32) + 33),
+                ByteOrder.LITTLE_ENDIAN);
+        stream.writeShort(getRecordLength(), ByteOrder.LITTLE_ENDIAN);
+
+        // Fill in reserved and unused header fields we don't care about
+        // with
+        // zeros
+        for (int k = 0; k < 20; k++)
+            stream.writeByte(NUL);
+
+        fieldLengths = outputHeader();
+    }
+
     private short getRecordLength() {
         short rval = 1; // Marker byte for deleted records
         for (String fieldname : schema.getKeys()) {
@@ -287,80 +384,91 @@ public class DbfOutputStream implements IGISOutputStream, IDbfConstants {
         return fieldlen;
     }
 
-    private void outputRows(byte len[]) throws ClassNotFoundException,
+    private void outputRows() throws ClassNotFoundException,
             IOException, InstantiationException, IllegalAccessException {
         Row row = (Row) buffer.read();
 
         while (row != null) {
-            stream.writeByte(' ');
-            int i = 0;
-            for (SimpleField field : schema.getFields()) {
-                short length = (short) len[i++];
-                if (length < 0) length += 256;
-                Type ft = field.getType();
-                if (Type.STRING.equals(field.getType())) {
-                    String data = getString(row.getData(field));
-                    writeStringField(stream, data, length);
-                } else if (Type.DOUBLE.equals(ft) || Type.FLOAT.equals(ft)) {
-                    Number data = getNumber(row.getData(field));
-                    if (data == null)
-                        writeField(stream, "", length);
-                    else {
-                        double number = data.doubleValue();
-                        String decimalString = decimalFormat.format(number);
-                        if (decimalString.length() > 34) {
-                            // value would be truncated - use numeric exponent format (e.g. 1.2e+308)
-                            decimalString = doubleExpFormat(number);
-                        }
-                        writeField(stream, decimalString, 34);
-                    }
-                } else if (Type.INT.equals(ft) || Type.UINT.equals(ft)) {
-                    Number data = getNumber(row.getData(field));
-                    if (data != null) {
-                        int val = data.intValue();
-                        writeField(stream, Integer.toString(val), 10);
-                    } else {
-                        writeField(stream, "", 10);
-                    }
-                } else if (Type.SHORT.equals(ft) || Type.USHORT.equals(ft)) {
-                    Number data = getNumber(row.getData(field));
-                    if (data != null) {
-                        short val = data.shortValue();
-                        writeField(stream, Short.toString(val), 6);
-                    } else {
-                        writeField(stream, "", 6);
-                    }
-                } else if (Type.LONG.equals(ft) || Type.OID.equals(ft)) {
-                    Number data = getNumber(row.getData(field));
-                    if (data == null) {
-                        // some DBF implementations also interpret values starting with '*' as null
-                        writeField(stream, "", length);
-                    } else {
-                        writeField(stream, Long.toString(data.longValue()), length);
-                    }
-                } else if (Type.DATE.equals(ft)) {
-                    Date data = getDate(row.getData(field));
-                    // NOTE: dates stored as string (8-bytes) in the format (YYYYMMDD)
-                    // and timestamp if any is discarded.
-                    if (data != null) {
-                        writeStringField(stream, dateFormat.format(data), 8);
-                    } else {
-                        writeStringField(stream, "", 8);
+            writeRecord(row);
+            row = (Row) buffer.read();
+        }
+    }
+
+    /**
+     * Write a record with the row's values for the schema fields
+     *
+     * @param row the row
+     * @throws IOException if an error occurs
+     */
+    private void writeRecord(Row row) throws IOException {
+        byte len[] = fieldLengths;
+        stream.writeByte(' ');
+        int i = 0;
+        for (SimpleField field : schema.getFields()) {
+            short length = (short) len[i++];
+            if (length < 0) length += 256;
+            Type ft = field.getType();
+            if (Type.STRING.equals(field.getType())) {
+                String data = getString(row.getData(field));
+                writeStringField(stream, data, length);
+            } else if (Type.DOUBLE.equals(ft) || Type.FLOAT.equals(ft)) {
+                Number data = getNumber(row.getData(field));
+                if (data == null)
+                    writeField(stream, "", length);
+                else {
+                    double number = data.doubleValue();
+                    String decimalString = decimalFormat.format(number);
+                    if (decimalString.length() > 34) {
+                        // value would be truncated - use numeric exponent format (e.g. 1.2e+308)
+                        decimalString = doubleExpFormat(number);
                     }
-                } else if (Type.BOOL.equals(ft)) {
-                    Boolean bool = getBoolean(row.getData(field));
-                    if (bool == null)
-                        writeStringField(stream, "?", 1);
-                    else if (bool)
-                        writeStringField(stream, "T", 1);
-                    else
-                        writeStringField(stream, "F", 1);
+                    writeField(stream, decimalString, 34);
+                }
+            } else if (Type.INT.equals(ft) || Type.UINT.equals(ft)) {
+                Number data = getNumber(row.getData(field));
+                if (data != null) {
+                    int val = data.intValue();
+                    writeField(stream, Integer.toString(val), 10);
                 } else {
-                    String data = getString(row.getData(field));
-                    writeField(stream, data, 32);
+                    writeField(stream, "", 10);
                 }
+            } else if (Type.SHORT.equals(ft) || Type.USHORT.equals(ft)) {
+                Number data = getNumber(row.getData(field));
+                if (data != null) {
+                    short val = data.shortValue();
+                    writeField(stream, Short.toString(val), 6);
+                } else {
+                    writeField(stream, "", 6);
+                }
+            } else if (Type.LONG.equals(ft) || Type.OID.equals(ft)) {
+                Number data = getNumber(row.getData(field));
+                if (data == null) {
+                    // some DBF implementations also interpret values starting with '*' as null
+                    writeField(stream, "", length);
+                } else {
+                    writeField(stream, Long.toString(data.longValue()), length);
+                }
+            } else if (Type.DATE.equals(ft)) {
+                Date data = getDate(row.getData(field));
+                // NOTE: dates stored as string (8-bytes) in the format (YYYYMMDD)
+                // and timestamp if any is discarded.
+                if (data != null) {
+                    writeStringField(stream, dateFormat.format(data), 8);
+                } else {
+                    writeStringField(stream, "", 8);
+                }
+            } else if (Type.BOOL.equals(ft)) {
+                Boolean bool = getBoolean(row.getData(field));
+                if (bool == null)
+                    writeStringField(stream, "?", 1);
+                else if (bool)
+                    writeStringField(stream, "T", 1);
+                else
+                    writeStringField(stream, "F", 1);
+            } else {
+                String data = getString(row.getData(field));
+                writeField(stream, data, 32);
             }
-            row = (Row) buffer.read();
         }
     }
 
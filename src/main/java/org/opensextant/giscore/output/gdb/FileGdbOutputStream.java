@@ -46,6 +46,7 @@ import org.opensextant.giscore.events.SimpleField;
 import org.opensextant.giscore.filegdb.ESRIErrorCodes;
 import org.opensextant.giscore.filegdb.GDB;
 import org.opensextant.giscore.filegdb.Geodatabase;
+import org.opensextant.giscore.filegdb.RowBuffer;
 import org.opensextant.giscore.filegdb.Table;
 import org.opensextant.giscore.geometry.Geometry;
 import org.opensextant.giscore.geometry.GeometryBag;
@@ -55,11 +56,12 @@ import org.opensextant.giscore.geometry.MultiLine;
 import org.opensextant.giscore.geometry.MultiLinearRings;
 import org.opensextant.giscore.geometry.MultiPoint;
 import org.opensextant.giscore.geometry.MultiPolygons;
+import org.opensextant.giscore.geometry.PackedPointList;
 import org.opensextant.giscore.geometry.Point;
 import org.opensextant.giscore.geometry.Polygon;
 import org.opensextant.giscore.output.FeatureKey;
 import org.opensextant.giscore.output.IContainerNameStrategy;
-import org.opensextant.giscore.output.IGISOutputStream;
+import org.opensextant.giscore.output.IGISBatchOutputStream;
 import org.opensextant.giscore.utils.Args;
 import org.opensextant.giscore.utils.ZipUtils;
 import org.slf4j.Logger;
@@ -81,7 +83,7 @@ import org.slf4j.LoggerFactory;
  *
  */
 public class FileGdbOutputStream extends XmlGdbOutputStream implements
-		IGISOutputStream, FileGdbConstants {
+		IGISBatchOutputStream, FileGdbConstants {
 
 	private static final Logger log = LoggerFactory.getLogger(FileGdbOutputStream.class);
 
@@ -94,6 +96,16 @@ public class FileGdbOutputStream extends XmlGdbOutputStream implements
 	private final Map<String, Table> tables = new HashMap<String, Table>();
 	private final AtomicInteger nid = new AtomicInteger();
 
+	/*
+	 * While a batch is written, rows for bufferedTable are encoded into 
+	 * rowBuffer and added together when the table changes, the buffer is 
+	 * full or the batch ends. Null if the native library can only add one 
+	 * row at a time.
+	 */
+	private RowBuffer rowBuffer;
+	private Table bufferedTable;
+	private boolean batching;
+
 	/*
 	 * Maps the schema name to the schema. The schemata included are both
 	 * defined schemata as well as implied or inline schemata that are defined
@@ -156,6 +168,9 @@ public class FileGdbOutputStream extends XmlGdbOutputStream implements
 		} catch(Exception ex) { 
 			codes.rethrow(ex);
 		}
+		if (Table.isRowBufferSupported()) {
+			rowBuffer = new RowBuffer();
+		}
 	}
 
 	/**
@@ -208,6 +223,82 @@ public class FileGdbOutputStream extends XmlGdbOutputStream implements
 		object.accept(this);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p/>
+	 * When the native library supports adding many rows at once, the rows
+	 * and features of the batch are held in a buffer and added to their 
+	 * table together when a row for another table arrives, the buffer is 
+	 * full or the batch ends, so all of them have been added when this 
+	 * returns. An error adding the held rows, such as a value the table 
+	 * rejects, is thrown by this call and the held rows are discarded.
+	 *
+	 * @throws IllegalStateException
+	 * 				if underlying ESRI FileGDB API throws an exception
+	 */
+	@Override
+	public void writeBatch(Iterable<? extends IGISObject> objects) {
+		batching = rowBuffer != null;
+		try {
+			for (IGISObject object : objects) {
+				object.accept(this);
+			}
+		} finally {
+			batching = false;
+			try {
+				addBufferedRows();
+			} catch (Exception e) {
+				codes.rethrow(e);
+			}
+		}
+	}
+
+	/**
+	 * Add a row to the table. Within a batch the row is encoded into the 
+	 * row buffer to be added with other rows for the same table, otherwise 
+	 * it is added directly.
+	 * 
+	 * @param table the table
+	 * @param datamap the field values
+	 * @param geometry the encoded geometry or <code>null</code>
+	 */
+	private void insert(Table table, Map<String, Object> datamap, Object[] geometry) {
+		if (!batching) {
+			org.opensextant.giscore.filegdb.Row tablerow = table.createRow();
+			tablerow.setAttributes(datamap);
+			if (geometry != null) {
+				tablerow.setGeometry(geometry);
+			}
+			table.add(tablerow);
+			return;
+		}
+		if (table != bufferedTable) {
+			addBufferedRows();
+			bufferedTable = table;
+		}
+		if (!rowBuffer.add(table, datamap, geometry)) {
+			addBufferedRows();
+			bufferedTable = table;
+			rowBuffer.add(table, datamap, geometry);
+		}
+	}
+
+	/**
+	 * Add the held rows to their table. The buffer is emptied even if this
+	 * fails so the rows are never added twice.
+	 */
+	private void addBufferedRows() {
+		if (bufferedTable != null) {
+			Table table = bufferedTable;
+			bufferedTable = null;
+			try {
+				table.addAll(rowBuffer);
+			} finally {
+				rowBuffer.clear();
+			}
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 *
@@ -227,15 +318,13 @@ public class FileGdbOutputStream extends XmlGdbOutputStream implements
 				table = database.createTable(getParentPath(), descriptor);
 				tables.put(fullpath, table);
 			}
-			org.opensextant.giscore.filegdb.Row tablerow = table.createRow();
-			transferData(tablerow, row);
-			table.add(tablerow);
+			insert(table, getData(row), null);
 		} catch (Exception e) {
 			codes.rethrow(e);
 		}
 	}
 
-	private void transferData(org.opensextant.giscore.filegdb.Row tablerow, Row row) {
+	private Map<String, Object> getData(Row row) {
 		Map<String,Object> datamap = new HashMap<String, Object>();
 		for(SimpleField field : row.getFields()) {
 			Object data = row.getData(field);
@@ -245,7 +334,7 @@ public class FileGdbOutputStream extends XmlGdbOutputStream implements
 				datamap.put(field.getName(), data);
 			}
 		}
-		tablerow.setAttributes(datamap);
+		return datamap;
 	}
 
 	/**
@@ -297,15 +386,13 @@ public class FileGdbOutputStream extends XmlGdbOutputStream implements
 				table = Table.createTable(database, "\\", descriptor);
 				tables.put(fullpath, table);
 			}
-			org.opensextant.giscore.filegdb.Row tablerow = table.createRow();
-			transferData(tablerow, feature);
 			// Encode the geometry
 			outputList = new ArrayList<Object>(10);
 			Geometry geo = feature.getGeometry();
 			geo.accept(this);
-			tablerow.setGeometry(outputList.toArray());
+			Object[] geometry = outputList.toArray();
 			outputList = null;
-			table.add(tablerow);
+			insert(table, getData(feature), geometry);
 		} catch (Exception e) {
 			codes.rethrow(e);
 		}
@@ -422,6 +509,17 @@ public class FileGdbOutputStream extends XmlGdbOutputStream implements
 			outputList.add(pov.getOffsets().get(i));
 		}
 		List<Point> pts = geo.getPoints();
+		if (pts instanceof PackedPointList) {
+			PackedPointList packed = (PackedPointList) pts;
+			for(int i = 0; i < packed.size(); i++) {
+				outputList.add(packed.getLonDegrees(i));
+				outputList.add(packed.getLatDegrees(i));
+				if (hasz) {
+					outputList.add(packed.getElevation(i));
+				}
+			}
+			return;
+		}
 		Geodetic2DPoint center;
 		for(Point p : pts) {
 			center = p.getCenter();
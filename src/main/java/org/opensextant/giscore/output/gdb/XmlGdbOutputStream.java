@@ -38,6 +38,7 @@ import javax.xml.stream.XMLStreamException;
 
 import org.apache.commons.lang.StringUtils;
 import org.opensextant.geodesy.Geodetic2DBounds;
+import org.opensextant.geodesy.Geodetic2DPoint;
 import org.opensextant.giscore.events.ContainerEnd;
 import org.opensextant.giscore.events.ContainerStart;
 import org.opensextant.giscore.events.Feature;
@@ -51,6 +52,7 @@ import org.opensextant.giscore.geometry.MultiPoint;
 import org.opensextant.giscore.geometry.Point;
 import org.opensextant.giscore.geometry.Polygon;
 import org.opensextant.giscore.input.gdb.IXmlGdb;
+import org.opensextant.giscore.output.DoubleFormatter;
 import org.opensextant.giscore.output.FeatureKey;
 import org.opensextant.giscore.output.FeatureSorter;
 import org.opensextant.giscore.output.XmlOutputStreamBase;
@@ -210,6 +212,8 @@ public class XmlGdbOutputStream extends XmlOutputStreamBase implements IXmlGdb {
     public XmlGdbOutputStream(OutputStream stream) throws XMLStreamException {
         super(stream);
         ISO_DATE_FMT.setTimeZone(TimeZone.getTimeZone("UTC"));
+        // same precision as LOC
+        setDoubleFormatter(new DoubleFormatter(5));
     }
 
 //	/* (non-Javadoc)
@@ -616,10 +620,10 @@ public class XmlGdbOutputStream extends XmlOutputStreamBase implements IXmlGdb {
 		writer.writeStartElement(EXTENT);
 		if (bbox != null) {
 			writeEsriType("EnvelopeN");
-			handleSimpleElement(XMIN, LOC.format(bbox.getWestLon().inDegrees()));
-			handleSimpleElement(YMIN, LOC.format(bbox.getSouthLat().inDegrees()));
-			handleSimpleElement(XMAX, LOC.format(bbox.getEastLon().inDegrees()));
-			handleSimpleElement(YMAX, LOC.format(bbox.getNorthLat().inDegrees()));
+			handleDoubleElement(XMIN, bbox.getWestLon().inDegrees());
+			handleDoubleElement(YMIN, bbox.getSouthLat().inDegrees());
+			handleDoubleElement(XMAX, bbox.getEastLon().inDegrees());
+			handleDoubleElement(YMAX, bbox.getNorthLat().inDegrees());
 			if (includeReference) writeSpatialReference(WKT_WGS_84, WGS_84);
 		} else {
 			writer.writeAttribute(XSI, XSI_NS, "nil", "true");
@@ -677,10 +681,9 @@ public class XmlGdbOutputStream extends XmlOutputStreamBase implements IXmlGdb {
 	 * @throws XMLStreamException
 	 */
 	private void writePoint(Point point) throws XMLStreamException {
-		handleSimpleElement(X, LOC.format(
-                point.getCenter().getLongitudeAsDegrees()));
-		handleSimpleElement(Y, LOC.format(
-                point.getCenter().getLatitudeAsDegrees()));
+		Geodetic2DPoint center = point.getCenter();
+		handleDoubleElement(X, center.getLongitudeAsDegrees());
+		handleDoubleElement(Y, center.getLatitudeAsDegrees());
 	}
 
 	/**
@@ -0,0 +1,325 @@
+/****************************************************************************************
+ *  ConcurrentKmlOutputStream.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.output.kml;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.opensextant.giscore.events.ContainerEnd;
+import org.opensextant.giscore.events.ContainerStart;
+import org.opensextant.giscore.events.DocumentStart;
+import org.opensextant.giscore.events.IGISObject;
+import org.opensextant.giscore.output.IGISOutputStream;
+
+/**
+ * A KML output stream that can be written by several producer threads at once.
+ * <p/>
+ * Each thread calling {@link #write(IGISObject)} serializes its objects into its
+ * own fragment buffer with its own {@link KmlOutputStream}, so producers do not
+ * contend on a single XMLStreamWriter. Once a thread has written a complete
+ * element at the top level of its fragment, such as a Feature or a container
+ * and everything up to its matching ContainerEnd, the element is complete and
+ * is appended to the underlying stream along with the other completed elements
+ * of the thread once {@link #getBatchSize()} bytes have accumulated. Containers
+ * started by a thread therefore hold exactly the objects that thread wrote into
+ * them, and elements of different threads are never interleaved.
+ * <p/>
+ * The shared structure of the document, the DocumentStart and any containers
+ * that collect the output of several threads, is written with
+ * {@link #writeShared(IGISObject)}, which first appends all completed elements of
+ * every thread. Shared containers can only be started or ended when no thread
+ * has a container of its own open. The order of elements written by different
+ * threads is not defined beyond that.
+ */
+public class ConcurrentKmlOutputStream implements IGISOutputStream {
+
+    /**
+     * Default count of completed bytes a thread buffers before appending them
+     */
+    public static final int DEFAULT_BATCH_SIZE = 64 * 1024;
+
+    private final KmlOutputStream kos;
+    private final String encoding;
+    private final int batchSize;
+
+    /**
+     * Fragments of all threads, guarded by itself
+     */
+    private final List<Fragment> fragments = new ArrayList<Fragment>();
+
+    private final ThreadLocal<Fragment> localFragment = new ThreadLocal<Fragment>();
+
+    private volatile boolean closed;
+
+    /**
+     * Ctor
+     *
+     * @param stream    OutputStream to write the KML document to
+     * @param encoding  the encoding to use, if null default encoding (UTF-8) is assumed
+     * @param batchSize count of completed bytes a thread buffers before appending
+     *                  them to the stream, must be positive
+     * @throws XMLStreamException if error occurs creating output stream
+     */
+    public ConcurrentKmlOutputStream(OutputStream stream, String encoding, int batchSize) throws XMLStreamException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        kos = new KmlOutputStream(stream, encoding);
+        this.encoding = encoding;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Ctor
+     *
+     * @param stream   OutputStream to write the KML document to
+     * @param encoding the encoding to use, if null default encoding (UTF-8) is assumed
+     * @throws XMLStreamException if error occurs creating output stream
+     */
+    public ConcurrentKmlOutputStream(OutputStream stream, String encoding) throws XMLStreamException {
+        this(stream, encoding, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Ctor
+     *
+     * @param stream OutputStream to write the KML document to
+     * @throws XMLStreamException if error occurs creating output stream
+     */
+    public ConcurrentKmlOutputStream(OutputStream stream) throws XMLStreamException {
+        this(stream, null, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @return count of completed bytes a thread buffers before appending them
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Write an object into the fragment of the calling thread. A DocumentStart
+     * is written as a shared object.
+     *
+     * @param object the object to write, never <code>null</code>
+     * @throws IllegalStateException if the stream is closed, on a ContainerEnd
+     *                               without a matching ContainerStart from the
+     *                               same thread, or if there is an error with
+     *                               the underlying XML or stream
+     */
+    public void write(IGISObject object) {
+        if (object instanceof DocumentStart) {
+            writeShared(object);
+            return;
+        }
+        if (closed) {
+            throw new IllegalStateException("stream is closed");
+        }
+        Fragment fragment = localFragment.get();
+        if (fragment == null) {
+            fragment = createFragment();
+            localFragment.set(fragment);
+        }
+        try {
+            synchronized (fragment) {
+                fragment.write(object);
+                if (fragment.completed >= batchSize) {
+                    append(fragment);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Write an object directly to the document after appending the completed
+     * elements of every thread. This is used for the DocumentStart, which must
+     * be written before any other object, and for containers that hold the
+     * elements of several threads.
+     *
+     * @param object the object to write, never <code>null</code>
+     * @throws IllegalStateException if the stream is closed, if a DocumentStart
+     *                               follows other objects, if a container is
+     *                               started or ended while a thread has a
+     *                               container open, or if there is an error with
+     *                               the underlying XML or stream
+     */
+    public void writeShared(IGISObject object) {
+        if (closed) {
+            throw new IllegalStateException("stream is closed");
+        }
+        boolean structural = object instanceof ContainerStart || object instanceof ContainerEnd;
+        synchronized (fragments) {
+            if (object instanceof DocumentStart && !fragments.isEmpty()) {
+                throw new IllegalStateException("DocumentStart must be written before any other object");
+            }
+            try {
+                for (Fragment fragment : fragments) {
+                    synchronized (fragment) {
+                        if (structural && fragment.depth != 0) {
+                            throw new IllegalStateException("Cannot write shared container while a thread has an open container");
+                        }
+                        append(fragment);
+                    }
+                }
+                synchronized (kos) {
+                    kos.write(object);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Append the completed elements of every thread to the underlying stream.
+     *
+     * @throws IOException if an error occurs
+     */
+    public void flush() throws IOException {
+        synchronized (fragments) {
+            for (Fragment fragment : fragments) {
+                synchronized (fragment) {
+                    append(fragment);
+                }
+            }
+        }
+    }
+
+    /**
+     * Append the completed elements of every thread and close the document and
+     * the underlying stream. No thread may write to the stream while it is closed.
+     *
+     * @throws IOException if an error occurs
+     * @throws IllegalStateException if a thread left a container open, in
+     *                               which case its open container is discarded
+     */
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        boolean incomplete = false;
+        try {
+            synchronized (fragments) {
+                for (Fragment fragment : fragments) {
+                    synchronized (fragment) {
+                        append(fragment);
+                        incomplete |= fragment.depth != 0;
+                    }
+                }
+            }
+        } finally {
+            synchronized (kos) {
+                kos.close();
+            }
+        }
+        if (incomplete) {
+            throw new IllegalStateException("Container left open by a producer thread");
+        }
+    }
+
+    private Fragment createFragment() {
+        synchronized (fragments) {
+            synchronized (kos) {
+                Fragment fragment;
+                try {
+                    fragment = new Fragment(encoding, kos);
+                } catch (XMLStreamException e) {
+                    throw new IllegalStateException(e);
+                }
+                fragments.add(fragment);
+                return fragment;
+            }
+        }
+    }
+
+    /**
+     * Append the completed elements of a fragment. Callers hold the fragment's lock.
+     */
+    private void append(Fragment fragment) throws IOException {
+        if (fragment.completed != 0) {
+            synchronized (kos) {
+                kos.writeFragment(fragment.buffer.getBuffer(), 0, fragment.completed);
+            }
+            fragment.buffer.discard(fragment.completed);
+            fragment.completed = 0;
+        }
+    }
+
+    /**
+     * Serialized output of one producer thread
+     */
+    private static final class Fragment {
+
+        final FragmentBuffer buffer = new FragmentBuffer();
+        final KmlOutputStream out;
+
+        /**
+         * Count of containers started and not yet ended by the thread
+         */
+        int depth;
+
+        /**
+         * Count of leading bytes of the buffer holding complete elements
+         */
+        int completed;
+
+        Fragment(String encoding, KmlOutputStream parent) throws XMLStreamException {
+            out = new KmlOutputStream(buffer, encoding, parent);
+        }
+
+        void write(IGISObject object) throws IOException {
+            if (object instanceof ContainerStart) {
+                depth++;
+            } else if (object instanceof ContainerEnd) {
+                if (depth == 0) {
+                    throw new IllegalStateException("ContainerEnd without a ContainerStart from the same thread");
+                }
+                depth--;
+            }
+            out.write(object);
+            if (depth == 0) {
+                out.flushFragment();
+                completed = buffer.size();
+            }
+        }
+    }
+
+    private static final class FragmentBuffer extends ByteArrayOutputStream {
+
+        FragmentBuffer() {
+            super(8192);
+        }
+
+        byte[] getBuffer() {
+            return buf;
+        }
+
+        /**
+         * Remove leading bytes, keeping the rest of the buffer
+         */
+        void discard(int len) {
+            System.arraycopy(buf, len, buf, 0, count - len);
+            count -= len;
+        }
+    }
+}
@@ -30,6 +30,7 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 
 import javax.xml.stream.XMLStreamException;
@@ -75,11 +76,13 @@ import org.opensextant.giscore.geometry.MultiLine;
 import org.opensextant.giscore.geometry.MultiLinearRings;
 import org.opensextant.giscore.geometry.MultiPoint;
 import org.opensextant.giscore.geometry.MultiPolygons;
+import org.opensextant.giscore.geometry.PackedPointList;
 import org.opensextant.giscore.geometry.Point;
 import org.opensextant.giscore.geometry.Polygon;
 import org.opensextant.giscore.input.kml.IKml;
 import org.opensextant.giscore.input.kml.KmlInputStream;
 import org.opensextant.giscore.input.kml.UrlRef;
+import org.opensextant.giscore.output.CoordinateWriter;
 import org.opensextant.giscore.output.XmlOutputStreamBase;
 import org.opensextant.giscore.output.atom.IAtomConstants;
 import org.opensextant.giscore.utils.Args;
@@ -209,6 +212,27 @@ public class KmlOutputStream extends XmlOutputStreamBase implements IKml {
         this(stream, new Object[0]);
     }
 
+    /**
+     * Create a stream that writes KML fragments to be embedded in the document
+     * of another stream. No XML declaration or root kml element is written and
+     * the namespaces declared on the parent are bound without being declared again.
+     *
+     * @param stream   OutputStream receiving the fragments
+     * @param encoding the encoding of the parent stream
+     * @param parent   the stream the fragments are appended to
+     * @throws XMLStreamException if error occurs creating output stream
+     * @see #writeFragment(byte[], int, int)
+     */
+    KmlOutputStream(OutputStream stream, String encoding, KmlOutputStream parent) throws XMLStreamException {
+        init(stream, encoding);
+        numberCirclePoints = parent.numberCirclePoints;
+        gxNamespace = parent.gxNamespace;
+        namespaces.putAll(parent.namespaces);
+        writer.setDefaultNamespace(KML_NS);
+        for (Map.Entry<String, String> entry : namespaces.entrySet()) {
+            writer.setPrefix(entry.getKey(), entry.getValue());
+        }
+    }
     /**
      * Close this writer and free any resources associated with the
      * writer.  This also closes the underlying output stream.
@@ -261,6 +285,40 @@ public class KmlOutputStream extends XmlOutputStreamBase implements IKml {
         IOUtils.closeQuietly(stream);
     }
 
+    /**
+     * Flush the XMLStreamWriter of a fragment stream so that everything written
+     * so far is in its underlying stream.
+     *
+     * @throws IOException if an error occurs
+     */
+    void flushFragment() throws IOException {
+        try {
+            writer.flush();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Append complete KML elements serialized by a fragment stream directly to
+     * the underlying stream, bypassing the XMLStreamWriter.
+     *
+     * @param b   the serialized fragments in the encoding of this stream
+     * @param off the start offset in the data
+     * @param len the number of bytes to write
+     * @throws IOException if an error occurs
+     */
+    void writeFragment(byte[] b, int off, int len) throws IOException {
+        try {
+            // close any pending start tag and push buffered output ahead of the fragments
+            writer.writeCharacters("");
+            writer.flush();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        stream.write(b, off, len);
+    }
+
     /**
 	 * Visit a DocumentStart object.
 	 * This can only be done once immediately after creating the KmlOutputStream
@@ -1088,15 +1146,13 @@ public class KmlOutputStream extends XmlOutputStreamBase implements IKml {
                 handleGeometryAttributes(poly);
                 writer.writeStartElement(OUTER_BOUNDARY_IS);
                 writer.writeStartElement(LINEAR_RING);
-                handleSimpleElement(COORDINATES, handleCoordinates(poly
-                        .getOuterRing().iterator()));
+                handleCoordinates(poly.getOuterRing().getPoints());
                 writer.writeEndElement();
                 writer.writeEndElement();
 				for (LinearRing lr : poly.getLinearRings()) {
 					writer.writeStartElement(INNER_BOUNDARY_IS);
 					writer.writeStartElement(LINEAR_RING);
-					handleSimpleElement(COORDINATES, handleCoordinates(lr
-							.getPoints()));
+					handleCoordinates(lr.getPoints());
 					writer.writeEndElement();
 					writer.writeEndElement();
 				}
@@ -1117,7 +1173,7 @@ public class KmlOutputStream extends XmlOutputStreamBase implements IKml {
             try {
                 writer.writeStartElement(LINEAR_RING);
                 handleGeometryAttributes(r);
-                handleSimpleElement(COORDINATES, handleCoordinates(r.iterator()));
+                handleCoordinates(r.getPoints());
                 writer.writeEndElement();
             } catch (XMLStreamException e) {
                 throw new IllegalStateException(e);
@@ -1135,7 +1191,7 @@ public class KmlOutputStream extends XmlOutputStreamBase implements IKml {
             try {
                 writer.writeStartElement(LINE_STRING);
                 handleGeometryAttributes(l);
-                handleSimpleElement(COORDINATES, handleCoordinates(l.getPoints()));
+                handleCoordinates(l.getPoints());
                 writer.writeEndElement();
             } catch (XMLStreamException e) {
                 throw new IllegalStateException(e);
@@ -1156,7 +1212,7 @@ public class KmlOutputStream extends XmlOutputStreamBase implements IKml {
                 handleGeometryAttributes(p);
                 //<extrude>0</extrude> <!-- boolean -->
                 //<altitudeMode>clampToGround</altitudeMode>
-                handleSimpleElement(COORDINATES, handleSingleCoordinate(p));
+                handleSingleCoordinate(p);
                 writer.writeEndElement();
             } catch (XMLStreamException e) {
                 throw new IllegalStateException(e);
@@ -1177,7 +1233,7 @@ public class KmlOutputStream extends XmlOutputStreamBase implements IKml {
                     handleGeometryAttributes(circle);
                     //<extrude>0</extrude> <!-- boolean -->
                     //<altitudeMode>clampToGround</altitudeMode>
-                    handleSimpleElement(COORDINATES, handleSingleCoordinate(circle));
+                    handleSingleCoordinate(circle);
                     writer.writeEndElement();
                     return;
                 }
@@ -1188,34 +1244,23 @@ public class KmlOutputStream extends XmlOutputStreamBase implements IKml {
                 double elev = is3D ? ((Geodetic3DPoint)circle.getCenter()).getElevation() : 0;
                 // store preference for # points in generated circles in System.property (default=32)
                 // note: number points is one more than count since first and last points must be the same
-                StringBuilder b = new StringBuilder();
-                Geodetic2DPoint firstPt = null;
-                for (Geodetic2DPoint point : c.boundary(numberCirclePoints)) {
-                    if (firstPt == null) firstPt = point;
-                    handleSingleCoordinate(b, point);
-                    if (is3D) b.append(',').append(formatDouble(elev));
-                }
-                if (firstPt != null && numberCirclePoints > 2) {
-                    handleSingleCoordinate(b, firstPt);
-                    if (is3D) b.append(',').append(formatDouble(elev));
-                }
-                String coordinates = b.toString();
+                Iterable<Geodetic2DPoint> boundary = c.boundary(numberCirclePoints);
                 if (hint == Circle.HintType.LINE || numberCirclePoints == 2) {
                     writer.writeStartElement(LINE_STRING);
                     handleGeometryAttributes(circle);
-                    handleSimpleElement(COORDINATES, coordinates);
+                    handleCircleCoordinates(boundary, is3D, elev);
                     writer.writeEndElement();
                 } else if (hint == Circle.HintType.RING) {
                     writer.writeStartElement(LINEAR_RING);
                     handleGeometryAttributes(circle);
-                    handleSimpleElement(COORDINATES, coordinates);
+                    handleCircleCoordinates(boundary, is3D, elev);
                     writer.writeEndElement();
                 } else {
                     writer.writeStartElement(POLYGON); // default
                     handleGeometryAttributes(circle);
                     writer.writeStartElement(OUTER_BOUNDARY_IS);
                     writer.writeStartElement(LINEAR_RING);
-                    handleSimpleElement(COORDINATES, coordinates);
+                    handleCircleCoordinates(boundary, is3D, elev);
                     writer.writeEndElement();
                     writer.writeEndElement();
                     writer.writeEndElement();
@@ -1375,63 +1420,103 @@ public class KmlOutputStream extends XmlOutputStreamBase implements IKml {
     }
 
     /**
-     * output the coordinates. The coordinates are output as lon,lat[,altitude]
-     * and are separated by spaces
+     * output the coordinates element. The coordinates are output as lon,lat[,altitude]
+     * and are separated by spaces, streamed to the writer without building a String.
      *
-     * @param coordinates an iterator over the points, never <code>null</code>
-     * @return the coordinates as a string
+     * @param coordinateList the list of coordinates, never <code>null</code>
+     * @throws XMLStreamException if there is an error with the underlying XML
      */
-    private String handleCoordinates(Iterator<Point> coordinates) {
-        StringBuilder b = new StringBuilder();
-        while (coordinates.hasNext()) {
-            Point point = coordinates.next();
-            handleSingleCoordinate(b, point);
+    private void handleCoordinates(Collection<Point> coordinateList) throws XMLStreamException {
+        writer.writeStartElement(COORDINATES);
+        CoordinateWriter cw = getCoordinateWriter();
+        if (coordinateList instanceof PackedPointList) {
+            // read packed coordinates directly without creating Point objects
+            PackedPointList packed = (PackedPointList) coordinateList;
+            for (int i = 0; i < packed.size(); i++) {
+                if (i != 0) cw.append(' ');
+                cw.append(packed.getLonDegrees(i));
+                cw.append(',');
+                cw.append(packed.getLatDegrees(i));
+                if (packed.hasElevation(i)) {
+                    cw.append(',');
+                    cw.append(packed.getElevation(i));
+                }
+            }
+        } else {
+            boolean first = true;
+            for (Point point : coordinateList) {
+                if (first) first = false;
+                else cw.append(' ');
+                handleSingleCoordinate(cw, point.getCenter());
+            }
         }
-        return b.toString();
+        endCoordinates(cw);
     }
 
     /**
-     * output the coordinates. The coordinates are output as lon,lat[,altitude]
-     * and are separated by spaces
+     * Output the coordinates element of a single point
      *
-     * @param coordinateList the list of coordinates, never <code>null</code>
-     * @return String formatted list of coordinate points
+     * @param point Point to be formatted for output
+     * @throws XMLStreamException if there is an error with the underlying XML
+     */
+    private void handleSingleCoordinate(Point point) throws XMLStreamException {
+        writer.writeStartElement(COORDINATES);
+        CoordinateWriter cw = getCoordinateWriter();
+        handleSingleCoordinate(cw, point.getCenter());
+        endCoordinates(cw);
+    }
+
+    /**
+     * Output the coordinates element of a generated circle, closing the ring
+     * if it has more than 2 points.
      */
-    private String handleCoordinates(Collection<Point> coordinateList) {
-        StringBuilder b = new StringBuilder();
-        for (Point point : coordinateList) {
-            handleSingleCoordinate(b, point);
+    private void handleCircleCoordinates(Iterable<Geodetic2DPoint> boundary, boolean is3D, double elev)
+            throws XMLStreamException {
+        writer.writeStartElement(COORDINATES);
+        CoordinateWriter cw = getCoordinateWriter();
+        Geodetic2DPoint firstPt = null;
+        for (Geodetic2DPoint point : boundary) {
+            if (firstPt == null) firstPt = point;
+            else cw.append(' ');
+            handleCircleCoordinate(cw, point, is3D, elev);
+        }
+        if (firstPt != null && numberCirclePoints > 2) {
+            cw.append(' ');
+            handleCircleCoordinate(cw, firstPt, is3D, elev);
         }
-        return b.toString();
+        endCoordinates(cw);
     }
 
-    private String handleSingleCoordinate(Point point) {
-        StringBuilder b = new StringBuilder();
-        handleSingleCoordinate(b, point);
-        return b.toString();
+    private void handleCircleCoordinate(CoordinateWriter cw, Geodetic2DPoint point, boolean is3D, double elev)
+            throws XMLStreamException {
+        handleSingleCoordinate(cw, point);
+        if (is3D) {
+            cw.append(',');
+            cw.append(elev);
+        }
+    }
+
+    private void endCoordinates(CoordinateWriter cw) throws XMLStreamException {
+        cw.flush();
+        writer.writeEndElement();
+        writer.writeCharacters("\n");
     }
 
     /**
      * Output a single coordinate
      *
-     * @param b     StringBuilder to write coordinate to
-     * @param point Point to be formatted for output
+     * @param cw  CoordinateWriter to write coordinate to
+     * @param p2d Point to be formatted for output
+     * @throws XMLStreamException if there is an error with the underlying XML
      */
-    private void handleSingleCoordinate(StringBuilder b, Point point) {
-        handleSingleCoordinate(b, point.getCenter());
-    }
-
-    private void handleSingleCoordinate(StringBuilder b, Geodetic2DPoint p2d) {
-        if (b.length() > 0) {
-            b.append(' ');
-        }
-        b.append(formatDouble(p2d.getLongitudeAsDegrees()));
-        b.append(',');
-        b.append(formatDouble(p2d.getLatitudeAsDegrees()));
+    private void handleSingleCoordinate(CoordinateWriter cw, Geodetic2DPoint p2d) throws XMLStreamException {
+        cw.append(p2d.getLongitudeAsDegrees());
+        cw.append(',');
+        cw.append(p2d.getLatitudeAsDegrees());
         if (p2d instanceof Geodetic3DPoint) {
             Geodetic3DPoint p3d = (Geodetic3DPoint) p2d;
-            b.append(',');
-            b.append(formatDouble(p3d.getElevation()));
+            cw.append(',');
+            cw.append(p3d.getElevation());
         }
     }
 
@@ -1708,7 +1793,7 @@ public class KmlOutputStream extends XmlOutputStreamBase implements IKml {
         handleDouble(SCALE, style.getIconScale());
         Double heading = style.getIconHeading();
         if (heading != null && Math.abs(heading) > 0.1 && heading < 360)
-            handleSimpleElement(HEADING, formatDouble(heading));
+            handleDoubleElement(HEADING, heading);
         String iconUrl = style.getIconUrl();
         if (iconUrl != null) {
             // if want empty Icon tag then include a blank href ("")
@@ -1735,7 +1820,7 @@ public class KmlOutputStream extends XmlOutputStreamBase implements IKml {
 
     private void handleDouble(String tag, Double value) throws XMLStreamException {
         if (value != null) {
-            handleSimpleElement(tag, formatDouble(value));
+            handleDoubleElement(tag, value);
         }
     }
 
@@ -1825,10 +1910,10 @@ public class KmlOutputStream extends XmlOutputStreamBase implements IKml {
                     handleAltitudeMode(model.getAltitudeMode());
                     if (point != null) {
                         writer.writeStartElement(LOCATION);
-                        handleSimpleElement(LONGITUDE, formatDouble(point.getLongitudeAsDegrees()));
-                        handleSimpleElement(LATITUDE, formatDouble(point.getLatitudeAsDegrees()));
+                        handleDoubleElement(LONGITUDE, point.getLongitudeAsDegrees());
+                        handleDoubleElement(LATITUDE, point.getLatitudeAsDegrees());
                         if (model.is3D())
-                            handleSimpleElement(ALTITUDE, formatDouble(((Geodetic3DPoint) point).getElevation()));
+                            handleDoubleElement(ALTITUDE, ((Geodetic3DPoint) point).getElevation());
                         writer.writeEndElement();
                     }
                     writer.writeEndElement();
@@ -29,6 +29,7 @@ import org.apache.commons.io.output.ProxyOutputStream;
 import org.opensextant.giscore.events.IGISObject;
 import org.opensextant.giscore.output.IGISOutputStream;
 import org.opensextant.giscore.utils.Args;
+import org.opensextant.giscore.utils.ParallelZipOutputStream;
 
 /**
  * The kmz output stream creates a result KMZ file using the given output
@@ -37,6 +38,10 @@ import org.opensextant.giscore.utils.Args;
  * After all of the GIS objects have been written, additional zip entries can be
  * added with the {@code addEntry()} methods.
  * <p>
+ * When created with more than one thread, the KML document and the added
+ * entries are compressed in chunks on a pool of threads by a
+ * {@link ParallelZipOutputStream}, which still writes a single doc.kml entry.
+ * <p>
  * TODO: Add special handling for the COLLADA models:
  * http://code.google.com/apis/kml/documentation/kml_21tutorial.html
  * <p> 
@@ -62,13 +67,18 @@ public class KmzOutputStream implements IGISOutputStream {
     /**
 	 * Creates a <code>KmzOutputStream</code> by opening a ZipOutputStream on the output stream.
 	 * @param stream OutputStream to decorate as a KmzOutputStream
-     * @param args
+     * @param args the encoding to use, or <code>null</code> for the default
+     *  encoding (UTF-8), optionally followed by the Integer count of threads
+     *  that compress the output
 	 * @throws XMLStreamException if error occurs creating output stream
 	 */
     public KmzOutputStream(final OutputStream stream, Object args[]) throws XMLStreamException {
     	Args argv = new Args(args);
     	String encoding = (String) argv.get(String.class, 0);
-    	zipStream = new ZipOutputStream(stream);
+    	Integer threads = (Integer) argv.get(Integer.class, 1);
+    	zipStream = threads != null && threads > 1
+    			? new ParallelZipOutputStream(stream, threads)
+    			: new ZipOutputStream(stream);
 		try {
 			zipStream.putNextEntry(new ZipEntry("doc.kml"));
 		} catch (IOException e) {
@@ -87,6 +97,20 @@ public class KmzOutputStream implements IGISOutputStream {
 		this(stream, new Object[]{encoding});
 	}
 
+    /**
+     * Creates a <code>KmzOutputStream</code> that compresses its entries on
+     * a pool of threads.
+     * @param stream OutputStream to decorate as a KmzOutputStream
+     * @param encoding the encoding to use, if null default encoding (UTF-8) is assumed
+     * @param threads the count of threads compressing the output, one to
+     *  compress on the calling thread
+     * @throws XMLStreamException if error occurs creating output stream
+     * @see ParallelZipOutputStream
+     */
+	public KmzOutputStream(final OutputStream stream, String encoding, int threads) throws XMLStreamException {
+		this(stream, new Object[]{encoding, threads});
+	}
+
 	/**
 	 * {@inheritDoc}
 	 *
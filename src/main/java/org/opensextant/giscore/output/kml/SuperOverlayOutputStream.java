@@ -0,0 +1,434 @@
+/****************************************************************************************
+ *  SuperOverlayOutputStream.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantibility and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.output.kml;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.opensextant.geodesy.Angle;
+import org.opensextant.geodesy.Geodetic2DBounds;
+import org.opensextant.geodesy.Geodetic2DPoint;
+import org.opensextant.geodesy.Latitude;
+import org.opensextant.geodesy.Longitude;
+import org.opensextant.giscore.DocumentType;
+import org.opensextant.giscore.events.Common;
+import org.opensextant.giscore.events.ContainerEnd;
+import org.opensextant.giscore.events.ContainerStart;
+import org.opensextant.giscore.events.DocumentStart;
+import org.opensextant.giscore.events.Feature;
+import org.opensextant.giscore.events.IGISObject;
+import org.opensextant.giscore.events.NetworkLink;
+import org.opensextant.giscore.events.Schema;
+import org.opensextant.giscore.events.StyleSelector;
+import org.opensextant.giscore.events.TaggedMap;
+import org.opensextant.giscore.geometry.Geometry;
+import org.opensextant.giscore.input.kml.IKml;
+import org.opensextant.giscore.output.IGISOutputStream;
+import org.opensextant.giscore.utils.FieldCachingObjectBuffer;
+import org.opensextant.giscore.utils.ObjectBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes features as a super-overlay: a quadtree of KML tiles linked by
+ * region based NetworkLinks so clients only load the tiles of the area in
+ * view at a sufficient level of detail.
+ * <p>
+ * Features are buffered as they are written, spilling to disk so memory
+ * stays bounded, and the tiles are written on {@link #close()}. The root
+ * tile, doc.kml, covers the bounds of all the features. Each tile holds up
+ * to {@link #getMaxFeatures()} features in the order they were written, the
+ * remaining features are divided among the four quadrants of the tile by
+ * the center of their geometry. Tiles below the root are written as
+ * <code>tiles/&lt;quadkey&gt;.kml</code> entries of a KMZ file or files of a
+ * directory, each with a Region of its bounds and a Lod that activates it
+ * once it is at least {@link #getMinLodPixels()} pixels in size. Links
+ * between tiles are relative to the KMZ root or to the linking file.
+ * <p>
+ * Features without geometry are written to the root tile. Shared styles,
+ * style maps and schemas are written to every tile so style URLs and schema
+ * references resolve locally. Containers are not preserved.
+ */
+public class SuperOverlayOutputStream implements IGISOutputStream {
+
+    private static final Logger log = LoggerFactory.getLogger(SuperOverlayOutputStream.class);
+
+    private static final String TILE_DIRECTORY = "tiles/";
+
+    /**
+     * The KMZ the tiles are written to, <code>null</code> if writing to a directory
+     */
+    private final KmzOutputStream kmz;
+
+    /**
+     * <code>true</code> if the KMZ is closed with this stream
+     */
+    private final boolean ownsKmz;
+
+    /**
+     * The directory the tiles are written to, <code>null</code> if writing a KMZ
+     */
+    private final File directory;
+
+    private int maxFeatures = 1000;
+    private int maxLevel = 12;
+    private int minLodPixels = 128;
+    private int bufferSize = 1000;
+
+    private DocumentStart documentStart;
+    private final List<IGISObject> shared = new ArrayList<IGISObject>();
+
+    /**
+     * Features with geometry and features without geometry, allocated on
+     * the first feature
+     */
+    private ObjectBuffer features;
+    private ObjectBuffer unlocated;
+
+    /**
+     * Bounds of the features in degrees: west, south, east, north
+     */
+    private final double[] bounds = {
+            Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+            Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY
+    };
+
+    private int tileCount;
+    private boolean closed;
+
+    /**
+     * Write the super-overlay as a KMZ file to the given stream.
+     *
+     * @param stream the output stream, closed with this stream
+     * @throws XMLStreamException if error occurs creating output stream
+     */
+    public SuperOverlayOutputStream(OutputStream stream) throws XMLStreamException {
+        this(new KmzOutputStream(stream), true);
+    }
+
+    /**
+     * Write the super-overlay into a KMZ stream, doc.kml being the root tile.
+     * The KMZ is not closed by this stream so additional entries such as
+     * icons can be added after this stream is closed.
+     *
+     * @param kmz the KMZ stream, no GIS objects must have been written to it
+     */
+    public SuperOverlayOutputStream(KmzOutputStream kmz) {
+        this(kmz, false);
+    }
+
+    private SuperOverlayOutputStream(KmzOutputStream kmz, boolean ownsKmz) {
+        if (kmz == null) {
+            throw new IllegalArgumentException("kmz should never be null");
+        }
+        this.kmz = kmz;
+        this.ownsKmz = ownsKmz;
+        this.directory = null;
+    }
+
+    /**
+     * Write the super-overlay as files in a directory, doc.kml being the root
+     * tile and the other tiles being written into its tiles subdirectory.
+     *
+     * @param directory the output directory, created if needed
+     * @throws IOException if the directories cannot be created
+     */
+    public SuperOverlayOutputStream(File directory) throws IOException {
+        if (directory == null) {
+            throw new IllegalArgumentException("directory should never be null");
+        }
+        File tiles = new File(directory, TILE_DIRECTORY);
+        if (!tiles.isDirectory() && !tiles.mkdirs()) {
+            throw new IOException("Could not create directory " + tiles);
+        }
+        this.kmz = null;
+        this.ownsKmz = false;
+        this.directory = directory;
+    }
+
+    /**
+     * @return the maximum count of features in a tile, except for tiles at
+     * the maximum level
+     */
+    public int getMaxFeatures() {
+        return maxFeatures;
+    }
+
+    /**
+     * @param maxFeatures the maximum count of features in a tile, must be positive
+     */
+    public void setMaxFeatures(int maxFeatures) {
+        if (maxFeatures < 1) {
+            throw new IllegalArgumentException("maxFeatures must be positive");
+        }
+        this.maxFeatures = maxFeatures;
+    }
+
+    /**
+     * @return the maximum depth of the quadtree, the root being level zero
+     */
+    public int getMaxLevel() {
+        return maxLevel;
+    }
+
+    /**
+     * @param maxLevel the maximum depth of the quadtree, tiles at this level
+     *                 hold all their features
+     */
+    public void setMaxLevel(int maxLevel) {
+        if (maxLevel < 0) {
+            throw new IllegalArgumentException("maxLevel must not be negative");
+        }
+        this.maxLevel = maxLevel;
+    }
+
+    /**
+     * @return the minimum size in pixels of the region of a tile for the
+     * tile to be active
+     */
+    public int getMinLodPixels() {
+        return minLodPixels;
+    }
+
+    /**
+     * @param minLodPixels the minimum size in pixels of the region of a tile
+     *                     for the tile to be active
+     */
+    public void setMinLodPixels(int minLodPixels) {
+        this.minLodPixels = minLodPixels;
+    }
+
+    /**
+     * @param bufferSize the count of features held in memory by each buffer
+     *                   before spilling to disk, must be positive. Up to four
+     *                   buffers per level are used while writing the tiles.
+     */
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("bufferSize must be positive");
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * @return the count of tiles written, set once the stream is closed
+     */
+    public int getTileCount() {
+        return tileCount;
+    }
+
+    /**
+     * Buffer a feature, or keep a shared style or schema for every tile.
+     * Other objects are ignored.
+     *
+     * @param object the object to write
+     * @throws IllegalStateException if the stream is closed or the feature
+     *                               cannot be buffered
+     */
+    public void write(IGISObject object) {
+        if (closed) {
+            throw new IllegalStateException("stream is closed");
+        }
+        if (object instanceof Feature) {
+            try {
+                addFeature((Feature) object);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not buffer feature", e);
+            }
+        } else if (object instanceof StyleSelector || object instanceof Schema) {
+            shared.add(object);
+        } else if (object instanceof DocumentStart) {
+            documentStart = (DocumentStart) object;
+        } else if (object != null) {
+            log.debug("Ignoring {} in super-overlay", object.getClass().getSimpleName());
+        }
+    }
+
+    private void addFeature(Feature feature) throws IOException {
+        if (features == null) {
+            features = new FieldCachingObjectBuffer(bufferSize);
+            unlocated = new FieldCachingObjectBuffer(bufferSize);
+        }
+        Geometry geometry = feature.getGeometry();
+        Geodetic2DBounds bbox = geometry == null ? null : geometry.getBoundingBox();
+        if (bbox == null) {
+            unlocated.write(feature);
+            return;
+        }
+        features.write(feature);
+        bounds[0] = Math.min(bounds[0], bbox.getWestLon().inDegrees());
+        bounds[1] = Math.min(bounds[1], bbox.getSouthLat().inDegrees());
+        bounds[2] = Math.max(bounds[2], bbox.getEastLon().inDegrees());
+        bounds[3] = Math.max(bounds[3], bbox.getNorthLat().inDegrees());
+    }
+
+    /**
+     * Write the tiles and close the output.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (features == null) {
+                features = new FieldCachingObjectBuffer(1);
+                unlocated = new FieldCachingObjectBuffer(1);
+            }
+            double[] rootBounds = bounds[0] <= bounds[2] ? bounds.clone() : new double[] { -180, -90, 180, 90 };
+            writeTile(features, rootBounds, "");
+        } catch (Exception e) {
+            if (e instanceof IOException) throw (IOException) e;
+            if (e instanceof RuntimeException) throw (RuntimeException) e;
+            final IOException e2 = new IOException("Could not read buffered feature");
+            e2.initCause(e);
+            throw e2;
+        } finally {
+            features.close();
+            unlocated.close();
+            if (ownsKmz) {
+                kmz.close();
+            }
+        }
+    }
+
+    /**
+     * Write the tile for the given features and then the tiles of its quadrants.
+     *
+     * @param buffer  the features in the bounds of the tile, closed once read
+     * @param box     the bounds of the tile in degrees: west, south, east, north
+     * @param quadkey the digits of the quadrants from the root to the tile,
+     *                empty for the root
+     */
+    private void writeTile(ObjectBuffer buffer, double[] box, String quadkey) throws Exception {
+        int level = quadkey.length();
+        boolean leaf = buffer.count() <= maxFeatures || level >= maxLevel;
+        double midLon = (box[0] + box[2]) / 2;
+        double midLat = (box[1] + box[3]) / 2;
+        ObjectBuffer[] quadrants = new ObjectBuffer[4];
+
+        IGISOutputStream out = openTile(quadkey);
+        try {
+            out.write(documentStart != null ? documentStart : new DocumentStart(DocumentType.KML));
+            ContainerStart document = new ContainerStart(IKml.DOCUMENT);
+            if (level == 0) {
+                document.setName("Super-overlay");
+            } else {
+                document.setName(quadkey);
+                setRegion(document, box);
+            }
+            out.write(document);
+            for (IGISObject object : shared) {
+                out.write(object);
+            }
+            if (level == 0) {
+                Feature f;
+                while ((f = (Feature) unlocated.read()) != null) {
+                    out.write(f);
+                }
+            }
+            buffer.resetReadIndex();
+            Feature f;
+            for (long i = 0; (f = (Feature) buffer.read()) != null; i++) {
+                if (leaf || i < maxFeatures) {
+                    out.write(f);
+                } else {
+                    Geodetic2DPoint center = f.getGeometry().getBoundingBox().getCenter();
+                    int q = (center.getLatitudeAsDegrees() < midLat ? 0 : 2)
+                            + (center.getLongitudeAsDegrees() < midLon ? 0 : 1);
+                    if (quadrants[q] == null) {
+                        quadrants[q] = new FieldCachingObjectBuffer(bufferSize);
+                    }
+                    quadrants[q].write(f);
+                }
+            }
+            for (int q = 0; q < 4; q++) {
+                if (quadrants[q] != null) {
+                    NetworkLink link = new NetworkLink();
+                    link.setName(quadkey + q);
+                    setRegion(link, quadrant(box, q));
+                    TaggedMap href = new TaggedMap(IKml.LINK);
+                    // links within a KMZ resolve against the root of the archive
+                    href.put(IKml.HREF, (level == 0 || kmz != null ? TILE_DIRECTORY : "") + quadkey + q + ".kml");
+                    href.put(IKml.VIEW_REFRESH_MODE, IKml.VIEW_REFRESH_MODE_ON_REGION);
+                    link.setLink(href);
+                    out.write(link);
+                }
+            }
+            out.write(new ContainerEnd());
+        } finally {
+            buffer.close();
+            closeTile(out);
+        }
+        tileCount++;
+
+        for (int q = 0; q < 4; q++) {
+            if (quadrants[q] != null) {
+                writeTile(quadrants[q], quadrant(box, q), quadkey + q);
+            }
+        }
+    }
+
+    /**
+     * @param box the bounds of a tile in degrees: west, south, east, north
+     * @param q   the quadrant: 0 south-west, 1 south-east, 2 north-west, 3 north-east
+     * @return the bounds of the quadrant
+     */
+    private static double[] quadrant(double[] box, int q) {
+        double midLon = (box[0] + box[2]) / 2;
+        double midLat = (box[1] + box[3]) / 2;
+        return new double[] {
+                (q & 1) == 0 ? box[0] : midLon,
+                (q & 2) == 0 ? box[1] : midLat,
+                (q & 1) == 0 ? midLon : box[2],
+                (q & 2) == 0 ? midLat : box[3]
+        };
+    }
+
+    private void setRegion(Common common, double[] box) {
+        common.setRegion(new Geodetic2DBounds(
+                new Geodetic2DPoint(new Longitude(box[0], Angle.DEGREES), new Latitude(box[1], Angle.DEGREES)),
+                new Geodetic2DPoint(new Longitude(box[2], Angle.DEGREES), new Latitude(box[3], Angle.DEGREES))));
+        TaggedMap region = common.getRegion();
+        region.put(IKml.MIN_LOD_PIXELS, Integer.toString(minLodPixels));
+        region.put(IKml.MAX_LOD_PIXELS, "-1");
+    }
+
+    private IGISOutputStream openTile(String quadkey) throws IOException, XMLStreamException {
+        if (quadkey.length() == 0) {
+            if (kmz != null) return kmz;
+            return new KmlOutputStream(new FileOutputStream(new File(directory, "doc.kml")));
+        }
+        String name = TILE_DIRECTORY + quadkey + ".kml";
+        if (kmz != null) return new KmlOutputStream(kmz.addEntry(name));
+        return new KmlOutputStream(new FileOutputStream(new File(directory, name)));
+    }
+
+    private void closeTile(IGISOutputStream out) throws IOException {
+        if (out == kmz) {
+            kmz.closeWriter();
+        } else {
+            out.close();
+        }
+    }
+}
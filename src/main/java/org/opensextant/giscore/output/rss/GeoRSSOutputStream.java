@@ -5,6 +5,7 @@ import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
@@ -36,6 +37,7 @@ import org.opensextant.giscore.geometry.MultiPoint;
 import org.opensextant.giscore.geometry.MultiPolygons;
 import org.opensextant.giscore.geometry.Point;
 import org.opensextant.giscore.geometry.Polygon;
+import org.opensextant.giscore.output.CoordinateWriter;
 import org.opensextant.giscore.output.XmlOutputStreamBase;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -203,11 +205,10 @@ public class GeoRSSOutputStream extends XmlOutputStreamBase implements IRss {
 	public void visit(Point point) {
 		try {
 			Geodetic2DPoint pt = point.getCenter();
-			handleSimpleElement(GEORSS_NS, POINT,
-					handleSingleCoordinate(pt).toString());
+			handleCoordinates(POINT, Collections.singletonList(point));
 			if (pt instanceof Geodetic3DPoint) {
 				Geodetic3DPoint p3d = (Geodetic3DPoint) pt;
-				handleSimpleElement(GEORSS_NS, ELEV, formatDouble(p3d.getElevation()));
+				handleDoubleElement(GEORSS_NS, ELEV, p3d.getElevation());
 			}
 		} catch (XMLStreamException e) {
 			throw new RuntimeException(e);
@@ -227,11 +228,11 @@ public class GeoRSSOutputStream extends XmlOutputStreamBase implements IRss {
               in WGS84 coordinate reference system, with each pair separated by
               whitespace. There must be at least two pairs.
              */
-			handleSimpleElement(GEORSS_NS, LINE, handleCoordinates(l.getPoints()));
+			handleCoordinates(LINE, l.getPoints());
 			Geodetic2DPoint center = l.getCenter();
 			if (center instanceof Geodetic3DPoint) {
 				Geodetic3DPoint p3d = (Geodetic3DPoint) center;
-				handleSimpleElement(GEORSS_NS, ELEV, formatDouble(p3d.getElevation()));
+				handleDoubleElement(GEORSS_NS, ELEV, p3d.getElevation());
 			}
 		} catch (XMLStreamException e) {
 			throw new RuntimeException(e);
@@ -247,11 +248,11 @@ public class GeoRSSOutputStream extends XmlOutputStreamBase implements IRss {
 	public void visit(Circle circle) {
 		try {
 			Geodetic2DPoint center = circle.getCenter();
-			handleSimpleElement(GEORSS_NS, CIRCLE, handleSingleCoordinate(center).toString());
-			handleSimpleElement(GEORSS_NS, RADIUS, formatDouble(circle.getRadius()));
+			handleCoordinates(CIRCLE, Collections.<Point>singletonList(circle));
+			handleDoubleElement(GEORSS_NS, RADIUS, circle.getRadius());
 			if (center instanceof Geodetic3DPoint) {
 				Geodetic3DPoint p3d = (Geodetic3DPoint) center;
-				handleSimpleElement(GEORSS_NS, ELEV, formatDouble(p3d.getElevation()));
+				handleDoubleElement(GEORSS_NS, ELEV, p3d.getElevation());
 			}
 		} catch (XMLStreamException e) {
 			throw new RuntimeException(e);
@@ -282,11 +283,11 @@ public class GeoRSSOutputStream extends XmlOutputStreamBase implements IRss {
                 points = newPoints;
             }
             */
-			handleSimpleElement(GEORSS_NS, POLYGON, handleCoordinates(points));
+			handleCoordinates(POLYGON, points);
 			Geodetic2DPoint center = poly.getCenter();
 			if (center instanceof Geodetic3DPoint) {
 				Geodetic3DPoint p3d = (Geodetic3DPoint) center;
-				handleSimpleElement(GEORSS_NS, ELEV, formatDouble(p3d.getElevation()));
+				handleDoubleElement(GEORSS_NS, ELEV, p3d.getElevation());
 			}
 		} catch (XMLStreamException e) {
 			throw new RuntimeException(e);
@@ -310,11 +311,11 @@ public class GeoRSSOutputStream extends XmlOutputStreamBase implements IRss {
               in WGS84 coordinate reference system, with each pair separated by
               whitespace. There must be at least two pairs.
              */
-			handleSimpleElement(GEORSS_NS, LINE, handleCoordinates(ring.getPoints()));
+			handleCoordinates(LINE, ring.getPoints());
 			Geodetic2DPoint center = ring.getCenter();
 			if (center instanceof Geodetic3DPoint) {
 				Geodetic3DPoint p3d = (Geodetic3DPoint) center;
-				handleSimpleElement(GEORSS_NS, ELEV, formatDouble(p3d.getElevation()));
+				handleDoubleElement(GEORSS_NS, ELEV, p3d.getElevation());
 			}
 		} catch (XMLStreamException e) {
 			throw new RuntimeException(e);
@@ -638,39 +639,29 @@ public class GeoRSSOutputStream extends XmlOutputStreamBase implements IRss {
 	}
 
 	/**
-	 * output the coordinates. The coordinates are output as lon,lat[,altitude]
-	 * and are separated by spaces
+	 * output the coordinates element. The coordinates are output as lat lon
+	 * and are separated by spaces, streamed to the writer without building a String.
 	 *
+	 * @param tag local name of the georss element, may not be null
 	 * @param coordinateList the list of coordinates, never <code>null</code>
-	 * @return String formatted list of coordinate points
+	 * @throws XMLStreamException if there is an error with the underlying XML
 	 */
-	private String handleCoordinates(Collection<Point> coordinateList) {
-		StringBuilder b = new StringBuilder();
+	private void handleCoordinates(String tag, Collection<? extends Point> coordinateList)
+			throws XMLStreamException {
+		writer.writeStartElement(GEORSS_NS.getPrefix(), tag, GEORSS_NS.getURI());
+		CoordinateWriter cw = getCoordinateWriter();
+		boolean first = true;
 		for (Point point : coordinateList) {
-			handleSingleCoordinate(b, point.getCenter());
-		}
-		return b.toString();
-	}
-
-	/**
-	 * Output a single coordinate
-	 *
-	 * @param b  StringBuilder to write coordinate to
-	 * @param pt Point to be formatted for output
-	 * @return formatted coordinate string
-	 */
-	private StringBuilder handleSingleCoordinate(StringBuilder b, Geodetic2DPoint pt) {
-		if (b.length() > 0) {
-			b.append(' ');
+			if (first) first = false;
+			else cw.append(' ');
+			Geodetic2DPoint pt = point.getCenter();
+			cw.append(pt.getLatitudeAsDegrees());
+			cw.append(' ');
+			cw.append(pt.getLongitudeAsDegrees());
 		}
-		b.append(formatDouble(pt.getLatitudeAsDegrees()));
-		b.append(' ');
-		b.append(formatDouble(pt.getLongitudeAsDegrees()));
-		return b;
-	}
-
-	private StringBuilder handleSingleCoordinate(Geodetic2DPoint pt) {
-		return handleSingleCoordinate(new StringBuilder(), pt);
+		cw.flush();
+		writer.writeEndElement();
+		writer.writeCharacters("\n");
 	}
 
 	/*
@@ -57,6 +57,7 @@ import org.opensextant.giscore.geometry.MultiLine;
 import org.opensextant.giscore.geometry.MultiLinearRings;
 import org.opensextant.giscore.geometry.MultiPoint;
 import org.opensextant.giscore.geometry.MultiPolygons;
+import org.opensextant.giscore.geometry.PackedPointList;
 import org.opensextant.giscore.geometry.Point;
 import org.opensextant.giscore.geometry.Polygon;
 import org.opensextant.giscore.output.dbf.DbfOutputStream;
@@ -81,6 +82,12 @@ import org.slf4j.LoggerFactory;
  * </ul>
  * This is a helper class that will not be used standalone.
  * <p/>
+ * The features either come from a buffer and are written by
+ * {@link #process()}, or are written one at a time as they arrive by
+ * {@link #open()}, {@link #write(Feature)} and {@link #close()}. Either way
+ * each record is written to the files immediately and the headers are
+ * written once all the records are known.
+ * <p/>
  * The shapefile code is inspired by the old mediate code.
  * <code>ShpHandler</code>
  * <p/>
@@ -132,7 +139,8 @@ public class SingleShapefileOutputHandler extends ShapefileBaseClass {
 	private final File shmFile;
 
 	/**
-	 * The buffer that holds the data to be output.
+	 * The buffer that holds the data to be output, <code>null</code> if
+	 * features are written one at a time.
 	 */
 	private final ObjectBuffer buffer;
 
@@ -142,6 +150,28 @@ public class SingleShapefileOutputHandler extends ShapefileBaseClass {
 	 */
 	private final PointShapeMapper mapper;
 
+	/*
+	 * State of the output while the records are written
+	 */
+	private FileOutputStream shpos;
+	private FileOutputStream shxos;
+	private FileChannel channel;
+	private FileChannel xchannel;
+	private Geodetic2DBounds bbox;
+	private int shapeAll = NULL_TYPE;
+	private boolean is3D;
+	private int recordNumber = 1;
+	/**
+	 * Offset in 16 bit words from the start of the file of the next record,
+	 * once all the records are written this is the length of the file
+	 */
+	private int offset = 50;
+
+	/**
+	 * The dbf output when features are written one at a time
+	 */
+	private DbfOutputStream dbf;
+
 	/**
 	 * Ctor
 	 *
@@ -162,13 +192,39 @@ public class SingleShapefileOutputHandler extends ShapefileBaseClass {
 	public SingleShapefileOutputHandler(Schema schema, Style style,
 										ObjectBuffer buffer, File outputDirectory, String shapefilename,
 										PointShapeMapper mapper) {
+		this(checkBuffer(buffer), schema, style, outputDirectory, shapefilename, mapper);
+	}
+
+	/**
+	 * Ctor for writing features one at a time with {@link #write(Feature)}
+	 * between {@link #open()} and {@link #close()}. All of the features must
+	 * have the same type of geometry.
+	 *
+	 * @param schema          the schema, never <code>null</code>.
+	 * @param style           the optional style, may be <code>null</code>
+	 * @param outputDirectory the output directory, will be created if it does not exist,
+	 *                        never <code>null</code>.
+	 * @param shapefilename   the name of the shapefile to be created. This name will be
+	 *                        modified with the standard suffixes to create the actual
+	 *                        output shapefile. never <code>null</code> or empty
+	 * @param mapper          a mapper to go from the url based icons in the Style to a
+	 *                        short value for use with ESRI, must not be <code>null</code>
+	 *                        if style is not <code>null</code>.
+	 * @throws IllegalArgumentException if couldn't create output directory or any of the required
+	 *                                  arguments are invalid
+	 */
+	public SingleShapefileOutputHandler(Schema schema, Style style,
+										File outputDirectory, String shapefilename,
+										PointShapeMapper mapper) {
+		this(null, schema, style, outputDirectory, shapefilename, mapper);
+	}
+
+	private SingleShapefileOutputHandler(ObjectBuffer buffer, Schema schema, Style style,
+										 File outputDirectory, String shapefilename,
+										 PointShapeMapper mapper) {
 		if (schema == null) {
 			throw new IllegalArgumentException("schema should never be null");
 		}
-		if (buffer == null || buffer.count() == 0) {
-			throw new IllegalArgumentException(
-					"buffer should never be null and must contain at least one geometry element");
-		}
 		if (outputDirectory == null) {
 			throw new IllegalArgumentException(
 					"outputDirectory should never be null");
@@ -199,6 +255,14 @@ public class SingleShapefileOutputHandler extends ShapefileBaseClass {
 		shmFile = new File(outputDirectory, shapefilename + ".shm");
 	}
 
+	private static ObjectBuffer checkBuffer(ObjectBuffer buffer) {
+		if (buffer == null || buffer.count() == 0) {
+			throw new IllegalArgumentException(
+					"buffer should never be null and must contain at least one geometry element");
+		}
+		return buffer;
+	}
+
 	/**
 	 * Output the data.
 	 *
@@ -230,13 +294,10 @@ public class SingleShapefileOutputHandler extends ShapefileBaseClass {
 	public void process(ICancelable callback) throws IOException,
 			ClassNotFoundException, InstantiationException,
 			IllegalAccessException, XMLStreamException {
-		// Write prj
-		FileOutputStream prjos = new FileOutputStream(prjFile);
-		try {
-			prjos.write(WGS84prj.getBytes("US-ASCII"));
-		} finally {
-			prjos.close();
+		if (buffer == null) {
+			throw new IllegalStateException("Features are written one at a time with write()");
 		}
+		writePrj();
 		// Write shp and shx
 		outputFeatures(callback);
 		// Write dbf
@@ -255,6 +316,95 @@ public class SingleShapefileOutputHandler extends ShapefileBaseClass {
 		writeShm();
 	}
 
+	/**
+	 * Start writing features one at a time. The prj file is written and the
+	 * other files are opened.
+	 *
+	 * @throws IOException if an I/O error occurs
+	 * @throws IllegalStateException if the features come from a buffer or
+	 *                               the files are already open
+	 */
+	public void open() throws IOException {
+		if (buffer != null) {
+			throw new IllegalStateException("Features in the buffer are written by process()");
+		}
+		if (dbf != null) {
+			throw new IllegalStateException("Already open");
+		}
+		writePrj();
+		openShapes();
+		try {
+			dbf = new DbfOutputStream(new FileOutputStream(dbfFile), null);
+			dbf.write(dbfModify(schema));
+		} catch (IOException e) {
+			closeShapes();
+			throw e;
+		}
+	}
+
+	/**
+	 * Write the geometry and attributes of a feature. Features without a
+	 * geometry are skipped.
+	 *
+	 * @param feature the feature, never <code>null</code>
+	 * @throws IOException if an I/O error occurs
+	 * @throws IllegalArgumentException if the geometry type differs from
+	 *                                  that of the earlier features
+	 * @throws IllegalStateException if not open
+	 */
+	public void write(Feature feature) throws IOException {
+		if (feature == null) {
+			throw new IllegalArgumentException("feature should never be null");
+		}
+		if (dbf == null) {
+			throw new IllegalStateException("open() must be called first");
+		}
+		if (outputFeature(feature)) {
+			dbf.write(feature);
+		}
+	}
+
+	/**
+	 * Finish writing features one at a time. The shp and shx headers are
+	 * written with the final file lengths, shape type and bounding box, the
+	 * record count is written to the dbf header and the shm file is written.
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void close() throws IOException {
+		if (dbf == null) {
+			return;
+		}
+		try {
+			putShapeHeaders();
+		} finally {
+			closeShapes();
+			dbf.close();
+			dbf = null;
+		}
+		try {
+			writeShm();
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/**
+	 * @return the count of records written
+	 */
+	public int getRecordCount() {
+		return recordNumber - 1;
+	}
+
+	private void writePrj() throws IOException {
+		FileOutputStream prjos = new FileOutputStream(prjFile);
+		try {
+			prjos.write(WGS84prj.getBytes("US-ASCII"));
+		} finally {
+			prjos.close();
+		}
+	}
+
 	/**
 	 * Find and replace and simple fields of type date with type string
 	 *
@@ -357,7 +507,7 @@ public class SingleShapefileOutputHandler extends ShapefileBaseClass {
 	/**
 	 * Output the features. As the features are output, track the bounding box
 	 * information and check for consistent geometry usage. After all the
-	 * features are written we reopen the shapefile to output the header.
+	 * features are written we output the header.
 	 *
 	 * @param callback
 	 * @throws IOException            if an I/O error occurs.
@@ -370,76 +520,98 @@ public class SingleShapefileOutputHandler extends ShapefileBaseClass {
 	private void outputFeatures(ICancelable callback) throws IOException,
 			ClassNotFoundException, InstantiationException,
 			IllegalAccessException {
-		int recordNumber = 1;
-		Geodetic2DBounds bbox = null;
-		int shapeAll = NULL_TYPE;
-		boolean is3D = false;
-		// offset is in 16 bit words from the start of the file
-		// always contains the offset into the file for the current
-		// geo. After all the geo is written contains the length
-		// of the file
-		int offset = 50;
-		int ioffset = 50;
-		FileOutputStream shfos = null;
-		FileOutputStream shxfos = null;
-
+		openShapes();
 		try {
-			shfos = new FileOutputStream(shpFile);
-			shxfos = new FileOutputStream(shxFile);
-			FileChannel channel = shfos.getChannel();
-			FileChannel xchannel = shxfos.getChannel();
-
 			IDataSerializable ser = buffer.read();
 			while (ser != null) {
 				if (callback != null && callback.isCanceled()) {
 					throw new CancellationException();
 				}
-				Feature feat = (Feature) ser;
-				Geometry geo = feat.getGeometry();
-				if (geo != null) {
-					int shape = getEsriShapeType(geo);
-					if (shape != NULL_TYPE) {
-						// Make sure the type is the same as others in the feature
-						// list
-						if (shapeAll == NULL_TYPE) {
-							shapeAll = shape;
-							is3D = is3D(shape);
-						} else if (shape != shapeAll)
-							throw new IllegalArgumentException(
-									"Feature list must contain"
-											+ " geometry objects of same type: expected "
-											+ shapeAll + " but was " + shape);
-					}
-					if (bbox == null) {
-						bbox = geo.getBoundingBox(); // 3d or not depending on the
-						// must make copy of the bounding box
-						bbox = bbox instanceof Geodetic3DBounds ? new Geodetic3DBounds(
-								(Geodetic3DBounds) bbox)
-								: new Geodetic2DBounds(bbox);
-						// geo
-					} else {
-						bbox.include(geo.getBoundingBox());
-					}
-					int len = getRecLen(geo);
-					outputGeometry(channel, offset, geo, is3D, shape, recordNumber,
-							len);
-					outputIndex(xchannel, ioffset, offset, len);
-					// Records have additional 4 words of info at the start of the
-					// record
-					offset += len + 4;
-					ioffset += 4;
-					recordNumber++;
-				}
+				outputFeature((Feature) ser);
 				ser = buffer.read();
 			}
-			// Write header
-			putShapeHeader(channel, offset, shapeAll, is3D, bbox);
-			int shxlen = 50 + (recordNumber - 1) * 4;
-			putShapeHeader(xchannel, shxlen, shapeAll, is3D, bbox);
+			putShapeHeaders();
 		} finally {
-			IOUtils.closeQuietly(shfos);
-			IOUtils.closeQuietly(shxfos);
+			closeShapes();
+		}
+	}
+
+	private void openShapes() throws IOException {
+		shpos = new FileOutputStream(shpFile);
+		try {
+			shxos = new FileOutputStream(shxFile);
+		} catch (IOException e) {
+			IOUtils.closeQuietly(shpos);
+			throw e;
+		}
+		channel = shpos.getChannel();
+		xchannel = shxos.getChannel();
+	}
+
+	private void closeShapes() {
+		IOUtils.closeQuietly(shpos);
+		IOUtils.closeQuietly(shxos);
+		shpos = shxos = null;
+		channel = xchannel = null;
+	}
+
+	/**
+	 * Output the shp record and the shx index entry for a feature
+	 *
+	 * @param feat the feature
+	 * @return false if the feature has no geometry and was skipped
+	 * @throws IOException if an I/O error occurs.
+	 * @throws IllegalArgumentException if the geometry type differs from
+	 *                                  that of the earlier features
+	 */
+	private boolean outputFeature(Feature feat) throws IOException {
+		Geometry geo = feat.getGeometry();
+		if (geo == null) {
+			return false;
+		}
+		int shape = getEsriShapeType(geo);
+		if (shape != NULL_TYPE) {
+			// Make sure the type is the same as others in the feature
+			// list
+			if (shapeAll == NULL_TYPE) {
+				shapeAll = shape;
+				is3D = is3D(shape);
+			} else if (shape != shapeAll)
+				throw new IllegalArgumentException(
+						"Feature list must contain"
+								+ " geometry objects of same type: expected "
+								+ shapeAll + " but was " + shape);
+		}
+		if (bbox == null) {
+			bbox = geo.getBoundingBox(); // 3d or not depending on the
+			// must make copy of the bounding box
+			bbox = bbox instanceof Geodetic3DBounds ? new Geodetic3DBounds(
+					(Geodetic3DBounds) bbox)
+					: new Geodetic2DBounds(bbox);
+			// geo
+		} else {
+			bbox.include(geo.getBoundingBox());
 		}
+		int len = getRecLen(geo);
+		outputGeometry(channel, offset, geo, is3D, shape, recordNumber,
+				len);
+		outputIndex(xchannel, 50 + (recordNumber - 1) * 4, offset, len);
+		// Records have additional 4 words of info at the start of the
+		// record
+		offset += len + 4;
+		recordNumber++;
+		return true;
+	}
+
+	/**
+	 * Write the shp and shx headers once all of the records are written
+	 *
+	 * @throws IOException if an I/O error occurs.
+	 */
+	private void putShapeHeaders() throws IOException {
+		putShapeHeader(channel, offset, shapeAll, is3D, bbox);
+		int shxlen = 50 + (recordNumber - 1) * 4;
+		putShapeHeader(xchannel, shxlen, shapeAll, is3D, bbox);
 	}
 
 	/**
@@ -705,10 +877,18 @@ public class SingleShapefileOutputHandler extends ShapefileBaseClass {
 				}
 				writeDouble(obuf, min, ByteOrder.LITTLE_ENDIAN);
 				writeDouble(obuf, max, ByteOrder.LITTLE_ENDIAN);
-				for (Point point : points) {
-					pt = (Geodetic3DPoint) point.getCenter();
-					writeDouble(obuf, pt.getElevation(),
-							ByteOrder.LITTLE_ENDIAN);
+				if (points instanceof PackedPointList) {
+					PackedPointList packed = (PackedPointList) points;
+					for (int i = 0; i < packed.size(); i++) {
+						writeDouble(obuf, packed.getElevation(i),
+								ByteOrder.LITTLE_ENDIAN);
+					}
+				} else {
+					for (Point point : points) {
+						pt = (Geodetic3DPoint) point.getCenter();
+						writeDouble(obuf, pt.getElevation(),
+								ByteOrder.LITTLE_ENDIAN);
+					}
 				}
 			} else {
 				writeDouble(obuf, 0.0, ByteOrder.LITTLE_ENDIAN);
@@ -848,7 +1028,16 @@ public class SingleShapefileOutputHandler extends ShapefileBaseClass {
 	 * @param points the points
 	 */
 	private void putPointsXY(Collection<Point> points) {
-		if (points != null && !points.isEmpty()) {
+		if (points instanceof PackedPointList) {
+			// write packed coordinates without creating Point objects
+			PackedPointList packed = (PackedPointList) points;
+			for (int i = 0; i < packed.size(); i++) {
+				writeDouble(obuf, packed.getLonDegrees(i),
+						ByteOrder.LITTLE_ENDIAN);
+				writeDouble(obuf, packed.getLatDegrees(i),
+						ByteOrder.LITTLE_ENDIAN);
+			}
+		} else if (points != null && !points.isEmpty()) {
 			for (Point p : points) {
 				writeDouble(obuf, p.getCenter().getLongitudeAsDegrees(),
 						ByteOrder.LITTLE_ENDIAN);
@@ -1001,10 +1190,16 @@ public class SingleShapefileOutputHandler extends ShapefileBaseClass {
 		writeInt(buffer, VERSION, ByteOrder.LITTLE_ENDIAN);
 		// Write the shapeType
 		writeInt(buffer, shapeType, ByteOrder.LITTLE_ENDIAN);
-		// Write the overall X-Y bounding box to the shapefile header
-		obuf = buffer;
-		putBBox(bbox);
-		obuf = null;
+		// Write the overall X-Y bounding box to the shapefile header,
+		// all zero if there are no records
+		if (bbox != null) {
+			obuf = buffer;
+			putBBox(bbox);
+			obuf = null;
+		} else {
+			for (int i = 0; i < 4; i++)
+				writeDouble(buffer, 0.0, ByteOrder.LITTLE_ENDIAN);
+		}
 		// In Shapefiles, Z and M bounds are usually separated from X-Y
 		// bounds
 		// (and instead grouped with their arrays of data), except for in
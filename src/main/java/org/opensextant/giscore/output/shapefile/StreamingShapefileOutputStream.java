@@ -0,0 +1,133 @@
+/****************************************************************************************
+ *  StreamingShapefileOutputStream.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.output.shapefile;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.opensextant.giscore.events.Feature;
+import org.opensextant.giscore.events.IGISObject;
+import org.opensextant.giscore.events.Schema;
+import org.opensextant.giscore.events.SimpleField;
+import org.opensextant.giscore.output.IGISOutputStream;
+
+/**
+ * Writes a single shapefile as the features arrive, for the common case
+ * where every feature has the same schema and type of geometry. Unlike
+ * {@link ShapefileOutputStream}, which holds all of the features until it is
+ * closed so it can split them into a shapefile per schema and geometry type,
+ * each record is written to the shp, shx and dbf files immediately and only
+ * the headers are completed when the stream is closed, so the memory used
+ * does not grow with the number of features.
+ * <p>
+ * The schema is the first {@link Schema} written, or if features come
+ * first then the extended data fields of the first feature. Features
+ * without a geometry are skipped and a feature with a different type of
+ * geometry than the first is rejected with an
+ * <code>IllegalArgumentException</code>. Containers and styles are ignored.
+ */
+public class StreamingShapefileOutputStream implements IGISOutputStream {
+
+	private final File outputDirectory;
+
+	private final String shapefilename;
+
+	private Schema schema;
+
+	/**
+	 * Writes the files, created by the first feature
+	 */
+	private SingleShapefileOutputHandler handler;
+
+	/**
+	 * Ctor
+	 *
+	 * @param outputDirectory the output directory, will be created if it does
+	 *                        not exist, never <code>null</code>.
+	 * @param shapefilename   the name of the shapefile to be created without
+	 *                        the suffix, never <code>null</code> or empty
+	 * @throws IllegalArgumentException if any of the arguments are invalid
+	 */
+	public StreamingShapefileOutputStream(File outputDirectory, String shapefilename) {
+		if (outputDirectory == null) {
+			throw new IllegalArgumentException("outputDirectory should never be null");
+		}
+		if (shapefilename == null || shapefilename.trim().length() == 0) {
+			throw new IllegalArgumentException("shapefilename should never be null or empty");
+		}
+		this.outputDirectory = outputDirectory;
+		this.shapefilename = shapefilename;
+	}
+
+	/**
+	 * Write the given object.
+	 *
+	 * @param object the object to be written, never <code>null</code>.
+	 * @throws IllegalArgumentException if a feature has a different type of
+	 *                                  geometry than the first feature
+	 * @throws IllegalStateException if a second schema is written, a schema
+	 *                               is written after the features or an I/O
+	 *                               error occurs
+	 */
+	public void write(IGISObject object) {
+		if (object instanceof Schema) {
+			if (schema != null || handler != null) {
+				throw new IllegalStateException(
+						"A streaming shapefile can only handle one schema, before the features");
+			}
+			schema = (Schema) object;
+		} else if (object instanceof Feature) {
+			Feature feature = (Feature) object;
+			// Skip non-geometry features
+			if (feature.getGeometry() == null) return;
+			try {
+				if (handler == null) {
+					if (schema == null) {
+						schema = new Schema();
+						for (SimpleField field : feature.getFields()) {
+							schema.put(field.getName(), field);
+						}
+					}
+					SingleShapefileOutputHandler soh = new SingleShapefileOutputHandler(schema, null,
+							outputDirectory, shapefilename, null);
+					soh.open();
+					handler = soh;
+				}
+				handler.write(feature);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	/**
+	 * @return the count of records written
+	 */
+	public int getRecordCount() {
+		return handler == null ? 0 : handler.getRecordCount();
+	}
+
+	/**
+	 * Complete the headers and close the files. Nothing is written if no
+	 * features with a geometry were written.
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void close() throws IOException {
+		if (handler != null) {
+			handler.close();
+		}
+	}
+}
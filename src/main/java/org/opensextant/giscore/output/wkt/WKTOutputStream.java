@@ -35,6 +35,7 @@ import org.opensextant.giscore.geometry.MultiLine;
 import org.opensextant.giscore.geometry.MultiLinearRings;
 import org.opensextant.giscore.geometry.MultiPoint;
 import org.opensextant.giscore.geometry.MultiPolygons;
+import org.opensextant.giscore.geometry.PackedPointList;
 import org.opensextant.giscore.geometry.Point;
 import org.opensextant.giscore.geometry.Polygon;
 import org.opensextant.giscore.output.IGISOutputStream;
@@ -143,12 +144,24 @@ public class WKTOutputStream extends StreamVisitorBase implements
 	public void handlePointList(List<Point> points) throws IOException {
 		int count = points.size();
 		writer.append("(");
-		for (int i = 0; i < count; i++) {
-			if (i > 0) {
-				writer.append(", ");
+		if (points instanceof PackedPointList) {
+			PackedPointList packed = (PackedPointList) points;
+			for (int i = 0; i < count; i++) {
+				if (i > 0) {
+					writer.append(", ");
+				}
+				writer.append(Double.toString(packed.getLonDegrees(i)));
+				writer.append(" ");
+				writer.append(Double.toString(packed.getLatDegrees(i)));
+			}
+		} else {
+			for (int i = 0; i < count; i++) {
+				if (i > 0) {
+					writer.append(", ");
+				}
+				Geodetic2DPoint pnt = points.get(i).getCenter();
+				handlePoint(pnt);
 			}
-			Geodetic2DPoint pnt = points.get(i).getCenter();
-			handlePoint(pnt);
 		}
 		writer.append(')');
 	}
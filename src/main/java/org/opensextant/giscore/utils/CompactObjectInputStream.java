@@ -0,0 +1,111 @@
+/****************************************************************************************
+ *  CompactObjectInputStream.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.utils;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+
+/**
+ * Reads objects written by a {@link CompactObjectOutputStream}, see there
+ * for the encoding of primitive values.
+ */
+public class CompactObjectInputStream extends SimpleObjectInputStream {
+
+	private static final int HISTORY = CompactObjectOutputStream.HISTORY;
+
+	private final long[] history = new long[HISTORY];
+
+	private int last;
+
+	/**
+	 * Creates a stream that reads from the specified InputStream.
+	 *
+	 * @param	in input stream to read from, never null
+	 * @throws IllegalArgumentException if in is null
+	 */
+	public CompactObjectInputStream(InputStream in) {
+		super(in);
+	}
+
+	@Override
+	@Nullable
+	public String readString() throws IOException {
+		long len = readVarLong();
+		if (len == 0) {
+			return null;
+		}
+		if (len > Integer.MAX_VALUE) {
+			throw new StreamCorruptedException("Invalid string length " + len);
+		}
+		char[] chars = new char[(int) len - 1];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = (char) readVarLong();
+		}
+		return new String(chars);
+	}
+
+	@Override
+	public long readLong() throws IOException {
+		long value = readVarLong();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	@Override
+	public int readInt() throws IOException {
+		return (int) readLong();
+	}
+
+	@Override
+	public short readShort() throws IOException {
+		return (short) readLong();
+	}
+
+	@Override
+	public double readDouble() throws IOException {
+		int header = stream.readUnsignedByte();
+		long bits = history[(last - (header >>> 6)) & (HISTORY - 1)];
+		if ((header & CompactObjectOutputStream.REPEAT) != CompactObjectOutputStream.REPEAT) {
+			int leading = (header >>> 3) & 7;
+			int trailing = header & 7;
+			long xor = 0;
+			for (int i = 0, n = 8 - leading - trailing; i < n; i++) {
+				xor |= (long) stream.readUnsignedByte() << (i << 3);
+			}
+			bits ^= xor << (trailing << 3);
+		}
+		last = (last + 1) & (HISTORY - 1);
+		history[last] = bits;
+		return Double.longBitsToDouble(bits);
+	}
+
+	/**
+	 * Read an unsigned variable length integer
+	 */
+	private long readVarLong() throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = stream.readUnsignedByte();
+			value |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new StreamCorruptedException("Malformed variable length integer");
+	}
+
+}
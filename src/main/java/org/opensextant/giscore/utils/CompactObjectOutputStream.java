@@ -0,0 +1,153 @@
+/****************************************************************************************
+ *  CompactObjectOutputStream.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Object output stream with a compact encoding of primitive values, read back
+ * with a {@link CompactObjectInputStream}. Objects are written exactly as by
+ * {@link SimpleObjectOutputStream} but:
+ * <ul>
+ * <li>shorts, ints and longs, including type tags, counts and class ids, are
+ * zigzag encoded variable length integers of 7 bits per byte so small values
+ * of either sign take a single byte.
+ * <li>strings are a variable length count followed by each character as a
+ * variable length integer, so ASCII takes one byte per character. Unlike
+ * modified UTF-8 there is no limit on the length.
+ * <li>doubles are exclusive or'ed with the closest of the last four doubles
+ * written and only the bytes of the difference that are not zero are written,
+ * preceded by a byte that identifies the predecessor and the count of leading
+ * and trailing zero bytes. The coordinates of consecutive points of a geometry
+ * share their sign, exponent and leading mantissa bits so typically take 5 or
+ * 6 bytes instead of 8, and repeated values take a single byte.
+ * </ul>
+ * The encoding is lossless.
+ */
+public class CompactObjectOutputStream extends SimpleObjectOutputStream {
+
+	/**
+	 * Count of previous doubles that are candidate predecessors, a power of 2
+	 */
+	static final int HISTORY = 4;
+
+	/**
+	 * Leading and trailing zero byte counts that mark a repeated double
+	 */
+	static final int REPEAT = 0x3f;
+
+	private final long[] history = new long[HISTORY];
+
+	private int last;
+
+	/**
+	 * Creates a stream that writes to the specified OutputStream.
+	 *
+	 * @param s stream to hold the output data, never <code>null</code>
+	 * @throws	IllegalArgumentException if <code>s</code> is <code>null</code>
+	 */
+	public CompactObjectOutputStream(OutputStream s) {
+		super(s);
+	}
+
+	/**
+	 * Creates a stream that writes to the specified OutputStream.
+	 *
+	 * @param s stream to hold the output data, never <code>null</code>
+	 * @param cacher the cacher that decides what objects can be deduplicated, may be <code>null</code>
+	 * @throws	IllegalArgumentException if <code>s</code> is <code>null</code>
+	 */
+	public CompactObjectOutputStream(OutputStream s, IObjectCacher cacher) {
+		super(s, cacher);
+	}
+
+	@Override
+	public void writeString(String str) throws IOException {
+		if (str == null) {
+			writeVarLong(0);
+		} else {
+			int len = str.length();
+			writeVarLong(len + 1L);
+			for (int i = 0; i < len; i++) {
+				writeVarLong(str.charAt(i));
+			}
+		}
+	}
+
+	@Override
+	public void writeLong(long lval) throws IOException {
+		writeVarLong((lval << 1) ^ (lval >> 63));
+	}
+
+	@Override
+	public void writeInt(int ival) throws IOException {
+		writeLong(ival);
+	}
+
+	@Override
+	public void writeShort(short sval) throws IOException {
+		writeLong(sval);
+	}
+
+	@Override
+	public void writeDouble(double dval) throws IOException {
+		long bits = Double.doubleToRawLongBits(dval);
+		int best = 0;
+		long xor = 0;
+		int zeros = -1;
+		for (int i = 0; i < HISTORY; i++) {
+			long diff = bits ^ history[(last - i) & (HISTORY - 1)];
+			int z = zeroBytes(diff);
+			if (z > zeros) {
+				best = i;
+				xor = diff;
+				zeros = z;
+			}
+		}
+		last = (last + 1) & (HISTORY - 1);
+		history[last] = bits;
+		if (xor == 0) {
+			stream.writeByte(best << 6 | REPEAT);
+			return;
+		}
+		int leading = Long.numberOfLeadingZeros(xor) >>> 3;
+		int trailing = Long.numberOfTrailingZeros(xor) >>> 3;
+		stream.writeByte(best << 6 | leading << 3 | trailing);
+		xor >>>= trailing << 3;
+		for (int n = 8 - leading - trailing; n > 0; n--) {
+			stream.writeByte((int) xor);
+			xor >>>= 8;
+		}
+	}
+
+	private static int zeroBytes(long diff) {
+		if (diff == 0) return 8;
+		return (Long.numberOfLeadingZeros(diff) >>> 3) + (Long.numberOfTrailingZeros(diff) >>> 3);
+	}
+
+	/**
+	 * Write an unsigned variable length integer, 7 bits per byte with the
+	 * high bit set on all but the last byte
+	 */
+	private void writeVarLong(long value) throws IOException {
+		while ((value & ~0x7fL) != 0) {
+			stream.writeByte((int) (value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		stream.writeByte((int) value);
+	}
+
+}
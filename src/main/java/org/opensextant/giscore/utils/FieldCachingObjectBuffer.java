@@ -28,10 +28,21 @@ import org.opensextant.giscore.GISFactory;
 public class FieldCachingObjectBuffer extends ObjectBuffer {
     
 	/**
-	 * Ctor
+	 * Ctor, uses the process wide memory budget if
+	 * {@link GISFactory#inMemoryBufferBytes} is positive, otherwise holds up
+	 * to {@link GISFactory#inMemoryBufferSize} elements in memory.
 	 */
 	public FieldCachingObjectBuffer() {
-		super(GISFactory.inMemoryBufferSize.get(), new SimpleFieldCacher());
+		super(new SimpleFieldCacher());
+	}
+
+	/**
+	 * Ctor
+	 * @param budget the memory budget shared with other buffers, never
+	 * <code>null</code>
+	 */
+	public FieldCachingObjectBuffer(MemoryBudget budget) {
+		super(budget, new SimpleFieldCacher());
 	}
 	
 	/**
@@ -0,0 +1,46 @@
+/****************************************************************************************
+ *  IObjectStreamCodec.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.utils;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Creates the object streams that write and read the secondary store of an
+ * {@link ObjectBuffer}. Data written by the output stream of a codec must be
+ * read by the input stream of the same codec.
+ *
+ * @see ObjectStreamCodec
+ */
+public interface IObjectStreamCodec {
+
+	/**
+	 * Create an object output stream
+	 *
+	 * @param out the stream to write to, never <code>null</code>
+	 * @param cacher the cacher that decides what objects can be deduplicated, may be <code>null</code>
+	 * @return the object output stream, never <code>null</code>
+	 */
+	SimpleObjectOutputStream createOutputStream(OutputStream out, IObjectCacher cacher);
+
+	/**
+	 * Create an object input stream
+	 *
+	 * @param in the stream to read from, never <code>null</code>
+	 * @return the object input stream, never <code>null</code>
+	 */
+	SimpleObjectInputStream createInputStream(InputStream in);
+
+}
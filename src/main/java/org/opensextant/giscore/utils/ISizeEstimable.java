@@ -0,0 +1,33 @@
+/****************************************************************************************
+ *  ISizeEstimable.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantibility and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.utils;
+
+/**
+ * Implemented by {@link IDataSerializable} objects that can estimate their
+ * memory footprint, which lets an {@link ObjectBuffer} with a
+ * {@link MemoryBudget} decide when to spill to disk.
+ */
+public interface ISizeEstimable {
+
+	/**
+	 * Estimate the heap memory held by this object including the objects
+	 * it references. The estimate does not need to be exact but should grow
+	 * with the amount of data held, e.g. the number of points of a geometry.
+	 *
+	 * @return the estimated size in bytes
+	 * @see SizeEstimator
+	 */
+	long estimateSize();
+}
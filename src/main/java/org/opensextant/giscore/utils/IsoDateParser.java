@@ -0,0 +1,325 @@
+/****************************************************************************************
+ *  IsoDateParser.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.utils;
+
+import edu.umd.cs.findbugs.annotations.CheckForNull;
+
+import java.text.ParsePosition;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+/**
+ * Parses the XML Schema date/time forms used by KML, Atom and other formats
+ * with a single scan of the characters. No formatters are shared and no
+ * exceptions are thrown for unparsable text so it is safe to use from any
+ * number of threads.
+ * <p/>
+ * Following forms are supported:
+ * <pre>
+ *     YYYY-MM-DDThh:mm:ss[.sss][TZD]  dateTime (e.g. 1997-07-16T19:20:30.45+01:00)
+ *     YYYY-MM-DDThh:mm[TZD]           dateTime w/o seconds as accepted by Google Earth
+ *     YYYY-MM-DD[TZD]                 date
+ *     YYYY-MM[TZD]                    gYearMonth
+ *     YYYY[TZD]                       gYear
+ * </pre>
+ * where TZD is 'Z', +hh:mm, -hh:mm, +hhmm, -hhmm, +hh or -hh. A dateTime without
+ * a time zone is in UTC. Dates, year-months and years are always midnight UTC
+ * on their first day and their time zone, if any, is ignored.
+ * <p/>
+ * Fractional seconds are truncated to milliseconds. Like the lenient
+ * SimpleDateFormat patterns these forms replace, fields other than the year may
+ * have 1 or 2 digits and the year may have fewer than 4 digits. Dates
+ * before 1583 are in the Julian calendar as with {@link GregorianCalendar}.
+ */
+public final class IsoDateParser {
+
+	private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+	private static final long MILLIS_PER_DAY = 86400000L;
+
+	/**
+	 * First year entirely in the Gregorian calendar
+	 */
+	private static final int GREGORIAN_YEAR = 1583;
+
+	private static final int MAX_YEAR_DIGITS = 9;
+
+	private IsoDateParser() {
+		// static utility
+	}
+
+	/**
+	 * Parse a date/time ignoring leading and trailing whitespace.
+	 *
+	 * @param text the text to parse, may be <code>null</code>
+	 * @return the Date, or <code>null</code> if the text is null or not one
+	 *         of the supported forms
+	 */
+	@CheckForNull
+	public static Date parse(String text) {
+		if (text == null) return null;
+		int end = text.length();
+		int start = 0;
+		while (start < end && Character.isWhitespace(text.charAt(start))) start++;
+		while (end > start && Character.isWhitespace(text.charAt(end - 1))) end--;
+		ParsePosition pos = new ParsePosition(start);
+		long time = parse(text, end, pos);
+		return pos.getErrorIndex() == -1 && pos.getIndex() == end ? new Date(time) : null;
+	}
+
+	/**
+	 * Parse a date/time starting at the index of a ParsePosition, following the
+	 * conventions of {@link java.text.DateFormat#parse(String, ParsePosition)}.
+	 * On success the index is updated to follow the last character used.
+	 * On failure the index is unchanged, the error index is set to the
+	 * offending character and <code>null</code> is returned.
+	 *
+	 * @param text the text to parse, never <code>null</code>
+	 * @param pos  the position to start at, never <code>null</code>
+	 * @return the Date, or <code>null</code> if there is no supported form at the
+	 *         position
+	 */
+	@CheckForNull
+	public static Date parse(String text, ParsePosition pos) {
+		long time = parse(text, text.length(), pos);
+		return pos.getErrorIndex() == -1 ? new Date(time) : null;
+	}
+
+	/**
+	 * Parse a ISO 8601 basic calendar date (YYYYMMDD) as used by dBase files.
+	 *
+	 * @param text the text to parse, may be <code>null</code>
+	 * @return midnight UTC of the date, or <code>null</code> if the text is
+	 *         null or not exactly 8 digits for a valid date
+	 */
+	@CheckForNull
+	public static Date parseBasicDate(String text) {
+		if (text == null || text.length() != 8) return null;
+		int value = 0;
+		for (int i = 0; i < 8; i++) {
+			char ch = text.charAt(i);
+			if (ch < '0' || ch > '9') return null;
+			value = value * 10 + ch - '0';
+		}
+		int year = value / 10000;
+		int month = value / 100 % 100;
+		int day = value % 100;
+		if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+			return null;
+		}
+		return new Date(toMillis(year, month, day, 0, 0, 0, 0));
+	}
+
+	/**
+	 * Scan the text up to <code>end</code>. Failure is reported through the
+	 * error index of <code>pos</code>.
+	 */
+	private static long parse(String text, int end, ParsePosition pos) {
+		final int start = pos.getIndex();
+		pos.setErrorIndex(-1);
+		int year = number(text, end, pos, MAX_YEAR_DIGITS);
+		if (year < 0) return fail(pos, start, start);
+		int month = 1;
+		int day = 1;
+		int i = pos.getIndex();
+		if (next(text, end, i) == '-' && isDigit(next(text, end, i + 1))) {
+			pos.setIndex(i + 1);
+			month = number(text, end, pos, 2);
+			if (month < 1 || month > 12) return fail(pos, start, i + 1);
+			i = pos.getIndex();
+			if (next(text, end, i) == '-' && isDigit(next(text, end, i + 1))) {
+				pos.setIndex(i + 1);
+				day = number(text, end, pos, 2);
+				if (day < 1 || day > daysInMonth(year, month)) return fail(pos, start, i + 1);
+				i = pos.getIndex();
+				if (next(text, end, i) == 'T') {
+					return parseTime(text, end, pos, start, year, month, day);
+				}
+			}
+		}
+		// date, gYearMonth or gYear: time zone is allowed but ignored
+		if (!skipTimeZone(text, end, pos)) return fail(pos, start, pos.getIndex());
+		return toMillis(year, month, day, 0, 0, 0, 0);
+	}
+
+	/**
+	 * Scan the time following the 'T' separator of a dateTime
+	 */
+	private static long parseTime(String text, int end, ParsePosition pos, int start,
+								  int year, int month, int day) {
+		int i = pos.getIndex() + 1;
+		pos.setIndex(i);
+		int hour = number(text, end, pos, 2);
+		if (hour < 0 || hour > 24) return fail(pos, start, i);
+		i = pos.getIndex();
+		if (next(text, end, i) != ':') return fail(pos, start, i);
+		pos.setIndex(++i);
+		int minute = number(text, end, pos, 2);
+		if (minute < 0 || minute > 59) return fail(pos, start, i);
+		int second = 0;
+		int millis = 0;
+		i = pos.getIndex();
+		if (next(text, end, i) == ':') {
+			pos.setIndex(++i);
+			second = number(text, end, pos, 2);
+			if (second < 0 || second > 59) return fail(pos, start, i);
+			i = pos.getIndex();
+			if (next(text, end, i) == '.') {
+				// keep milliseconds and truncate any further digits
+				int scale = 100;
+				int digits = i + 1;
+				while (digits < end && isDigit(text.charAt(digits))) {
+					millis += (text.charAt(digits++) - '0') * scale;
+					scale /= 10;
+				}
+				if (digits == i + 1) return fail(pos, start, digits);
+				pos.setIndex(digits);
+			}
+		}
+		if (hour == 24 && (minute != 0 || second != 0 || millis != 0)) {
+			return fail(pos, start, i);
+		}
+		i = pos.getIndex();
+		int offset = 0;
+		char ch = next(text, end, i);
+		if (ch == 'Z') {
+			pos.setIndex(i + 1);
+		} else if (ch == '+' || ch == '-') {
+			offset = timeZoneOffset(text, end, pos);
+			if (offset == Integer.MIN_VALUE) return fail(pos, start, i);
+		}
+		// otherwise no time zone so UTC is assumed
+		return toMillis(year, month, day, hour, minute, second, millis) - offset * 60000L;
+	}
+
+	/**
+	 * Skip an optional time zone designator
+	 *
+	 * @return false if there is a malformed time zone designator
+	 */
+	private static boolean skipTimeZone(String text, int end, ParsePosition pos) {
+		int i = pos.getIndex();
+		char ch = next(text, end, i);
+		if (ch == 'Z') {
+			pos.setIndex(i + 1);
+		} else if (ch == '+' || ch == '-') {
+			return timeZoneOffset(text, end, pos) != Integer.MIN_VALUE;
+		}
+		return true;
+	}
+
+	/**
+	 * Scan a numeric time zone offset (+hh:mm, -hh:mm, +hhmm, -hhmm, +hh or -hh)
+	 *
+	 * @return the offset in minutes, or <code>Integer.MIN_VALUE</code> if malformed
+	 */
+	private static int timeZoneOffset(String text, int end, ParsePosition pos) {
+		int i = pos.getIndex();
+		boolean negative = text.charAt(i) == '-';
+		if (i + 3 > end || !isDigit(text.charAt(i + 1)) || !isDigit(text.charAt(i + 2))) {
+			return Integer.MIN_VALUE;
+		}
+		int hours = (text.charAt(i + 1) - '0') * 10 + text.charAt(i + 2) - '0';
+		int minutes = 0;
+		i += 3;
+		if (next(text, end, i) == ':') i++;
+		if (isDigit(next(text, end, i))) {
+			if (!isDigit(next(text, end, i + 1))) return Integer.MIN_VALUE;
+			minutes = (text.charAt(i) - '0') * 10 + text.charAt(i + 1) - '0';
+			i += 2;
+		} else if (text.charAt(i - 1) == ':') {
+			return Integer.MIN_VALUE;
+		}
+		if (hours > 14 || minutes > 59) return Integer.MIN_VALUE;
+		pos.setIndex(i);
+		int offset = hours * 60 + minutes;
+		return negative ? -offset : offset;
+	}
+
+	/**
+	 * Scan 1 to <code>max</code> digits advancing the index of <code>pos</code>
+	 *
+	 * @return the value, or -1 if there are no digits at the index
+	 */
+	private static int number(String text, int end, ParsePosition pos, int max) {
+		int i = pos.getIndex();
+		int limit = Math.min(end, i + max);
+		int value = -1;
+		while (i < limit) {
+			char ch = text.charAt(i);
+			if (!isDigit(ch)) break;
+			value = (value < 0 ? 0 : value * 10) + ch - '0';
+			i++;
+		}
+		pos.setIndex(i);
+		return value;
+	}
+
+	private static char next(String text, int end, int i) {
+		return i < end ? text.charAt(i) : '\0';
+	}
+
+	private static boolean isDigit(char ch) {
+		return ch >= '0' && ch <= '9';
+	}
+
+	private static long fail(ParsePosition pos, int start, int errorIndex) {
+		pos.setIndex(start);
+		pos.setErrorIndex(errorIndex);
+		return 0;
+	}
+
+	private static int daysInMonth(int year, int month) {
+		switch (month) {
+			case 2:
+				boolean leap = year % 4 == 0 && (year < GREGORIAN_YEAR || year % 100 != 0 || year % 400 == 0);
+				return leap ? 29 : 28;
+			case 4:
+			case 6:
+			case 9:
+			case 11:
+				return 30;
+			default:
+				return 31;
+		}
+	}
+
+	private static long toMillis(int year, int month, int day, int hour, int minute, int second, int millis) {
+		long time = ((hour * 60L + minute) * 60 + second) * 1000 + millis;
+		if (year >= GREGORIAN_YEAR) {
+			return daysFromEpoch(year, month, day) * MILLIS_PER_DAY + time;
+		}
+		// Julian calendar and calendar reform are left to GregorianCalendar
+		GregorianCalendar cal = new GregorianCalendar(UTC);
+		cal.clear();
+		cal.set(year, month - 1, day);
+		return cal.getTimeInMillis() + time;
+	}
+
+	/**
+	 * Days from 1970-01-01 in the proleptic Gregorian calendar for a
+	 * non-negative year
+	 */
+	private static long daysFromEpoch(int year, int month, int day) {
+		if (month <= 2) year--;
+		int era = year / 400;
+		int yearOfEra = year - era * 400;
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return era * 146097L + dayOfEra - 719468;
+	}
+
+}
@@ -69,6 +69,7 @@ import org.opensextant.giscore.geometry.Point;
 import org.opensextant.giscore.geometry.Polygon;
 import org.opensextant.giscore.input.kml.IKml;
 import org.opensextant.giscore.input.kml.KmlReader;
+import org.opensextant.giscore.input.kml.UrlCache;
 import org.opensextant.giscore.input.kml.UrlRef;
 import org.opensextant.giscore.output.atom.IAtomConstants;
 import org.opensextant.giscore.output.kml.KmlOutputStream;
@@ -1570,12 +1571,23 @@ public class KmlMetaDump implements IKml {
 		System.out.println("  -m<MaxNetworkLinks>");
 		System.out.println("     Sets max number of NetworkLinks to parse when -f option");
 		System.out.println("     is enabled. Set value=0 to disable. [Default=500]");
+		System.out.println("  -c<path-to-cache-directory>");
+		System.out.println("     Keeps HTTP resources in the cache directory and only downloads");
+		System.out.println("     them again when they have changed");
 		System.out.println("  -stdout Write KML output to STDOUT instead of writing files");
 		System.out.println("  -v Set verbose which dumps out features");
 		System.out.println("  -x Dump full set of extended data property names");
 		System.exit(1);
 	}
 
+	private static void setCache(File dir) {
+		try {
+			UrlRef.setCache(new UrlCache(dir));
+		} catch (IOException e) {
+			System.out.println("\t*** Cache not used: " + e.getMessage());
+		}
+	}
+
 	public static void main(String args[]) {
 		KmlMetaDump app = new KmlMetaDump();
 
@@ -1596,6 +1608,8 @@ public class KmlMetaDump implements IKml {
 					app.setMaxLinkCount(Integer.parseInt(arg.substring(2)));
 				else if (arg.equals("-stdout"))
 					app.setUseStdout(true);
+				else if (arg.startsWith("-c") && arg.length() > 2)
+					setCache(new File(arg.substring(2)));
 				else usage();
 			} else
 				sources.add(arg);
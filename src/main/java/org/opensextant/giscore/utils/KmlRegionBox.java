@@ -25,6 +25,7 @@ import org.opensextant.giscore.geometry.LinearRing;
 import org.opensextant.giscore.geometry.Point;
 import org.opensextant.giscore.input.kml.IKml;
 import org.opensextant.giscore.input.kml.KmlReader;
+import org.opensextant.giscore.input.kml.UrlCache;
 import org.opensextant.giscore.input.kml.UrlRef;
 import org.opensextant.giscore.output.kml.KmlOutputStream;
 
@@ -267,7 +268,13 @@ public class KmlRegionBox {
 			else if (StringUtils.startsWith(arg, "-o")) {
                 if (arg.length() > 2)
 				    app.setOutFile(new File(arg.substring(2)));
-            } else if (!arg.startsWith("-"))
+            } else if (StringUtils.startsWith(arg, "-c") && arg.length() > 2) {
+				try {
+					UrlRef.setCache(new UrlCache(new File(arg.substring(2))));
+				} catch (IOException e) {
+					System.out.println("Cache not used: " + e.getMessage());
+				}
+			} else if (!arg.startsWith("-"))
 				sources.add(arg);
 			//System.out.println("Invalid argument: " + arg);
 		}
@@ -0,0 +1,178 @@
+/****************************************************************************************
+ *  LzBlockInputStream.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.utils;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+
+/**
+ * Input stream that decompresses the blocks written by a
+ * {@link LzBlockOutputStream}, see there for the format.
+ */
+public class LzBlockInputStream extends InputStream {
+
+	/**
+	 * Largest count of uncompressed bytes in a block
+	 */
+	public static final int MAX_BLOCK_SIZE = 1 << 24;
+
+	private final DataInputStream in;
+
+	private byte[] block = new byte[0];
+
+	private byte[] compressed = new byte[0];
+
+	private int count;
+
+	private int pos;
+
+	/**
+	 * Creates a stream.
+	 *
+	 * @param in the compressed stream to read from, never <code>null</code>
+	 * @throws IllegalArgumentException if <code>in</code> is <code>null</code>
+	 */
+	public LzBlockInputStream(InputStream in) {
+		if (in == null) {
+			throw new IllegalArgumentException("in should never be null");
+		}
+		this.in = new DataInputStream(in);
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (pos == count && !readBlock()) {
+			return -1;
+		}
+		return block[pos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || off + len > b.length) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0) {
+			return 0;
+		}
+		if (pos == count && !readBlock()) {
+			return -1;
+		}
+		int n = Math.min(len, count - pos);
+		System.arraycopy(block, pos, b, off, n);
+		pos += n;
+		return n;
+	}
+
+	@Override
+	public int available() {
+		return count - pos;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+	/**
+	 * Read the next block
+	 *
+	 * @return false at the end of the stream
+	 */
+	private boolean readBlock() throws IOException {
+		int first = in.read();
+		if (first < 0) {
+			return false;
+		}
+		int length = first << 24 | (in.readUnsignedByte() << 16) | in.readUnsignedShort();
+		int stored = in.readInt();
+		if (length < 1 || length > MAX_BLOCK_SIZE || stored < 1 || stored > length) {
+			throw new StreamCorruptedException("Invalid block header " + length + "/" + stored);
+		}
+		if (block.length < length) {
+			block = new byte[length];
+		}
+		if (stored == length) {
+			in.readFully(block, 0, length);
+		} else {
+			if (compressed.length < stored) {
+				compressed = new byte[stored];
+			}
+			in.readFully(compressed, 0, stored);
+			decompress(compressed, stored, block, length);
+		}
+		count = length;
+		pos = 0;
+		return true;
+	}
+
+	/**
+	 * Decompress a block into exactly <code>len</code> bytes of <code>dst</code>
+	 *
+	 * @throws StreamCorruptedException if the data is malformed
+	 */
+	static void decompress(byte[] src, int srcLen, byte[] dst, int len) throws StreamCorruptedException {
+		int ip = 0;
+		int op = 0;
+		try {
+			while (ip < srcLen) {
+				int token = src[ip++] & 0xff;
+				int literals = token >>> 4;
+				if (literals == 15) {
+					int b;
+					do {
+						b = src[ip++] & 0xff;
+						literals += b;
+					} while (b == 255);
+				}
+				if (literals > srcLen - ip || literals > len - op) {
+					break;
+				}
+				System.arraycopy(src, ip, dst, op, literals);
+				ip += literals;
+				op += literals;
+				if (ip == srcLen) {
+					if (op == len) return;
+					break;
+				}
+				int offset = (src[ip] & 0xff) | (src[ip + 1] & 0xff) << 8;
+				ip += 2;
+				int match = token & 15;
+				if (match == 15) {
+					int b;
+					do {
+						b = src[ip++] & 0xff;
+						match += b;
+					} while (b == 255);
+				}
+				match += LzBlockOutputStream.MIN_MATCH;
+				int ref = op - offset;
+				if (offset == 0 || ref < 0 || match > len - op) {
+					break;
+				}
+				// byte by byte as the match may overlap the output
+				for (int end = op + match; op < end; ) {
+					dst[op++] = dst[ref++];
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException e) {
+			// fall through to report the corrupt block
+		}
+		throw new StreamCorruptedException("Corrupt compressed block");
+	}
+
+}
@@ -0,0 +1,230 @@
+/****************************************************************************************
+ *  LzBlockOutputStream.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.utils;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Output stream that compresses its data in independent blocks with a fast
+ * LZ77 compressor in the style of LZ4, read back with a {@link LzBlockInputStream}.
+ * It trades compression ratio for speed, which suits temporary files such as
+ * the secondary store of an {@link ObjectBuffer}.
+ * <p>
+ * Each block starts with its uncompressed length and its stored length as 4
+ * byte integers. If the stored length equals the uncompressed length the
+ * block is stored as is, otherwise it is a series of sequences each of
+ * <ul>
+ * <li>a token byte with the count of literals in the high 4 bits and the
+ * match length less 4 in the low 4 bits. A count of 15 is followed by
+ * bytes that are added to it up to and including the first byte that is not 255.
+ * <li>the literal bytes.
+ * <li>the offset back to the match as a 2 byte little endian integer,
+ * followed by any additional bytes for the match length.
+ * </ul>
+ * The last sequence of a block has literals only. A flush ends the current
+ * block so the data written so far can be read back.
+ */
+public class LzBlockOutputStream extends OutputStream {
+
+	/**
+	 * Default count of uncompressed bytes in a block
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+	static final int MIN_MATCH = 4;
+
+	static final int MAX_OFFSET = 0xffff;
+
+	private static final int HASH_BITS = 14;
+
+	private final DataOutputStream out;
+
+	private final byte[] block;
+
+	private final byte[] compressed;
+
+	private final int[] table = new int[1 << HASH_BITS];
+
+	private int count;
+
+	private boolean closed;
+
+	/**
+	 * Creates a stream with blocks of {@link #DEFAULT_BLOCK_SIZE} bytes.
+	 *
+	 * @param out the stream to write the compressed data to, never <code>null</code>
+	 * @throws IllegalArgumentException if <code>out</code> is <code>null</code>
+	 */
+	public LzBlockOutputStream(OutputStream out) {
+		this(out, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Creates a stream.
+	 *
+	 * @param out the stream to write the compressed data to, never <code>null</code>
+	 * @param blockSize the count of uncompressed bytes in a block, at most
+	 * {@link LzBlockInputStream#MAX_BLOCK_SIZE}
+	 * @throws IllegalArgumentException if <code>out</code> is <code>null</code>
+	 * or the block size is out of range
+	 */
+	public LzBlockOutputStream(OutputStream out, int blockSize) {
+		if (out == null) {
+			throw new IllegalArgumentException("out should never be null");
+		}
+		if (blockSize < 1 || blockSize > LzBlockInputStream.MAX_BLOCK_SIZE) {
+			throw new IllegalArgumentException("blockSize out of range: " + blockSize);
+		}
+		this.out = new DataOutputStream(out);
+		block = new byte[blockSize];
+		// worst case of incompressible data
+		compressed = new byte[blockSize + blockSize / 255 + 16];
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (count == block.length) {
+			writeBlock();
+		}
+		block[count++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || off + len > b.length) {
+			throw new IndexOutOfBoundsException();
+		}
+		while (len > 0) {
+			if (count == block.length) {
+				writeBlock();
+			}
+			int n = Math.min(len, block.length - count);
+			System.arraycopy(b, off, block, count, n);
+			count += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Ends the current block and flushes the underlying stream.
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	@Override
+	public void flush() throws IOException {
+		if (count > 0) {
+			writeBlock();
+		}
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			try {
+				flush();
+			} finally {
+				closed = true;
+				out.close();
+			}
+		}
+	}
+
+	private void writeBlock() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+		int len = compress(block, count, compressed, table);
+		out.writeInt(count);
+		if (len < count) {
+			out.writeInt(len);
+			out.write(compressed, 0, len);
+		} else {
+			out.writeInt(count);
+			out.write(block, 0, count);
+		}
+		count = 0;
+	}
+
+	/**
+	 * Compress <code>len</code> bytes of <code>src</code>.
+	 *
+	 * @param dst the compressed data, at least <code>len + len / 255 + 16</code> bytes
+	 * @param table the hash table of positions, overwritten
+	 * @return the compressed length
+	 */
+	static int compress(byte[] src, int len, byte[] dst, int[] table) {
+		Arrays.fill(table, -1);
+		int op = 0;
+		int anchor = 0;
+		int i = 0;
+		while (i + MIN_MATCH <= len) {
+			int seq = readInt(src, i);
+			int h = (seq * -1640531535) >>> (32 - HASH_BITS);
+			int ref = table[h];
+			table[h] = i;
+			if (ref < 0 || i - ref > MAX_OFFSET || readInt(src, ref) != seq) {
+				i++;
+				continue;
+			}
+			int matchLen = MIN_MATCH;
+			while (i + matchLen < len && src[ref + matchLen] == src[i + matchLen]) {
+				matchLen++;
+			}
+			op = writeLiterals(src, anchor, i - anchor, matchLen - MIN_MATCH, dst, op);
+			int offset = i - ref;
+			dst[op++] = (byte) offset;
+			dst[op++] = (byte) (offset >>> 8);
+			op = writeLength(matchLen - MIN_MATCH, dst, op);
+			i += matchLen;
+			anchor = i;
+		}
+		return writeLiterals(src, anchor, len - anchor, 0, dst, op);
+	}
+
+	/**
+	 * Write the token and literals of a sequence
+	 */
+	private static int writeLiterals(byte[] src, int start, int literals, int match, byte[] dst, int op) {
+		dst[op++] = (byte) (Math.min(literals, 15) << 4 | Math.min(match, 15));
+		op = writeLength(literals, dst, op);
+		System.arraycopy(src, start, dst, op, literals);
+		return op + literals;
+	}
+
+	/**
+	 * Write the bytes that extend a length of 15 or more in a token
+	 */
+	private static int writeLength(int length, byte[] dst, int op) {
+		if (length >= 15) {
+			length -= 15;
+			while (length >= 255) {
+				dst[op++] = (byte) 255;
+				length -= 255;
+			}
+			dst[op++] = (byte) length;
+		}
+		return op;
+	}
+
+	private static int readInt(byte[] b, int i) {
+		return (b[i] & 0xff) | (b[i + 1] & 0xff) << 8 | (b[i + 2] & 0xff) << 16 | b[i + 3] << 24;
+	}
+
+}
@@ -0,0 +1,175 @@
+/****************************************************************************************
+ *  MemoryBudget.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantibility and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.utils;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opensextant.giscore.GISFactory;
+
+/**
+ * A limit in bytes on the memory held by a set of {@link ObjectBuffer}s.
+ * Sizes are the estimates of {@link SizeEstimator}. When a write takes the
+ * buffers over the limit, the buffers are evicted to their secondary store
+ * in least recently written order until the total is within the limit again.
+ * Buffers that have started reading are not evicted.
+ * <p>
+ * The buffers of a budget synchronize on the budget so they may be used
+ * from different threads. The process wide budget is used by buffers created
+ * with the default constructors when {@link GISFactory#inMemoryBufferBytes}
+ * is positive. The buffers of a {@link SpillingBufferPool} are limited by the
+ * pool instead.
+ */
+public class MemoryBudget {
+
+	private static final MemoryBudget processBudget = new MemoryBudget(GISFactory.inMemoryBufferBytes);
+
+	/**
+	 * The limit in bytes, zero or negative for no limit
+	 */
+	private final AtomicLong limit;
+
+	/**
+	 * Buffers holding evictable elements in memory, least recently written first.
+	 */
+	private final LinkedHashSet<ObjectBuffer> resident = new LinkedHashSet<ObjectBuffer>();
+
+	private long used;
+	private long peak;
+	private long evictionCount;
+	private long evictedBytes;
+
+	/**
+	 * Ctor
+	 * @param limit the maximum estimated bytes held in memory by the
+	 * buffers of this budget, must be positive
+	 */
+	public MemoryBudget(long limit) {
+		if (limit < 1) {
+			throw new IllegalArgumentException("limit must be positive");
+		}
+		this.limit = new AtomicLong(limit);
+	}
+
+	private MemoryBudget(AtomicLong limit) {
+		this.limit = limit;
+	}
+
+	/**
+	 * @return the budget shared by all buffers of the process, whose limit
+	 * is {@link GISFactory#inMemoryBufferBytes}
+	 */
+	public static MemoryBudget getProcessBudget() {
+		return processBudget;
+	}
+
+	/**
+	 * @return the limit in bytes
+	 */
+	public long getLimit() {
+		return limit.get();
+	}
+
+	/**
+	 * Change the limit, which is applied on the next write to a buffer.
+	 * @param limit the limit in bytes
+	 */
+	public void setLimit(long limit) {
+		this.limit.set(limit);
+	}
+
+	/**
+	 * @return the estimated bytes currently held in memory by the buffers
+	 */
+	public synchronized long getUsed() {
+		return used;
+	}
+
+	/**
+	 * @return the highest estimated bytes held in memory at any one time
+	 */
+	public synchronized long getPeak() {
+		return peak;
+	}
+
+	/**
+	 * @return the count of times a buffer was evicted to its secondary store
+	 */
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * @return the total estimated bytes released by evicting buffers
+	 */
+	public synchronized long getEvictedBytes() {
+		return evictedBytes;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "MemoryBudget[limit=" + limit.get() + ", used=" + used + ", peak=" + peak
+				+ ", evictions=" + evictionCount + ", evictedBytes=" + evictedBytes + "]";
+	}
+
+	/**
+	 * Account for an element written to the buffer and evict buffers while
+	 * over the limit. Called holding the lock of this budget.
+	 */
+	void allocate(ObjectBuffer buffer, long bytes) throws IOException {
+		buffer.residentBytes += bytes;
+		used += bytes;
+		if (used > peak) {
+			peak = used;
+		}
+		if (!buffer.pinned) {
+			// move to the most recently written end
+			resident.remove(buffer);
+			resident.add(buffer);
+		}
+		long max = limit.get();
+		if (max <= 0) return;
+		Iterator<ObjectBuffer> it = resident.iterator();
+		while (used > max && it.hasNext()) {
+			ObjectBuffer victim = it.next();
+			it.remove();
+			long freed = victim.evict();
+			used -= freed;
+			evictionCount++;
+			evictedBytes += freed;
+		}
+	}
+
+	/**
+	 * Stop evicting the buffer, called when the buffer starts reading
+	 * while holding the lock of this budget.
+	 */
+	void pin(ObjectBuffer buffer) {
+		resident.remove(buffer);
+		buffer.pinned = true;
+	}
+
+	/**
+	 * Release the memory accounted for the buffer, called when the buffer
+	 * is closed while holding the lock of this budget.
+	 */
+	void release(ObjectBuffer buffer) {
+		resident.remove(buffer);
+		used -= buffer.residentBytes;
+		buffer.residentBytes = 0;
+	}
+}
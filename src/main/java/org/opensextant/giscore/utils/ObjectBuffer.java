@@ -18,12 +18,17 @@
  ***************************************************************************************/
 package org.opensextant.giscore.utils;
 
+import edu.umd.cs.findbugs.annotations.CheckForNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.opensextant.giscore.GISFactory;
 
@@ -31,6 +36,14 @@ import org.opensextant.giscore.GISFactory;
  * A buffer that will hold a fixed amount of data in memory, 
  * and overflows into secondary storage if there's too much data 
  * to hold in memory (i.e. it overflows into a file). 
+ * <p>
+ * The amount of data is either a fixed count of elements or, if the buffer
+ * is created with a {@link MemoryBudget}, the estimated size of the elements
+ * in bytes. A budget is shared by many buffers and when it is exceeded the
+ * least recently written buffers move their elements to their files. Such a
+ * buffer keeps its oldest elements in the file and the newest in memory, and
+ * is no longer evicted once reading has started or its output stream has
+ * been closed.
  * 
  * @author DRAND
  *
@@ -67,6 +80,11 @@ public class ObjectBuffer {
 	 * the data that is stored to the file system.
 	 */
 	private IObjectCacher cacher = null;
+
+	/**
+	 * Creates the streams of the secondary store.
+	 */
+	private IObjectStreamCodec codec = GISFactory.objectStreamCodec.get();
 	
 	/**
 	 * The actual data buffer, allocated on the
@@ -85,9 +103,70 @@ public class ObjectBuffer {
 	 * The read pointer into the buffer or the file.
 	 */
 	private long readIndex = 0;
-	
+
+	/**
+	 * The shared memory budget or <code>null</code> if the buffer holds
+	 * up to <code>maxElements</code> elements in memory.
+	 */
+	private MemoryBudget budget;
+
+	/**
+	 * Elements held in memory that follow the elements in the file when
+	 * the buffer has a budget.
+	 */
+	private List<IDataSerializable> memory;
+
+	/**
+	 * Count of elements in the secondary store when the buffer has a budget.
+	 */
+	private long fileCount;
+
+	/**
+	 * Estimated size of the elements held in memory that are accounted by
+	 * the budget.
+	 */
+	long residentBytes;
+
+	/**
+	 * Set once reading starts, the buffer is not evicted from then on.
+	 */
+	boolean pinned;
+
+	/**
+	 * Default ctor uses the process wide {@link MemoryBudget} if
+	 * {@link GISFactory#inMemoryBufferBytes} is positive, otherwise holds up
+	 * to {@link GISFactory#inMemoryBufferSize} elements in memory.
+	 */
 	protected ObjectBuffer() {
-		this(GISFactory.inMemoryBufferSize.get());
+		this((IObjectCacher) null);
+	}
+
+	/**
+	 * Ctor with the default memory limits described for {@link #ObjectBuffer()}.
+	 * @param cacher the cacher for the secondary store, may be <code>null</code>
+	 */
+	protected ObjectBuffer(IObjectCacher cacher) {
+		if (GISFactory.inMemoryBufferBytes.get() > 0) {
+			this.budget = MemoryBudget.getProcessBudget();
+		} else {
+			setSize(GISFactory.inMemoryBufferSize.get());
+		}
+		this.cacher = cacher;
+	}
+
+	/**
+	 * Ctor
+	 * @param budget the memory budget shared with other buffers, never
+	 * <code>null</code>
+	 * @param cacher the cacher for the secondary store, may be <code>null</code>
+	 * @throws IllegalArgumentException if budget is <code>null</code>
+	 */
+	protected ObjectBuffer(MemoryBudget budget, IObjectCacher cacher) {
+		if (budget == null) {
+			throw new IllegalArgumentException("budget should never be null");
+		}
+		this.budget = budget;
+		this.cacher = cacher;
 	}
 	
 	/**
@@ -105,6 +184,11 @@ public class ObjectBuffer {
 	 * be a positive integer.
 	 */
 	protected ObjectBuffer(long size, IObjectCacher cacher) {
+		setSize(size);
+		this.cacher = cacher;
+	}
+
+	private void setSize(long size) {
 		if (size < 1) {
 			throw new IllegalArgumentException("size must be positive");
 		}
@@ -112,8 +196,39 @@ public class ObjectBuffer {
 			throw new IllegalArgumentException("size must be no larger than integer max");
 		}
 		maxElements = size;
-		buffer = new IDataSerializable[(int) size];
-		this.cacher = cacher;
+	}
+
+	/**
+	 * @return the codec of the secondary store, never <code>null</code>
+	 */
+	public IObjectStreamCodec getCodec() {
+		return codec;
+	}
+
+	/**
+	 * Set the codec of the secondary store, the default is
+	 * {@link GISFactory#objectStreamCodec}.
+	 * @param codec the codec, never <code>null</code>
+	 * @throws IllegalArgumentException if codec is <code>null</code>
+	 * @throws IllegalStateException if the buffer has a secondary store
+	 */
+	public void setCodec(IObjectStreamCodec codec) {
+		if (codec == null) {
+			throw new IllegalArgumentException("codec should never be null");
+		}
+		if (secondaryStore != null) {
+			throw new IllegalStateException("secondary store already exists");
+		}
+		this.codec = codec;
+	}
+
+	/**
+	 * @return the memory budget shared by this buffer, or <code>null</code>
+	 * if the buffer holds a fixed count of elements in memory
+	 */
+	@CheckForNull
+	public MemoryBudget getMemoryBudget() {
+		return budget;
 	}
 	
 	/**
@@ -129,6 +244,14 @@ public class ObjectBuffer {
 				inputStream = null;
 			}
 		} finally {
+			if (budget != null) {
+				synchronized (budget) {
+					budget.release(this);
+					memory = null;
+					fileCount = 0;
+					pinned = false;
+				}
+			}
 			buffer = null;
 			readIndex = 0;
 			storeIndex = 0;
@@ -142,10 +265,19 @@ public class ObjectBuffer {
 	}
 	
 	/**
-	 * Close any open output streams but leave the data alone
+	 * Close any open output streams but leave the data alone. A buffer with
+	 * a budget is no longer evicted from then on, as its secondary store
+	 * can't be appended to once closed.
 	 * @throws IOException if an I/O error occurs
 	 */
 	public void closeOutputStream() throws IOException {
+		if (budget != null) {
+			synchronized (budget) {
+				if (!pinned) {
+					budget.pin(this);
+				}
+			}
+		}
 		if (outputStream != null) {
 			outputStream.close();
 			outputStream = null;
@@ -163,17 +295,67 @@ public class ObjectBuffer {
 		if (object == null) {
 			throw new IllegalArgumentException("object should never be null");
 		}
+		if (budget != null) {
+			synchronized (budget) {
+				if (memory == null) {
+					memory = new ArrayList<IDataSerializable>();
+				}
+				memory.add(object);
+				storeIndex++;
+				budget.allocate(this, estimateSize(object));
+			}
+			return;
+		}
 		if (storeIndex < maxElements) {
+			if (buffer == null) {
+				buffer = new IDataSerializable[(int) maxElements];
+			}
 			buffer[(int) storeIndex] = object;
 		} else {
-			if (secondaryStore == null) {
-				secondaryStore = File.createTempFile("obj", ".buffer");
-				outputStream = new SimpleObjectOutputStream(new FileOutputStream(secondaryStore), cacher);
-			}
+			openOutputStream();
 			outputStream.writeObject(object);
 		}
 		storeIndex++;
 	}
+
+	/**
+	 * Estimate the memory held by an object stored in a buffer with a budget.
+	 * @param object the object, never <code>null</code>
+	 * @return the estimated size in bytes
+	 * @see ISizeEstimable
+	 */
+	protected long estimateSize(IDataSerializable object) {
+		return SizeEstimator.estimate(object);
+	}
+
+	/**
+	 * Move the elements held in memory to the end of the secondary store.
+	 * Called by the budget while holding its lock.
+	 * @return the bytes released
+	 * @throws IOException if an I/O error occurs
+	 */
+	long evict() throws IOException {
+		if (memory != null && !memory.isEmpty()) {
+			openOutputStream();
+			for (IDataSerializable object : memory) {
+				outputStream.writeObject(object);
+			}
+			outputStream.flush();
+			fileCount += memory.size();
+			memory = new ArrayList<IDataSerializable>();
+		}
+		long freed = residentBytes;
+		residentBytes = 0;
+		return freed;
+	}
+
+	private void openOutputStream() throws IOException {
+		if (secondaryStore == null) {
+			secondaryStore = File.createTempFile("obj", ".buffer");
+			outputStream = codec.createOutputStream(new BufferedOutputStream(
+					new FileOutputStream(secondaryStore)), cacher);
+		}
+	}
 	
 	/**
 	 * Read objects from memory or the secondary storage.
@@ -186,14 +368,28 @@ public class ObjectBuffer {
 	 */
 	@Nullable
 	public IDataSerializable read() throws ClassNotFoundException, IOException, InstantiationException, IllegalAccessException {
+		if (budget != null) {
+			synchronized (budget) {
+				if (!pinned) {
+					budget.pin(this);
+				}
+			}
+		}
 		try {
 			if (readIndex >= storeIndex) {
 				return null;
-			} else if (readIndex < maxElements) {
+			} else if (budget != null && readIndex >= fileCount) {
+				return memory.get((int) (readIndex - fileCount));
+			} else if (budget == null && readIndex < maxElements) {
 				return buffer[(int) readIndex];
 			} else {
 				if (inputStream == null && secondaryStore != null) {
-					inputStream = new SimpleObjectInputStream(new FileInputStream(secondaryStore));
+					if (outputStream != null) {
+						// make buffered output visible to the input stream
+						outputStream.flush();
+					}
+					inputStream = codec.createInputStream(new BufferedInputStream(
+							new FileInputStream(secondaryStore)));
 				}
 				if (inputStream != null)
 					return (IDataSerializable) inputStream.readObject();
@@ -217,7 +413,10 @@ public class ObjectBuffer {
 	 */
 	public void resetReadIndex() {
 		readIndex = 0;
-		inputStream = null;
+		if (inputStream != null) {
+			inputStream.close();
+			inputStream = null;
+		}
 	}
 
 }
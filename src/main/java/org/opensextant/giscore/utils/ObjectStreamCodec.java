@@ -0,0 +1,72 @@
+/****************************************************************************************
+ *  ObjectStreamCodec.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.utils;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * The object stream codecs provided by giscore.
+ *
+ * @see org.opensextant.giscore.GISFactory#objectStreamCodec
+ */
+public class ObjectStreamCodec implements IObjectStreamCodec {
+
+	/**
+	 * {@link SimpleObjectOutputStream} and {@link SimpleObjectInputStream}
+	 */
+	public static final ObjectStreamCodec SIMPLE = new ObjectStreamCodec(false, false);
+
+	/**
+	 * {@link CompactObjectOutputStream} and {@link CompactObjectInputStream}
+	 */
+	public static final ObjectStreamCodec COMPACT = new ObjectStreamCodec(true, false);
+
+	/**
+	 * The compact streams with the data compressed in blocks by
+	 * {@link LzBlockOutputStream}
+	 */
+	public static final ObjectStreamCodec COMPACT_COMPRESSED = new ObjectStreamCodec(true, true);
+
+	private final boolean compact;
+
+	private final boolean compressed;
+
+	private ObjectStreamCodec(boolean compact, boolean compressed) {
+		this.compact = compact;
+		this.compressed = compressed;
+	}
+
+	public SimpleObjectOutputStream createOutputStream(OutputStream out, IObjectCacher cacher) {
+		if (compressed) {
+			out = new LzBlockOutputStream(out);
+		}
+		return compact ? new CompactObjectOutputStream(out, cacher)
+				: new SimpleObjectOutputStream(out, cacher);
+	}
+
+	public SimpleObjectInputStream createInputStream(InputStream in) {
+		if (compressed) {
+			in = new LzBlockInputStream(in);
+		}
+		return compact ? new CompactObjectInputStream(in) : new SimpleObjectInputStream(in);
+	}
+
+	@Override
+	public String toString() {
+		return compressed ? "COMPACT_COMPRESSED" : compact ? "COMPACT" : "SIMPLE";
+	}
+
+}
@@ -0,0 +1,679 @@
+/****************************************************************************************
+ *  ParallelZipOutputStream.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantibility and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A <code>ZipOutputStream</code> that compresses the data of its entries on a
+ * pool of threads. The data of each entry is divided into chunks that are
+ * deflated independently, each chunk using the end of the previous chunk as
+ * preset dictionary and ending with a sync flush so the compressed chunks
+ * join into the single deflate stream of the entry, as done by pigz. Chunks
+ * of the following entries are compressed while the chunks before them are
+ * written, so the caller only waits when too many chunks are pending.
+ * <p>
+ * All entries are written DEFLATED followed by a data descriptor. Zip64 is
+ * not supported so entry sizes and offsets are limited to 4GB and the count
+ * of entries to 65535.
+ * <p>
+ * The sync flush requires the Java 7 <code>Deflater</code>, on older
+ * runtimes the entries are compressed on the calling thread.
+ */
+public class ParallelZipOutputStream extends ZipOutputStream {
+
+	/**
+	 * Default size of the uncompressed chunks
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 128 * 1024;
+
+	private static final int DICTIONARY_SIZE = 32 * 1024;
+
+	/**
+	 * Value of <code>Deflater.SYNC_FLUSH</code>
+	 */
+	private static final int SYNC_FLUSH = 2;
+
+	/**
+	 * <code>Deflater.deflate(byte[], int, int, int)</code>, <code>null</code>
+	 * if the runtime does not support flushing
+	 */
+	private static final Method syncDeflate = findSyncDeflate();
+
+	private final OutputStream target;
+
+	/**
+	 * Compresses the chunks, <code>null</code> to compress on the calling thread
+	 */
+	private final ExecutorService executor;
+
+	private final int chunkSize;
+
+	/**
+	 * Count of compressed chunks that may be pending before the caller waits
+	 */
+	private final int maxPending;
+
+	/**
+	 * Chunks and entry records in the order they are written, either a
+	 * <code>Future</code> of compressed data or an <code>Entry</code> whose
+	 * local header or data descriptor is written.
+	 */
+	private final LinkedList<Object> pending = new LinkedList<Object>();
+
+	private int pendingChunks;
+
+	private final List<Entry> entries = new ArrayList<Entry>();
+
+	private final Set<String> names = new HashSet<String>();
+
+	private final byte[] singleByte = new byte[1];
+
+	private int level = Deflater.DEFAULT_COMPRESSION;
+
+	private byte[] comment;
+
+	/**
+	 * Count of bytes written to the target stream
+	 */
+	private long written;
+
+	/**
+	 * Entry being written by the caller, <code>null</code> if none
+	 */
+	private Entry current;
+
+	/**
+	 * Entry whose data is being written to the target stream
+	 */
+	private Entry writing;
+
+	private byte[] chunk;
+	private int chunkLength;
+
+	/**
+	 * The previous chunk of the current entry, used as dictionary
+	 */
+	private byte[] previous;
+	private int previousLength;
+
+	/**
+	 * Deflater of the current entry when compressing on the calling thread
+	 */
+	private Deflater sequential;
+
+	private boolean finished;
+	private boolean closed;
+
+	/**
+	 * Create a stream using a thread per available processor.
+	 *
+	 * @param out the output stream, never <code>null</code>
+	 */
+	public ParallelZipOutputStream(OutputStream out) {
+		this(out, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param out     the output stream, never <code>null</code>
+	 * @param threads the count of compressing threads, one to compress on
+	 *                the calling thread
+	 */
+	public ParallelZipOutputStream(OutputStream out, int threads) {
+		this(out, threads, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param out       the output stream, never <code>null</code>
+	 * @param threads   the count of compressing threads, one to compress on
+	 *                  the calling thread
+	 * @param chunkSize the size of the uncompressed chunks compressed by a
+	 *                  thread, must be positive
+	 * @throws IllegalArgumentException if an argument is invalid
+	 */
+	public ParallelZipOutputStream(OutputStream out, int threads, int chunkSize) {
+		super(out);
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be positive");
+		}
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("chunkSize must be positive");
+		}
+		this.target = new BufferedOutputStream(out);
+		this.chunkSize = chunkSize;
+		this.maxPending = 2 * threads;
+		this.executor = threads > 1 && syncDeflate != null
+				? Executors.newFixedThreadPool(threads, new DeflaterThreadFactory()) : null;
+	}
+
+	/**
+	 * @return <code>true</code> if entries are compressed on a pool of threads
+	 */
+	public boolean isParallel() {
+		return executor != null;
+	}
+
+	/**
+	 * Set the compression level of the following entries.
+	 *
+	 * @param level the compression level (0-9) or
+	 *              <code>Deflater.DEFAULT_COMPRESSION</code>
+	 * @throws IllegalArgumentException if the level is invalid
+	 */
+	@Override
+	public void setLevel(int level) {
+		if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+			throw new IllegalArgumentException("invalid compression level");
+		}
+		this.level = level;
+	}
+
+	/**
+	 * @param method the compression method, only DEFLATED is supported
+	 * @throws IllegalArgumentException if the method is not DEFLATED
+	 */
+	@Override
+	public void setMethod(int method) {
+		if (method != DEFLATED) {
+			throw new IllegalArgumentException("only DEFLATED entries are supported");
+		}
+	}
+
+	@Override
+	public void setComment(String comment) {
+		this.comment = comment == null ? null : toBytes(comment);
+		if (this.comment != null && this.comment.length > 0xffff) {
+			throw new IllegalArgumentException("ZIP file comment too long.");
+		}
+	}
+
+	/**
+	 * Begin a new entry, closing the current entry if any. Only the name and
+	 * time of the entry are used, the entry is always DEFLATED.
+	 *
+	 * @param e the entry, never <code>null</code>
+	 * @throws ZipException if the name is a duplicate
+	 * @throws IOException  if an I/O error occurs
+	 */
+	@Override
+	public void putNextEntry(ZipEntry e) throws IOException {
+		ensureOpen();
+		if (current != null) {
+			closeEntry();
+		}
+		if (!names.add(e.getName())) {
+			throw new ZipException("duplicate entry: " + e.getName());
+		}
+		current = new Entry(e.getName(), e.getTime() == -1 ? System.currentTimeMillis() : e.getTime());
+		pending.add(current);
+		chunk = new byte[chunkSize];
+		chunkLength = 0;
+		previous = null;
+		if (executor == null) {
+			sequential = new Deflater(level, true);
+		}
+		drain(maxPending);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		singleByte[0] = (byte) b;
+		write(singleByte, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		if (off < 0 || len < 0 || off > b.length - len) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (current == null) {
+			throw new ZipException("no current ZIP entry");
+		}
+		current.crc.update(b, off, len);
+		current.size += len;
+		while (len > 0) {
+			if (chunkLength == chunkSize) {
+				submitChunk(false);
+			}
+			int n = Math.min(len, chunkSize - chunkLength);
+			System.arraycopy(b, off, chunk, chunkLength, n);
+			chunkLength += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Write the compressed data that is ready. The data still being
+	 * compressed is not waited for.
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		drain(maxPending);
+		target.flush();
+	}
+
+	@Override
+	public void closeEntry() throws IOException {
+		ensureOpen();
+		if (current == null) {
+			return;
+		}
+		submitChunk(true);
+		// the second occurrence of the entry writes its data descriptor
+		pending.add(current);
+		if (sequential != null) {
+			sequential.end();
+			sequential = null;
+		}
+		current = null;
+		chunk = null;
+		previous = null;
+		drain(maxPending);
+	}
+
+	/**
+	 * Finish writing the entries and the central directory without closing
+	 * the output stream.
+	 *
+	 * @throws IOException if an I/O error occurs
+	 */
+	@Override
+	public void finish() throws IOException {
+		ensureOpen();
+		if (finished) {
+			return;
+		}
+		closeEntry();
+		drain(-1);
+		if (entries.size() > 0xffff) {
+			throw new ZipException("ZIP64 is not supported: too many entries");
+		}
+		long start = written;
+		for (Entry e : entries) {
+			writeCentralHeader(e);
+		}
+		long size = written - start;
+		checkZip32(start);
+		ByteBuffer buffer = newBuffer(22 + (comment == null ? 0 : comment.length));
+		buffer.putInt(0x06054b50);
+		buffer.putShort((short) 0); // disk number
+		buffer.putShort((short) 0); // disk with central directory
+		buffer.putShort((short) entries.size());
+		buffer.putShort((short) entries.size());
+		buffer.putInt((int) size);
+		buffer.putInt((int) start);
+		if (comment == null) {
+			buffer.putShort((short) 0);
+		} else {
+			buffer.putShort((short) comment.length);
+			buffer.put(comment);
+		}
+		writeBuffer(buffer);
+		target.flush();
+		finished = true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		try {
+			finish();
+		} finally {
+			closed = true;
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+			if (sequential != null) {
+				sequential.end();
+				sequential = null;
+			}
+			def.end();
+			target.close();
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+	}
+
+	/**
+	 * Queue the compression of the current chunk.
+	 *
+	 * @param last <code>true</code> if this is the last chunk of the entry
+	 */
+	private void submitChunk(boolean last) throws IOException {
+		if (executor != null) {
+			pending.add(executor.submit(new DeflateTask(level, chunk, chunkLength,
+					previous, previousLength, last)));
+			previous = chunk;
+			previousLength = chunkLength;
+			chunk = last ? null : new byte[chunkSize];
+		} else {
+			final Deflater deflater = sequential;
+			final byte[] data = chunk;
+			final int length = chunkLength;
+			final boolean finish = last;
+			FutureTask<byte[]> task = new FutureTask<byte[]>(new Callable<byte[]>() {
+				public byte[] call() {
+					return deflate(deflater, data, length, finish, false);
+				}
+			});
+			task.run();
+			pending.add(task);
+		}
+		pendingChunks++;
+		chunkLength = 0;
+		drain(maxPending);
+	}
+
+	/**
+	 * Write the queued records and the compressed chunks that are ready,
+	 * waiting for chunks while more than <code>max</code> chunks are pending.
+	 *
+	 * @param max the count of chunks that may remain pending, negative to
+	 *            write everything
+	 */
+	@SuppressWarnings("unchecked")
+	private void drain(int max) throws IOException {
+		while (!pending.isEmpty()) {
+			Object head = pending.getFirst();
+			if (head instanceof Entry) {
+				pending.removeFirst();
+				writeRecord((Entry) head);
+				continue;
+			}
+			Future<byte[]> future = (Future<byte[]>) head;
+			if (pendingChunks <= max && !future.isDone()) {
+				break;
+			}
+			byte[] data;
+			try {
+				data = future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while compressing " + writing.name);
+			} catch (ExecutionException e) {
+				IOException e2 = new IOException("Failed to compress " + writing.name);
+				e2.initCause(e.getCause());
+				throw e2;
+			}
+			pending.removeFirst();
+			pendingChunks--;
+			target.write(data);
+			written += data.length;
+			writing.compressedSize += data.length;
+		}
+	}
+
+	/**
+	 * Write the local header of an entry the first time it is dequeued and
+	 * its data descriptor the second time.
+	 */
+	private void writeRecord(Entry e) throws IOException {
+		if (e.offset < 0) {
+			checkZip32(written);
+			e.offset = written;
+			writing = e;
+			ByteBuffer buffer = newBuffer(30 + e.nameBytes.length);
+			buffer.putInt(0x04034b50);
+			buffer.putShort((short) 20); // version needed to extract
+			buffer.putShort((short) e.flags);
+			buffer.putShort((short) DEFLATED);
+			buffer.putInt(e.dosTime);
+			buffer.putInt(0); // crc, sizes follow the data
+			buffer.putInt(0);
+			buffer.putInt(0);
+			buffer.putShort((short) e.nameBytes.length);
+			buffer.putShort((short) 0); // extra field length
+			buffer.put(e.nameBytes);
+			writeBuffer(buffer);
+		} else {
+			checkZip32(e.compressedSize);
+			checkZip32(e.size);
+			ByteBuffer buffer = newBuffer(16);
+			buffer.putInt(0x08074b50);
+			buffer.putInt((int) e.crc.getValue());
+			buffer.putInt((int) e.compressedSize);
+			buffer.putInt((int) e.size);
+			writeBuffer(buffer);
+			entries.add(e);
+			writing = null;
+		}
+	}
+
+	private void writeCentralHeader(Entry e) throws IOException {
+		ByteBuffer buffer = newBuffer(46 + e.nameBytes.length);
+		buffer.putInt(0x02014b50);
+		buffer.putShort((short) 20); // version made by
+		buffer.putShort((short) 20); // version needed to extract
+		buffer.putShort((short) e.flags);
+		buffer.putShort((short) DEFLATED);
+		buffer.putInt(e.dosTime);
+		buffer.putInt((int) e.crc.getValue());
+		buffer.putInt((int) e.compressedSize);
+		buffer.putInt((int) e.size);
+		buffer.putShort((short) e.nameBytes.length);
+		buffer.putShort((short) 0); // extra field length
+		buffer.putShort((short) 0); // comment length
+		buffer.putShort((short) 0); // disk number
+		buffer.putShort((short) 0); // internal attributes
+		buffer.putInt(0); // external attributes
+		buffer.putInt((int) e.offset);
+		buffer.put(e.nameBytes);
+		writeBuffer(buffer);
+	}
+
+	private static ByteBuffer newBuffer(int size) {
+		return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private void writeBuffer(ByteBuffer buffer) throws IOException {
+		target.write(buffer.array(), 0, buffer.position());
+		written += buffer.position();
+	}
+
+	private static void checkZip32(long value) throws ZipException {
+		if (value > 0xffffffffL) {
+			throw new ZipException("ZIP64 is not supported: size or offset exceeds 4GB");
+		}
+	}
+
+	private static byte[] toBytes(String s) {
+		try {
+			return s.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Compress data with a raw deflater.
+	 *
+	 * @param deflater the deflater, never <code>null</code>
+	 * @param data     the data
+	 * @param length   the count of bytes of data
+	 * @param last     <code>true</code> to end the deflate stream
+	 * @param sync     <code>true</code> to end the output on a byte boundary
+	 *                 so more compressed data can follow it
+	 * @return the compressed data
+	 */
+	private static byte[] deflate(Deflater deflater, byte[] data, int length, boolean last, boolean sync) {
+		deflater.setInput(data, 0, length);
+		if (last) {
+			deflater.finish();
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream(length / 2 + 64);
+		byte[] buffer = new byte[8192];
+		if (last) {
+			while (!deflater.finished()) {
+				out.write(buffer, 0, deflater.deflate(buffer));
+			}
+		} else if (sync) {
+			int n;
+			do {
+				n = syncDeflate(deflater, buffer);
+				out.write(buffer, 0, n);
+			} while (n == buffer.length);
+		} else {
+			while (!deflater.needsInput()) {
+				out.write(buffer, 0, deflater.deflate(buffer));
+			}
+		}
+		return out.toByteArray();
+	}
+
+	private static int syncDeflate(Deflater deflater, byte[] buffer) {
+		try {
+			return (Integer) syncDeflate.invoke(deflater, buffer, 0, buffer.length, SYNC_FLUSH);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException(e);
+		} catch (InvocationTargetException e) {
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private static Method findSyncDeflate() {
+		try {
+			return Deflater.class.getMethod("deflate", byte[].class, int.class, int.class, int.class);
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Convert a time to the MS-DOS date (high 16 bits) and time (low 16 bits)
+	 */
+	private static int toDosTime(long time) {
+		Calendar c = Calendar.getInstance();
+		c.setTimeInMillis(time);
+		int year = c.get(Calendar.YEAR);
+		if (year < 1980) {
+			return (1 << 21) | (1 << 16);
+		}
+		return (year - 1980) << 25 | (c.get(Calendar.MONTH) + 1) << 21
+				| c.get(Calendar.DAY_OF_MONTH) << 16 | c.get(Calendar.HOUR_OF_DAY) << 11
+				| c.get(Calendar.MINUTE) << 5 | c.get(Calendar.SECOND) >> 1;
+	}
+
+	private static final class Entry {
+		final String name;
+		final byte[] nameBytes;
+		final int flags;
+		final int dosTime;
+		final CRC32 crc = new CRC32();
+		long size;
+		long compressedSize;
+		long offset = -1;
+
+		Entry(String name, long time) {
+			this.name = name;
+			this.nameBytes = toBytes(name);
+			// data descriptor, and UTF-8 names if not plain ASCII
+			this.flags = 0x08 | (nameBytes.length != name.length() ? 0x800 : 0);
+			this.dosTime = toDosTime(time);
+			if (nameBytes.length > 0xffff) {
+				throw new IllegalArgumentException("entry name too long");
+			}
+		}
+	}
+
+	/**
+	 * Compresses one chunk with a new deflater primed with the end of the
+	 * previous chunk.
+	 */
+	private static final class DeflateTask implements Callable<byte[]> {
+		private final int level;
+		private final byte[] data;
+		private final int length;
+		private final byte[] dictionary;
+		private final int dictionaryLength;
+		private final boolean last;
+
+		DeflateTask(int level, byte[] data, int length, byte[] dictionary, int dictionaryLength, boolean last) {
+			this.level = level;
+			this.data = data;
+			this.length = length;
+			this.dictionary = dictionary;
+			this.dictionaryLength = dictionaryLength;
+			this.last = last;
+		}
+
+		public byte[] call() {
+			Deflater deflater = new Deflater(level, true);
+			try {
+				if (dictionary != null) {
+					int n = Math.min(DICTIONARY_SIZE, dictionaryLength);
+					deflater.setDictionary(dictionary, dictionaryLength - n, n);
+				}
+				return deflate(deflater, data, length, last, true);
+			} finally {
+				deflater.end();
+			}
+		}
+	}
+
+	/**
+	 * Creates daemon threads for compressing chunks.
+	 */
+	private static class DeflaterThreadFactory implements ThreadFactory {
+
+		private static final AtomicInteger poolNumber = new AtomicInteger();
+		private final AtomicInteger threadNumber = new AtomicInteger();
+		private final String prefix = "ParallelZip-deflate-" + poolNumber.incrementAndGet() + "-";
+
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, prefix + threadNumber.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
@@ -76,7 +76,11 @@ public class SimpleObjectInputStream implements Closeable {
 	private static final short INSTANCE = 2;
 	private static final short REF = 3;
 	
-	private final DataInputStream stream;
+	/**
+	 * The underlying data stream, subclasses that change how values are
+	 * encoded read from it directly.
+	 */
+	protected final DataInputStream stream;
 	
 	private final Map<Integer, Class<IDataSerializable>> classMap = new HashMap<Integer, Class<IDataSerializable>>();
 	
@@ -250,11 +254,11 @@ public class SimpleObjectInputStream implements Closeable {
 	 */
 	@Nullable
 	public Enum readEnum(@NonNull Class<? extends Enum> enumClass) throws IOException {
-		boolean isnull = stream.readBoolean();
+		boolean isnull = readBoolean();
 		if (isnull) {
 			return null;
 		} else {
-			int ord = stream.readInt();
+			int ord = readInt();
 			Enum[] enumValues = enumClass.getEnumConstants();
 			return enumValues != null && ord >= 0 && ord < enumValues.length
 					? enumValues[ord] : null;
@@ -267,30 +271,30 @@ public class SimpleObjectInputStream implements Closeable {
 	 */
 	@Nullable
 	public Object readScalar() throws IOException {
-		int type = stream.readShort();
+		int type = readShort();
 		switch (type) {
 		case NULL:
 			return null;
 		case OBJECT_NULL:
 			return ObjectUtils.NULL;
 		case SHORT:
-			return stream.readShort();
+			return readShort();
 		case INT:
-			return stream.readInt();
+			return readInt();
 		case LONG:
-			return stream.readLong();
+			return readLong();
 		case DOUBLE:
-			return stream.readDouble();
+			return readDouble();
 		case FLOAT:
-			return stream.readFloat();
+			return readFloat();
 		case STRING:
 			return readString();
 		case BOOL:
-			return stream.readBoolean();
+			return readBoolean();
 		case DATE:
-			return new Date(stream.readLong());
+			return new Date(readLong());
 		case COLOR:
-			int value = stream.readInt();
+			int value = readInt();
 			return new Color(value, true);
 		default:
 			throw new UnsupportedOperationException(
@@ -356,6 +360,14 @@ public class SimpleObjectInputStream implements Closeable {
 		return stream.readDouble();
 	}
 
+	/**
+	 * @return the next float value
+	 * @throws IOException if an I/O error occurs
+	 */
+	public float readFloat() throws IOException {
+		return stream.readFloat();
+	}
+
 	/**
 	 * @return the next short value
 	 * @throws IOException if an I/O error occurs
@@ -68,7 +68,11 @@ public class SimpleObjectOutputStream implements Closeable {
 	
 	private static final Logger log = LoggerFactory.getLogger(SimpleObjectOutputStream.class);
 	
-	private final DataOutputStream stream;
+	/**
+	 * The underlying data stream, subclasses that change how values are
+	 * encoded write through it directly.
+	 */
+	protected final DataOutputStream stream;
 	
 	private IObjectCacher cacher;
 	
@@ -208,10 +212,10 @@ public class SimpleObjectOutputStream implements Closeable {
 	 */
 	public void writeEnum(Enum v)  throws IOException {
 		if (v == null) {
-			stream.writeBoolean(true);
+			writeBoolean(true);
 		} else {
-			stream.writeBoolean(false);
-			stream.writeInt(v.ordinal());
+			writeBoolean(false);
+			writeInt(v.ordinal());
 		}
 	}
 	
@@ -223,46 +227,49 @@ public class SimpleObjectOutputStream implements Closeable {
 	 */
 	public void writeScalar(Object value) throws IOException {
 		if (value == null) {
-			stream.writeShort(SimpleObjectInputStream.NULL);
+			writeType(SimpleObjectInputStream.NULL);
 		} else if (ObjectUtils.NULL.equals(value)) {
-			stream.writeShort(SimpleObjectInputStream.OBJECT_NULL);
+			writeType(SimpleObjectInputStream.OBJECT_NULL);
 		} else if (value instanceof Short) {
-			stream.writeShort(SimpleObjectInputStream.SHORT);
-			stream.writeShort(((Short)value).shortValue()); 
+			writeType(SimpleObjectInputStream.SHORT);
+			writeShort(((Short)value).shortValue()); 
 		} else if (value instanceof Integer) {
-			stream.writeShort(SimpleObjectInputStream.INT);
-			stream.writeInt(((Integer)value).intValue()); 
+			writeType(SimpleObjectInputStream.INT);
+			writeInt(((Integer)value).intValue()); 
 		} else if (value instanceof Long) {
-			stream.writeShort(SimpleObjectInputStream.LONG);
-			stream.writeLong(((Long)value).longValue()); 
+			writeType(SimpleObjectInputStream.LONG);
+			writeLong(((Long)value).longValue()); 
 		} else if (value instanceof Double) {
-			stream.writeShort(SimpleObjectInputStream.DOUBLE);
-			stream.writeDouble(((Double) value).doubleValue());
+			writeType(SimpleObjectInputStream.DOUBLE);
+			writeDouble(((Double) value).doubleValue());
 		} else if (value instanceof Float) {
-			stream.writeShort(SimpleObjectInputStream.FLOAT);
-			stream.writeFloat(((Float) value).floatValue());
+			writeType(SimpleObjectInputStream.FLOAT);
+			writeFloat(((Float) value).floatValue());
 		} else if (value instanceof String) {
-			stream.writeShort(SimpleObjectInputStream.STRING);
+			writeType(SimpleObjectInputStream.STRING);
 			writeString((String) value);
 		} else if (value instanceof Boolean) {
-			stream.writeShort(SimpleObjectInputStream.BOOL);
+			writeType(SimpleObjectInputStream.BOOL);
 			writeBoolean((Boolean) value);
 		} else if (value instanceof Date) {
-			stream.writeShort(SimpleObjectInputStream.DATE);
+			writeType(SimpleObjectInputStream.DATE);
 			writeLong(((Date) value).getTime());
         } else if (value instanceof Color) {
-            stream.writeShort(SimpleObjectInputStream.COLOR);
-            stream.writeInt(((Color)value).getRGB());
+            writeType(SimpleObjectInputStream.COLOR);
+            writeInt(((Color)value).getRGB());
 		} else if (value instanceof java.awt.Color) {
-			stream.writeShort(SimpleObjectInputStream.COLOR);
-			stream.writeInt(((java.awt.Color)value).getRGB());
+			writeType(SimpleObjectInputStream.COLOR);
+			writeInt(((java.awt.Color)value).getRGB());
 		} else {
 			log.warn("Failed to serialize unsupported type: " + value.getClass().getName());
 			//throw new UnsupportedOperationException("Found unsupported type " + value.getClass());
-			stream.writeShort(SimpleObjectInputStream.NULL);
+			writeType(SimpleObjectInputStream.NULL);
 		}		
 	}
-	
+
+	private void writeType(int type) throws IOException {
+		writeShort((short) type);
+	}
 
 	/**
 	 * Helper method that aids in writing a string to the data stream
@@ -324,6 +331,15 @@ public class SimpleObjectOutputStream implements Closeable {
 		stream.writeDouble(dval);
 	}
 
+	/**
+	 * Write a float value
+	 * @param fval
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void writeFloat(float fval) throws IOException {
+		stream.writeFloat(fval);
+	}
+
 	/**
 	 * Write a short value
 	 * @param sval
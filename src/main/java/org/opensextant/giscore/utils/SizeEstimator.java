@@ -0,0 +1,77 @@
+/****************************************************************************************
+ *  SizeEstimator.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantibility and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.utils;
+
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * Rough heap size estimates for the objects held in an {@link ObjectBuffer}.
+ * Sizes assume a 64-bit JVM with compressed references.
+ */
+public final class SizeEstimator {
+
+	/**
+	 * Header and typical fields of a small object
+	 */
+	public static final long OBJECT = 16;
+
+	/**
+	 * Estimate used for objects that do not implement {@link ISizeEstimable}
+	 */
+	public static final long DEFAULT = 256;
+
+	/**
+	 * Overhead of one entry of a hash map or linked hash map
+	 */
+	public static final long MAP_ENTRY = 40;
+
+	private SizeEstimator() {
+		// utility class
+	}
+
+	/**
+	 * Estimate the size of a value.
+	 * @param value the value, may be <code>null</code>
+	 * @return the estimated size in bytes, zero for <code>null</code>
+	 */
+	public static long estimate(Object value) {
+		if (value == null) {
+			return 0;
+		} else if (value instanceof ISizeEstimable) {
+			return ((ISizeEstimable) value).estimateSize();
+		} else if (value instanceof String) {
+			return estimate((String) value);
+		} else if (value instanceof Number || value instanceof Boolean || value instanceof Date) {
+			return 24;
+		} else if (value instanceof Collection) {
+			long size = OBJECT + 24;
+			for (Object o : (Collection<?>) value) {
+				size += 4 + estimate(o);
+			}
+			return size;
+		}
+		return DEFAULT;
+	}
+
+	/**
+	 * Estimate the size of a string.
+	 * @param str the string, may be <code>null</code>
+	 * @return the estimated size in bytes, zero for <code>null</code>
+	 */
+	public static long estimate(String str) {
+		return str == null ? 0 : 40 + 2L * str.length();
+	}
+}
@@ -0,0 +1,618 @@
+/****************************************************************************************
+ *  SpillingBufferPool.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantibility and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.utils;
+
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opensextant.giscore.GISFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A pool of {@link ObjectBuffer}s that share a single in-memory budget. When
+ * the objects held in memory by all the buffers of the pool reach the budget,
+ * the pending objects of the largest buffer are handed to a background writer
+ * thread which appends them as one segment to a single spill file. Each buffer
+ * reads back its segments in order followed by the objects still in memory.
+ * <p>
+ * Every segment is written by its own stream, created by the codec of the
+ * pool, so segments can be read independently of each other. The caller only blocks
+ * when the writer falls behind by more than the budget, so at most twice the
+ * budget is held in memory.
+ * <p>
+ * The buffers of a pool are meant to be filled by a single thread and read
+ * once writing is complete. The spill file is deleted when the pool is closed.
+ * <p>
+ * The budget of a pool is a count of objects, not bytes, and is separate
+ * from any {@link MemoryBudget}. A <code>MemoryBudget</code> evicts a buffer
+ * to its own file on the writing thread, while a pool must track the objects
+ * queued for its writer thread until they are written, so the buffers of a
+ * pool are never charged to a <code>MemoryBudget</code> and are not included
+ * in its {@link MemoryBudget#getUsed() used} bytes. Pooled buffers can
+ * therefore hold memory beyond the process budget: when both
+ * {@link GISFactory#sorterBufferSize} and {@link GISFactory#inMemoryBufferBytes}
+ * are set, the sorted features are limited by the pool and all other buffers
+ * by the process budget, so up to twice the pool budget in objects is held
+ * in memory on top of the process budget.
+ * <p>
+ * The spill file is not spatially indexed. Segments hold the objects of one
+ * buffer in the order they were written and are only read back in that
+ * order, so the bounds of the sorted features are tracked by
+ * {@link org.opensextant.giscore.output.FeatureSorter} for each key rather
+ * than for each segment.
+ */
+public class SpillingBufferPool implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(SpillingBufferPool.class);
+
+	/**
+	 * The maximum count of objects held in memory by all buffers before
+	 * spilling to the file.
+	 */
+	private final long maxElements;
+
+	/**
+	 * Creates the stream of each segment.
+	 */
+	private final IObjectStreamCodec codec;
+
+	/**
+	 * The open buffers of this pool.
+	 */
+	private final List<PooledBuffer> buffers = new ArrayList<PooledBuffer>();
+
+	/**
+	 * Count of objects held in memory by the buffers, not including the
+	 * objects queued for the writer.
+	 */
+	private long residentCount;
+
+	/**
+	 * Count of objects handed to the writer that are not yet written.
+	 */
+	private long queuedCount;
+
+	/**
+	 * The spill file and its channel, created with the first spill.
+	 */
+	private File spillFile;
+	private RandomAccessFile spillAccess;
+	private FileChannel channel;
+
+	/**
+	 * The output stream appending to the spill file, only used by the writer thread.
+	 */
+	private OutputStream spillOutput;
+
+	/**
+	 * The background writer, created with the first spill.
+	 */
+	private ExecutorService writer;
+
+	/**
+	 * First error of the writer thread, reported to the caller on its next call.
+	 */
+	private IOException writeError;
+
+	private boolean closed;
+
+	// Spill metrics
+	private int segmentCount;
+	private long spilledObjectCount;
+	private long spilledByteCount;
+	private long writeNanos;
+	private long stallNanos;
+	private long peakCount;
+
+	/**
+	 * Ctor
+	 * @param size the maximum count of objects held in memory by all the
+	 * buffers of this pool, must be a positive integer.
+	 */
+	public SpillingBufferPool(long size) {
+		this(size, GISFactory.objectStreamCodec.get());
+	}
+
+	/**
+	 * Ctor
+	 * @param size the maximum count of objects held in memory by all the
+	 * buffers of this pool, must be a positive integer.
+	 * @param codec the codec of the spill file, never <code>null</code>
+	 */
+	public SpillingBufferPool(long size, IObjectStreamCodec codec) {
+		if (size < 1) {
+			throw new IllegalArgumentException("size must be positive");
+		}
+		if (codec == null) {
+			throw new IllegalArgumentException("codec should never be null");
+		}
+		maxElements = size;
+		this.codec = codec;
+	}
+
+	/**
+	 * Create a new buffer that shares the budget of this pool. Simple fields
+	 * are cached within each spilled segment as for
+	 * {@link FieldCachingObjectBuffer}.
+	 * @return the buffer, never <code>null</code>
+	 * @throws IllegalStateException if the pool is closed
+	 */
+	public synchronized ObjectBuffer createBuffer() {
+		if (closed) {
+			throw new IllegalStateException("pool is closed");
+		}
+		PooledBuffer buffer = new PooledBuffer();
+		buffers.add(buffer);
+		return buffer;
+	}
+
+	/**
+	 * Wait until the writer has written all queued objects to the spill file.
+	 * @throws IOException if an I/O error occurred writing the spill file
+	 */
+	public synchronized void flush() throws IOException {
+		try {
+			while (queuedCount > 0 && writeError == null) {
+				wait();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted waiting for spill writer");
+		}
+		checkError();
+	}
+
+	/**
+	 * Close the pool, stop the writer and delete the spill file. The buffers
+	 * of the pool cannot be used afterwards.
+	 * @throws IOException if an I/O error occurs
+	 */
+	public void close() throws IOException {
+		ExecutorService executor;
+		synchronized (this) {
+			if (closed) return;
+			closed = true;
+			executor = writer;
+			writer = null;
+			for (PooledBuffer buffer : buffers) {
+				buffer.release();
+			}
+			buffers.clear();
+			residentCount = 0;
+			notifyAll();
+		}
+		try {
+			if (executor != null) {
+				executor.shutdownNow();
+				try {
+					executor.awaitTermination(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		} finally {
+			synchronized (this) {
+				try {
+					if (spillAccess != null) {
+						spillAccess.close();
+					}
+				} finally {
+					spillAccess = null;
+					channel = null;
+					spillOutput = null;
+					if (spillFile != null) {
+						if (spillFile.exists() && !spillFile.delete()) {
+							spillFile.deleteOnExit();
+						}
+						spillFile = null;
+					}
+				}
+			}
+		}
+		if (log.isDebugEnabled() && segmentCount != 0) {
+			log.debug(toString());
+		}
+	}
+
+	/**
+	 * @return the count of segments written to the spill file
+	 */
+	public synchronized int getSegmentCount() {
+		return segmentCount;
+	}
+
+	/**
+	 * @return the count of objects written to the spill file
+	 */
+	public synchronized long getSpilledObjectCount() {
+		return spilledObjectCount;
+	}
+
+	/**
+	 * @return the size of the spill file in bytes
+	 */
+	public synchronized long getSpilledByteCount() {
+		return spilledByteCount;
+	}
+
+	/**
+	 * @return time spent by the writer thread serializing and writing
+	 * segments, in milliseconds
+	 */
+	public synchronized long getWriteTime() {
+		return TimeUnit.NANOSECONDS.toMillis(writeNanos);
+	}
+
+	/**
+	 * @return time the caller spent waiting for the writer thread to catch
+	 * up, in milliseconds
+	 */
+	public synchronized long getStallTime() {
+		return TimeUnit.NANOSECONDS.toMillis(stallNanos);
+	}
+
+	/**
+	 * @return the highest count of objects held in memory at any one time,
+	 * including objects queued for the writer
+	 */
+	public synchronized long getPeakCount() {
+		return peakCount;
+	}
+
+	/**
+	 * @return the count of objects currently held in memory, including
+	 * objects queued for the writer
+	 */
+	public synchronized long getMemoryCount() {
+		return residentCount + queuedCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "SpillingBufferPool[budget=" + maxElements + ", buffers=" + buffers.size()
+				+ ", segments=" + segmentCount + ", spilledObjects=" + spilledObjectCount
+				+ ", spilledBytes=" + spilledByteCount + ", writeTime=" + getWriteTime()
+				+ "ms, stallTime=" + getStallTime() + "ms, peak=" + peakCount + "]";
+	}
+
+	private void checkError() throws IOException {
+		if (writeError != null) {
+			IOException e = new IOException("Failed to write spill file");
+			e.initCause(writeError);
+			throw e;
+		}
+	}
+
+	/**
+	 * Account for an object added to the buffer, spilling the largest buffer
+	 * when the budget is reached.
+	 */
+	private synchronized void added(PooledBuffer buffer) throws IOException {
+		if (closed) {
+			throw new IllegalStateException("pool is closed");
+		}
+		checkError();
+		residentCount++;
+		if (residentCount + queuedCount > peakCount) {
+			peakCount = residentCount + queuedCount;
+		}
+		if (residentCount < maxElements) {
+			return;
+		}
+		PooledBuffer victim = buffer;
+		for (PooledBuffer b : buffers) {
+			if (b.pending.size() > victim.pending.size()) {
+				victim = b;
+			}
+		}
+		spill(victim);
+		if (queuedCount > maxElements) {
+			long start = System.nanoTime();
+			try {
+				while (queuedCount > maxElements && writeError == null && !closed) {
+					wait();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("interrupted waiting for spill writer");
+			} finally {
+				stallNanos += System.nanoTime() - start;
+			}
+			checkError();
+		}
+	}
+
+	/**
+	 * Hand the pending objects of the buffer to the writer as a new segment.
+	 */
+	private void spill(PooledBuffer buffer) throws IOException {
+		if (writer == null) {
+			spillFile = File.createTempFile("obj", ".spill");
+			spillAccess = new RandomAccessFile(spillFile, "rw");
+			channel = spillAccess.getChannel();
+			spillOutput = new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+			writer = Executors.newSingleThreadExecutor(new WriterThreadFactory());
+		}
+		final Segment segment = new Segment(buffer.pending);
+		buffer.pending = new ArrayList<IDataSerializable>();
+		buffer.segments.add(segment);
+		residentCount -= segment.count;
+		queuedCount += segment.count;
+		try {
+			writer.execute(new Runnable() {
+				public void run() {
+					write(segment);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			queuedCount -= segment.count;
+			throw new IllegalStateException("pool is closed", e);
+		}
+	}
+
+	/**
+	 * Serialize a segment to the end of the spill file. Called on the writer thread.
+	 */
+	private void write(Segment segment) {
+		long start = System.nanoTime();
+		long offset = 0;
+		long length = 0;
+		IOException error = null;
+		try {
+			OutputStream out;
+			synchronized (this) {
+				if (closed) return;
+				out = spillOutput;
+				offset = spilledByteCount;
+			}
+			SimpleObjectOutputStream stream = codec.createOutputStream(out, new SimpleFieldCacher());
+			for (IDataSerializable object : segment.objects) {
+				stream.writeObject(object);
+			}
+			// flush but do not close, the channel stays open for the next segment
+			stream.flush();
+			length = channel.position() - offset;
+		} catch (IOException e) {
+			error = e;
+		} catch (RuntimeException e) {
+			error = new IOException(e.toString());
+			error.initCause(e);
+		}
+		synchronized (this) {
+			if (closed) return;
+			if (error != null) {
+				if (writeError == null) {
+					log.error("Failed to write spill file " + spillFile, error);
+					writeError = error;
+				}
+			} else {
+				segment.written(offset, length);
+				segmentCount++;
+				spilledObjectCount += segment.count;
+				spilledByteCount += length;
+			}
+			queuedCount -= segment.count;
+			writeNanos += System.nanoTime() - start;
+			notifyAll();
+		}
+	}
+
+	/**
+	 * A range of the spill file holding a run of objects of one buffer.
+	 */
+	private static final class Segment {
+		final int count;
+		/**
+		 * The objects to write, cleared once the segment is written
+		 */
+		List<IDataSerializable> objects;
+		long offset;
+		long length;
+
+		Segment(List<IDataSerializable> objects) {
+			this.objects = objects;
+			count = objects.size();
+		}
+
+		void written(long offset, long length) {
+			this.offset = offset;
+			this.length = length;
+			objects = null;
+		}
+	}
+
+	/**
+	 * Object buffer whose memory is accounted by the pool.
+	 */
+	private final class PooledBuffer extends ObjectBuffer {
+		/**
+		 * Spilled segments in the order written
+		 */
+		final List<Segment> segments = new ArrayList<Segment>();
+		/**
+		 * Objects held in memory that follow the spilled segments
+		 */
+		List<IDataSerializable> pending = new ArrayList<IDataSerializable>();
+		long count;
+		private long readIndex;
+		private int readSegment;
+		private int segmentRemaining;
+		private int pendingIndex;
+		private SimpleObjectInputStream inputStream;
+
+		PooledBuffer() {
+			// base class storage is never used since all methods are overridden
+			super(1);
+			super.setCodec(codec);
+		}
+
+		@Override
+		public void setCodec(IObjectStreamCodec codec) {
+			throw new UnsupportedOperationException("the codec is set on the pool");
+		}
+
+		@Override
+		public void write(IDataSerializable object) throws IOException {
+			if (object == null) {
+				throw new IllegalArgumentException("object should never be null");
+			}
+			synchronized (SpillingBufferPool.this) {
+				pending.add(object);
+				count++;
+				added(this);
+			}
+		}
+
+		@Override
+		@Nullable
+		public IDataSerializable read() throws ClassNotFoundException, IOException, InstantiationException, IllegalAccessException {
+			if (readIndex >= count) {
+				return null;
+			}
+			if (readIndex == 0 && !segments.isEmpty()) {
+				flush();
+			}
+			readIndex++;
+			if (readSegment < segments.size()) {
+				if (inputStream == null) {
+					Segment segment = segments.get(readSegment);
+					inputStream = codec.createInputStream(new BufferedInputStream(
+							new SegmentInputStream(channel, segment.offset, segment.length)));
+					segmentRemaining = segment.count;
+				}
+				IDataSerializable object = (IDataSerializable) inputStream.readObject();
+				if (--segmentRemaining == 0) {
+					inputStream.close();
+					inputStream = null;
+					readSegment++;
+				}
+				return object;
+			}
+			return pending.get(pendingIndex++);
+		}
+
+		@Override
+		public long count() {
+			return count;
+		}
+
+		@Override
+		public void resetReadIndex() {
+			if (inputStream != null) {
+				inputStream.close();
+				inputStream = null;
+			}
+			readIndex = 0;
+			readSegment = 0;
+			pendingIndex = 0;
+		}
+
+		/**
+		 * Wait for the spilled data to be written, the buffer may still be read.
+		 */
+		@Override
+		public void closeOutputStream() throws IOException {
+			flush();
+		}
+
+		/**
+		 * Dispose of the buffered data and release its share of the budget.
+		 * Spilled segments are reclaimed when the pool is closed.
+		 */
+		@Override
+		public void close() throws IOException {
+			synchronized (SpillingBufferPool.this) {
+				if (buffers.remove(this)) {
+					residentCount -= pending.size();
+				}
+				release();
+			}
+		}
+
+		void release() {
+			resetReadIndex();
+			pending = new ArrayList<IDataSerializable>();
+			segments.clear();
+			count = 0;
+		}
+	}
+
+	/**
+	 * Reads a range of the spill file with positional reads so several
+	 * segments can be read at the same time.
+	 */
+	private static final class SegmentInputStream extends InputStream {
+		private final FileChannel channel;
+		private long position;
+		private final long end;
+
+		SegmentInputStream(FileChannel channel, long offset, long length) {
+			this.channel = channel;
+			position = offset;
+			end = offset + length;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (position >= end) return -1;
+			if (len == 0) return 0;
+			len = (int) Math.min(len, end - position);
+			int n = channel.read(ByteBuffer.wrap(b, off, len), position);
+			if (n > 0) position += n;
+			return n;
+		}
+	}
+
+	/**
+	 * Creates the daemon writer thread.
+	 */
+	private static class WriterThreadFactory implements ThreadFactory {
+
+		private static final AtomicInteger poolNumber = new AtomicInteger();
+
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "SpillingBufferPool-writer-" + poolNumber.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
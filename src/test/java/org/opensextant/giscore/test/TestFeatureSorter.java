@@ -34,6 +34,7 @@ import org.opensextant.giscore.output.FeatureKey;
 import org.opensextant.giscore.output.FeatureSorter;
 import org.opensextant.giscore.utils.IDataSerializable;
 import org.opensextant.giscore.utils.ObjectBuffer;
+import org.opensextant.giscore.utils.SpillingBufferPool;
 
 /**
  * @author DRAND
@@ -150,4 +151,46 @@ public class TestFeatureSorter extends TestGISBase {
 		Assert.assertEquals(60, totalcount);
 		sorter.cleanup(); // Delete temp files
 	}
+
+	@Test
+	public void testSharedBuffer() throws Exception {
+		// many keys sharing a budget smaller than the feature count
+		FeatureSorter sorter = new FeatureSorter(false, 25);
+		try {
+			String names[] = {"hole", "distance"};
+			Map<String, Integer> counts = new HashMap<String, Integer>();
+			for(int i = 0; i < 400; i++) {
+				Object values[] = new Object[2];
+				values[0] = random.nextInt(18) + 1;
+				values[1] = random.nextInt(40) * 10;
+				Feature f = createFeature(i % 3 == 0 ? Point.class : Line.class, names, values);
+				FeatureKey key = sorter.add(f, "path" + (i % 20));
+				String k = key.getPath() + key.getGeoclass();
+				Integer count = counts.get(k);
+				counts.put(k, count == null ? 1 : count + 1);
+			}
+			Assert.assertEquals(counts.size(), sorter.keys().size());
+			sorter.close();
+			SpillingBufferPool pool = sorter.getBufferPool();
+			Assert.assertNotNull(pool);
+			Assert.assertTrue(pool.getSegmentCount() > 0);
+			Assert.assertTrue(pool.getPeakCount() <= 50);
+			int read = 0;
+			for(FeatureKey key : sorter.keys()) {
+				ObjectBuffer buf = sorter.getBuffer(key);
+				int n = 0;
+				IDataSerializable ser;
+				while((ser = buf.read()) != null) {
+					Assert.assertEquals(key.getGeoclass(), ((Feature) ser).getGeometry().getClass());
+					n++;
+				}
+				Assert.assertEquals(counts.get(key.getPath() + key.getGeoclass()).intValue(), n);
+				read += n;
+			}
+			Assert.assertEquals(400, read);
+		} finally {
+			sorter.cleanup();
+		}
+		Assert.assertTrue(sorter.keys().isEmpty());
+	}
 }
@@ -0,0 +1,95 @@
+/****************************************************************************************
+ *  TestNamespace.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.opensextant.giscore.Namespace;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests interning of namespaces.
+ */
+public class TestNamespace {
+
+	@Test
+	public void testIntern() {
+		Namespace gx = Namespace.getNamespace("gx", "http://www.google.com/kml/ext/2.2");
+		assertSame(gx, Namespace.getNamespace("gx", new String("http://www.google.com/kml/ext/2.2")));
+		assertEquals("gx", gx.getPrefix());
+		// same URI with another prefix is equal but a different instance
+		Namespace other = Namespace.getNamespace("gx22", gx.getURI());
+		assertEquals(gx, other);
+		assertEquals("gx22", other.getPrefix());
+		assertSame(Namespace.NO_NAMESPACE, Namespace.getNamespace(null, " "));
+		assertSame(Namespace.NO_NAMESPACE, Namespace.getNamespace(" ", null));
+		assertSame(Namespace.XML_NAMESPACE, Namespace.getNamespace("xml", Namespace.XML_NAMESPACE.getURI()));
+		assertSame(Namespace.getNamespace("urn:test"), Namespace.getNamespace("\t", "urn:test"));
+		try {
+			Namespace.getNamespace("xml", "urn:test");
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			Namespace.getNamespace("test", " ");
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testConcurrentIntern() throws Exception {
+		final int threads = 8;
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			Future<?>[] results = new Future<?>[threads];
+			for (int t = 0; t < threads; t++) {
+				results[t] = executor.submit(new Callable<Namespace[]>() {
+					public Namespace[] call() throws Exception {
+						start.await();
+						Namespace[] found = new Namespace[500];
+						for (int i = 0; i < found.length; i++) {
+							// new strings so instances are only shared through interning
+							found[i] = Namespace.getNamespace(new String("p" + i), "urn:concurrent:" + i);
+						}
+						return found;
+					}
+				});
+			}
+			start.countDown();
+			Namespace[] first = (Namespace[]) results[0].get();
+			for (int t = 1; t < threads; t++) {
+				Namespace[] found = (Namespace[]) results[t].get();
+				for (int i = 0; i < found.length; i++) {
+					assertSame(first[i], found[i]);
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
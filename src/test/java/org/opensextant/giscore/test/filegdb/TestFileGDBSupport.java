@@ -32,6 +32,12 @@ import java.util.zip.ZipOutputStream;
 import javax.xml.stream.XMLStreamException;
 
 import org.junit.Test;
+import org.opensextant.geodesy.Angle;
+import org.opensextant.geodesy.Geodetic2DBounds;
+import org.opensextant.geodesy.Geodetic2DPoint;
+import org.opensextant.geodesy.Latitude;
+import org.opensextant.geodesy.Longitude;
+import org.opensextant.giscore.GISFactory;
 import org.opensextant.giscore.events.ContainerEnd;
 import org.opensextant.giscore.events.ContainerStart;
 import org.opensextant.giscore.events.Feature;
@@ -49,6 +55,7 @@ import org.opensextant.giscore.input.gdb.FileGdbInputStream;
 import org.opensextant.giscore.output.IGISOutputStream;
 import org.opensextant.giscore.output.gdb.FileGdbOutputStream;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 public class TestFileGDBSupport {
@@ -242,6 +249,113 @@ public class TestFileGDBSupport {
 		os.close();
 	}
 
+	@Test
+	public void testWriteBatch() throws IOException, URISyntaxException {
+		File temp = new File(System.getProperty("java.io.tmpdir"));
+		File db = new File(temp, "ftest2.gdb");
+		if (db.exists()) {
+			for(File f : db.listFiles()) {
+				f.delete();
+			}
+			db.delete();
+		}
+		FileOutputStream fos = new FileOutputStream(new File(temp, "ftest" + System.currentTimeMillis() + ".zip"));
+		ZipOutputStream zos = new ZipOutputStream(fos);
+		IGISOutputStream os = new FileGdbOutputStream(zos, new Object[]{db});
+		Schema schema = new Schema();
+		SimpleField field = new SimpleField("speedLimit", SimpleField.Type.DOUBLE);
+		schema.put(field);
+		schema.setId(new URI("urn:org:mitre:113"));
+
+		List<IGISObject> objects = new ArrayList<IGISObject>();
+		objects.add(schema);
+		// two tables so the pending rows are added when the table changes
+		for(String name : new String[] { "first", "second" }) {
+			ContainerStart cs = new ContainerStart("Folder");
+			cs.setName(name);
+			objects.add(cs);
+			for(int i = 0; i < 1500; i++) {
+				Feature f = new Feature();
+				f.setSchema(schema.getId());
+				f.setGeometry(new Point(i / 100.0, i / 200.0));
+				f.putData(field, 50.0 + i);
+				objects.add(f);
+			}
+			objects.add(new ContainerEnd());
+		}
+		GISFactory.writeBatch(os, objects);
+		os.close();
+
+		IGISInputStream is = new FileGdbInputStream(db, null);
+		int featureCount = 0;
+		IGISObject ob;
+		while ((ob = is.read()) != null) {
+			if (ob instanceof Feature) featureCount++;
+		}
+		is.close();
+		assertEquals(3000, featureCount);
+	}
+
+	@Test
+	public void testSearch() throws IOException, URISyntaxException {
+		File temp = new File(System.getProperty("java.io.tmpdir"));
+		File db = new File(temp, "ftest3.gdb");
+		if (db.exists()) {
+			for(File f : db.listFiles()) {
+				f.delete();
+			}
+			db.delete();
+		}
+		FileOutputStream fos = new FileOutputStream(new File(temp, "ftest" + System.currentTimeMillis() + ".zip"));
+		ZipOutputStream zos = new ZipOutputStream(fos);
+		IGISOutputStream os = new FileGdbOutputStream(zos, new Object[]{db});
+		Schema schema = new Schema();
+		SimpleField field = new SimpleField("speedLimit", SimpleField.Type.DOUBLE);
+		schema.put(field);
+		schema.setId(new URI("urn:org:mitre:114"));
+		os.write(schema);
+		ContainerStart cs = new ContainerStart("Folder");
+		cs.setName("points");
+		os.write(cs);
+		for(int i = 0; i < 1000; i++) {
+			Feature f = new Feature();
+			f.setSchema(schema.getId());
+			f.setGeometry(new Point(i / 100.0, i / 50.0));
+			f.putData(field, 50.0 + i);
+			os.write(f);
+		}
+		os.write(new ContainerEnd());
+		os.close();
+
+		// longitudes 5 to 10 are features 250 to 500
+		Geodetic2DBounds bounds = new Geodetic2DBounds(
+				new Geodetic2DPoint(new Longitude(5.0, Angle.DEGREES), new Latitude(0.0, Angle.DEGREES)),
+				new Geodetic2DPoint(new Longitude(10.0, Angle.DEGREES), new Latitude(10.0, Angle.DEGREES)));
+		assertEquals(251, countFeatures(db, bounds, null));
+		assertEquals(350, countFeatures(db, null, "speedLimit < 400"));
+		assertEquals(100, countFeatures(db, bounds, "speedLimit < 400"));
+		assertEquals(0, countFeatures(db, bounds, "speedLimit < 0"));
+	}
+
+	private static int countFeatures(File db, Geodetic2DBounds bounds, String where) throws IOException {
+		FileGdbInputStream is = new FileGdbInputStream(db, null);
+		is.setSpatialFilter(bounds);
+		is.setWhereClause(where);
+		int featureCount = 0;
+		IGISObject ob;
+		while ((ob = is.read()) != null) {
+			if (ob instanceof Feature) {
+				Point pt = (Point) ((Feature) ob).getGeometry();
+				if (bounds != null) {
+					assertTrue(bounds.contains(pt.getCenter()));
+				}
+				featureCount++;
+			}
+		}
+		is.close();
+		return featureCount;
+	}
+
 	private static LinearRing makeRing(int count, double radius, double xoffset, double yoffset) {
 		List<Point> pts = new ArrayList<Point>(count);
 		double denominator = count;
@@ -33,11 +33,14 @@ import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.opensextant.giscore.filegdb.EnumRows;
+import org.opensextant.giscore.filegdb.GDB;
 import org.opensextant.giscore.filegdb.Geodatabase;
 import org.opensextant.giscore.filegdb.Row;
+import org.opensextant.giscore.filegdb.RowBuffer;
 import org.opensextant.giscore.filegdb.Table;
 import org.opensextant.giscore.geometry.Geometry;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -181,5 +184,83 @@ public class TestGeodatabase {
 		table.close();
 	}
 	
+	@Test
+	public void testTableReadBuffered() throws Exception {
+		Geodatabase test_db = new Geodatabase(new File("data/gdb/EH_20090331144528.gdb"));
+		if (!Table.isRowBufferSupported()) {
+			System.err.println("Native library does not support row buffers");
+			return;
+		}
+		Table table = Table.openTable(test_db, "\\EHFC_20090331144528");
+		EnumRows enumrows = table.enumerate();
+		List<Row> expected = new ArrayList<Row>();
+		while(enumrows.hasNext()) {
+			expected.add(enumrows.next());
+		}
+		// small buffer to fetch several batches
+		RowBuffer buffer = new RowBuffer(4096);
+		enumrows = table.enumerate();
+		int count = 0;
+		while(enumrows.fetch(buffer, true)) {
+			assertTrue(buffer.getRowCount() > 0);
+			while(buffer.next(table)) {
+				Row row = expected.get(count++);
+				assertEquals(row.getOID().intValue(), buffer.getOID());
+				// FileGdbInputStream reads either way, so the values must 
+				// match exactly, including their types and the OID field
+				assertEquals(row.getAttributes(), buffer.getAttributes());
+				assertEquals(row.getGeometry(), buffer.getGeometry());
+			}
+		}
+		assertEquals(expected.size(), count);
+		table.close();
+	}
+	
+	@Test
+	public void testTableAddBuffered() throws Exception {
+		if (!Table.isRowBufferSupported()) {
+			System.err.println("Native library does not support row buffers");
+			return;
+		}
+		InputStream t1 = this.getClass().getResourceAsStream("XMLsamples/Streets.xml");
+		StringWriter sw = new StringWriter();
+		IOUtils.copy(t1, sw);
+		// distinct from the table created by testTableCreate
+		String doc = sw.toString().replace("streets<", "streets_buffered<");
+		Table table = Table.createTable(test_db, "", doc);
+		RowBuffer buffer = new RowBuffer(1024);
+		int added = 0;
+		for(int i = 0; i < 100; i++) {
+			Map<String, Object> data = new HashMap<String, Object>();
+			data.put("TYPE", i % 10 == 0 ? GDB.NULL_OBJECT : "street" + i);
+			data.put("LaneCount", (short) (i % 4 + 1));
+			data.put("SpeedLimit", 25 + i);
+			Object[] geo = { (short) 3, false, 2, 1, 0, (double) i, 2.0, 2.0, 5.0 + i };
+			if (!buffer.add(table, data, geo)) {
+				added += buffer.getRowCount();
+				table.addAll(buffer);
+				assertTrue(buffer.add(table, data, geo));
+			}
+		}
+		added += buffer.getRowCount();
+		table.addAll(buffer);
+		assertEquals(100, added);
+		assertEquals(0, buffer.getRowCount());
+		
+		EnumRows enumrows = table.enumerate();
+		int count = 0;
+		while(enumrows.fetch(buffer, true)) {
+			while(buffer.next(table)) {
+				Map<String, Object> attrs = buffer.getAttributes();
+				assertEquals(count % 10 == 0 ? null : "street" + count, attrs.get("TYPE"));
+				assertEquals(Short.valueOf((short) (count % 4 + 1)), attrs.get("LaneCount"));
+				assertNotNull(buffer.getGeometry());
+				count++;
+			}
+		}
+		assertEquals(100, count);
+		table.close();
+	}
+	
 
 }
@@ -24,6 +24,7 @@ import org.opensextant.giscore.geometry.LinearRing;
 import org.opensextant.giscore.geometry.Model;
 import org.opensextant.giscore.geometry.MultiLine;
 import org.opensextant.giscore.geometry.MultiPoint;
+import org.opensextant.giscore.geometry.PackedPointList;
 import org.opensextant.giscore.geometry.Point;
 import org.opensextant.giscore.geometry.Polygon;
 import org.opensextant.giscore.test.TestGISBase;
@@ -605,4 +606,46 @@ public class TestBaseGeometry extends TestGISBase {
         assertTrue(bounds.intersects(bbox));
         assertTrue(bbox.intersects(bounds));
     }
+
+    @Test
+    public void testPackedPointList() {
+        List<Point> pts = createPoints();
+        PackedPointList packed = new PackedPointList(pts);
+        assertEquals(pts.size(), packed.size());
+        assertEquals(pts, packed);
+        for (int i = 0; i < pts.size(); i++) {
+            Geodetic2DPoint pt = pts.get(i).getCenter();
+            assertEquals(pt.getLongitudeAsDegrees(), packed.getLonDegrees(i), EPSILON);
+            assertEquals(pt.getLatitudeAsDegrees(), packed.getLatDegrees(i), EPSILON);
+        }
+        assertFalse(packed.is3D());
+
+        Line line = new Line(pts);
+        Line packedLine = new Line(packed);
+        assertEquals(line.getBoundingBox(), packedLine.getBoundingBox());
+        assertEquals(line.getPoints(), packedLine.getPoints());
+        try {
+            packedLine.getPoints().add(getRandomPoint());
+            fail("expected read-only point list");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+
+        PackedPointList packed3d = new PackedPointList();
+        packed3d.addDegrees(-119.0, 34.0, 10.0);
+        packed3d.addDegrees(-118.0, 35.0, 20.0);
+        packed3d.addDegrees(-117.0, 34.0, 30.0);
+        assertTrue(packed3d.is3D());
+        Line line3d = new Line(packed3d);
+        assertTrue(line3d.is3D());
+        assertEquals(new Point(34.0, -119.0, 10.0), line3d.getPoints().get(0));
+        assertEquals(30.0, packed3d.getElevation(2), EPSILON);
+        assertEquals(2, packed3d.copyOfRange(1, 3).size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPackedPointListBadLatitude() {
+        PackedPointList packed = new PackedPointList();
+        packed.addDegrees(0.0, 95.0);
+    }
 }
@@ -0,0 +1,292 @@
+/****************************************************************************************
+ *  TestBinaryStream.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.test.input;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.opensextant.giscore.DocumentType;
+import org.opensextant.giscore.GISFactory;
+import org.opensextant.giscore.Namespace;
+import org.opensextant.giscore.events.Comment;
+import org.opensextant.giscore.events.ContainerEnd;
+import org.opensextant.giscore.events.ContainerStart;
+import org.opensextant.giscore.events.DocumentStart;
+import org.opensextant.giscore.events.Feature;
+import org.opensextant.giscore.events.IGISObject;
+import org.opensextant.giscore.events.NetworkLinkControl;
+import org.opensextant.giscore.events.Schema;
+import org.opensextant.giscore.events.SimpleField;
+import org.opensextant.giscore.events.TaggedMap;
+import org.opensextant.giscore.geometry.Point;
+import org.opensextant.giscore.input.IGISInputStream;
+import org.opensextant.giscore.input.bin.BinaryInputStream;
+import org.opensextant.giscore.input.bin.BinaryInputStream.ContainerEntry;
+import org.opensextant.giscore.input.kml.KmlInputStream;
+import org.opensextant.giscore.output.IGISOutputStream;
+import org.opensextant.giscore.output.bin.BinaryOutputStream;
+import org.opensextant.giscore.test.TestGISBase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestBinaryStream extends TestGISBase {
+
+	/**
+	 * Read the sample KML files and check every object survives the trip
+	 * through the binary form unchanged.
+	 */
+	@Test
+	public void testKmlRoundTrip() throws Exception {
+		List<File> files = new ArrayList<File>();
+		findKml(new File("data/kml"), files);
+		assertFalse(files.isEmpty());
+		int count = 0;
+		for (File kml : files) {
+			List<IGISObject> objects = readKml(kml);
+			if (objects == null) continue;
+			File file = createTemp("binary", ".bin");
+			IGISOutputStream os = GISFactory.getOutputStream(DocumentType.Binary, new FileOutputStream(file));
+			GISFactory.writeBatch(os, objects);
+			os.close();
+
+			IGISInputStream is = GISFactory.getInputStream(DocumentType.Binary, file);
+			for (IGISObject expected : objects) {
+				assertEquals(kml.getPath(), expected, is.read());
+				count++;
+			}
+			assertNull(is.read());
+			is.close();
+		}
+		System.out.println("Checked " + count + " objects from " + files.size() + " files");
+	}
+
+	@Test
+	public void testIndex() throws Exception {
+		List<IGISObject> objects = makeObjects();
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		BinaryOutputStream os = new BinaryOutputStream(bos);
+		for (IGISObject obj : objects) {
+			os.write(obj);
+		}
+		os.close();
+		byte[] bytes = bos.toByteArray();
+
+		// a plain stream has the index at the end
+		BinaryInputStream is = new BinaryInputStream(new ByteArrayInputStream(bytes));
+		try {
+			is.getContainers();
+			fail("Expected UnsupportedOperationException");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		for (IGISObject expected : objects) {
+			assertEquals(expected, is.read());
+		}
+		assertNull(is.read());
+		assertEquals(21, is.getContainers().size());
+		is.close();
+
+		File file = createTemp("binary", ".bin");
+		FileOutputStream fos = new FileOutputStream(file);
+		fos.write(bytes);
+		fos.close();
+		is = new BinaryInputStream(file);
+		List<ContainerEntry> containers = is.getContainers();
+		assertEquals(21, containers.size());
+		assertEquals("Document", containers.get(0).getType());
+		assertEquals(0, containers.get(0).getDepth());
+		assertEquals("folder 7", containers.get(8).getName());
+		assertEquals(1, containers.get(8).getDepth());
+		Iterator<Schema> schemata = is.enumerateSchemata();
+		assertEquals(objects.get(2), schemata.next());
+		assertFalse(schemata.hasNext());
+
+		// seek backwards and forwards, past segment boundaries
+		for (int i : new int[] { 20, 3, 8, 0, 19 }) {
+			ContainerEntry entry = containers.get(i);
+			is.seek(entry);
+			ContainerStart cs = (ContainerStart) is.read();
+			assertEquals(entry.getName(), cs.getName());
+			IGISObject next = is.read();
+			if (i > 0) {
+				assertEquals(objects.get(objects.indexOf(cs) + 1), next);
+			}
+		}
+		is.close();
+	}
+
+	@Test
+	public void testCorrupt() throws Exception {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		BinaryOutputStream os = new BinaryOutputStream(bos);
+		os.write(new Comment("text"));
+		os.close();
+		byte[] bytes = bos.toByteArray();
+
+		File file = createTemp("binary", ".bin");
+		FileOutputStream fos = new FileOutputStream(file);
+		// truncated, no index
+		fos.write(bytes, 0, bytes.length - 4);
+		fos.close();
+		try {
+			new BinaryInputStream(file);
+			fail("Expected StreamCorruptedException");
+		} catch (StreamCorruptedException e) {
+			// expected
+		}
+		try {
+			new BinaryInputStream(new ByteArrayInputStream("<kml/>".getBytes("UTF-8")));
+			fail("Expected StreamCorruptedException");
+		} catch (StreamCorruptedException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Compare the time to read features back from KML and the binary form
+	 */
+	@Test
+	public void testTiming() throws Exception {
+		List<IGISObject> objects = makeObjects();
+		for (int i = 0; i < 20000; i++) {
+			objects.add(objects.get(4 + i % 16));
+		}
+		File kml = createTemp("binary", ".kml");
+		IGISOutputStream os = GISFactory.getOutputStream(DocumentType.KML, new FileOutputStream(kml));
+		GISFactory.writeBatch(os, objects);
+		os.close();
+		File bin = createTemp("binary", ".bin");
+		os = GISFactory.getOutputStream(DocumentType.Binary, new FileOutputStream(bin));
+		GISFactory.writeBatch(os, objects);
+		os.close();
+
+		long kmlTime = 0, binTime = 0;
+		int kmlCount = 0, binCount = 0;
+		for (int pass = 0; pass < 3; pass++) {
+			long start = System.nanoTime();
+			InputStream in = new FileInputStream(kml);
+			IGISInputStream is = new KmlInputStream(in);
+			while (is.read() != null) kmlCount++;
+			is.close();
+			IOUtils.closeQuietly(in);
+			kmlTime += System.nanoTime() - start;
+			start = System.nanoTime();
+			is = GISFactory.getInputStream(DocumentType.Binary, bin);
+			while (is.read() != null) binCount++;
+			is.close();
+			binTime += System.nanoTime() - start;
+		}
+		assertTrue(binCount > 0);
+		System.out.println("KML " + kml.length() + " bytes " + kmlCount + " objects in " + kmlTime / 1000000
+				+ " ms, binary " + bin.length() + " bytes " + binCount + " objects in " + binTime / 1000000 + " ms");
+	}
+
+	/**
+	 * A document with comments, a schema and folders of features with
+	 * extended data, large enough to need several segments
+	 */
+	private static List<IGISObject> makeObjects() throws Exception {
+		List<IGISObject> objects = new ArrayList<IGISObject>();
+		DocumentStart ds = new DocumentStart(DocumentType.KML);
+		ds.addNamespace(Namespace.getNamespace("gx", "http://www.google.com/kml/ext/2.2"));
+		objects.add(ds);
+		ContainerStart doc = new ContainerStart("Document");
+		doc.setName("doc");
+		objects.add(doc);
+		Schema schema = new Schema(new URI("#data"));
+		SimpleField label = new SimpleField("label");
+		SimpleField size = new SimpleField("size", SimpleField.Type.INT);
+		schema.put(label);
+		schema.put(size);
+		objects.add(schema);
+		NetworkLinkControl nlc = new NetworkLinkControl();
+		nlc.setCookie("a=1");
+		nlc.setMinRefreshPeriod(10.0);
+		nlc.setExpires(new Date(1000000000000L));
+		TaggedMap lookAt = new TaggedMap("LookAt");
+		lookAt.put("range", "1000");
+		nlc.setViewGroup(lookAt);
+		objects.add(nlc);
+		for (int f = 0; f < 20; f++) {
+			ContainerStart folder = new ContainerStart("Folder");
+			folder.setName("folder " + f);
+			objects.add(folder);
+			objects.add(new Comment("folder comment " + f));
+			for (int i = 0; i < 400; i++) {
+				Feature feature = new Feature();
+				feature.setName("feature " + f + "/" + i);
+				feature.setDescription("a longer description of the feature to fill the segments");
+				feature.setSchema(schema.getId());
+				feature.putData(label, "label " + i);
+				feature.putData(size, i);
+				feature.setGeometry(new Point(10 + f * 0.5, i * 0.01));
+				objects.add(feature);
+			}
+			objects.add(new ContainerEnd());
+		}
+		objects.add(new ContainerEnd());
+		return objects;
+	}
+
+	private static void findKml(File dir, List<File> files) {
+		File[] list = dir.listFiles();
+		if (list == null) return;
+		for (File file : list) {
+			if (file.isDirectory()) {
+				findKml(file, files);
+			} else if (file.getName().endsWith(".kml")) {
+				files.add(file);
+			}
+		}
+	}
+
+	/**
+	 * @return the objects of the file or <code>null</code> if it cannot be parsed
+	 */
+	private static List<IGISObject> readKml(File file) throws IOException {
+		InputStream in = new FileInputStream(file);
+		List<IGISObject> objects = new ArrayList<IGISObject>();
+		try {
+			KmlInputStream kis = new KmlInputStream(in);
+			IGISObject obj;
+			while ((obj = kis.read()) != null) {
+				objects.add(obj);
+			}
+			kis.close();
+		} catch (Exception e) {
+			return null;
+		} finally {
+			IOUtils.closeQuietly(in);
+		}
+		return objects;
+	}
+}
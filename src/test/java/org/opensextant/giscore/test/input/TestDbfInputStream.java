@@ -20,15 +20,24 @@ package org.opensextant.giscore.test.input;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Test;
 import org.opensextant.giscore.events.IGISObject;
 import org.opensextant.giscore.events.Row;
 import org.opensextant.giscore.events.Schema;
+import org.opensextant.giscore.events.SimpleField;
+import org.opensextant.giscore.input.dbf.DbfColumnBatch;
 import org.opensextant.giscore.input.dbf.DbfInputStream;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class TestDbfInputStream {
 
@@ -92,4 +101,106 @@ public class TestDbfInputStream {
         }
     }
 
+    @Test
+    public void testProjection() throws Exception {
+        File file = new File("data/shape/MBTA.dbf");
+        List<Row> rows = readRows(file, null);
+        List<Row> projected = readRows(file, Arrays.asList("SHAPE_LEN", "LINE"));
+        assertEquals(rows.size(), projected.size());
+        for (int i = 0; i < rows.size(); i++) {
+            Row row = rows.get(i);
+            Row prow = projected.get(i);
+            assertEquals(2, prow.getFields().size());
+            for (SimpleField field : prow.getFields()) {
+                assertEquals(row.getData(field), prow.getData(field));
+            }
+        }
+
+        DbfInputStream dbfs = new DbfInputStream(file, new Object[0]);
+        try {
+            dbfs.setProjection(Arrays.asList("LINE", "NOSUCHFIELD"));
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        } finally {
+            dbfs.close();
+        }
+    }
+
+    @Test
+    public void testColumnBatch() throws Exception {
+        checkColumnBatch(new File("data/shape/MBTA.dbf"), 1);
+        checkColumnBatch(new File("data/shape/MBTA.dbf"), 7);
+        checkColumnBatch(new File("data/shape/MBTA.dbf"), 10000);
+        checkColumnBatch(new File("data/shape/Iraq.dbf"), 64);
+        checkColumnBatch(new File("data/shape/counties67.dbf"), 5);
+    }
+
+    private void checkColumnBatch(File file, int capacity) throws IOException {
+        List<Row> rows = readRows(file, null);
+        DbfInputStream dbfs = new DbfInputStream(file, new Object[0]);
+        try {
+            Schema schema = (Schema) dbfs.read();
+            List<String> names = new ArrayList<String>(schema.getKeys());
+            DbfColumnBatch batch = dbfs.createBatch(capacity, names.toArray(new String[names.size()]));
+            assertEquals(names.size(), batch.getColumnCount());
+            int offset = 0;
+            int n;
+            while ((n = dbfs.readBatch(batch)) > 0) {
+                assertEquals(n, batch.size());
+                assertTrue(n <= capacity);
+                for (int c = 0; c < batch.getColumnCount(); c++) {
+                    SimpleField field = batch.getField(c);
+                    String name = field.getName();
+                    for (int i = 0; i < n; i++) {
+                        Object expected = rows.get(offset + i).getData(field);
+                        assertEquals(field.getLength().intValue(), batch.getBytes(name, i).remaining());
+                        switch (field.getType()) {
+                            case SHORT:
+                            case INT:
+                            case LONG:
+                                assertEquals(expected == null, batch.isNull(name, i));
+                                if (expected != null)
+                                    assertEquals(((Number) expected).longValue(), batch.getLongs(name)[i]);
+                                break;
+                            case DOUBLE:
+                                assertEquals(expected == null, batch.isNull(name, i));
+                                if (expected != null)
+                                    assertEquals(((Number) expected).doubleValue(), batch.getDoubles(name)[i], 0);
+                                else
+                                    assertTrue(Double.isNaN(batch.getDoubles(name)[i]));
+                                break;
+                            case STRING:
+                                assertEquals(expected, batch.getString(name, i));
+                                break;
+                        }
+                    }
+                }
+                offset += n;
+            }
+            assertEquals(rows.size(), offset);
+            assertEquals(0, batch.size());
+            assertNull(dbfs.read());
+        } finally {
+            dbfs.close();
+        }
+    }
+
+    private static List<Row> readRows(File file, List<String> projection) throws IOException {
+        List<Row> rows = new ArrayList<Row>();
+        DbfInputStream dbfs = new DbfInputStream(file, new Object[0]);
+        try {
+            assertTrue(dbfs.read() instanceof Schema);
+            if (projection != null) dbfs.setProjection(projection);
+            IGISObject obj;
+            while ((obj = dbfs.read()) != null) {
+                rows.add((Row) obj);
+            }
+        } finally {
+            dbfs.close();
+        }
+        assertFalse(rows.isEmpty());
+        return rows;
+    }
+
 }
@@ -29,6 +29,7 @@ import java.text.SimpleDateFormat;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Random;
 import java.util.TimeZone;
 
 import org.apache.commons.io.IOUtils;
@@ -51,9 +52,11 @@ import org.opensextant.giscore.events.SimpleField;
 import org.opensextant.giscore.events.Style;
 import org.opensextant.giscore.events.StyleMap;
 import org.opensextant.giscore.events.StyleSelector;
+import org.opensextant.giscore.geometry.PackedPointList;
 import org.opensextant.giscore.geometry.Point;
 import org.opensextant.giscore.input.IGISInputStream;
 import org.opensextant.giscore.input.kml.IKml;
+import org.opensextant.giscore.input.kml.KmlCoordinateParser;
 import org.opensextant.giscore.input.kml.KmlInputStream;
 import org.opensextant.giscore.test.TestGISBase;
 
@@ -181,8 +184,10 @@ public class TestKmlInputStream extends TestGISBase {
             "2009-03-14T21:06:45",  "2009-03-14T21:06:45.000Z", // when  'Z' suffix omitted
             "2009-03-14T21:06Z",    "2009-03-14T21:06:00.000Z", // seconds field omitted
             "2009-03-14T21:06",     "2009-03-14T21:06:00.000Z", // seconds + 'Z' suffix omitted
+            "2009-03-14T16:10-05:00", "2009-03-14T21:10:00.000Z", // seconds omitted with time zone
+            "1997-07-16T07:30:15.30Z", "1997-07-16T07:30:15.300Z", // fractional seconds
+            "1997-07",              "1997-07-01T00:00:00.000Z", // gYearMonth (YYYY-MM)
         };
-        // does not handle alternate time zones format with missing second field: e.g. 2009-03-14T16:10-05:00
         for (int i = 0; i < timestamps.length; i += 2) {
             Date date = null;
             try {
@@ -352,6 +357,49 @@ public class TestKmlInputStream extends TestGISBase {
 		);
 	}
 
+	/**
+	 * Test fast coordinate scanner produces exactly the same coordinates as
+	 * the reference tokenizer-based parser for valid and random garbled input.
+	 */
+	@Test public void testParseCoordParity() {
+		Random r = new Random(1234);
+		for (int i = 0; i < 500; i++) {
+			StringBuilder sb = new StringBuilder();
+			int n = 1 + r.nextInt(10);
+			for (int j = 0; j < n; j++) {
+				if (j != 0) sb.append(r.nextBoolean() ? " " : "\n\t");
+				sb.append(r.nextDouble() * 360 - 180).append(',');
+				sb.append(r.nextInt(2) == 0 ? r.nextDouble() * 180 - 90
+						: Math.round(r.nextDouble() * 1800000 - 900000) / 1e4);
+				if (r.nextBoolean()) sb.append(',').append(r.nextInt(5000));
+			}
+			checkParity(sb.toString());
+		}
+		final String alphabet = "0123456789..--,,,  +eEx/\n\t;";
+		for (int i = 0; i < 300; i++) {
+			int n = r.nextInt(30);
+			StringBuilder sb = new StringBuilder(n);
+			for (int j = 0; j < n; j++) {
+				sb.append(alphabet.charAt(r.nextInt(alphabet.length())));
+			}
+			checkParity(sb.toString());
+		}
+		checkParity("1.234567890123456789,45.00000000000000000000000001,1e400");
+		checkParity("-0,-.,.,1e+,2E-,3e-2 \u00e9t\u00e9 12,13 // comment\n14,15");
+	}
+
+	private static void checkParity(String coord) {
+		PackedPointList expected = KmlCoordinateParser.parseWithTokenizer(coord);
+		PackedPointList actual = KmlCoordinateParser.parse(coord);
+		assertEquals(coord, expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(coord, expected.getLonRadians(i), actual.getLonRadians(i), 0);
+			assertEquals(coord, expected.getLatRadians(i), actual.getLatRadians(i), 0);
+			assertEquals(coord, expected.hasElevation(i), actual.hasElevation(i));
+			assertEquals(coord, expected.getElevation(i), actual.getElevation(i), 0);
+		}
+	}
+
 	private void checkCoordString(String coord, Geodetic2DPoint[] geoPoints) {
 		List<Point> list = KmlInputStream.parseCoord(coord);
 		if (list.isEmpty() && geoPoints.length == 0) return;
@@ -0,0 +1,151 @@
+/****************************************************************************************
+ *  TestKmlParserEngine.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantibility and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.test.input;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.opensextant.giscore.DocumentType;
+import org.opensextant.giscore.GISFactory;
+import org.opensextant.giscore.events.IGISObject;
+import org.opensextant.giscore.events.Schema;
+import org.opensextant.giscore.input.IGISInputStream;
+import org.opensextant.giscore.input.XmlParserEngine;
+import org.opensextant.giscore.input.kml.KmlInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Parity tests for the cursor-based {@link XmlParserEngine#CURSOR} engine of
+ * <code>KmlInputStream</code> against the default event engine.
+ */
+public class TestKmlParserEngine {
+
+	private static final Pattern SCHEMA_ID = Pattern.compile("(id='s_|name='schema_)\\d+'");
+
+	/**
+	 * Every KML file in the test data must produce equal objects with both engines
+	 */
+	@Test
+	public void testParity() throws IOException {
+		List<File> files = new ArrayList<File>();
+		collectKmlFiles(new File("data/kml"), files);
+		assertTrue(files.size() > 10);
+		for (File file : files) {
+			checkParity(file.getPath(), IOUtils.toByteArray(new FileInputStream(file)));
+		}
+	}
+
+	@Test
+	public void testSkippedAndMixedContent() throws IOException {
+		// unknown elements with mixed content and nested unknown elements are skipped or
+		// read as foreign elements, description uses HTML outside of CDATA
+		String kml = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n" +
+				"<kml xmlns=\"http://www.opengis.net/kml/2.2\" xmlns:gx=\"http://www.google.com/kml/ext/2.2\"" +
+				" xmlns:foo=\"urn:foo\">\n" +
+				"<Document id=\"d1\"><!-- comment --><?pi data?>\n" +
+				" <foo:bar a=\"1\" foo:b=\"2\">text <foo:baz>child</foo:baz> more</foo:bar>\n" +
+				" <Placemark id=\"p1\"><name>a &amp; b</name>\n" +
+				"  <description>some <b>bold</b> text</description>\n" +
+				"  <Snippet maxLines=\"1\"><![CDATA[cdata]]></Snippet>\n" +
+				"  <unknown><x><y/></x></unknown>\n" +
+				"  <Point><coordinates>1,2,3</coordinates></Point>\n" +
+				" </Placemark>\n" +
+				" <Folder><name>f</name><open>1</open>" +
+				"  <Placemark><LineString><coordinates>1,2 3,4 5,6</coordinates></LineString></Placemark>\n" +
+				" </Folder>\n" +
+				"</Document></kml>";
+		checkParity("inline", kml.getBytes("ISO-8859-1"));
+	}
+
+	@Test
+	public void testFactoryArgument() throws IOException {
+		InputStream is = new ByteArrayInputStream("<kml/>".getBytes("UTF-8"));
+		IGISInputStream gis = GISFactory.getInputStream(DocumentType.KML, is, XmlParserEngine.CURSOR);
+		try {
+			assertEquals(XmlParserEngine.CURSOR, ((KmlInputStream) gis).getParserEngine());
+		} finally {
+			gis.close();
+		}
+		is = new ByteArrayInputStream("<kml/>".getBytes("UTF-8"));
+		KmlInputStream kis = new KmlInputStream(is);
+		try {
+			assertEquals(XmlParserEngine.EVENT, kis.getParserEngine());
+		} finally {
+			kis.close();
+		}
+	}
+
+	private static void collectKmlFiles(File dir, List<File> files) {
+		File[] list = dir.listFiles();
+		if (list == null) return;
+		for (File file : list) {
+			if (file.isDirectory()) collectKmlFiles(file, files);
+			else if (file.getName().endsWith(".kml")) files.add(file);
+		}
+	}
+
+	private static void checkParity(String name, byte[] data) {
+		List<Object> expected = readAll(data, XmlParserEngine.EVENT);
+		List<Object> actual = readAll(data, XmlParserEngine.CURSOR);
+		assertEquals(name + ": object count", expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			Object exp = expected.get(i);
+			Object act = actual.get(i);
+			if (exp instanceof Throwable) {
+				// both engines must fail in the same way
+				assertEquals(name, exp.getClass(), act.getClass());
+			} else if (exp instanceof Schema) {
+				// schemas without an id or name are assigned generated values that differ between reads
+				assertEquals(name + ": object " + i, SCHEMA_ID.matcher(exp.toString()).replaceAll(""),
+						SCHEMA_ID.matcher(act.toString()).replaceAll(""));
+			} else {
+				assertEquals(name + ": object " + i, exp, act);
+			}
+		}
+	}
+
+	/**
+	 * Read all objects from the KML data. A read error is added as the last
+	 * element in the list.
+	 */
+	private static List<Object> readAll(byte[] data, XmlParserEngine engine) {
+		List<Object> list = new ArrayList<Object>();
+		KmlInputStream kis = null;
+		try {
+			kis = new KmlInputStream(new ByteArrayInputStream(data), engine);
+			IGISObject obj;
+			while ((obj = kis.read()) != null) {
+				list.add(obj);
+			}
+			list.add(kis.getEncoding());
+		} catch (Exception e) {
+			list.add(e);
+		} finally {
+			if (kis != null) kis.close();
+		}
+		return list;
+	}
+
+}
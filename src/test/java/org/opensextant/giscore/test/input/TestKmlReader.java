@@ -301,6 +301,112 @@ public class TestKmlReader implements IKml {
 		assertTrue(geom instanceof Point);
 	}
 
+    /**
+     * Test importing NetworkLinks with multiple worker threads in ordered mode
+     * returns same objects in same order as the serial import.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Test
+    public void testParallelNetworkLinks() throws IOException {
+        File file = new File("data/kml/NetworkLink/multiLevelNetworkLinks2.kmz");
+        KmlReader reader = new KmlReader(file);
+        reader.readAll(); // implicit close
+        List<IGISObject> expected = reader.importFromNetworkLinks();
+
+        KmlReader reader2 = new KmlReader(file);
+        reader2.setImportThreadCount(4);
+        reader2.setOrderedImport(true);
+        reader2.readAll();
+        List<IGISObject> linkedFeatures = reader2.importFromNetworkLinks();
+        assertEquals(reader.getNetworkLinks(), reader2.getNetworkLinks());
+        assertEquals(expected.size(), linkedFeatures.size());
+        for (int i = 0; i < expected.size(); i++) {
+            IGISObject o = expected.get(i);
+            assertEquals(o.getClass(), linkedFeatures.get(i).getClass());
+            if (o instanceof Feature)
+                TestKmlOutputStream.checkApproximatelyEquals(o, linkedFeatures.get(i));
+        }
+
+        // unordered with callback delivers same number of objects
+        KmlReader reader3 = new KmlReader(file);
+        reader3.setImportThreadCount(4);
+        reader3.readAll();
+        final List<IGISObject> handled = new ArrayList<IGISObject>();
+        reader3.importFromNetworkLinks(new KmlReader.ImportEventHandler() {
+            public boolean handleEvent(UrlRef ref, IGISObject gisObj) {
+                handled.add(gisObj);
+                return true;
+            }
+            public void handleError(URI uri, Exception ex) {
+                // ignore
+            }
+        });
+        assertEquals(expected.size(), handled.size());
+    }
+
+    /**
+     * Test aborting a parallel import partway registers the same NetworkLinks
+     * as aborting a serial import at the same object, so links declared by
+     * objects that were never delivered are not registered.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Test
+    public void testParallelAbortNetworkLinks() throws IOException {
+        File file = new File("data/kml/NetworkLink/multiLevelNetworkLinks2.kmz");
+        for (int limit = 1; limit <= 7; limit++) {
+            KmlReader reader = new KmlReader(file);
+            reader.readAll(); // implicit close
+            AbortHandler handler = new AbortHandler(limit);
+            reader.importFromNetworkLinks(handler);
+            List<URI> expected = reader.getNetworkLinks();
+
+            KmlReader reader2 = new KmlReader(file);
+            reader2.setImportThreadCount(4);
+            reader2.setOrderedImport(true);
+            reader2.readAll();
+            AbortHandler handler2 = new AbortHandler(limit);
+            reader2.importFromNetworkLinks(handler2);
+            assertEquals("limit=" + limit, handler.count, handler2.count);
+            assertEquals("limit=" + limit, expected, reader2.getNetworkLinks());
+        }
+    }
+
+    /**
+     * Aborts the import once the given number of objects are handled
+     */
+    private static class AbortHandler implements KmlReader.ImportEventHandler {
+        private final int limit;
+        int count;
+
+        AbortHandler(int limit) {
+            this.limit = limit;
+        }
+
+        public boolean handleEvent(UrlRef ref, IGISObject gisObj) {
+            return ++count < limit;
+        }
+
+        public void handleError(URI uri, Exception ex) {
+            // ignore
+        }
+    }
+
+    @Test
+    public void testParallelLimitNetworkLinks() throws IOException {
+        File file = new File("data/kml/kmz/networklink/hier.kmz");
+        KmlReader reader = new KmlReader(file);
+        reader.setMaxLinkCount(1);
+        reader.setImportThreadCount(2);
+        reader.setOrderedImport(true);
+        reader.readAll();
+        List<IGISObject> linkedFeatures = reader.importFromNetworkLinks();
+        assertTrue(reader.isMaxLinkCountExceeded());
+        assertEquals(2, linkedFeatures.size());
+        assertEquals(2, reader.getNetworkLinks().size());
+    }
+
     @Test
     public void testRewriteStyleUrls() throws Exception {
         KmlReader reader = new KmlReader(new File("data/kml/Style/remote-style.kml"));
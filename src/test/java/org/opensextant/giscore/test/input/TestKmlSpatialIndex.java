@@ -0,0 +1,238 @@
+/****************************************************************************************
+ *  TestKmlSpatialIndex.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.test.input;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+import org.opensextant.geodesy.Angle;
+import org.opensextant.geodesy.Geodetic2DBounds;
+import org.opensextant.geodesy.Geodetic2DPoint;
+import org.opensextant.geodesy.Latitude;
+import org.opensextant.geodesy.Longitude;
+import org.opensextant.giscore.events.Feature;
+import org.opensextant.giscore.events.IGISObject;
+import org.opensextant.giscore.input.kml.KmlReader;
+import org.opensextant.giscore.input.kml.KmlSpatialIndex;
+import org.opensextant.giscore.test.TestGISBase;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestKmlSpatialIndex extends TestGISBase {
+
+	private static final int GRID = 40;
+
+	@Test
+	public void testKml() throws Exception {
+		File file = createTemp("index", ".kml");
+		byte[] kml = makeKml();
+		write(file, kml);
+		KmlSpatialIndex index = KmlSpatialIndex.open(file);
+		try {
+			assertTrue(KmlSpatialIndex.getIndexFile(file).isFile());
+			checkIndex(index, file);
+		} finally {
+			index.close();
+		}
+
+		// reuse while current, rebuild once the file changes
+		index = KmlSpatialIndex.load(file);
+		assertNotNull(index);
+		index.close();
+		assertTrue(file.setLastModified(file.lastModified() - 10000));
+		assertNull(KmlSpatialIndex.load(file));
+		index = KmlSpatialIndex.open(file);
+		assertEquals(GRID * GRID + 3, index.size());
+		index.close();
+	}
+
+	@Test
+	public void testKmz() throws Exception {
+		byte[] kml = makeKml();
+		for (int method : new int[] { ZipEntry.STORED, ZipEntry.DEFLATED }) {
+			File file = createTemp("index", ".kmz");
+			ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(file));
+			try {
+				ZipEntry readme = new ZipEntry("readme.txt");
+				zos.putNextEntry(readme);
+				zos.write("not KML".getBytes("UTF-8"));
+				ZipEntry entry = new ZipEntry("doc.kml");
+				entry.setMethod(method);
+				if (method == ZipEntry.STORED) {
+					CRC32 crc = new CRC32();
+					crc.update(kml);
+					entry.setSize(kml.length);
+					entry.setCrc(crc.getValue());
+				}
+				zos.putNextEntry(entry);
+				zos.write(kml);
+			} finally {
+				zos.close();
+			}
+			KmlSpatialIndex index = KmlSpatialIndex.build(file);
+			try {
+				assertEquals("doc.kml", index.getEntryName());
+				checkIndex(index, file);
+			} finally {
+				index.close();
+			}
+		}
+	}
+
+	private void checkIndex(KmlSpatialIndex index, File file) throws IOException {
+		assertEquals(GRID * GRID + 3, index.size());
+		List<Feature> all = new ArrayList<Feature>();
+		KmlReader reader = new KmlReader(file);
+		IGISObject obj;
+		while ((obj = reader.read()) != null) {
+			if (obj instanceof Feature) all.add((Feature) obj);
+		}
+		reader.close();
+		assertEquals(index.size(), all.size());
+
+		// by ordinal
+		int[] ordinals = { 0, 7, GRID * GRID + 2, 3 };
+		reader = new KmlReader(index, ordinals);
+		for (int ordinal : ordinals) {
+			Feature f = (Feature) reader.read();
+			assertNotNull(f);
+			assertEquals(all.get(ordinal).getName(), f.getName());
+			assertEquals(all.get(ordinal).getDescription(), f.getDescription());
+		}
+		assertNull(reader.read());
+		reader.close();
+
+		// by bounds against a scan of all the features
+		checkSearch(index, all, bounds(-10.5, 5.5, 3.2, 12.7));
+		checkSearch(index, all, bounds(-180, -90, 179.99, 90));
+		checkSearch(index, all, bounds(50, 50, 60, 60));
+		// crosses the anti-meridian
+		checkSearch(index, all, bounds(175, -5, -175, 5));
+	}
+
+	private void checkSearch(KmlSpatialIndex index, List<Feature> all, Geodetic2DBounds bounds) throws IOException {
+		List<String> expected = new ArrayList<String>();
+		for (Feature f : all) {
+			if (f.getGeometry() != null && bounds.intersects(f.getGeometry().getBoundingBox())) {
+				expected.add(f.getName());
+			}
+		}
+		List<String> found = new ArrayList<String>();
+		KmlReader reader = new KmlReader(index, bounds);
+		IGISObject obj;
+		while ((obj = reader.read()) != null) {
+			found.add(((Feature) obj).getName());
+		}
+		reader.close();
+		assertEquals(bounds.toString(), expected, found);
+	}
+
+	@Test
+	public void testRelativeLinks() throws Exception {
+		File file = createTemp("index", ".kml");
+		write(file, makeKml());
+		KmlSpatialIndex index = KmlSpatialIndex.open(file);
+		try {
+			KmlReader reader = new KmlReader(index, new int[] { 0 });
+			reader.setRewriteStyleUrls(true);
+			Feature f = (Feature) reader.read();
+			reader.close();
+			// relative style URL resolved against the indexed file
+			assertEquals(new File(file.getParentFile(), "styles.kml").toURI() + "#s1", f.getStyleUrl());
+		} finally {
+			index.close();
+		}
+		index = KmlSpatialIndex.open(file);
+		assertArrayEquals(new int[0], index.search(bounds(-1, -1, -0.5, -0.5)));
+		index.close();
+	}
+
+	private static Geodetic2DBounds bounds(double west, double south, double east, double north) {
+		return new Geodetic2DBounds(
+				new Geodetic2DPoint(new Longitude(west, Angle.DEGREES), new Latitude(south, Angle.DEGREES)),
+				new Geodetic2DPoint(new Longitude(east, Angle.DEGREES), new Latitude(north, Angle.DEGREES)));
+	}
+
+	/**
+	 * A grid of points and lines with comments, CDATA sections and an
+	 * extension namespace, followed by a Placemark without geometry, one
+	 * that crosses the anti-meridian and an empty one.
+	 */
+	private static byte[] makeKml() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		sb.append("<kml xmlns=\"http://www.opengis.net/kml/2.2\" xmlns:gx=\"http://www.google.com/kml/ext/2.2\">\n");
+		sb.append("<Document><name>grid</name>\n");
+		sb.append("<Style id=\"s1\"><LineStyle><color>ff0000ff</color></LineStyle></Style>\n");
+		sb.append("<!-- <Placemark> in a comment is not indexed -->\n");
+		sb.append("<Folder><name>cells</name>\n");
+		for (int i = 0; i < GRID * GRID; i++) {
+			double lon = -100 + (i % GRID) * 5.0 + 0.25;
+			double lat = -80 + (i / GRID) * 4.0 + 0.5;
+			sb.append("<Placemark id=\"p").append(i).append("\">");
+			sb.append("<name>cell ").append(i).append("</name>");
+			if (i == 0) {
+				sb.append("<styleUrl>styles.kml#s1</styleUrl>");
+			}
+			if (i % 3 == 0) {
+				sb.append("<description><![CDATA[<b>cell</b> ends with </Placemark> ]]></description>");
+			} else {
+				sb.append("<description>café ").append(i).append("</description>");
+			}
+			if (i % 2 == 0) {
+				sb.append("<Point><coordinates>").append(lon).append(',').append(lat)
+						.append("</coordinates></Point>");
+			} else {
+				sb.append("<LineString><gx:altitudeOffset>1</gx:altitudeOffset><coordinates>")
+						.append(lon).append(',').append(lat).append(' ')
+						.append(lon + 1.5).append(',').append(lat + 2.25)
+						.append("</coordinates></LineString>");
+			}
+			sb.append("</Placemark>\n");
+			if (i % 100 == 99) {
+				sb.append("</Folder><Folder>\n");
+			}
+		}
+		sb.append("</Folder>\n");
+		sb.append("<Placemark><name>nowhere</name></Placemark>\n");
+		sb.append("<Placemark><name>dateline</name><LineString><coordinates>179,1 -179,2</coordinates>"
+				+ "</LineString></Placemark>\n");
+		sb.append("<Placemark />\n");
+		sb.append("</Document></kml>\n");
+		return sb.toString().getBytes("UTF-8");
+	}
+
+	private static void write(File file, byte[] bytes) throws IOException {
+		OutputStream os = new FileOutputStream(file);
+		try {
+			os.write(bytes);
+		} finally {
+			os.close();
+		}
+	}
+
+}
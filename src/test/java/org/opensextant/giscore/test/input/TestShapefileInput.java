@@ -22,10 +22,25 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.ZipInputStream;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Test;
+import org.opensextant.geodesy.Geodetic2DBounds;
+import org.opensextant.geodesy.Geodetic2DPoint;
 import org.opensextant.giscore.DocumentType;
 import org.opensextant.giscore.GISFactory;
 import org.opensextant.giscore.IAcceptSchema;
@@ -41,9 +56,13 @@ import org.opensextant.giscore.geometry.MultiPolygons;
 import org.opensextant.giscore.geometry.Point;
 import org.opensextant.giscore.geometry.Polygon;
 import org.opensextant.giscore.input.IGISInputStream;
+import org.opensextant.giscore.input.shapefile.ShapefileComponent;
 import org.opensextant.giscore.input.shapefile.ShapefileInputStream;
+import org.opensextant.giscore.input.shapefile.ShapefileRange;
 import org.opensextant.giscore.input.shapefile.SingleShapefileInputHandler;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -192,6 +211,235 @@ public class TestShapefileInput {
 		}
 	}
 
+	@Test public void testIndexedRead() throws Exception {
+		String[] names = { "counties67", "lines", "multipolyz", "points", "polyz", "ringz" };
+		for (String name : names) {
+			List<Geometry> geometries = readGeometries(new SingleShapefileInputHandler(shpdir, name));
+			// tiny map windows force remapping for nearly every record
+			assertEquals(name, geometries, readGeometries(new SingleShapefileInputHandler(shpdir, name, 256)));
+			SingleShapefileInputHandler handler = new SingleShapefileInputHandler(shpdir, name);
+			try {
+				assertTrue(handler.hasIndex());
+				assertEquals(name, geometries.size(), handler.getRecordCount());
+				for (int i = geometries.size() - 1; i >= 0; i--) {
+					assertEquals(name + " record " + i, geometries.get(i), handler.readGeometry(i));
+				}
+				// random access does not disturb sequential reading
+				assertTrue(handler.read() instanceof Schema);
+				assertEquals(geometries.get(0), ((Feature) handler.read()).getGeometry());
+			} finally {
+				handler.close();
+			}
+		}
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testIndexedReadBadRecord() throws Exception {
+		SingleShapefileInputHandler handler = new SingleShapefileInputHandler(shpdir, "points");
+		try {
+			handler.readGeometry(handler.getRecordCount());
+		} finally {
+			handler.close();
+		}
+	}
+
+	@Test public void testRandomAccessFeatures() throws Exception {
+		SingleShapefileInputHandler handler = new SingleShapefileInputHandler(shpdir, "counties67");
+		List<Feature> features = readFeatures(handler);
+		handler = new SingleShapefileInputHandler(shpdir, "counties67");
+		try {
+			for (int i = features.size() - 1; i >= 0; i -= 7) {
+				assertEquals("record " + i, features.get(i), handler.readFeature(i));
+			}
+			handler.setRange(10, 13);
+			assertTrue(handler.read() instanceof Schema);
+			assertEquals(features.get(10), handler.read());
+			assertEquals(features.get(11), handler.read());
+			assertEquals(features.get(12), handler.read());
+			assertNull(handler.read());
+		} finally {
+			handler.close();
+		}
+	}
+
+	@Test public void testParallelRanges() throws Exception {
+		for (String name : new String[] { "counties67", "points", "multipolyz" }) {
+			final List<Feature> expected = readFeatures(new SingleShapefileInputHandler(shpdir, name));
+			for (int parts : new int[] { 1, 3, 4, expected.size() + 5 }) {
+				List<ShapefileRange> ranges = ShapefileRange.split(shpdir, name, parts);
+				assertTrue(ranges.size() <= parts);
+				ExecutorService executor = Executors.newFixedThreadPool(ranges.size());
+				try {
+					List<Future<List<Feature>>> results = new ArrayList<Future<List<Feature>>>();
+					for (final ShapefileRange range : ranges) {
+						results.add(executor.submit(new Callable<List<Feature>>() {
+							public List<Feature> call() throws Exception {
+								return readFeatures(range.open());
+							}
+						}));
+					}
+					List<Feature> actual = new ArrayList<Feature>();
+					int next = 0;
+					for (int i = 0; i < ranges.size(); i++) {
+						assertEquals(next, ranges.get(i).getStart());
+						next = ranges.get(i).getEnd();
+						actual.addAll(results.get(i).get());
+					}
+					assertEquals(name + " in " + parts, expected, actual);
+				} finally {
+					executor.shutdown();
+				}
+			}
+		}
+	}
+
+	@Test public void testBoundsFilter() throws Exception {
+		for (String name : new String[] { "counties67", "points", "lines" }) {
+			List<Feature> features = readFeatures(new SingleShapefileInputHandler(shpdir, name));
+			Geodetic2DBounds all = null;
+			for (Feature f : features) {
+				if (all == null) all = new Geodetic2DBounds(f.getGeometry().getBoundingBox());
+				else all.include(f.getGeometry().getBoundingBox());
+			}
+			assertNotNull(all);
+			// south west quarter of the data
+			Geodetic2DBounds bounds = new Geodetic2DBounds(
+					new Geodetic2DPoint(all.getWestLon(), all.getSouthLat()), all.getCenter());
+			List<Feature> expected = new ArrayList<Feature>();
+			for (Feature f : features) {
+				if (intersects(bounds, f.getGeometry().getBoundingBox())) expected.add(f);
+			}
+			assertTrue(name, !expected.isEmpty() && expected.size() < features.size());
+
+			SingleShapefileInputHandler handler = new SingleShapefileInputHandler(shpdir, name);
+			handler.setFilter(bounds);
+			assertEquals(name, expected, readFeatures(handler));
+
+			// sequential streams skip the dbf rows of filtered records by reading them
+			Map<ShapefileComponent, InputStream> streams = new EnumMap<ShapefileComponent, InputStream>(ShapefileComponent.class);
+			File dbf = new File(shpdir, name + ".dbf");
+			if (dbf.exists()) streams.put(ShapefileComponent.DBF, new FileInputStream(dbf));
+			handler = new SingleShapefileInputHandler(new FileInputStream(new File(shpdir, name + ".shp")),
+					streams, name);
+			handler.setFilter(bounds);
+			assertEquals(name, expected, readFeatures(handler));
+		}
+
+		// bounds that cross the anti-meridian on the other side of the world
+		SingleShapefileInputHandler handler = new SingleShapefileInputHandler(shpdir, "counties67");
+		handler.setFilter(new Geodetic2DBounds(new Geodetic2DPoint("170E, 10S"), new Geodetic2DPoint("170W, 10N")));
+		assertTrue(readFeatures(handler).isEmpty());
+	}
+
+	@Test public void testNullRecord() throws Exception {
+		File dir = new File("testOutput/shpnull");
+		dir.mkdirs();
+		writeNullRecordShapefile(dir, "nulls");
+		List<Feature> features = readFeatures(new SingleShapefileInputHandler(dir, "nulls"));
+		assertEquals(3, features.size());
+		assertNotNull(features.get(0).getGeometry());
+		assertNull(features.get(1).getGeometry());
+		assertNotNull(features.get(2).getGeometry());
+		SingleShapefileInputHandler handler = new SingleShapefileInputHandler(dir, "nulls");
+		try {
+			assertTrue(handler.hasIndex());
+			assertNull(handler.readGeometry(1));
+			assertEquals(features.get(2).getGeometry(), handler.readGeometry(2));
+		} finally {
+			handler.close();
+		}
+
+		// a truncated index is ignored
+		File shx = new File(dir, "nulls.shx");
+		byte[] index = FileUtils.readFileToByteArray(shx);
+		FileUtils.writeByteArrayToFile(shx, Arrays.copyOf(index, index.length - 3));
+		assertEquals(features, readFeatures(new SingleShapefileInputHandler(dir, "nulls")));
+		handler = new SingleShapefileInputHandler(dir, "nulls");
+		assertFalse(handler.hasIndex());
+		handler.close();
+		FileUtils.writeByteArrayToFile(shx, index);
+
+		// null shapes have no bounds so are filtered out
+		handler = new SingleShapefileInputHandler(dir, "nulls");
+		handler.setFilter(new Geodetic2DBounds(new Geodetic2DPoint("0E, 0N"), new Geodetic2DPoint("10E, 10N")));
+		List<Feature> filtered = readFeatures(handler);
+		assertEquals(2, filtered.size());
+		assertEquals(features.get(0), filtered.get(0));
+		assertEquals(features.get(2), filtered.get(1));
+	}
+
+	// Write a point shapefile and its index where the second record is a null shape
+	private static void writeNullRecordShapefile(File dir, String name) throws IOException {
+		double[][] points = { { 1.0, 2.0 }, null, { 3.0, 4.0 } };
+		int shpLength = 100;
+		for (double[] p : points) shpLength += p == null ? 12 : 28;
+		ByteBuffer shp = ByteBuffer.allocate(shpLength);
+		ByteBuffer shx = ByteBuffer.allocate(100 + 8 * points.length);
+		writeHeader(shp);
+		writeHeader(shx);
+		for (int i = 0; i < points.length; i++) {
+			int contentLen = points[i] == null ? 4 : 20; // in bytes
+			shx.order(ByteOrder.BIG_ENDIAN).putInt(shp.position() / 2).putInt(contentLen / 2);
+			shp.order(ByteOrder.BIG_ENDIAN).putInt(i + 1).putInt(contentLen / 2);
+			shp.order(ByteOrder.LITTLE_ENDIAN);
+			if (points[i] == null) {
+				shp.putInt(0);
+			} else {
+				shp.putInt(1).putDouble(points[i][0]).putDouble(points[i][1]);
+			}
+		}
+		FileUtils.writeByteArrayToFile(new File(dir, name + ".shp"), shp.array());
+		FileUtils.writeByteArrayToFile(new File(dir, name + ".shx"), shx.array());
+	}
+
+	// Header of a point file whose length is the capacity of the buffer
+	private static void writeHeader(ByteBuffer buffer) {
+		buffer.order(ByteOrder.BIG_ENDIAN).putInt(9994);
+		buffer.position(24);
+		buffer.putInt(buffer.capacity() / 2);
+		buffer.order(ByteOrder.LITTLE_ENDIAN).putInt(1000).putInt(1);
+		buffer.putDouble(1.0).putDouble(2.0).putDouble(3.0).putDouble(4.0);
+		buffer.position(100);
+	}
+
+	// intersection including the edges of the bounds, so points on an edge intersect
+	private static boolean intersects(Geodetic2DBounds a, Geodetic2DBounds b) {
+		return a.getWestLon().inDegrees() <= b.getEastLon().inDegrees()
+				&& b.getWestLon().inDegrees() <= a.getEastLon().inDegrees()
+				&& a.getSouthLat().inDegrees() <= b.getNorthLat().inDegrees()
+				&& b.getSouthLat().inDegrees() <= a.getNorthLat().inDegrees();
+	}
+
+	private static List<Feature> readFeatures(SingleShapefileInputHandler handler) throws IOException {
+		List<Feature> features = new ArrayList<Feature>();
+		try {
+			IGISObject ob;
+			while((ob = handler.read()) != null) {
+				if (ob instanceof Feature) {
+					features.add((Feature) ob);
+				}
+			}
+		} finally {
+			handler.close();
+		}
+		return features;
+	}
+
+	private static List<Geometry> readGeometries(SingleShapefileInputHandler handler) throws IOException {
+		List<Geometry> geometries = new ArrayList<Geometry>();
+		try {
+			IGISObject ob;
+			while((ob = handler.read()) != null) {
+				if (ob instanceof Feature) {
+					geometries.add(((Feature) ob).getGeometry());
+				}
+			}
+		} finally {
+			handler.close();
+		}
+		return geometries;
+	}
+
 	private void doTest(String file, Class geoclass) throws URISyntaxException, IOException {
 		System.out.println("Test " + file);
 		SingleShapefileInputHandler handler = new SingleShapefileInputHandler(shpdir, file);
@@ -0,0 +1,250 @@
+/****************************************************************************************
+ *  TestUrlCache.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.test.input;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mortbay.jetty.HttpConnection;
+import org.mortbay.jetty.Server;
+import org.mortbay.jetty.handler.AbstractHandler;
+import org.opensextant.giscore.events.Feature;
+import org.opensextant.giscore.events.IGISObject;
+import org.opensextant.giscore.input.kml.KmlReader;
+import org.opensextant.giscore.input.kml.UrlCache;
+import org.opensextant.giscore.input.kml.UrlRef;
+import org.opensextant.giscore.test.TestGISBase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test the HTTP cache used by {@link UrlRef} against a local server that
+ * supports conditional requests.
+ */
+public class TestUrlCache extends TestGISBase {
+
+	private static final String KML = "<kml xmlns=\"http://www.opengis.net/kml/2.2\"><Document>"
+			+ "<Placemark><name>%s</name><Point><coordinates>-71,42</coordinates></Point></Placemark>"
+			+ "<NetworkLink><Link><href>/linked.kml</href></Link></NetworkLink>"
+			+ "</Document></kml>";
+
+	private static final String LINKED = "<kml xmlns=\"http://www.opengis.net/kml/2.2\">"
+			+ "<Placemark><name>linked</name><Point><coordinates>-72,43</coordinates></Point></Placemark>"
+			+ "</kml>";
+
+	private static Server server;
+
+	private static StubHandler handler;
+
+	private File dir;
+
+	@BeforeClass
+	public static void oneTimeSetUp() throws Exception {
+		server = new Server(0);
+		handler = new StubHandler();
+		server.setHandler(handler);
+		server.start();
+	}
+
+	@AfterClass
+	public static void oneTimeTearDown() throws Exception {
+		if (server != null) {
+			server.stop();
+		}
+	}
+
+	@Before
+	public void setUp() {
+		dir = createTemp("cache", "");
+		handler.reset();
+		handler.put("/doc.kml", String.format(KML, "first"), "v1", true);
+		handler.put("/linked.kml", LINKED, "v1", true);
+	}
+
+	@After
+	public void tearDown() {
+		UrlRef.setCache(null);
+	}
+
+	@Test
+	public void testRevalidate() throws Exception {
+		UrlRef.setCache(new UrlCache(dir));
+		URL url = getUrl("/doc.kml");
+		assertEquals(String.format(KML, "first"), fetch(url));
+		assertEquals(1, handler.requests.get());
+		assertEquals(0, handler.notModified.get());
+		assertTrue(UrlRef.getCache().contains(url));
+
+		// unchanged so served from the cache
+		assertEquals(String.format(KML, "first"), fetch(url));
+		assertEquals(2, handler.requests.get());
+		assertEquals(1, handler.notModified.get());
+
+		// changed so downloaded again
+		handler.put("/doc.kml", String.format(KML, "second"), "v2", true);
+		assertEquals(String.format(KML, "second"), fetch(url));
+		assertEquals(String.format(KML, "second"), fetch(url));
+		assertEquals(4, handler.requests.get());
+		assertEquals(2, handler.notModified.get());
+		assertEquals(1, UrlRef.getCache().getCount());
+		assertEquals(String.format(KML, "second").length(), UrlRef.getCache().getSize());
+	}
+
+	@Test
+	public void testKmlReader() throws Exception {
+		UrlRef.setCache(new UrlCache(dir));
+		for (int i = 0; i < 2; i++) {
+			KmlReader reader = new KmlReader(getUrl("/doc.kml"));
+			reader.readAll();
+			List<IGISObject> linked = reader.importFromNetworkLinks();
+			reader.close();
+			int features = 0;
+			for (IGISObject obj : linked) {
+				if (obj instanceof Feature) features++;
+			}
+			assertEquals(1, features);
+		}
+		assertEquals(4, handler.requests.get());
+		assertEquals(2, handler.notModified.get());
+		assertEquals(2, UrlRef.getCache().getCount());
+	}
+
+	@Test
+	public void testPersistent() throws Exception {
+		URL url = getUrl("/doc.kml");
+		UrlRef.setCache(new UrlCache(dir));
+		fetch(url);
+		UrlRef.setCache(new UrlCache(dir));
+		assertTrue(UrlRef.getCache().contains(url));
+		assertEquals(String.format(KML, "first"), fetch(url));
+		assertEquals(1, handler.notModified.get());
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		String body = String.format(KML, "first");
+		handler.put("/a.kml", body, "a", true);
+		handler.put("/b.kml", body, "b", true);
+		handler.put("/c.kml", body, "c", true);
+		UrlCache cache = new UrlCache(dir, 2 * body.length());
+		UrlRef.setCache(cache);
+		fetch(getUrl("/a.kml"));
+		fetch(getUrl("/b.kml"));
+		// use a so b is the least recently used
+		fetch(getUrl("/a.kml"));
+		fetch(getUrl("/c.kml"));
+		assertEquals(2, cache.getCount());
+		assertTrue(cache.contains(getUrl("/a.kml")));
+		assertFalse(cache.contains(getUrl("/b.kml")));
+		assertTrue(cache.contains(getUrl("/c.kml")));
+		assertEquals(4, dir.list().length);
+
+		// too large to cache but still returned
+		UrlCache small = new UrlCache(createTemp("cache", ""), 10);
+		UrlRef.setCache(small);
+		assertEquals(body, fetch(getUrl("/a.kml")));
+		assertEquals(0, small.getCount());
+	}
+
+	@Test
+	public void testNotCacheable() throws Exception {
+		handler.put("/plain.kml", LINKED, null, true);
+		handler.put("/private.kml", LINKED, "v1", false);
+		UrlRef.setCache(new UrlCache(dir));
+		for (int i = 0; i < 2; i++) {
+			assertEquals(LINKED, fetch(getUrl("/plain.kml")));
+			assertEquals(LINKED, fetch(getUrl("/private.kml")));
+		}
+		assertEquals(0, handler.notModified.get());
+		assertEquals(0, UrlRef.getCache().getCount());
+	}
+
+	private static String fetch(URL url) throws IOException {
+		InputStream is = UrlRef.getInputStream(url);
+		try {
+			return IOUtils.toString(is, "UTF-8");
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+	}
+
+	private static URL getUrl(String path) throws IOException {
+		return new URL("http://localhost:" + server.getConnectors()[0].getLocalPort() + path);
+	}
+
+	/**
+	 * Serves KML bodies with an ETag and answers conditional requests
+	 */
+	private static final class StubHandler extends AbstractHandler {
+		final AtomicInteger requests = new AtomicInteger();
+		final AtomicInteger notModified = new AtomicInteger();
+		private final Map<String, String[]> resources = new ConcurrentHashMap<String, String[]>();
+
+		void reset() {
+			requests.set(0);
+			notModified.set(0);
+			resources.clear();
+		}
+
+		/**
+		 * @param etag the tag of this version, or <code>null</code> for none
+		 * @param store false to forbid storing the response
+		 */
+		void put(String path, String body, String etag, boolean store) {
+			resources.put(path, new String[] { body, etag == null ? null : '"' + etag + '"',
+					store ? null : "no-store" });
+		}
+
+		public void handle(String target, HttpServletRequest request, HttpServletResponse response,
+				int dispatch) throws IOException {
+			requests.incrementAndGet();
+			HttpConnection.getCurrentConnection().getRequest().setHandled(true);
+			String[] resource = resources.get(target);
+			if (resource == null) {
+				response.sendError(HttpServletResponse.SC_NOT_FOUND);
+				return;
+			}
+			String etag = resource[1];
+			if (etag != null && etag.equals(request.getHeader("If-None-Match"))) {
+				notModified.incrementAndGet();
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return;
+			}
+			byte[] bytes = resource[0].getBytes("UTF-8");
+			response.setContentType(UrlRef.MIME_TYPE_KML);
+			response.setContentLength(bytes.length);
+			if (etag != null) response.setHeader("ETag", etag);
+			if (resource[2] != null) response.setHeader("Cache-Control", resource[2]);
+			response.getOutputStream().write(bytes);
+		}
+	}
+}
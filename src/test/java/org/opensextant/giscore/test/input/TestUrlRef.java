@@ -16,6 +16,7 @@ package org.opensextant.giscore.test.input;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
@@ -23,6 +24,9 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.apache.commons.io.IOUtils;
 import org.junit.AfterClass;
@@ -177,6 +181,77 @@ public class TestUrlRef {
 		}
 	}
 
+	/**
+	 * Test reading entries of a large local KMZ file and that a changed
+	 * file is read again
+	 */
+	@Test
+	public void testKmzEntries() throws URISyntaxException, IOException {
+		File file = File.createTempFile("entries", ".kmz");
+		try {
+			writeKmz(file, 500, "first");
+			URL url = file.toURI().toURL();
+			long start = System.nanoTime();
+			for (int i = 499; i >= 0; i -= 50) {
+				assertEquals("first " + i, read(new UrlRef(url, "kml/e" + i + ".kml")));
+			}
+			long time = System.nanoTime() - start;
+			assertEquals("space", read(new UrlRef(url, "kml/with%20space.kml")));
+			try {
+				read(new UrlRef(url, "kml/e500.kml"));
+				fail("Expected FileNotFoundException");
+			} catch (FileNotFoundException e) {
+				// expected
+			}
+
+			// the archive replaced while open is opened again
+			File replacement = File.createTempFile("entries", ".kmz");
+			writeKmz(replacement, 10, "second");
+			if (!replacement.renameTo(file)) {
+				// cannot replace open files on some platforms
+				UrlRef.closeKmzFiles();
+				assertTrue(file.delete());
+				assertTrue(replacement.renameTo(file));
+			}
+			if (!file.setLastModified(file.lastModified() + 2000)) {
+				System.err.println("Failed to change modified time of " + file);
+			}
+			assertEquals("second 9", read(new UrlRef(url, "kml/e9.kml")));
+			System.out.println("Read 10 entries in " + time / 1000000 + " ms");
+		} finally {
+			UrlRef.closeKmzFiles();
+			if (!file.delete()) file.deleteOnExit();
+		}
+	}
+
+	private static String read(UrlRef ref) throws IOException {
+		InputStream is = ref.getInputStream();
+		try {
+			return IOUtils.toString(is, "UTF-8");
+		} finally {
+			IOUtils.closeQuietly(is);
+		}
+	}
+
+	private static void writeKmz(File file, int count, String text) throws IOException {
+		ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(file));
+		try {
+			// padding that is slow to inflate
+			byte[] padding = new byte[64 * 1024];
+			new Random(count).nextBytes(padding);
+			for (int i = 0; i < count; i++) {
+				zos.putNextEntry(new ZipEntry("kml/e" + i + ".kml"));
+				zos.write((text + " " + i).getBytes("UTF-8"));
+				zos.putNextEntry(new ZipEntry("images/p" + i + ".png"));
+				zos.write(padding);
+			}
+			zos.putNextEntry(new ZipEntry("kml/with space.kml"));
+			zos.write("space".getBytes("UTF-8"));
+		} finally {
+			zos.close();
+		}
+	}
+
 	@Test
 	public void testDynamicURL() {
         try {
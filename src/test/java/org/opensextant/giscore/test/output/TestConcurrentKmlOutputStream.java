@@ -0,0 +1,192 @@
+/****************************************************************************************
+ *  TestConcurrentKmlOutputStream.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.test.output;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+import org.opensextant.giscore.DocumentType;
+import org.opensextant.giscore.Namespace;
+import org.opensextant.giscore.events.ContainerEnd;
+import org.opensextant.giscore.events.ContainerStart;
+import org.opensextant.giscore.events.DocumentStart;
+import org.opensextant.giscore.events.Element;
+import org.opensextant.giscore.events.Feature;
+import org.opensextant.giscore.events.IGISObject;
+import org.opensextant.giscore.geometry.Point;
+import org.opensextant.giscore.input.kml.IKml;
+import org.opensextant.giscore.input.kml.KmlInputStream;
+import org.opensextant.giscore.output.kml.ConcurrentKmlOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestConcurrentKmlOutputStream {
+
+	private static final int THREADS = 4;
+	private static final int COUNT = 250;
+
+	private static final Namespace gxNs = Namespace.getNamespace("gx", IKml.NS_GOOGLE_KML_EXT);
+
+	@Test
+	public void testConcurrentWrites() throws Exception {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		final ConcurrentKmlOutputStream kos = new ConcurrentKmlOutputStream(bos, "UTF-8", 512);
+		DocumentStart ds = new DocumentStart(DocumentType.KML);
+		ds.addNamespace(gxNs);
+		kos.write(ds);
+		kos.writeShared(new ContainerStart(IKml.DOCUMENT));
+
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		Thread[] threads = new Thread[THREADS];
+		for (int t = 0; t < THREADS; t++) {
+			final String name = "t" + t;
+			threads[t] = new Thread(new Runnable() {
+				public void run() {
+					try {
+						start.await();
+						ContainerStart folder = new ContainerStart(IKml.FOLDER);
+						folder.setName(name);
+						for (int i = 0; i < COUNT; i++) {
+							if (i % 50 == 0) kos.write(folder);
+							kos.write(createFeature(name + "-" + i, i));
+							if (i % 50 == 49) {
+								kos.write(new ContainerEnd());
+								// top level feature between the thread's folders
+								kos.write(createFeature(name + "-top" + i, i));
+							}
+						}
+					} catch (Throwable e) {
+						synchronized (errors) {
+							errors.add(e);
+						}
+					}
+				}
+			});
+			threads[t].start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertTrue(errors.toString(), errors.isEmpty());
+		kos.writeShared(new ContainerEnd());
+		kos.close();
+
+		KmlInputStream kis = new KmlInputStream(new ByteArrayInputStream(bos.toByteArray()));
+		List<String> path = new ArrayList<String>();
+		Map<String, Integer> counts = new HashMap<String, Integer>();
+		int folders = 0;
+		try {
+			IGISObject o;
+			while ((o = kis.read()) != null) {
+				if (o instanceof ContainerStart) {
+					path.add(((ContainerStart) o).getName());
+					if (IKml.FOLDER.equals(((ContainerStart) o).getType())) folders++;
+				} else if (o instanceof ContainerEnd) {
+					path.remove(path.size() - 1);
+				} else if (o instanceof Feature) {
+					Feature f = (Feature) o;
+					String name = f.getName();
+					String thread = name.substring(0, name.indexOf('-'));
+					if (name.contains("-top")) {
+						// top level features are directly in the shared Document
+						assertEquals(name, 1, path.size());
+					} else {
+						// others are in a folder written by the same thread
+						assertEquals(name, 2, path.size());
+						assertEquals(name, thread, path.get(1));
+					}
+					assertEquals(1, f.getElements().size());
+					assertEquals(gxNs.getURI(), f.getElements().get(0).getNamespaceURI());
+					Integer count = counts.get(thread);
+					counts.put(thread, count == null ? 1 : count + 1);
+				}
+			}
+		} finally {
+			kis.close();
+		}
+		assertTrue(path.isEmpty());
+		assertEquals(THREADS * COUNT / 50, folders);
+		assertEquals(THREADS, counts.size());
+		for (Integer count : counts.values()) {
+			assertEquals(COUNT + COUNT / 50, count.intValue());
+		}
+	}
+
+	@Test
+	public void testContainerNesting() throws Exception {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		ConcurrentKmlOutputStream kos = new ConcurrentKmlOutputStream(bos);
+		kos.write(new DocumentStart(DocumentType.KML));
+		kos.writeShared(new ContainerStart(IKml.DOCUMENT));
+		try {
+			kos.write(new ContainerEnd());
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			// expected: the Document was not started by this thread
+		}
+		kos.write(new ContainerStart(IKml.FOLDER));
+		kos.write(createFeature("a", 0));
+		try {
+			kos.writeShared(new ContainerEnd());
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			// expected: folder still open
+		}
+		try {
+			kos.write(new DocumentStart(DocumentType.KML));
+			fail("Expected IllegalStateException");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		kos.write(new ContainerEnd());
+		kos.writeShared(new ContainerEnd());
+		kos.close();
+
+		KmlInputStream kis = new KmlInputStream(new ByteArrayInputStream(bos.toByteArray()));
+		try {
+			assertTrue(kis.read() instanceof DocumentStart);
+			assertEquals(IKml.DOCUMENT, ((ContainerStart) kis.read()).getType());
+			assertEquals(IKml.FOLDER, ((ContainerStart) kis.read()).getType());
+			assertEquals("a", ((Feature) kis.read()).getName());
+			assertTrue(kis.read() instanceof ContainerEnd);
+			assertTrue(kis.read() instanceof ContainerEnd);
+			assertNull(kis.read());
+		} finally {
+			kis.close();
+		}
+	}
+
+	private static Feature createFeature(String name, int i) {
+		Feature f = new Feature();
+		f.setName(name);
+		f.setGeometry(new Point(i % 90, i % 180));
+		Element el = new Element(gxNs, "balloonVisibility");
+		el.setText("1");
+		f.getElements().add(el);
+		return f;
+	}
+
+}
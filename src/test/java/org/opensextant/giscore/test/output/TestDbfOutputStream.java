@@ -18,6 +18,8 @@
  ***************************************************************************************/
 package org.opensextant.giscore.test.output;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -35,6 +37,7 @@ import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.math.RandomUtils;
 import org.junit.Test;
+import org.opensextant.giscore.GISFactory;
 import org.opensextant.giscore.events.Row;
 import org.opensextant.giscore.events.Schema;
 import org.opensextant.giscore.events.SimpleField;
@@ -42,6 +45,7 @@ import org.opensextant.giscore.events.SimpleField.Type;
 import org.opensextant.giscore.input.dbf.DbfInputStream;
 import org.opensextant.giscore.output.dbf.DbfOutputStream;
 import org.opensextant.giscore.utils.DateParser;
+import org.opensextant.giscore.utils.MemoryBudget;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -141,6 +145,46 @@ public class TestDbfOutputStream {
         }
     }
 
+    /**
+     * Rows written to other than a file are buffered until the stream is
+     * closed, which must release the memory held by the buffer.
+     */
+    @Test
+    public void testBufferedClose() throws Exception {
+        Schema s = new Schema();
+        SimpleField s1 = new SimpleField("s1");
+        s1.setLength(20);
+        s.put(s1);
+        MemoryBudget budget = MemoryBudget.getProcessBudget();
+        long used = budget.getUsed();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        long limit = GISFactory.inMemoryBufferBytes.getAndSet(1L << 20);
+        try {
+            DbfOutputStream dbfos = new DbfOutputStream(bos, null);
+            dbfos.write(s);
+            for (int i = 0; i < 50; i++) {
+                Row r = new Row();
+                r.putData(s1, randomString(s1));
+                dbfos.write(r);
+            }
+            assertTrue(budget.getUsed() > used);
+            dbfos.close();
+            assertEquals(used, budget.getUsed());
+        } finally {
+            GISFactory.inMemoryBufferBytes.set(limit);
+        }
+
+        DbfInputStream dbfis = new DbfInputStream(new ByteArrayInputStream(bos.toByteArray()), null);
+        try {
+            assertNotNull(dbfis.read());
+            int count = 0;
+            while (dbfis.read() != null) count++;
+            assertEquals(50, count);
+        } finally {
+            dbfis.close();
+        }
+    }
+
     @Test
     public void testDbfOutputStreamBoolean() throws Exception {
         Schema s = new Schema();
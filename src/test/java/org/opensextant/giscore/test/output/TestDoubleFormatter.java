@@ -0,0 +1,94 @@
+/****************************************************************************************
+ *  TestDoubleFormatter.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.test.output;
+
+import java.io.StringWriter;
+import java.text.DecimalFormat;
+import java.util.Random;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.junit.Test;
+import org.opensextant.giscore.output.CoordinateWriter;
+import org.opensextant.giscore.output.DoubleFormatter;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestDoubleFormatter {
+
+	private static final double[] SPECIAL = {
+			0.0, -0.0, 0.5, -0.5, 1e-12, -1e-12, -34.93000000000001, 180, -180,
+			0.05, 0.15, 0.25, 2.5, 1e-5, -1e-7, 9.99999999999, 123456.789, 1e20,
+			Double.MAX_VALUE, Double.MIN_VALUE, Double.NaN, Double.NEGATIVE_INFINITY
+	};
+
+	@Test
+	public void testMatchesDecimalFormat() {
+		checkFormat(DoubleFormatter.DEFAULT, new DecimalFormat("0.##########"));
+		checkFormat(new DoubleFormatter(6), new DecimalFormat("##.######"));
+		checkFormat(new DoubleFormatter(5), new DecimalFormat("###.#####"));
+		checkFormat(new DoubleFormatter(0), new DecimalFormat("0"));
+	}
+
+	@Test
+	public void testCoordinateWriter() throws Exception {
+		StringWriter sw = new StringWriter();
+		XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(sw);
+		writer.writeStartElement("coordinates");
+		CoordinateWriter cw = new CoordinateWriter(writer, DoubleFormatter.DEFAULT);
+		DecimalFormat df = new DecimalFormat("0.##########");
+		StringBuilder expected = new StringBuilder("<coordinates>");
+		Random random = new Random(7);
+		// enough coordinates to flush the buffer several times
+		for (int i = 0; i < 5000; i++) {
+			double lon = random.nextDouble() * 360 - 180;
+			double lat = random.nextDouble() * 180 - 90;
+			if (i != 0) {
+				cw.append(' ');
+				expected.append(' ');
+			}
+			cw.append(lon);
+			cw.append(',');
+			cw.append(lat);
+			expected.append(df.format(lon)).append(',').append(df.format(lat));
+		}
+		cw.flush();
+		writer.writeEndElement();
+		writer.close();
+		expected.append("</coordinates>");
+		assertEquals(expected.toString(), sw.toString());
+	}
+
+	private static void checkFormat(DoubleFormatter formatter, DecimalFormat df) {
+		for (double d : SPECIAL) {
+			assertEquals(df.format(d), formatter.format(d));
+		}
+		Random random = new Random(42);
+		char[] buf = new char[DoubleFormatter.MAX_LENGTH + 3];
+		for (int i = 0; i < 100000; i++) {
+			double d;
+			switch (i % 4) {
+				case 0: d = random.nextDouble() * 360 - 180; break;
+				case 1: d = Math.round(random.nextDouble() * 1e7) / 1e5 - 50; break;
+				case 2: d = random.nextGaussian() * 1e4; break;
+				default: d = (random.nextInt(2000) - 1000) / Math.pow(10, random.nextInt(12));
+			}
+			int len = formatter.format(d, buf, 3);
+			assertEquals(df.format(d), new String(buf, 3, len - 3));
+		}
+	}
+
+}
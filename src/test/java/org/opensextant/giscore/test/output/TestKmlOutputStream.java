@@ -1277,4 +1277,33 @@ public class TestKmlOutputStream extends TestGISBase {
 		kos.close();
 	}
 
+	@Test
+	public void testWriteBatch() throws Exception {
+		List<IGISObject> objects = new ArrayList<IGISObject>();
+		objects.add(new DocumentStart(DocumentType.KML));
+		objects.add(new ContainerStart(IKml.FOLDER));
+		for (int i = 0; i < 100; i++) {
+			Feature f = new Feature();
+			f.setName("f" + i);
+			f.setGeometry(new Point(i % 90, i));
+			objects.add(f);
+		}
+		objects.add(new ContainerEnd());
+
+		ByteArrayOutputStream single = new ByteArrayOutputStream();
+		IGISOutputStream os = GISFactory.getOutputStream(DocumentType.KML, single);
+		for (IGISObject o : objects) {
+			os.write(o);
+		}
+		os.close();
+
+		ByteArrayOutputStream batch = new ByteArrayOutputStream();
+		os = GISFactory.getOutputStream(DocumentType.KML, batch);
+		GISFactory.writeBatch(os, objects.subList(0, 50));
+		GISFactory.writeBatch(os, objects.subList(50, objects.size()));
+		os.close();
+
+		assertEquals(single.toString("UTF-8"), batch.toString("UTF-8"));
+	}
+
 }
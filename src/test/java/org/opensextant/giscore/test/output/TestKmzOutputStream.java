@@ -177,4 +177,43 @@ public class TestKmzOutputStream {
 		Assert.assertEquals(f, features.get(1));
 	}
 
+	@Test
+	public void testParallelKmzStream() throws Exception {
+		byte[] expected = writeKmz(1);
+		byte[] actual = writeKmz(4);
+		Assert.assertArrayEquals(readEntry(expected, "doc.kml"), readEntry(actual, "doc.kml"));
+		Assert.assertArrayEquals(readEntry(expected, "data.txt"), readEntry(actual, "data.txt"));
+		List<IGISObject> features = new KmlReader(new ByteArrayInputStream(actual),
+				new URL("http://localhost/test.kmz"), null).readAll();
+		Assert.assertEquals(2001, features.size());
+	}
+
+	private static byte[] writeKmz(int threads) throws Exception {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		KmzOutputStream kmzos = new KmzOutputStream(bos, null, threads);
+		for (int i = 0; i < 2000; i++) {
+			Feature f = new Feature();
+			f.setName("test " + i);
+			f.setGeometry(new Point(new Geodetic2DPoint(
+					new Longitude(i % 180, Angle.DEGREES),
+					new Latitude(i % 90, Angle.DEGREES))));
+			kmzos.write(f);
+		}
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 50000; i++) sb.append(i).append('\n');
+		kmzos.addEntry(new ByteArrayInputStream(sb.toString().getBytes("UTF-8")), "data.txt");
+		kmzos.close();
+		return bos.toByteArray();
+	}
+
+	private static byte[] readEntry(byte[] kmz, String name) throws Exception {
+		ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(kmz));
+		ZipEntry entry;
+		while ((entry = zis.getNextEntry()) != null) {
+			if (name.equals(entry.getName())) return IOUtils.toByteArray(zis);
+		}
+		Assert.fail("Missing entry " + name);
+		return null;
+	}
+
 }
@@ -0,0 +1,181 @@
+/****************************************************************************************
+ *  TestStreamingShapefileOutput.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.test.output;
+
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.opensextant.giscore.GISFactory;
+import org.opensextant.giscore.events.Feature;
+import org.opensextant.giscore.events.IGISObject;
+import org.opensextant.giscore.events.Schema;
+import org.opensextant.giscore.events.SimpleField;
+import org.opensextant.giscore.geometry.Line;
+import org.opensextant.giscore.geometry.LinearRing;
+import org.opensextant.giscore.geometry.Point;
+import org.opensextant.giscore.geometry.Polygon;
+import org.opensextant.giscore.input.shapefile.SingleShapefileInputHandler;
+import org.opensextant.giscore.output.shapefile.SingleShapefileOutputHandler;
+import org.opensextant.giscore.output.shapefile.StreamingShapefileOutputStream;
+import org.opensextant.giscore.utils.FieldCachingObjectBuffer;
+import org.opensextant.giscore.utils.ObjectBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test writing shapefiles as the features arrive
+ */
+public class TestStreamingShapefileOutput extends TestShapefileBase {
+
+	/**
+	 * The files must match those written from a buffer
+	 */
+	@Test
+	public void testMatchesBuffered() throws Exception {
+		Schema schema = new Schema(new URI("urn:test"));
+		SimpleField id = new SimpleField("testid");
+		id.setLength(10);
+		schema.put(id);
+		SimpleField date = new SimpleField("today", SimpleField.Type.DATE);
+		schema.put(date);
+		SimpleField size = new SimpleField("size", SimpleField.Type.DOUBLE);
+		schema.put(size);
+		List<Feature> features = new ArrayList<Feature>();
+		for (int i = 0; i < 100; i++) {
+			Point cp = getRandomPoint(25.0);
+			List<Point> pts = new ArrayList<Point>(6);
+			for (int k = 0; k < 5; k++) {
+				pts.add(getRingPoint(cp, k, 5, 2, 1.5));
+			}
+			pts.add(pts.get(0));
+			List<LinearRing> inner = new ArrayList<LinearRing>(1);
+			List<Point> ipts = new ArrayList<Point>(6);
+			for (int k = 0; k < 5; k++) {
+				ipts.add(getRingPoint(cp, k, 5, .5, .2));
+			}
+			ipts.add(ipts.get(0));
+			inner.add(new LinearRing(ipts, true));
+			Feature f = new Feature();
+			f.putData(id, "id " + i);
+			f.putData(date, new Date(1000000000000L + i * 86400000L));
+			f.putData(size, i * 1.5);
+			f.setSchema(schema.getId());
+			f.setGeometry(new Polygon(new LinearRing(pts, true), inner));
+			features.add(f);
+		}
+
+		ObjectBuffer buffer = new FieldCachingObjectBuffer();
+		for (Feature f : features) {
+			buffer.write(f);
+		}
+		new SingleShapefileOutputHandler(schema, null, buffer, shapeOutputDir, "buffered", null).process();
+
+		StreamingShapefileOutputStream os = new StreamingShapefileOutputStream(shapeOutputDir, "streamed");
+		os.write(schema);
+		GISFactory.writeBatch(os, features);
+		os.close();
+		assertEquals(features.size(), os.getRecordCount());
+
+		for (String ext : new String[] { ".shp", ".shx", ".dbf", ".prj" }) {
+			byte[] expected = FileUtils.readFileToByteArray(new File(shapeOutputDir, "buffered" + ext));
+			byte[] actual = FileUtils.readFileToByteArray(new File(shapeOutputDir, "streamed" + ext));
+			assertTrue(ext, Arrays.equals(expected, actual));
+		}
+	}
+
+	/**
+	 * Write many points without a schema and read them back
+	 */
+	@Test
+	public void testPoints() throws Exception {
+		SimpleField id = new SimpleField("id", SimpleField.Type.INT);
+		SimpleField name = new SimpleField("name");
+		StreamingShapefileOutputStream os = new StreamingShapefileOutputStream(shapeOutputDir, "streampoints");
+		int count = 20000;
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < count; i++) {
+			Feature f = new Feature();
+			f.putData(id, i);
+			f.putData(name, "point " + i);
+			f.setGeometry(new Point(i * 0.001, -i * 0.002));
+			os.write(f);
+			if (i % 100 == 0) {
+				// skipped
+				os.write(new Feature());
+			}
+		}
+		os.close();
+		System.out.println("Wrote " + count + " points in " + (System.currentTimeMillis() - start) + " ms");
+
+		SingleShapefileInputHandler handler = new SingleShapefileInputHandler(shapeOutputDir, "streampoints");
+		try {
+			IGISObject ob = handler.read();
+			assertTrue(ob instanceof Schema);
+			assertEquals(2, ((Schema) ob).getKeys().size());
+			int n = 0;
+			while ((ob = handler.read()) != null) {
+				Feature f = (Feature) ob;
+				if (n == count - 1) {
+					Point pt = (Point) f.getGeometry();
+					assertEquals((count - 1) * 0.001, pt.getCenter().getLatitudeAsDegrees(), 1e-9);
+				}
+				n++;
+			}
+			assertEquals(count, n);
+		} finally {
+			handler.close();
+		}
+	}
+
+	@Test
+	public void testMixedGeometry() throws Exception {
+		StreamingShapefileOutputStream os = new StreamingShapefileOutputStream(shapeOutputDir, "streammixed");
+		Feature f = new Feature();
+		f.setGeometry(new Point(1.0, 2.0));
+		os.write(f);
+		f = new Feature();
+		List<Point> pts = new ArrayList<Point>();
+		pts.add(new Point(1.0, 2.0));
+		pts.add(new Point(2.0, 3.0));
+		f.setGeometry(new Line(pts));
+		try {
+			os.write(f);
+			fail("Expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected
+		} finally {
+			os.close();
+		}
+		assertEquals(1, os.getRecordCount());
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		StreamingShapefileOutputStream os = new StreamingShapefileOutputStream(shapeOutputDir, "streamempty");
+		os.write(new Schema());
+		os.write(new Feature());
+		os.close();
+		assertFalse(new File(shapeOutputDir, "streamempty.shp").exists());
+	}
+}
@@ -0,0 +1,171 @@
+/****************************************************************************************
+ *  TestSuperOverlayOutputStream.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantibility and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.test.output;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.opensextant.geodesy.Geodetic2DBounds;
+import org.opensextant.giscore.events.Feature;
+import org.opensextant.giscore.events.IGISObject;
+import org.opensextant.giscore.events.NetworkLink;
+import org.opensextant.giscore.events.Style;
+import org.opensextant.giscore.geometry.Point;
+import org.opensextant.giscore.input.kml.KmlReader;
+import org.opensextant.giscore.output.kml.SuperOverlayOutputStream;
+import org.opensextant.giscore.utils.KmlRegionBox;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestSuperOverlayOutputStream {
+
+	private static final int COUNT = 500;
+	private static final int MAX_FEATURES = 40;
+
+	@Test
+	public void testDirectory() throws Exception {
+		File dir = new File("testOutput/superoverlay");
+		FileUtils.deleteDirectory(dir);
+		SuperOverlayOutputStream sos = new SuperOverlayOutputStream(dir);
+		sos.setMaxFeatures(MAX_FEATURES);
+		sos.setBufferSize(50);
+		writeFeatures(sos);
+		sos.close();
+
+		File[] tiles = new File(dir, "tiles").listFiles();
+		assertNotNull(tiles);
+		assertEquals(sos.getTileCount(), tiles.length + 1);
+		assertTrue(tiles.length > 4);
+
+		Set<String> names = new HashSet<String>();
+		int links = readTile(new File(dir, "doc.kml"), names);
+		for (File tile : tiles) {
+			links += readTile(tile, names);
+		}
+		assertEquals(COUNT + 1, names.size());
+		assertEquals(tiles.length, links);
+
+		// every tile below the root has a distinct region
+		KmlRegionBox regionBox = new KmlRegionBox();
+		File bbox = new File(dir, "bbox.kml");
+		regionBox.setOutFile(bbox);
+		try {
+			regionBox.checkSource(dir);
+		} finally {
+			regionBox.close();
+		}
+		List<Geodetic2DBounds> regions = regionBox.getRegions();
+		assertEquals(tiles.length, regions.size());
+	}
+
+	@Test
+	public void testKmz() throws Exception {
+		File file = new File("testOutput/superoverlay.kmz");
+		file.getParentFile().mkdirs();
+		SuperOverlayOutputStream sos = new SuperOverlayOutputStream(new FileOutputStream(file));
+		sos.setMaxFeatures(MAX_FEATURES);
+		sos.setMaxLevel(2);
+		writeFeatures(sos);
+		sos.close();
+		assertTrue(sos.getTileCount() > 1 && sos.getTileCount() <= 1 + 4 + 16);
+
+		KmlReader reader = new KmlReader(file);
+		Set<String> names = new HashSet<String>();
+		try {
+			addNames(reader.readAll(), names);
+			addNames(reader.importFromNetworkLinks(), names);
+		} finally {
+			reader.close();
+		}
+		assertEquals(COUNT + 1, names.size());
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		File file = new File("testOutput/superoverlay-empty.kmz");
+		file.getParentFile().mkdirs();
+		SuperOverlayOutputStream sos = new SuperOverlayOutputStream(new FileOutputStream(file));
+		sos.close();
+		assertEquals(1, sos.getTileCount());
+		KmlReader reader = new KmlReader(file);
+		try {
+			assertTrue(reader.getNetworkLinks().isEmpty());
+			reader.readAll();
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static void writeFeatures(SuperOverlayOutputStream sos) {
+		Style style = new Style("pt");
+		style.setIconStyle(null, 1.0);
+		sos.write(style);
+		Random random = new Random(42);
+		for (int i = 0; i < COUNT; i++) {
+			Feature f = new Feature();
+			f.setName("f" + i);
+			f.setStyleUrl("#pt");
+			// cluster half the points so the quadtree is unbalanced
+			double lat = i % 2 == 0 ? 40 + random.nextDouble() : random.nextDouble() * 120 - 60;
+			double lon = i % 2 == 0 ? -75 + random.nextDouble() : random.nextDouble() * 300 - 150;
+			f.setGeometry(new Point(lat, lon));
+			sos.write(f);
+		}
+		Feature f = new Feature();
+		f.setName("no geometry");
+		sos.write(f);
+	}
+
+	/**
+	 * @return count of NetworkLinks in the tile
+	 */
+	private static int readTile(File file, Set<String> names) throws Exception {
+		KmlReader reader = new KmlReader(file);
+		int features = 0;
+		int links = 0;
+		try {
+			for (IGISObject o : reader.readAll()) {
+				if (o instanceof NetworkLink) {
+					links++;
+				} else if (o instanceof Feature) {
+					assertTrue(names.add(((Feature) o).getName()));
+					features++;
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		// root also holds the feature without geometry
+		assertTrue(file.getName(), features <= MAX_FEATURES + ("doc.kml".equals(file.getName()) ? 1 : 0));
+		return links;
+	}
+
+	private static void addNames(List<IGISObject> objects, Set<String> names) {
+		for (IGISObject o : objects) {
+			if (o instanceof Feature && !(o instanceof NetworkLink)) {
+				assertTrue(names.add(((Feature) o).getName()));
+			}
+		}
+	}
+
+}
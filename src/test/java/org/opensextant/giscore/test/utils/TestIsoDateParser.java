@@ -0,0 +1,186 @@
+/****************************************************************************************
+ *  TestIsoDateParser.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.test.utils;
+
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.datatype.DatatypeFactory;
+
+import org.junit.Test;
+import org.opensextant.giscore.input.kml.IKml;
+import org.opensextant.giscore.utils.IsoDateParser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class TestIsoDateParser {
+
+	@Test
+	public void testForms() {
+		String[] dates = {
+				"1997",                      "1997-01-01T00:00:00.000Z", // gYear
+				"500",                       "0500-01-01T00:00:00.000Z", // gYear with fewer digits
+				"1997-07",                   "1997-07-01T00:00:00.000Z", // gYearMonth
+				"1997-07-16",                "1997-07-16T00:00:00.000Z", // date
+				"1997-07-16Z",               "1997-07-16T00:00:00.000Z", // date, time zone ignored
+				"1997-07-16-05:00",          "1997-07-16T00:00:00.000Z",
+				"1997-07-16T07:30:15Z",      "1997-07-16T07:30:15.000Z",
+				"1997-07-16T07:30:15.30Z",   "1997-07-16T07:30:15.300Z",
+				"1997-07-16T07:30:15.1239Z", "1997-07-16T07:30:15.123Z", // truncated to millis
+				"1997-07-16T10:30:15+03:00", "1997-07-16T07:30:15.000Z",
+				"1997-07-16T02:30:15-0500",  "1997-07-16T07:30:15.000Z",
+				"1997-07-16T09:30+02",       "1997-07-16T07:30:00.000Z",
+				"2009-03-14T16:10-05:00",    "2009-03-14T21:10:00.000Z", // no seconds with time zone
+				"2009-03-14T21:06:45",       "2009-03-14T21:06:45.000Z", // UTC by default
+				"2009-03-14T21:06",          "2009-03-14T21:06:00.000Z",
+				"2009-3-4T1:06",             "2009-03-04T01:06:00.000Z", // lax single digits
+				"2008-12-31T24:00:00Z",      "2009-01-01T00:00:00.000Z",
+				"2000-02-29T12:00:00Z",      "2000-02-29T12:00:00.000Z",
+				"1500-02-29",                "1500-02-29T00:00:00.000Z", // Julian leap year
+				" 2009-03-14T21:06:45Z\n",   "2009-03-14T21:06:45.000Z"
+		};
+		SimpleDateFormat df = new SimpleDateFormat(IKml.ISO_DATE_FMT);
+		df.setTimeZone(TimeZone.getTimeZone("UTC"));
+		for (int i = 0; i < dates.length; i += 2) {
+			Date date = IsoDateParser.parse(dates[i]);
+			assertNotNull(dates[i], date);
+			assertEquals(dates[i], dates[i + 1], df.format(date));
+		}
+	}
+
+	@Test
+	public void testInvalid() {
+		String[] dates = {
+				null, "", " ", "Z", "abc", "1997-", "1997-13", "1997-00-10", "1997-02-29",
+				"1997-07-16T", "1997-07-16T07", "1997-07-16T07:60", "1997-07-16T07:30:61Z",
+				"1997-07-16T07:30:15.Z", "1997-07-16T24:00:01Z", "1997-07-16T07:30:15+3",
+				"1997-07-16T07:30:15+03:", "1997-07-16T07:30:15+15:00", "1997-07-16T07:30:15EST",
+				"1997-07-16T07:30:15Z junk", "05/29/2012"
+		};
+		for (String date : dates) {
+			assertNull(date, IsoDateParser.parse(date));
+		}
+	}
+
+	@Test
+	public void testParsePosition() {
+		String text = "<when>1997-07-16T07:30:15Z</when>";
+		ParsePosition pos = new ParsePosition(6);
+		Date date = IsoDateParser.parse(text, pos);
+		assertEquals(869038215000L, date.getTime());
+		assertEquals(26, pos.getIndex());
+		assertEquals(-1, pos.getErrorIndex());
+
+		pos = new ParsePosition(0);
+		assertNull(IsoDateParser.parse("1997-07-16T07:x", pos));
+		assertEquals(0, pos.getIndex());
+		assertEquals(14, pos.getErrorIndex());
+	}
+
+	@Test
+	public void testBasicDate() {
+		assertEquals(IsoDateParser.parse("2012-05-29"), IsoDateParser.parseBasicDate("20120529"));
+		assertEquals(IsoDateParser.parse("1200-02-29"), IsoDateParser.parseBasicDate("12000229"));
+		assertNull(IsoDateParser.parseBasicDate("20120532"));
+		assertNull(IsoDateParser.parseBasicDate("2012052"));
+		assertNull(IsoDateParser.parseBasicDate("2012-5-2"));
+		assertNull(IsoDateParser.parseBasicDate(null));
+	}
+
+	/**
+	 * Compare with the XML Schema parsing of DatatypeFactory across the
+	 * Gregorian calendar and time zones
+	 */
+	@Test
+	public void testMatchesDatatypeFactory() throws Exception {
+		DatatypeFactory factory = DatatypeFactory.newInstance();
+		for (String date : randomDates(new Random(31), 20000)) {
+			assertEquals(date, factory.newXMLGregorianCalendar(date).toGregorianCalendar().getTime(),
+					IsoDateParser.parse(date));
+		}
+	}
+
+	@Test
+	public void testConcurrentParse() throws Exception {
+		final List<String> dates = randomDates(new Random(5), 2000);
+		final List<Date> expected = new ArrayList<Date>(dates.size());
+		for (String date : dates) {
+			expected.add(IsoDateParser.parse(date));
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for (int t = 0; t < 8; t++) {
+				results.add(executor.submit(new Callable<Boolean>() {
+					public Boolean call() {
+						for (int i = 0; i < dates.size(); i++) {
+							if (!expected.get(i).equals(IsoDateParser.parse(dates.get(i)))) {
+								return Boolean.FALSE;
+							}
+						}
+						return Boolean.TRUE;
+					}
+				}));
+			}
+			for (Future<Boolean> result : results) {
+				assertEquals(Boolean.TRUE, result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	private static List<String> randomDates(Random random, int count) {
+		List<String> dates = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++) {
+			int year = 1583 + random.nextInt(1000);
+			int month = 1 + random.nextInt(12);
+			int day = 1 + random.nextInt(28);
+			StringBuilder sb = new StringBuilder();
+			sb.append(String.format("%04d-%02d-%02dT%02d:%02d:%02d", year, month, day,
+					random.nextInt(24), random.nextInt(60), random.nextInt(60)));
+			if (random.nextBoolean()) {
+				sb.append('.').append(random.nextInt(1000));
+			}
+			switch (random.nextInt(3)) {
+				case 0:
+					sb.append('Z');
+					break;
+				case 1:
+					int offset = random.nextInt(14 * 60 * 2 + 1) - 14 * 60;
+					sb.append(String.format("%c%02d:%02d", offset < 0 ? '-' : '+',
+							Math.abs(offset) / 60, Math.abs(offset) % 60));
+					break;
+				default:
+					// XML Schema dateTime without time zone is in local time so always add one
+					sb.append("+00:00");
+			}
+			dates.add(sb.toString());
+		}
+		return dates;
+	}
+
+}
@@ -31,14 +31,19 @@ import org.opensextant.giscore.events.Feature;
 import org.opensextant.giscore.events.Row;
 import org.opensextant.giscore.events.Schema;
 import org.opensextant.giscore.events.SimpleField;
+import org.opensextant.giscore.geometry.Line;
 import org.opensextant.giscore.geometry.Point;
 import org.opensextant.giscore.utils.FieldCachingObjectBuffer;
 import org.opensextant.giscore.utils.IDataSerializable;
+import org.opensextant.giscore.utils.MemoryBudget;
 import org.opensextant.giscore.utils.ObjectBuffer;
+import org.opensextant.giscore.utils.ObjectStreamCodec;
+import org.opensextant.giscore.utils.SpillingBufferPool;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test object buffers for several different scenarios
@@ -81,6 +86,174 @@ public class TestObjectBuffer {
 		doTest(objects, buffer);
 	}
 
+	@Test
+	public void testSharedPool() throws Exception {
+		SpillingBufferPool pool = new SpillingBufferPool(max);
+		try {
+			ObjectBuffer[] buffers = new ObjectBuffer[3];
+			List<List<IDataSerializable>> expected = new ArrayList<List<IDataSerializable>>();
+			for (int i = 0; i < buffers.length; i++) {
+				buffers[i] = pool.createBuffer();
+				expected.add(new ArrayList<IDataSerializable>());
+			}
+			// interleave writes so the buffers spill several segments each
+			for (int i = 0; i < max * 5; i++) {
+				Feature f = makePointFeature();
+				f.setName(Integer.toString(i));
+				int b = i % 7 == 0 ? 0 : i % buffers.length;
+				buffers[b].write(f);
+				expected.get(b).add(f);
+				assertTrue(pool.getMemoryCount() <= 2 * max);
+			}
+			pool.flush();
+			assertTrue(pool.getSegmentCount() > buffers.length);
+			assertEquals(pool.getSpilledObjectCount(), max * 5 - pool.getMemoryCount());
+			assertTrue(pool.getSpilledByteCount() > 0);
+			for (int i = 0; i < buffers.length; i++) {
+				// read twice to check reset
+				for (int pass = 0; pass < 2; pass++) {
+					buffers[i].resetReadIndex();
+					for (IDataSerializable object : expected.get(i)) {
+						assertEquals(object, buffers[i].read());
+					}
+					assertNull(buffers[i].read());
+				}
+			}
+			buffers[0].close();
+			assertEquals(0, buffers[0].count());
+		} finally {
+			pool.close();
+		}
+	}
+
+	@Test
+	public void testCodecs() throws Exception {
+		for (ObjectStreamCodec codec : new ObjectStreamCodec[] {
+				ObjectStreamCodec.COMPACT, ObjectStreamCodec.COMPACT_COMPRESSED }) {
+			ObjectBuffer buffer = new FieldCachingObjectBuffer(max);
+			buffer.setCodec(codec);
+			doTest(setupTest(max * 3, buffer), buffer);
+
+			SpillingBufferPool pool = new SpillingBufferPool(max, codec);
+			try {
+				ObjectBuffer pooled = pool.createBuffer();
+				assertEquals(codec, pooled.getCodec());
+				List<IDataSerializable> objects = new ArrayList<IDataSerializable>();
+				for (int i = 0; i < max * 3; i++) {
+					Feature f = makePointFeature();
+					pooled.write(f);
+					objects.add(f);
+				}
+				pool.flush();
+				assertTrue(pool.getSegmentCount() > 1);
+				doTest(objects.toArray(new IDataSerializable[objects.size()]), pooled);
+			} finally {
+				pool.close();
+			}
+		}
+	}
+
+	@Test
+	public void testMemoryBudget() throws Exception {
+		Feature probe = makePointFeature();
+		long size = probe.estimateSize();
+		// room for about five features
+		MemoryBudget budget = new MemoryBudget(size * 5 + size / 2);
+		ObjectBuffer first = new FieldCachingObjectBuffer(budget);
+		ObjectBuffer second = new FieldCachingObjectBuffer(budget);
+		List<IDataSerializable> firstObjects = new ArrayList<IDataSerializable>();
+		List<IDataSerializable> secondObjects = new ArrayList<IDataSerializable>();
+		try {
+			for (int i = 0; i < 4; i++) {
+				Feature f = makePointFeature();
+				first.write(f);
+				firstObjects.add(f);
+			}
+			assertEquals(0, budget.getEvictionCount());
+			for (int i = 0; i < 2; i++) {
+				Feature f = makePointFeature();
+				second.write(f);
+				secondObjects.add(f);
+			}
+			// least recently written buffer is evicted first
+			assertEquals(1, budget.getEvictionCount());
+			assertEquals(2 * size, budget.getUsed());
+			for (int i = 0; i < 20; i++) {
+				Feature f = makePointFeature();
+				if (i % 3 == 0) {
+					first.write(f);
+					firstObjects.add(f);
+				} else {
+					second.write(f);
+					secondObjects.add(f);
+				}
+				assertTrue(budget.getUsed() <= budget.getLimit());
+			}
+			assertTrue(budget.getPeak() > budget.getLimit());
+			assertTrue(budget.getEvictedBytes() > 0);
+			assertTrue(budget.getEvictionCount() > 1);
+		} finally {
+			try {
+				doTest(firstObjects.toArray(new IDataSerializable[firstObjects.size()]), first);
+				doTest(secondObjects.toArray(new IDataSerializable[secondObjects.size()]), second);
+			} finally {
+				first.close();
+				second.close();
+			}
+		}
+		assertEquals(0, budget.getUsed());
+	}
+
+	/**
+	 * A buffer whose output stream was closed, as FeatureSorter does, must
+	 * not be evicted when another buffer of the budget is written.
+	 */
+	@Test
+	public void testMemoryBudgetClosedOutput() throws Exception {
+		Feature probe = makePointFeature();
+		long size = probe.estimateSize();
+		MemoryBudget budget = new MemoryBudget(size * 3 + size / 2);
+		ObjectBuffer first = new FieldCachingObjectBuffer(budget);
+		ObjectBuffer second = new FieldCachingObjectBuffer(budget);
+		List<IDataSerializable> firstObjects = new ArrayList<IDataSerializable>();
+		List<IDataSerializable> secondObjects = new ArrayList<IDataSerializable>();
+		try {
+			for (int i = 0; i < 6; i++) {
+				Feature f = makePointFeature();
+				first.write(f);
+				firstObjects.add(f);
+			}
+			// first now has a secondary store and elements in memory
+			assertEquals(1, budget.getEvictionCount());
+			first.closeOutputStream();
+			for (int i = 0; i < 6; i++) {
+				Feature f = makePointFeature();
+				second.write(f);
+				secondObjects.add(f);
+			}
+			assertTrue(budget.getEvictionCount() > 1);
+			doTest(firstObjects.toArray(new IDataSerializable[firstObjects.size()]), first);
+			doTest(secondObjects.toArray(new IDataSerializable[secondObjects.size()]), second);
+		} finally {
+			first.close();
+			second.close();
+		}
+		assertEquals(0, budget.getUsed());
+	}
+
+	@Test
+	public void testEstimatedSize() throws Exception {
+		Feature point = makePointFeature();
+		Feature line = makePointFeature();
+		List<Point> pts = new ArrayList<Point>();
+		for (int i = 0; i < 1000; i++) {
+			pts.add(new Point(i * 0.01, i * 0.01));
+		}
+		line.setGeometry(new Line(pts));
+		assertTrue(point.estimateSize() > 0);
+		assertTrue(line.estimateSize() > point.estimateSize() + 1000 * 16);
+	}
+
 	@Test
 	public void testPoints() throws Exception {
 		final int count = 4;
@@ -0,0 +1,290 @@
+/****************************************************************************************
+ *  TestObjectStreamCodec.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantability and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.test.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.ObjectUtils;
+import org.junit.Test;
+import org.opensextant.giscore.events.Feature;
+import org.opensextant.giscore.events.SimpleField;
+import org.opensextant.giscore.geometry.Line;
+import org.opensextant.giscore.geometry.Point;
+import org.opensextant.giscore.utils.Color;
+import org.opensextant.giscore.utils.LzBlockInputStream;
+import org.opensextant.giscore.utils.LzBlockOutputStream;
+import org.opensextant.giscore.utils.ObjectStreamCodec;
+import org.opensextant.giscore.utils.SimpleFieldCacher;
+import org.opensextant.giscore.utils.SimpleObjectInputStream;
+import org.opensextant.giscore.utils.SimpleObjectOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestObjectStreamCodec {
+
+	private static final ObjectStreamCodec[] CODECS = {
+			ObjectStreamCodec.SIMPLE, ObjectStreamCodec.COMPACT, ObjectStreamCodec.COMPACT_COMPRESSED
+	};
+
+	private static final long[] LONGS = {
+			0, 1, -1, 63, -64, 64, 127, 128, Short.MIN_VALUE, Short.MAX_VALUE,
+			Integer.MIN_VALUE, Integer.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE
+	};
+
+	private static final double[] DOUBLES = {
+			0.0, -0.0, 1.0, 1.0, 38.8977, -77.0365, 38.8978, -77.0366, Double.NaN,
+			Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.MIN_VALUE,
+			Double.MAX_VALUE, 1e-300, 0.1, 0.1, 0.1, 1.0
+	};
+
+	private static final String[] STRINGS = {
+			null, "", "a", "été", "中文", "🌍", "\ud800 unpaired", "\u0000"
+	};
+
+	@Test
+	public void testPrimitives() throws Exception {
+		for (ObjectStreamCodec codec : CODECS) {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			SimpleObjectOutputStream out = codec.createOutputStream(bos, null);
+			for (long value : LONGS) {
+				out.writeLong(value);
+				out.writeInt((int) value);
+				out.writeShort((short) value);
+			}
+			for (double value : DOUBLES) {
+				out.writeDouble(value);
+			}
+			for (String value : STRINGS) {
+				out.writeString(value);
+			}
+			out.writeEnum(SimpleField.Type.DATE);
+			out.writeEnum(null);
+			out.writeBoolean(true);
+			out.writeByte(-3);
+			out.writeFloat(1.5f);
+			out.close();
+
+			SimpleObjectInputStream in = codec.createInputStream(new ByteArrayInputStream(bos.toByteArray()));
+			for (long value : LONGS) {
+				assertEquals(codec.toString(), value, in.readLong());
+				assertEquals(codec.toString(), (int) value, in.readInt());
+				assertEquals(codec.toString(), (short) value, in.readShort());
+			}
+			for (double value : DOUBLES) {
+				// compare bits to distinguish -0.0 and NaN
+				assertEquals(codec.toString(), Double.doubleToRawLongBits(value),
+						Double.doubleToRawLongBits(in.readDouble()));
+			}
+			for (String value : STRINGS) {
+				assertEquals(codec.toString(), value, in.readString());
+			}
+			assertEquals(SimpleField.Type.DATE, in.readEnum(SimpleField.Type.class));
+			assertNull(in.readEnum(SimpleField.Type.class));
+			assertTrue(in.readBoolean());
+			assertEquals(-3, in.readByte());
+			assertEquals(1.5f, in.readFloat(), 0f);
+			// end of stream
+			assertNull(in.readObject());
+			in.close();
+		}
+	}
+
+	@Test
+	public void testScalars() throws Exception {
+		Object[] scalars = {
+				null, ObjectUtils.NULL, (short) -5, 7, -1L << 40, 3.25, 2.5f, "text", true,
+				new Date(1234567890123L), new Color(10, 20, 30, 40)
+		};
+		for (ObjectStreamCodec codec : CODECS) {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			SimpleObjectOutputStream out = codec.createOutputStream(bos, null);
+			for (Object scalar : scalars) {
+				out.writeScalar(scalar);
+			}
+			out.close();
+			SimpleObjectInputStream in = codec.createInputStream(new ByteArrayInputStream(bos.toByteArray()));
+			for (Object scalar : scalars) {
+				assertEquals(codec.toString(), scalar, in.readScalar());
+			}
+			in.close();
+		}
+	}
+
+	@Test
+	public void testLongString() throws Exception {
+		// longer than modified UTF-8 allows
+		char[] chars = new char[70000];
+		Arrays.fill(chars, '€');
+		String text = new String(chars);
+		for (ObjectStreamCodec codec : new ObjectStreamCodec[] {
+				ObjectStreamCodec.COMPACT, ObjectStreamCodec.COMPACT_COMPRESSED }) {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			SimpleObjectOutputStream out = codec.createOutputStream(bos, null);
+			out.writeString(text);
+			out.close();
+			SimpleObjectInputStream in = codec.createInputStream(new ByteArrayInputStream(bos.toByteArray()));
+			assertEquals(text, in.readString());
+			in.close();
+		}
+	}
+
+	/**
+	 * Write features with lines through each codec, check the coordinates
+	 * are unchanged and the compact encodings are smaller. Points are
+	 * written in degrees and held in radians, so the round trip may differ
+	 * in the last bit.
+	 */
+	@Test
+	public void testFeatures() throws Exception {
+		List<Feature> features = makeLineFeatures(new Random(7), 200);
+		int[] sizes = new int[CODECS.length];
+		for (int c = 0; c < CODECS.length; c++) {
+			ObjectStreamCodec codec = CODECS[c];
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			SimpleObjectOutputStream out = codec.createOutputStream(bos, new SimpleFieldCacher());
+			for (Feature f : features) {
+				out.writeObject(f);
+			}
+			out.close();
+			sizes[c] = bos.size();
+
+			SimpleObjectInputStream in = codec.createInputStream(new ByteArrayInputStream(bos.toByteArray()));
+			for (Feature f : features) {
+				Feature read = (Feature) in.readObject();
+				assertTrue(codec.toString(), f.approximatelyEquals(read));
+				List<Point> expected = ((Line) f.getGeometry()).getPoints();
+				List<Point> points = ((Line) read.getGeometry()).getPoints();
+				assertEquals(expected.size(), points.size());
+				for (int i = 0; i < expected.size(); i++) {
+					assertEquals(expected.get(i).getCenter().getLatitudeAsDegrees(),
+							points.get(i).getCenter().getLatitudeAsDegrees(), 1e-12);
+					assertEquals(expected.get(i).getCenter().getLongitudeAsDegrees(),
+							points.get(i).getCenter().getLongitudeAsDegrees(), 1e-12);
+				}
+			}
+			assertNull(in.readObject());
+			in.close();
+		}
+		assertTrue(sizes[1] < sizes[0] * 3 / 4);
+		assertTrue(sizes[2] < sizes[1]);
+	}
+
+	@Test
+	public void testLzBlocks() throws Exception {
+		Random random = new Random(11);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; sb.length() < 300000; i++) {
+			sb.append("<Placemark id=\"").append(i).append("\"><name>feature ")
+					.append(i % 50).append("</name></Placemark>\n");
+		}
+		byte[] repetitive = sb.toString().getBytes("UTF-8");
+		byte[] noise = new byte[100000];
+		random.nextBytes(noise);
+		byte[] runs = new byte[70000];
+		Arrays.fill(runs, 20000, 70000, (byte) 9);
+		for (byte[] data : new byte[][] { repetitive, noise, runs, new byte[0], { 1, 2, 3 } }) {
+			for (int blockSize : new int[] { 1, 100, LzBlockOutputStream.DEFAULT_BLOCK_SIZE }) {
+				ByteArrayOutputStream bos = new ByteArrayOutputStream();
+				OutputStream out = new LzBlockOutputStream(bos, blockSize);
+				// mix single bytes, arrays and flushes
+				int i = 0;
+				while (i < data.length) {
+					if (random.nextInt(10) == 0) {
+						out.write(data[i++]);
+					} else {
+						int n = Math.min(data.length - i, random.nextInt(20000));
+						out.write(data, i, n);
+						i += n;
+						if (random.nextInt(5) == 0) out.flush();
+					}
+				}
+				out.close();
+				if (data == repetitive && blockSize > 100) {
+					assertTrue(bos.size() < data.length / 3);
+				}
+				InputStream in = new LzBlockInputStream(new ByteArrayInputStream(bos.toByteArray()));
+				assertArrayEquals(data, IOUtils.toByteArray(in));
+				assertEquals(-1, in.read());
+				in.close();
+			}
+		}
+	}
+
+	@Test
+	public void testLzCorrupt() throws Exception {
+		byte[] data = new byte[10000];
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) (i % 10);
+		}
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		OutputStream out = new LzBlockOutputStream(bos);
+		out.write(data);
+		out.close();
+		byte[] compressed = bos.toByteArray();
+		// point the first match offset before the start of the block
+		compressed[8 + 1 + 10] = (byte) 0xff;
+		try {
+			IOUtils.toByteArray(new LzBlockInputStream(new ByteArrayInputStream(compressed)));
+			fail("Expected StreamCorruptedException");
+		} catch (StreamCorruptedException e) {
+			// expected
+		}
+	}
+
+	private static List<Feature> makeLineFeatures(Random random, int count) throws Exception {
+		URI schema = new URI("#lines");
+		SimpleField name = new SimpleField("name");
+		SimpleField id = new SimpleField("id", SimpleField.Type.INT);
+		SimpleField speed = new SimpleField("speed", SimpleField.Type.DOUBLE);
+		List<Feature> features = new ArrayList<Feature>(count);
+		for (int i = 0; i < count; i++) {
+			Feature f = new Feature();
+			f.setSchema(schema);
+			f.setName("track " + i);
+			f.setStartTime(new Date(1300000000000L + i * 60000L));
+			f.putData(name, "track " + i);
+			f.putData(id, i);
+			f.putData(speed, random.nextInt(1000) / 10.0);
+			double lat = 38.0 + random.nextDouble();
+			double lon = -77.0 + random.nextDouble();
+			List<Point> pts = new ArrayList<Point>();
+			for (int p = 0; p < 50; p++) {
+				lat += (random.nextDouble() - 0.5) * 0.001;
+				lon += (random.nextDouble() - 0.5) * 0.001;
+				pts.add(new Point(lat, lon));
+			}
+			f.setGeometry(new Line(pts));
+			features.add(f);
+		}
+		return features;
+	}
+
+}
@@ -0,0 +1,135 @@
+/****************************************************************************************
+ *  TestParallelZipOutputStream.java
+ *
+ *  (C) Copyright MITRE Corporation 2013
+ *
+ *  The program is provided "as is" without any warranty express or implied, including
+ *  the warranty of non-infringement and the implied warranties of merchantibility and
+ *  fitness for a particular purpose.  The Copyright owner will not be liable for any
+ *  damages suffered by you as a result of using the Program.  In no event will the
+ *  Copyright owner be liable for any special, indirect or consequential damages or
+ *  lost profits even if the Copyright owner has been advised of the possibility of
+ *  their occurrence.
+ *
+ ***************************************************************************************/
+package org.opensextant.giscore.test.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.opensextant.giscore.utils.ParallelZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestParallelZipOutputStream {
+
+	private static final int CHUNK = 1000;
+
+	private static final int[] SIZES = { 0, 1, CHUNK - 1, CHUNK, CHUNK + 1, 37 * CHUNK + 17 };
+
+	@Test
+	public void testParallel() throws Exception {
+		checkZip(4);
+	}
+
+	@Test
+	public void testSequential() throws Exception {
+		checkZip(1);
+	}
+
+	@Test
+	public void testDuplicateEntry() throws Exception {
+		ParallelZipOutputStream zos = new ParallelZipOutputStream(new ByteArrayOutputStream(), 2, CHUNK);
+		try {
+			zos.putNextEntry(new ZipEntry("a.txt"));
+			zos.putNextEntry(new ZipEntry("a.txt"));
+			fail("Expected ZipException");
+		} catch (ZipException e) {
+			// expected
+		} finally {
+			zos.close();
+		}
+	}
+
+	private static void checkZip(int threads) throws Exception {
+		byte[][] data = new byte[SIZES.length][];
+		Random random = new Random(1234);
+		for (int i = 0; i < SIZES.length; i++) {
+			data[i] = createData(random, SIZES[i]);
+		}
+		File temp = File.createTempFile("test", ".zip");
+		try {
+			FileOutputStream fos = new FileOutputStream(temp);
+			ParallelZipOutputStream zos = new ParallelZipOutputStream(fos, threads, CHUNK);
+			assertEquals(threads > 1, zos.isParallel());
+			for (int i = 0; i < data.length; i++) {
+				zos.putNextEntry(new ZipEntry("dir/entry" + i + ".txt"));
+				// write in pieces that do not line up with the chunks
+				int off = 0;
+				while (off < data[i].length) {
+					int len = Math.min(data[i].length - off, 1 + random.nextInt(3 * CHUNK));
+					zos.write(data[i], off, len);
+					off += len;
+				}
+			}
+			zos.putNextEntry(new ZipEntry("caf\u00e9.txt"));
+			zos.write('x');
+			zos.close();
+
+			byte[] zip = FileUtils.readFileToByteArray(temp);
+			ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zip));
+			for (int i = 0; i < data.length; i++) {
+				ZipEntry entry = zis.getNextEntry();
+				assertEquals("dir/entry" + i + ".txt", entry.getName());
+				assertArrayEquals(entry.getName(), data[i], IOUtils.toByteArray(zis));
+			}
+			assertEquals("caf\u00e9.txt", zis.getNextEntry().getName());
+			assertEquals("x", IOUtils.toString(zis));
+			assertNull(zis.getNextEntry());
+
+			ZipFile zf = new ZipFile(temp);
+			try {
+				assertEquals(data.length + 1, zf.size());
+				for (int i = 0; i < data.length; i++) {
+					ZipEntry entry = zf.getEntry("dir/entry" + i + ".txt");
+					assertEquals(data[i].length, entry.getSize());
+					assertArrayEquals(data[i], IOUtils.toByteArray(zf.getInputStream(entry)));
+				}
+			} finally {
+				zf.close();
+			}
+			assertTrue(zip.length < 37 * CHUNK);
+		} finally {
+			if (!temp.delete()) temp.deleteOnExit();
+		}
+	}
+
+	/**
+	 * Create compressible text with repeats across chunk boundaries
+	 */
+	private static byte[] createData(Random random, int size) {
+		String[] words = { "Placemark", "coordinates", "<name>", "</name>", "LineString", " ", "\n" };
+		StringBuilder sb = new StringBuilder(size + 20);
+		while (sb.length() < size) {
+			sb.append(words[random.nextInt(words.length)]);
+			if (random.nextInt(4) == 0) sb.append(random.nextInt(1000));
+		}
+		sb.setLength(size);
+		return sb.toString().getBytes();
+	}
+
+}